@@ -173,4 +173,30 @@ prepare.min_network_size=10000 \
 measurement.json=true \
 measurement.count=5000 \
 measurement.use_measurement_time_as_ref_time=${USE_MEASUREMENT_TIME_AS_REF_TIME} \
-"measurement.block_area=49.394664,11.144428,49.348388,11.144943,49.355768,11.227169,49.411643,11.227512"
\ No newline at end of file
+"measurement.block_area=49.394664,11.144428,49.348388,11.144943,49.355768,11.227169,49.411643,11.227512"
+echo "6 - big map: concurrent throughput for flexible, LM and node-based CH routing"
+java -cp tools/target/graphhopper-tools-*-jar-with-dependencies.jar \
+-XX:+UseParallelGC -Xmx20g -Xms20g \
+com.graphhopper.tools.Measurement \
+datareader.file=${BIG_OSM_MAP} \
+datareader.date_range_parser_day=2019-11-01 \
+measurement.name=big_map_throughput \
+measurement.folder=${SINGLE_RESULTS_DIR} \
+measurement.clean=true \
+measurement.stop_on_error=true \
+measurement.summaryfile=${RESULTS_DIR}summary_big_throughput.dat \
+measurement.repeats=1 \
+measurement.run_slow_routing=false \
+measurement.weighting=fastest \
+measurement.ch.node=true \
+measurement.ch.edge=false \
+measurement.lm=true \
+"measurement.lm.active_counts=[8]" \
+measurement.lm.edge_based=false \
+"measurement.throughput.threads=[1,2,4,8]" \
+"graph.flag_encoders=car|turn_costs=true" \
+graph.location=${TMP_DIR}measurement-big-throughput-gh \
+prepare.min_network_size=10000 \
+measurement.json=true \
+measurement.count=5000 \
+measurement.use_measurement_time_as_ref_time=${USE_MEASUREMENT_TIME_AS_REF_TIME}
@@ -26,7 +26,9 @@ import com.graphhopper.config.LMProfile;
 import com.graphhopper.config.Profile;
 import com.graphhopper.jackson.Jackson;
 import com.graphhopper.reader.dem.*;
+import com.graphhopper.reader.osm.OSMChangeUpdater;
 import com.graphhopper.reader.osm.OSMReader;
+import com.graphhopper.reader.osm.OSMWayIdStorage;
 import com.graphhopper.reader.osm.conditional.DateRangeParser;
 import com.graphhopper.routing.*;
 import com.graphhopper.routing.ch.CHPreparationHandler;
@@ -41,13 +43,18 @@ import com.graphhopper.routing.subnetwork.PrepareRoutingSubnetworks.PrepareJob;
 import com.graphhopper.routing.util.*;
 import com.graphhopper.routing.util.countryrules.CountryRuleFactory;
 import com.graphhopper.routing.util.parsers.*;
+import com.graphhopper.routing.weighting.PrecomputedWeighting;
 import com.graphhopper.routing.weighting.Weighting;
+import com.graphhopper.routing.weighting.custom.AreaEdgeCache;
+import com.graphhopper.routing.weighting.custom.CustomModelClassStore;
+import com.graphhopper.routing.weighting.custom.CustomModelParser;
 import com.graphhopper.routing.weighting.custom.CustomProfile;
 import com.graphhopper.routing.weighting.custom.CustomWeighting;
 import com.graphhopper.storage.*;
 import com.graphhopper.storage.index.LocationIndex;
 import com.graphhopper.storage.index.LocationIndexTree;
 import com.graphhopper.util.*;
+import com.graphhopper.util.Parameters.CH;
 import com.graphhopper.util.Parameters.Landmark;
 import com.graphhopper.util.Parameters.Routing;
 import com.graphhopper.util.details.PathDetailsBuilderFactory;
@@ -98,6 +105,9 @@ public class GraphHopper {
     private DAType dataAccessDefaultType = DAType.RAM_STORE;
     private final LinkedHashMap<String, String> dataAccessConfig = new LinkedHashMap<>();
     private boolean sortGraph = false;
+    private boolean importCheckpoints = false;
+    // only set while an import with checkpoints is running or resumed
+    private ImportCheckpoints checkpoints;
     private boolean elevation = false;
     private LockFactory lockFactory = new NativeFSLockFactory();
     private boolean allowWrites = true;
@@ -109,14 +119,28 @@ public class GraphHopper {
     private LocationIndex locationIndex;
     private int preciseIndexResolution = 300;
     private int maxRegionSearch = 4;
+    private int indexThreads = 1;
+    // the edges of the areas used in custom models, only available while the location index is open
+    private int areaEdgeCacheSize = 100;
+    private volatile AreaEdgeCache areaEdgeCache;
+    // the edges blocked via block_area and the named block areas, only available while the location index is open
+    private int blockAreaCacheSize = 100;
+    private volatile BlockAreaCache blockAreaCache;
+    // the profiles for which the edge weights are precomputed
+    private List<String> edgeWeightProfiles = Collections.emptyList();
+    private Map<String, EdgeWeightStorage> edgeWeights = Collections.emptyMap();
     // for prepare
     private int minNetworkSize = 200;
 
     // preparation handlers
     private final LMPreparationHandler lmPreparationHandler = new LMPreparationHandler();
     private final CHPreparationHandler chPreparationHandler = new CHPreparationHandler();
-    private Map<String, RoutingCHGraph> chGraphs = Collections.emptyMap();
-    private Map<String, LandmarkStorage> landmarks = Collections.emptyMap();
+    // these maps are replaced when OSM changes are applied, see applyOSMChange
+    private volatile Map<String, RoutingCHGraph> chGraphs = Collections.emptyMap();
+    private volatile Map<String, LandmarkStorage> landmarks = Collections.emptyMap();
+    private final List<RoutingCHGraph> replacedCHGraphs = new ArrayList<>();
+    private final List<LandmarkStorage> replacedLandmarks = new ArrayList<>();
+    private OSMWayIdStorage osmWayIdStorage;
 
     // for data reader
     private String osmFile;
@@ -192,6 +216,16 @@ public class GraphHopper {
         return this;
     }
 
+    /**
+     * Precomputes the weights and times of all edges for the specified custom profiles. Requests without a custom
+     * model read them instead of evaluating the custom model for every edge. This needs 24 bytes per edge and profile.
+     */
+    public GraphHopper setEdgeWeightProfiles(List<String> edgeWeightProfiles) {
+        ensureNotLoaded();
+        this.edgeWeightProfiles = edgeWeightProfiles;
+        return this;
+    }
+
     /**
      * Only valid option for in-memory graph and if you e.g. want to disable store on flush for unit
      * tests. Specify storeOnFlush to true if you want that existing data will be loaded FROM disc
@@ -348,6 +382,13 @@ public class GraphHopper {
         return landmarks;
     }
 
+    /**
+     * @return the OSM way id of every edge or null if they were not stored, see datareader.store_osm_way_ids
+     */
+    public OSMWayIdStorage getOSMWayIdStorage() {
+        return osmWayIdStorage;
+    }
+
     /**
      * The location index created from the graph.
      *
@@ -360,6 +401,18 @@ public class GraphHopper {
         return locationIndex;
     }
 
+    /**
+     * The cache for the block_area parameter, which also manages the named block areas.
+     *
+     * @throws IllegalStateException if the location index is not initialized
+     */
+    public BlockAreaCache getBlockAreaCache() {
+        if (blockAreaCache == null)
+            throw new IllegalStateException("BlockAreaCache not initialized");
+
+        return blockAreaCache;
+    }
+
     protected void setLocationIndex(LocationIndex locationIndex) {
         this.locationIndex = locationIndex;
     }
@@ -373,6 +426,21 @@ public class GraphHopper {
         return this;
     }
 
+    /**
+     * Stores the graph after each stage of the import and records the finished stages, see {@link ImportCheckpoints}.
+     * If an import with checkpoints failed or was interrupted, the next call of load or importOrLoad resumes it from
+     * the last finished stage. Note that storing the graph after the stages takes additional time.
+     */
+    public GraphHopper setImportCheckpoints(boolean importCheckpoints) {
+        ensureNotLoaded();
+        this.importCheckpoints = importCheckpoints;
+        return this;
+    }
+
+    public boolean isImportCheckpoints() {
+        return importCheckpoints;
+    }
+
     public boolean isAllowWrites() {
         return allowWrites;
     }
@@ -479,6 +547,12 @@ public class GraphHopper {
 
         countryRuleFactory = ghConfig.getBool("country_rules.enabled", false) ? new CountryRuleFactory() : null;
         customAreasDirectory = ghConfig.getString("custom_areas.directory", customAreasDirectory);
+        String customModelClassDir = ghConfig.getString("custom_models.class_store.dir", "");
+        if (!customModelClassDir.isEmpty()) {
+            CustomModelClassStore classStore = new CustomModelClassStore(new File(customModelClassDir));
+            classStore.preload(ghConfig.getInt("custom_models.class_store.preload", 0));
+            CustomModelParser.setClassStore(classStore);
+        }
 
         defaultSegmentSize = ghConfig.getInt("graph.dataaccess.segment_size", defaultSegmentSize);
 
@@ -492,6 +566,7 @@ public class GraphHopper {
         }
 
         sortGraph = ghConfig.getBool("graph.do_sort", sortGraph);
+        importCheckpoints = ghConfig.getBool("graph.import_checkpoints", importCheckpoints);
         removeZipped = ghConfig.getBool("graph.remove_zipped", removeZipped);
 
         if (!ghConfig.getString("spatial_rules.location", "").isEmpty())
@@ -515,6 +590,7 @@ public class GraphHopper {
         // elevation
         osmReaderConfig.setSmoothElevation(ghConfig.getBool("graph.elevation.smoothing", osmReaderConfig.isSmoothElevation()));
         osmReaderConfig.setLongEdgeSamplingDistance(ghConfig.getDouble("graph.elevation.long_edge_sampling_distance", osmReaderConfig.getLongEdgeSamplingDistance()));
+        osmReaderConfig.setElevationInterpolationThreads(ghConfig.getInt("graph.elevation.interpolation_threads", osmReaderConfig.getElevationInterpolationThreads()));
         osmReaderConfig.setElevationMaxWayPointDistance(ghConfig.getDouble("graph.elevation.way_point_max_distance", osmReaderConfig.getElevationMaxWayPointDistance()));
         routerConfig.setElevationWayPointMaxDistance(ghConfig.getDouble("graph.elevation.way_point_max_distance", routerConfig.getElevationWayPointMaxDistance()));
         ElevationProvider elevationProvider = createElevationProvider(ghConfig);
@@ -535,10 +611,18 @@ public class GraphHopper {
         osmReaderConfig.setPreferredLanguage(ghConfig.getString("datareader.preferred_language", osmReaderConfig.getPreferredLanguage()));
         osmReaderConfig.setMaxWayPointDistance(ghConfig.getDouble(Routing.INIT_WAY_POINT_MAX_DISTANCE, osmReaderConfig.getMaxWayPointDistance()));
         osmReaderConfig.setWorkerThreads(ghConfig.getInt("datareader.worker_threads", osmReaderConfig.getWorkerThreads()));
+        osmReaderConfig.setTagParserThreads(ghConfig.getInt("datareader.tag_parser_threads", osmReaderConfig.getTagParserThreads()));
+        osmReaderConfig.setNodeIdMap(ghConfig.getString("datareader.node_id_map", osmReaderConfig.getNodeIdMap()));
+        osmReaderConfig.setStoreOSMWayIds(ghConfig.getBool("datareader.store_osm_way_ids", osmReaderConfig.isStoreOSMWayIds()));
 
         // index
         preciseIndexResolution = ghConfig.getInt("index.high_resolution", preciseIndexResolution);
         maxRegionSearch = ghConfig.getInt("index.max_region_search", maxRegionSearch);
+        indexThreads = ghConfig.getInt("index.threads", indexThreads);
+        areaEdgeCacheSize = ghConfig.getInt("routing.area_edge_cache.max_areas", areaEdgeCacheSize);
+        blockAreaCacheSize = ghConfig.getInt("routing.block_area_cache.max_entries", blockAreaCacheSize);
+        setEdgeWeightProfiles(Arrays.stream(ghConfig.getString("routing.edge_weights.profiles", "").split(","))
+                .map(String::trim).filter(s -> !s.isEmpty()).collect(Collectors.toList()));
 
         // routing
         routerConfig.setMaxVisitedNodes(ghConfig.getInt(Routing.INIT_MAX_VISITED_NODES, routerConfig.getMaxVisitedNodes()));
@@ -555,6 +639,19 @@ public class GraphHopper {
     }
 
     private void buildEncodingManagerAndOSMParsers(String flagEncodersStr, String encodedValuesStr, String dateRangeParserString, Collection<Profile> profiles) {
+        Map<String, String> flagEncodersMap = getFlagEncodersMap(flagEncodersStr, profiles);
+        List<String> encodedValueStrings = getEncodedValueStrings(encodedValuesStr);
+
+        EncodingManager.Builder emBuilder = new EncodingManager.Builder();
+        flagEncodersMap.forEach((name, encoderStr) -> emBuilder.add(flagEncoderFactory.createFlagEncoder(name, new PMap(encoderStr))));
+        profiles.forEach(profile -> emBuilder.add(Subnetwork.create(profile.getName())));
+        encodedValueStrings.forEach(s -> emBuilder.add(encodedValueFactory.create(s)));
+        encodingManager = emBuilder.build();
+
+        buildOSMParsers(flagEncodersMap, encodedValueStrings, dateRangeParserString);
+    }
+
+    private static Map<String, String> getFlagEncodersMap(String flagEncodersStr, Collection<Profile> profiles) {
         Map<String, String> flagEncodersMap = new LinkedHashMap<>();
         for (String encoderStr : flagEncodersStr.split(",")) {
             String name = encoderStr.split("\\|")[0].trim();
@@ -573,18 +670,21 @@ public class GraphHopper {
         }
         // flag encoders from profiles are only taken into account when they were not given explicitly
         flagEncodersFromProfilesMap.forEach(flagEncodersMap::putIfAbsent);
+        return flagEncodersMap;
+    }
 
-        List<String> encodedValueStrings = Arrays.stream(encodedValuesStr.split(","))
+    private static List<String> getEncodedValueStrings(String encodedValuesStr) {
+        return Arrays.stream(encodedValuesStr.split(","))
                 .map(String::trim)
                 .filter(s -> !s.isEmpty())
                 .collect(Collectors.toList());
+    }
 
-        EncodingManager.Builder emBuilder = new EncodingManager.Builder();
-        flagEncodersMap.forEach((name, encoderStr) -> emBuilder.add(flagEncoderFactory.createFlagEncoder(name, new PMap(encoderStr))));
-        profiles.forEach(profile -> emBuilder.add(Subnetwork.create(profile.getName())));
-        encodedValueStrings.forEach(s -> emBuilder.add(encodedValueFactory.create(s)));
-        encodingManager = emBuilder.build();
-
+    /**
+     * Creates the OSMParsers for the current encoding manager. They are only created for the import, but also needed
+     * to apply OSM changes to a loaded graph.
+     */
+    private void buildOSMParsers(Map<String, String> flagEncodersMap, List<String> encodedValueStrings, String dateRangeParserString) {
         osmParsers = new OSMParsers();
         for (String s : encodedValueStrings) {
             TagParser tagParser = tagParserFactory.create(encodingManager, s);
@@ -671,6 +771,9 @@ public class GraphHopper {
                     .setAutoRemoveTemporaryFiles(removeTempElevationFiles)
                     .setInterpolate(interpolate)
                     .setDAType(elevationDAType);
+            if (ghConfig.has("graph.elevation.max_tiles"))
+                provider.setMaxTiles(ghConfig.getInt("graph.elevation.max_tiles", 0));
+            provider.setPrefetchThreads(ghConfig.getInt("graph.elevation.prefetch_threads", 0));
             if (!baseURL.isEmpty())
                 provider.setBaseURL(baseURL);
         }
@@ -734,6 +837,10 @@ public class GraphHopper {
      * Creates the graph from OSM data.
      */
     private void process(boolean closeEarly) {
+        if (sortGraph && osmReaderConfig.isStoreOSMWayIds())
+            throw new IllegalArgumentException("Sorting the graph is not supported when the OSM way ids are stored");
+        if (sortGraph && importCheckpoints)
+            throw new IllegalArgumentException("Sorting the graph is not supported for imports with checkpoints");
         GHDirectory directory = new GHDirectory(ghLocation, dataAccessDefaultType);
         directory.configure(dataAccessConfig);
         buildEncodingManagerAndOSMParsers(flagEncodersString, encodedValuesString, dateRangeParserString, profilesByName.values());
@@ -745,6 +852,7 @@ public class GraphHopper {
                 .build();
         properties = new StorableProperties(directory);
         checkProfilesConsistency();
+        checkpoints = importCheckpoints && directory.isStoring() ? new ImportCheckpoints(properties, directory.getLocation()) : null;
 
         GHLock lock = null;
         try {
@@ -756,16 +864,113 @@ public class GraphHopper {
             }
             ensureWriteAccess();
             importOSM();
+            finishGraphCheckpoint(ImportCheckpoints.IMPORT, getGraphFiles());
             cleanUp();
             postImport();
+            finishGraphCheckpoint(ImportCheckpoints.SUBNETWORKS, getPostImportFiles());
             postProcessing(closeEarly);
             flush();
+            if (checkpoints != null)
+                checkpoints.complete();
         } finally {
             if (lock != null)
                 lock.release();
         }
     }
 
+    private void finishGraphCheckpoint(String stage, List<String> files) {
+        if (checkpoints == null)
+            return;
+        // the profiles are checked when the import is resumed
+        properties.put("profiles", getProfilesString());
+        baseGraph.flush();
+        if (osmWayIdStorage != null)
+            osmWayIdStorage.flush();
+        checkpoints.finish(stage, files);
+    }
+
+    private static List<String> getGraphFiles() {
+        return Arrays.asList("nodes", "edges", "geometry", "edgekv_keys", "edgekv_vals", "turn_costs", "osm_way_ids", "osm_node_tags");
+    }
+
+    /**
+     * @return the files that are modified after the import by cleanUp and postImport
+     */
+    private List<String> getPostImportFiles() {
+        if (sortGraph)
+            return getGraphFiles();
+        // the subnetworks are stored in the edge flags and the elevation interpolation changes the node and pillar elevations
+        return hasElevation() ? Arrays.asList("nodes", "edges", "geometry") : Collections.singletonList("edges");
+    }
+
+    /**
+     * Applies the given OSM change file to the loaded graph, see {@link OSMChangeUpdater}. This requires that the OSM
+     * way ids were stored during the import (datareader.store_osm_way_ids). Afterwards the CH preparations and the
+     * LM preparations of profiles for which the weight of an edge decreased are no longer used for routing, and they are
+     * prepared again the next time the graph is loaded. If the remaining LM preparations do not cover all profiles that
+     * had a CH or LM preparation, all requests use the flexible mode until then.
+     */
+    public synchronized OSMChangeUpdater.Result applyOSMChange(File oscFile) {
+        if (!fullyLoaded)
+            throw new IllegalStateException("Do a successful call to load or importOrLoad before applying OSM changes");
+        if (osmWayIdStorage == null)
+            throw new IllegalStateException("Applying OSM changes requires the OSM way ids, use datareader.store_osm_way_ids: true for the import");
+        ensureWriteAccess();
+        if (osmParsers == null)
+            buildOSMParsers(getFlagEncodersMap(flagEncodersString, profilesByName.values()), getEncodedValueStrings(encodedValuesString), dateRangeParserString);
+
+        Map<String, Weighting> lmWeightings = new LinkedHashMap<>();
+        for (String profile : landmarks.keySet())
+            lmWeightings.put(profile, createWeighting(profilesByName.get(profile), new PMap()));
+        OSMChangeUpdater.Result result;
+        try {
+            result = new OSMChangeUpdater(baseGraph, encodingManager, osmParsers, osmReaderConfig, osmWayIdStorage).
+                    setAreaIndex(createAreaIndex()).
+                    setCountryRuleFactory(countryRuleFactory).
+                    setWeightings(lmWeightings).
+                    apply(oscFile);
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Cannot read OSM change file " + oscFile, ex);
+        }
+        if (result.getUpdatedEdges() + result.getDisabledEdges() == 0)
+            return result;
+
+        // the shortcuts contain the old weights, so all CH preparations are invalid now. the landmark weights are still
+        // valid lower bounds as long as no edge weight decreased. in-flight requests might still use the old data, so
+        // we close them only later.
+        Set<String> preparedProfiles = new HashSet<>(chGraphs.keySet());
+        preparedProfiles.addAll(landmarks.keySet());
+        for (String profile : chGraphs.keySet())
+            properties.put(CH.PREPARE + "invalid." + profile, "true");
+        replacedCHGraphs.addAll(chGraphs.values());
+        chGraphs = Collections.emptyMap();
+        Map<String, LandmarkStorage> validLandmarks = new LinkedHashMap<>(landmarks);
+        for (String profile : result.getDecreasedWeightProfiles()) {
+            LandmarkStorage lms = validLandmarks.remove(profile);
+            properties.put(Landmark.PREPARE + "invalid." + lms.getLMConfig().getName(), "true");
+            replacedLandmarks.add(lms);
+        }
+        if (!validLandmarks.keySet().containsAll(preparedProfiles)) {
+            // with LM enabled the requests for profiles without LM preparation would fail
+            replacedLandmarks.addAll(validLandmarks.values());
+            validLandmarks.clear();
+        }
+        landmarks = validLandmarks;
+        // the precomputed weights are updated in place, like the flags of the edges
+        for (Map.Entry<String, EdgeWeightStorage> entry : edgeWeights.entrySet()) {
+            Profile profile = profilesByName.get(entry.getKey());
+            PrecomputedWeighting.prepare(baseGraph, createWeighting(profile, new PMap()), entry.getValue());
+            entry.getValue().flush();
+        }
+        // the access of the edges might have changed, so the blocked edges need to be determined again
+        if (blockAreaCache != null)
+            blockAreaCache.clear();
+
+        baseGraph.flush();
+        properties.flush();
+        return result;
+    }
+
     protected void postImport() {
         if (sortGraph) {
             BaseGraph newGraph = GHUtility.newGraph(baseGraph);
@@ -783,14 +988,7 @@ public class GraphHopper {
             throw new IllegalStateException("Couldn't load from existing folder: " + ghLocation
                     + " but also cannot use file for DataReader as it wasn't specified!");
 
-        List<CustomArea> customAreas = readCountries();
-        if (isEmpty(customAreasDirectory)) {
-            logger.info("No custom areas are used, custom_areas.directory not given");
-        } else {
-            logger.info("Creating custom area index, reading custom areas from: '" + customAreasDirectory + "'");
-            customAreas.addAll(readCustomAreas());
-        }
-        AreaIndex<CustomArea> areaIndex = new AreaIndex<>(customAreas);
+        AreaIndex<CustomArea> areaIndex = createAreaIndex();
 
         if (countryRuleFactory == null || countryRuleFactory.getCountryToRuleMap().isEmpty()) {
             logger.info("No country rules available");
@@ -806,6 +1004,10 @@ public class GraphHopper {
         logger.info("using " + getBaseGraphString() + ", memory:" + getMemInfo());
 
         createBaseGraphAndProperties();
+        if (osmReaderConfig.isStoreOSMWayIds()) {
+            osmWayIdStorage = new OSMWayIdStorage(baseGraph.getDirectory()).create(1000, osmParsers.createRelationFlags().length);
+            reader.setOSMWayIdStorage(osmWayIdStorage);
+        }
 
         try {
             reader.readGraph();
@@ -820,6 +1022,17 @@ public class GraphHopper {
         writeEncodingManagerToProperties();
     }
 
+    private AreaIndex<CustomArea> createAreaIndex() {
+        List<CustomArea> customAreas = readCountries();
+        if (isEmpty(customAreasDirectory)) {
+            logger.info("No custom areas are used, custom_areas.directory not given");
+        } else {
+            logger.info("Creating custom area index, reading custom areas from: '" + customAreasDirectory + "'");
+            customAreas.addAll(readCustomAreas());
+        }
+        return new AreaIndex<>(customAreas);
+    }
+
     protected void createBaseGraphAndProperties() {
         baseGraph.getDirectory().create();
         baseGraph.create(100);
@@ -912,6 +1125,19 @@ public class GraphHopper {
                 // the import did not run yet or is not complete for some reason
                 return false;
             loadEncodingManagerFromProperties(properties);
+            ImportCheckpoints storedCheckpoints = new ImportCheckpoints(properties, directory.getLocation());
+            if (storedCheckpoints.isResumable()) {
+                String[] graphStages = storedCheckpoints.isFinished(ImportCheckpoints.SUBNETWORKS)
+                        ? new String[]{ImportCheckpoints.IMPORT, ImportCheckpoints.SUBNETWORKS} : new String[]{ImportCheckpoints.IMPORT};
+                if (!storedCheckpoints.isValid(graphStages)) {
+                    logger.warn("Cannot resume the import in " + ghLocation + ", the stored graph does not match the checkpoints " + Arrays.toString(graphStages) + ". Starting a new import");
+                    properties.close();
+                    return false;
+                }
+                ensureWriteAccess();
+                logger.info("Resuming the import in " + ghLocation + ", finished stages: " + storedCheckpoints.getFinishedStages());
+                checkpoints = storedCheckpoints;
+            }
             baseGraph = new BaseGraph.Builder(getEncodingManager())
                     .setDir(directory)
                     .set3D(hasElevation())
@@ -919,6 +1145,11 @@ public class GraphHopper {
                     .setSegmentSize(defaultSegmentSize)
                     .build();
             baseGraph.loadExisting();
+            OSMWayIdStorage wayIds = new OSMWayIdStorage(directory);
+            if (wayIds.loadExisting())
+                osmWayIdStorage = wayIds;
+            else
+                wayIds.remove();
             checkProfilesConsistency();
             String storedProfiles = properties.get("profiles");
             String configuredProfiles = getProfilesString();
@@ -928,8 +1159,19 @@ public class GraphHopper {
                         + "\nGraph: " + storedProfiles
                         + "\nChange configuration to match the graph or delete " + baseGraph.getDirectory().getLocation());
 
+            if (checkpoints != null && !checkpoints.isFinished(ImportCheckpoints.SUBNETWORKS)) {
+                cleanUp();
+                postImport();
+                finishGraphCheckpoint(ImportCheckpoints.SUBNETWORKS, getPostImportFiles());
+            }
             postProcessing(false);
             directory.loadMMap();
+            if (checkpoints != null) {
+                // the graph was modified, e.g. it was frozen by the preparations
+                flush();
+                checkpoints.complete();
+                logger.info("Finished the resumed import in " + ghLocation);
+            }
             setFullyLoaded();
             return true;
         } finally {
@@ -1019,6 +1261,14 @@ public class GraphHopper {
             }
         }
 
+        for (String profile : edgeWeightProfiles) {
+            if (!profilesByName.containsKey(profile))
+                throw new IllegalArgumentException("Edge weights configured for unknown profile '" + profile + "'");
+            // for other weightings the weights might depend on the request hints
+            if (!(profilesByName.get(profile) instanceof CustomProfile))
+                throw new IllegalArgumentException("Edge weights can only be precomputed for custom profiles, but profile '" + profile + "' is not");
+        }
+
         Set<String> chProfileSet = new LinkedHashSet<>(chPreparationHandler.getCHProfiles().size());
         for (CHProfile chProfile : chPreparationHandler.getCHProfiles()) {
             boolean added = chProfileSet.add(chProfile.getProfile());
@@ -1096,8 +1346,16 @@ public class GraphHopper {
      * @param closeEarly release resources as early as possible
      */
     protected void postProcessing(boolean closeEarly) {
+        if (checkpoints != null && !checkpoints.isValid(ImportCheckpoints.LOCATION_INDEX)) {
+            // the location index of an interrupted import might be incomplete
+            checkpoints.remove(ImportCheckpoints.LOCATION_INDEX);
+            removeDir(new File(baseGraph.getDirectory().getLocation(), "location_index"));
+        }
         initLocationIndex();
+        if (checkpoints != null && !checkpoints.isFinished(ImportCheckpoints.LOCATION_INDEX))
+            checkpoints.finish(ImportCheckpoints.LOCATION_INDEX, Collections.singletonList("location_index"));
         importPublicTransit();
+        loadOrPrepareEdgeWeights();
 
         if (closeEarly) {
             boolean includesCustomProfiles = profilesByName.values().stream().anyMatch(p -> p instanceof CustomProfile);
@@ -1110,9 +1368,12 @@ public class GraphHopper {
         if (lmPreparationHandler.isEnabled())
             loadOrPrepareLM(closeEarly);
 
-        if (closeEarly)
+        if (closeEarly) {
             // we needed the location index for the LM preparation, but we don't need it for CH
+            areaEdgeCache = null;
+            blockAreaCache = null;
             locationIndex.close();
+        }
 
         if (chPreparationHandler.isEnabled())
             loadOrPrepareCH(closeEarly);
@@ -1121,19 +1382,52 @@ public class GraphHopper {
     protected void importPublicTransit() {
     }
 
+    /**
+     * Loads the precomputed edge weights of the profiles configured via {@link #setEdgeWeightProfiles} or calculates
+     * them if they do not exist yet or are outdated.
+     */
+    protected void loadOrPrepareEdgeWeights() {
+        Map<String, EdgeWeightStorage> result = new LinkedHashMap<>();
+        for (String profileName : edgeWeightProfiles) {
+            Profile profile = profilesByName.get(profileName);
+            EdgeWeightStorage storage = new EdgeWeightStorage(baseGraph.getDirectory(), profileName);
+            if (storage.loadExisting()) {
+                if (storage.getProfileVersion() == profile.getVersion() && storage.getEdges() == baseGraph.getEdges()) {
+                    result.put(profileName, storage);
+                    continue;
+                }
+                logger.info("edge weights of profile " + profileName + " are outdated, calculating them again");
+                storage.remove();
+                storage = new EdgeWeightStorage(baseGraph.getDirectory(), profileName);
+            }
+            ensureWriteAccess();
+            StopWatch sw = new StopWatch().start();
+            storage.create(baseGraph.getEdges(), profile.getVersion());
+            PrecomputedWeighting.prepare(baseGraph, createWeighting(profile, new PMap()), storage);
+            storage.flush();
+            logger.info("calculated edge weights of profile " + profileName + ", took: " + sw.stop().getSeconds() + "s, "
+                    + Helper.nf(storage.getCapacity() / Helper.MB) + "MB");
+            result.put(profileName, storage);
+        }
+        edgeWeights = result;
+    }
+
     void interpolateBridgesTunnelsAndFerries() {
         if (encodingManager.hasEncodedValue(RoadEnvironment.KEY)) {
             EnumEncodedValue<RoadEnvironment> roadEnvEnc = encodingManager.getEnumEncodedValue(RoadEnvironment.KEY, RoadEnvironment.class);
             StopWatch sw = new StopWatch().start();
-            new EdgeElevationInterpolator(baseGraph.getBaseGraph(), roadEnvEnc, RoadEnvironment.TUNNEL).execute();
+            new EdgeElevationInterpolator(baseGraph.getBaseGraph(), roadEnvEnc, RoadEnvironment.TUNNEL)
+                    .setThreads(osmReaderConfig.getElevationInterpolationThreads()).execute();
             float tunnel = sw.stop().getSeconds();
             sw = new StopWatch().start();
-            new EdgeElevationInterpolator(baseGraph.getBaseGraph(), roadEnvEnc, RoadEnvironment.BRIDGE).execute();
+            new EdgeElevationInterpolator(baseGraph.getBaseGraph(), roadEnvEnc, RoadEnvironment.BRIDGE)
+                    .setThreads(osmReaderConfig.getElevationInterpolationThreads()).execute();
             float bridge = sw.stop().getSeconds();
             // The SkadiProvider contains bathymetric data. For ferries this can result in bigger elevation changes
             // See #2098 for mor information
             sw = new StopWatch().start();
-            new EdgeElevationInterpolator(baseGraph.getBaseGraph(), roadEnvEnc, RoadEnvironment.FERRY).execute();
+            new EdgeElevationInterpolator(baseGraph.getBaseGraph(), roadEnvEnc, RoadEnvironment.FERRY)
+                    .setThreads(osmReaderConfig.getElevationInterpolationThreads()).execute();
             logger.info("Bridge interpolation " + (int) bridge + "s, " + "tunnel interpolation " + (int) tunnel + "s, ferry interpolation " + (int) sw.stop().getSeconds() + "s");
         }
     }
@@ -1147,7 +1441,7 @@ public class GraphHopper {
     }
 
     protected WeightingFactory createWeightingFactory() {
-        return new DefaultWeightingFactory(baseGraph.getBaseGraph(), getEncodingManager());
+        return new DefaultWeightingFactory(baseGraph.getBaseGraph(), getEncodingManager(), areaEdgeCache);
     }
 
     public GHResponse route(GHRequest request) {
@@ -1163,7 +1457,8 @@ public class GraphHopper {
             throw new IllegalStateException("Location index not initialized");
 
         return doCreateRouter(baseGraph, encodingManager, locationIndex, profilesByName, pathBuilderFactory,
-                trMap, routerConfig, createWeightingFactory(), chGraphs, landmarks);
+                trMap, routerConfig, createWeightingFactory(), chGraphs, landmarks).setBlockAreaCache(blockAreaCache).
+                setEdgeWeights(edgeWeights);
     }
 
     protected Router doCreateRouter(BaseGraph baseGraph, EncodingManager encodingManager, LocationIndex locationIndex, Map<String, Profile> profilesByName,
@@ -1178,6 +1473,7 @@ public class GraphHopper {
         LocationIndexTree tmpIndex = new LocationIndexTree(baseGraph, dir);
         tmpIndex.setResolution(preciseIndexResolution);
         tmpIndex.setMaxRegionSearch(maxRegionSearch);
+        tmpIndex.setThreads(indexThreads);
         if (!tmpIndex.loadExisting()) {
             ensureWriteAccess();
             tmpIndex.prepareIndex();
@@ -1194,6 +1490,13 @@ public class GraphHopper {
             throw new IllegalStateException("Cannot initialize locationIndex twice!");
 
         locationIndex = createLocationIndex(baseGraph.getDirectory());
+        if (areaEdgeCacheSize > 0)
+            areaEdgeCache = new AreaEdgeCache(baseGraph.getBaseGraph(), locationIndex, areaEdgeCacheSize);
+        blockAreaCache = new BlockAreaCache(baseGraph, locationIndex, blockAreaCacheSize, new File(ghLocation, "block_areas.properties"));
+    }
+
+    private boolean isInvalidated(String preparePrefix, String name) {
+        return properties.get(preparePrefix + "invalid." + name).equals("true");
     }
 
     private String getCHProfileVersion(String profile) {
@@ -1220,7 +1523,10 @@ public class GraphHopper {
 
         // we load ch graphs that already exist and prepare the other ones
         List<CHConfig> chConfigs = createCHConfigs(chPreparationHandler.getCHProfiles());
-        Map<String, RoutingCHGraph> loaded = chPreparationHandler.load(baseGraph.getBaseGraph(), chConfigs);
+        // CH preparations that were invalidated by applyOSMChange are not loaded, so they are prepared again
+        List<CHConfig> validCHConfigs = chConfigs.stream().filter(c -> !isInvalidated(CH.PREPARE, c.getName())
+                && (checkpoints == null || checkpoints.isValid(ImportCheckpoints.chStage(c.getName())))).collect(Collectors.toList());
+        Map<String, RoutingCHGraph> loaded = chPreparationHandler.load(baseGraph.getBaseGraph(), validCHConfigs);
         List<CHConfig> configsToPrepare = chConfigs.stream().filter(c -> !loaded.containsKey(c.getName())).collect(Collectors.toList());
         Map<String, PrepareContractionHierarchies.Result> prepared = prepareCH(closeEarly, configsToPrepare);
 
@@ -1231,6 +1537,7 @@ public class GraphHopper {
                 throw new IllegalStateException("CH graph should be either loaded or prepared, but not both: " + profile.getProfile());
             else if (prepared.containsKey(profile.getProfile())) {
                 setCHProfileVersion(profile.getProfile(), profilesByName.get(profile.getProfile()).getVersion());
+                properties.remove(CH.PREPARE + "invalid." + profile.getProfile());
                 PrepareContractionHierarchies.Result res = prepared.get(profile.getProfile());
                 chGraphs.put(profile.getProfile(), RoutingCHGraphImpl.fromGraph(baseGraph.getBaseGraph(), res.getCHStorage(), res.getCHConfig()));
             } else if (loaded.containsKey(profile.getProfile())) {
@@ -1238,6 +1545,9 @@ public class GraphHopper {
             } else
                 throw new IllegalStateException("CH graph should be either loaded or prepared: " + profile.getProfile());
         }
+        // when loading a graph the properties are not flushed afterwards, but we removed the invalid markers
+        if (!prepared.isEmpty())
+            properties.flush();
     }
 
     protected Map<String, PrepareContractionHierarchies.Result> prepareCH(boolean closeEarly, List<CHConfig> configsToPrepare) {
@@ -1245,6 +1555,12 @@ public class GraphHopper {
             ensureWriteAccess();
         if (!baseGraph.isFrozen())
             baseGraph.freeze();
+        ImportCheckpoints checkpoints = this.checkpoints;
+        if (checkpoints != null)
+            chPreparationHandler.setPreparedCallback(name -> {
+                setCHProfileVersion(name, profilesByName.get(name).getVersion());
+                checkpoints.finish(ImportCheckpoints.chStage(name), Arrays.asList("nodes_ch_" + name, "shortcuts_" + name));
+            });
         return chPreparationHandler.prepare(baseGraph, properties, configsToPrepare, closeEarly);
     }
 
@@ -1259,7 +1575,9 @@ public class GraphHopper {
 
         // we load landmark storages that already exist and prepare the other ones
         List<LMConfig> lmConfigs = createLMConfigs(lmPreparationHandler.getLMProfiles());
-        List<LandmarkStorage> loaded = lmPreparationHandler.load(lmConfigs, baseGraph, encodingManager);
+        List<LMConfig> validLMConfigs = lmConfigs.stream().filter(c -> !isInvalidated(Landmark.PREPARE, c.getName())
+                && (checkpoints == null || checkpoints.isValid(ImportCheckpoints.lmStage(c.getName())))).collect(Collectors.toList());
+        List<LandmarkStorage> loaded = lmPreparationHandler.load(validLMConfigs, baseGraph, encodingManager);
         List<LMConfig> loadedConfigs = loaded.stream().map(LandmarkStorage::getLMConfig).collect(Collectors.toList());
         List<LMConfig> configsToPrepare = lmConfigs.stream().filter(c -> !loadedConfigs.contains(c)).collect(Collectors.toList());
         List<PrepareLandmarks> prepared = prepareLM(closeEarly, configsToPrepare);
@@ -1275,10 +1593,13 @@ public class GraphHopper {
                 throw new IllegalStateException("LM should be either loaded or prepared, but not both: " + prepProfile);
             else if (preparedLMS.isPresent()) {
                 setLMProfileVersion(lmp.getProfile(), profilesByName.get(lmp.getProfile()).getVersion());
+                properties.remove(Landmark.PREPARE + "invalid." + prepProfile);
                 landmarks.put(lmp.getProfile(), preparedLMS.get().getLandmarkStorage());
             } else
                 loadedLMS.ifPresent(landmarkStorage -> landmarks.put(lmp.getProfile(), landmarkStorage));
         }
+        if (!prepared.isEmpty())
+            properties.flush();
     }
 
     protected List<PrepareLandmarks> prepareLM(boolean closeEarly, List<LMConfig> configsToPrepare) {
@@ -1286,6 +1607,10 @@ public class GraphHopper {
             ensureWriteAccess();
         if (!baseGraph.isFrozen())
             baseGraph.freeze();
+        ImportCheckpoints checkpoints = this.checkpoints;
+        if (checkpoints != null)
+            lmPreparationHandler.setPreparedCallback(name -> checkpoints.finish(ImportCheckpoints.lmStage(name),
+                    Arrays.asList("landmarks_" + name, "landmarks_subnetwork_" + name)));
         return lmPreparationHandler.prepare(configsToPrepare, baseGraph, encodingManager, properties, locationIndex, closeEarly);
     }
 
@@ -1314,6 +1639,8 @@ public class GraphHopper {
         logger.info("flushing graph " + getBaseGraphString() + ", details:" + baseGraph.toDetailsString() + ", "
                 + getMemInfo() + ")");
         baseGraph.flush();
+        if (osmWayIdStorage != null)
+            osmWayIdStorage.flush();
         properties.flush();
         logger.info("flushed graph " + getMemInfo() + ")");
         setFullyLoaded();
@@ -1331,6 +1658,11 @@ public class GraphHopper {
 
         chGraphs.values().forEach(RoutingCHGraph::close);
         landmarks.values().forEach(LandmarkStorage::close);
+        replacedCHGraphs.forEach(RoutingCHGraph::close);
+        replacedLandmarks.forEach(LandmarkStorage::close);
+        edgeWeights.values().forEach(EdgeWeightStorage::close);
+        if (osmWayIdStorage != null)
+            osmWayIdStorage.close();
 
         if (locationIndex != null)
             locationIndex.close();
@@ -0,0 +1,219 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.coll;
+
+import com.carrotsearch.hppc.LongArrayList;
+import com.carrotsearch.hppc.LongIntHashMap;
+import com.graphhopper.storage.DAType;
+import com.graphhopper.storage.DataAccess;
+import com.graphhopper.storage.Directory;
+import com.graphhopper.util.Helper;
+
+/**
+ * A LongIntMap for many keys that are dense in some ranges, like OSM node ids. The key space is split into blocks of
+ * 64 keys. For each block we store a bitmap of the keys that are present and a pointer to the values of these keys,
+ * which are kept in key order. So a key only needs one bit plus its value, instead of the key itself and the object
+ * overhead of a tree or hash map. The blocks are grouped into pages of 1024 keys and only pages that contain at least
+ * one key are allocated.
+ * <p>
+ * The bitmaps and the values are stored in DataAccess objects, so with {@link DAType#MMAP} this map uses almost no
+ * heap memory. Only the page index and the free lists are kept on the heap. Negative keys are rare (they are used for
+ * artificial OSM node ids) and are stored in a separate {@link GHLongIntBTree}.
+ * <p>
+ * The values of a block are stored in a chunk whose capacity is one of a few size classes. When a block outgrows its
+ * chunk the values are moved to a larger chunk and the old chunk is reused for other blocks later. Keys cannot be
+ * removed. This class is not thread-safe.
+ */
+public class SparseLongIntMap implements LongIntMap {
+    private static final int EMPTY = -1;
+    private static final int BLOCK_BITS = 6;
+    private static final int PAGE_BITS = 10;
+    private static final int BLOCKS_PER_PAGE = 1 << (PAGE_BITS - BLOCK_BITS);
+    // per block: 8 bytes bitmap and 8 bytes pointer to the first value
+    private static final int BLOCK_BYTES = 16;
+    private static final int PAGE_BYTES = BLOCKS_PER_PAGE * BLOCK_BYTES;
+    private static final int[] SIZE_CLASSES = {1, 2, 3, 4, 6, 8, 12, 16, 24, 32, 48, 64};
+    private static final int[] SIZE_CLASS_BY_COUNT = new int[65];
+
+    static {
+        for (int count = 1, sizeClass = 0; count <= 64; count++) {
+            if (count > SIZE_CLASSES[sizeClass])
+                sizeClass++;
+            SIZE_CLASS_BY_COUNT[count] = sizeClass;
+        }
+    }
+
+    private final Directory dir;
+    private final DataAccess blocks;
+    private final DataAccess values;
+    private final LongIntHashMap pagesByKey = new LongIntHashMap();
+    private final LongArrayList[] freeChunks = new LongArrayList[SIZE_CLASSES.length];
+    private final GHLongIntBTree negativeKeys = new GHLongIntBTree(200);
+    private long lastPageKey = -1;
+    private int lastPage = -1;
+    private int pages;
+    // the number of value slots in use including the free chunks
+    private long valueSlots;
+    private long size;
+
+    public SparseLongIntMap(Directory dir, String name, DAType type) {
+        this.dir = dir;
+        blocks = dir.create(name + "_blocks", type).create(PAGE_BYTES * 1024);
+        values = dir.create(name + "_values", type).create(1 << 20);
+        for (int i = 0; i < freeChunks.length; i++)
+            freeChunks[i] = new LongArrayList();
+    }
+
+    @Override
+    public int put(long key, int value) {
+        if (key < 0)
+            return putNegative(key, value);
+
+        int page = getPage(key >>> PAGE_BITS, true);
+        long blockPointer = (long) page * PAGE_BYTES + ((key >>> BLOCK_BITS) & (BLOCKS_PER_PAGE - 1)) * BLOCK_BYTES;
+        long bitmap = getLong(blocks, blockPointer);
+        long bit = 1L << (key & 63);
+        int rank = Long.bitCount(bitmap & (bit - 1));
+        long chunk = getLong(blocks, blockPointer + 8);
+        if ((bitmap & bit) != 0) {
+            long valuePointer = (chunk + rank) * 4;
+            int old = values.getInt(valuePointer);
+            values.setInt(valuePointer, value);
+            return old;
+        }
+
+        int count = Long.bitCount(bitmap);
+        if (count > 0 && SIZE_CLASS_BY_COUNT[count] == SIZE_CLASS_BY_COUNT[count + 1]) {
+            // there is enough space in the current chunk, shift the values after rank
+            for (int i = count; i > rank; i--)
+                values.setInt((chunk + i) * 4, values.getInt((chunk + i - 1) * 4));
+            values.setInt((chunk + rank) * 4, value);
+        } else {
+            long newChunk = allocateChunk(SIZE_CLASS_BY_COUNT[count + 1]);
+            for (int i = 0; i < rank; i++)
+                values.setInt((newChunk + i) * 4, values.getInt((chunk + i) * 4));
+            values.setInt((newChunk + rank) * 4, value);
+            for (int i = rank; i < count; i++)
+                values.setInt((newChunk + i + 1) * 4, values.getInt((chunk + i) * 4));
+            if (count > 0)
+                freeChunks[SIZE_CLASS_BY_COUNT[count]].add(chunk);
+            setLong(blocks, blockPointer + 8, newChunk);
+        }
+        setLong(blocks, blockPointer, bitmap | bit);
+        size++;
+        return EMPTY;
+    }
+
+    @Override
+    public int get(long key) {
+        if (key < 0)
+            return negativeKeys.get(key);
+
+        int page = getPage(key >>> PAGE_BITS, false);
+        if (page < 0)
+            return EMPTY;
+        long blockPointer = (long) page * PAGE_BYTES + ((key >>> BLOCK_BITS) & (BLOCKS_PER_PAGE - 1)) * BLOCK_BYTES;
+        long bitmap = getLong(blocks, blockPointer);
+        long bit = 1L << (key & 63);
+        if ((bitmap & bit) == 0)
+            return EMPTY;
+        long chunk = getLong(blocks, blockPointer + 8);
+        return values.getInt((chunk + Long.bitCount(bitmap & (bit - 1))) * 4);
+    }
+
+    private int putNegative(long key, int value) {
+        int old = negativeKeys.put(key, value);
+        if (old == EMPTY)
+            size++;
+        return old;
+    }
+
+    /**
+     * @return the page for the given page key or -1 if it does not exist and create is false
+     */
+    private int getPage(long pageKey, boolean create) {
+        // the keys often arrive in ascending order, e.g. the nodes of an OSM file, so we first check the last page
+        if (pageKey == lastPageKey)
+            return lastPage;
+        int page = pagesByKey.getOrDefault(pageKey, -1);
+        if (page < 0) {
+            if (!create)
+                return -1;
+            page = pages++;
+            long pagePointer = (long) page * PAGE_BYTES;
+            blocks.ensureCapacity(pagePointer + PAGE_BYTES);
+            // the DataAccess might contain garbage, at least for MMAP
+            for (int i = 0; i < PAGE_BYTES; i += 4)
+                blocks.setInt(pagePointer + i, 0);
+            pagesByKey.put(pageKey, page);
+        }
+        lastPageKey = pageKey;
+        lastPage = page;
+        return page;
+    }
+
+    private long allocateChunk(int sizeClass) {
+        LongArrayList free = freeChunks[sizeClass];
+        if (!free.isEmpty())
+            return free.remove(free.size() - 1);
+        long chunk = valueSlots;
+        valueSlots += SIZE_CLASSES[sizeClass];
+        values.ensureCapacity(valueSlots * 4);
+        return chunk;
+    }
+
+    private static long getLong(DataAccess da, long bytePos) {
+        return ((long) da.getInt(bytePos + 4) << 32) | (da.getInt(bytePos) & 0xFFFF_FFFFL);
+    }
+
+    private static void setLong(DataAccess da, long bytePos, long value) {
+        da.setInt(bytePos, (int) value);
+        da.setInt(bytePos + 4, (int) (value >>> 32));
+    }
+
+    @Override
+    public long getSize() {
+        return size;
+    }
+
+    @Override
+    public void optimize() {
+        negativeKeys.optimize();
+    }
+
+    /**
+     * @return memory usage in MB, including the memory mapped storage
+     */
+    @Override
+    public int getMemoryUsage() {
+        return (int) ((blocks.getCapacity() + values.getCapacity()) / Helper.MB) + negativeKeys.getMemoryUsage();
+    }
+
+    /**
+     * Removes the underlying storage. The map must not be used afterwards.
+     */
+    public void clear() {
+        dir.remove(blocks.getName());
+        dir.remove(values.getName());
+    }
+
+    @Override
+    public String toString() {
+        return "size: " + size + ", pages: " + pages + ", value slots: " + valueSlots + ", memory: " + getMemoryUsage() + "MB";
+    }
+}
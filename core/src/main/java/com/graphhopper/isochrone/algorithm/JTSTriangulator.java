@@ -35,6 +35,7 @@ import org.locationtech.jts.triangulate.quadedge.Vertex;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 import java.util.function.ToDoubleFunction;
 import java.util.stream.Collectors;
 
@@ -46,10 +47,14 @@ public class JTSTriangulator implements Triangulator {
         this.routerConfig = routerConfig;
     }
 
-    public Result triangulate(Snap snap, QueryGraph queryGraph, ShortestPathTree shortestPathTree, ToDoubleFunction<ShortestPathTree.IsoLabel> fz, double tolerance) {
+    @Override
+    public Result triangulate(List<Snap> snaps, QueryGraph queryGraph, ShortestPathTree shortestPathTree, ToDoubleFunction<ShortestPathTree.IsoLabel> fz, double tolerance) {
         final NodeAccess na = queryGraph.getNodeAccess();
         Collection<Coordinate> sites = new ArrayList<>();
-        shortestPathTree.search(snap.getClosestNode(), label -> {
+        for (Snap snap : snaps) {
+            shortestPathTree.addSource(snap.getClosestNode(), 0, 0, 0);
+        }
+        shortestPathTree.search(label -> {
             double exploreValue = fz.applyAsDouble(label);
             double lat = na.getLat(label.node);
             double lon = na.getLon(label.node);
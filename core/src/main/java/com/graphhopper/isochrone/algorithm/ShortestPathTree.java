@@ -85,16 +85,21 @@ public class ShortestPathTree extends AbstractRoutingAlgorithm {
     }
 
     private final IntObjectHashMap<IsoLabel> fromMap;
+    // the labels of the sources by node. in node-based mode this is fromMap, but in edge-based mode fromMap stores the
+    // labels by edge and the sources have no edge
+    private final IntObjectHashMap<IsoLabel> sourceMap;
     private final PriorityQueue<IsoLabel> queueByWeighting;
     private int visitedNodes;
     private double limit = -1;
     private ExploreType exploreType = TIME;
     private final boolean reverseFlow;
+    private boolean searchStarted;
 
     public ShortestPathTree(Graph g, Weighting weighting, boolean reverseFlow, TraversalMode traversalMode) {
         super(g, weighting, traversalMode);
         queueByWeighting = new PriorityQueue<>(1000, comparingDouble(l -> l.weight));
         fromMap = new GHIntObjectHashMap<>(1000);
+        sourceMap = traversalMode.isEdgeBased() ? new GHIntObjectHashMap<>() : fromMap;
         this.reverseFlow = reverseFlow;
     }
 
@@ -125,12 +130,39 @@ public class ShortestPathTree extends AbstractRoutingAlgorithm {
     }
 
     public void search(int from, final Consumer<IsoLabel> consumer) {
-        checkAlreadyRun();
-        IsoLabel currentLabel = new IsoLabel(from, -1, 0, 0, 0, null);
-        queueByWeighting.add(currentLabel);
-        if (traversalMode == TraversalMode.NODE_BASED) {
-            fromMap.put(from, currentLabel);
+        addSource(from, 0, 0, 0);
+        search(consumer);
+    }
+
+    /**
+     * Adds a start node for a multi-source search, see {@link #search(Consumer)}. The offsets are the initial
+     * weight, time and distance of the start node. Note that the search explores the nodes in the order of their
+     * weight, so usually the weight offset needs to be consistent with the time or distance offset.
+     */
+    public void addSource(int from, double weightOffset, long timeOffset, double distanceOffset) {
+        if (searchStarted)
+            throw new IllegalStateException("Cannot add a source after the search was started");
+        IsoLabel label = new IsoLabel(from, -1, weightOffset, timeOffset, distanceOffset, null);
+        IsoLabel existing = sourceMap.get(from);
+        if (existing != null) {
+            if (existing.weight <= weightOffset)
+                return;
+            existing.deleted = true;
         }
+        sourceMap.put(from, label);
+        queueByWeighting.add(label);
+    }
+
+    /**
+     * Runs the search starting from all nodes added via {@link #addSource}. All sources start in the same queue,
+     * so the result is the shortest path tree of the closest source for every node.
+     */
+    public void search(final Consumer<IsoLabel> consumer) {
+        checkAlreadyRun();
+        if (queueByWeighting.isEmpty())
+            throw new IllegalStateException("Call addSource before search");
+        searchStarted = true;
+        IsoLabel currentLabel;
         while (!finished()) {
             currentLabel = queueByWeighting.poll();
             if (currentLabel.deleted)
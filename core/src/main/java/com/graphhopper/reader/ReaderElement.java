@@ -34,10 +34,11 @@ public abstract class ReaderElement {
     public static final int FILEHEADER = 3;
     private final int type;
     private final long id;
-    private final Map<String, Object> properties;
+    // most elements, e.g. the pillar nodes, have no tags, so we create the map only when the first tag is set
+    private Map<String, Object> properties;
 
     protected ReaderElement(long id, int type) {
-        this(id, type, new HashMap<>(4));
+        this(id, type, null);
     }
 
     protected ReaderElement(long id, int type, Map<String, Object> properties) {
@@ -51,7 +52,7 @@ public abstract class ReaderElement {
     }
 
     protected String tagsToString() {
-        if (properties.isEmpty())
+        if (!hasTags())
             return "<empty>";
 
         StringBuilder tagTxt = new StringBuilder();
@@ -65,11 +66,13 @@ public abstract class ReaderElement {
     }
 
     public Map<String, Object> getTags() {
+        if (properties == null)
+            properties = new HashMap<>(4);
         return properties;
     }
 
     public void setTags(Map<String, String> newTags) {
-        properties.clear();
+        clearTags();
         if (newTags != null)
             for (Entry<String, String> e : newTags.entrySet()) {
                 setTag(e.getKey(), e.getValue());
@@ -77,16 +80,16 @@ public abstract class ReaderElement {
     }
 
     public boolean hasTags() {
-        return !properties.isEmpty();
+        return properties != null && !properties.isEmpty();
     }
 
     public String getTag(String name) {
-        return (String) properties.get(name);
+        return properties == null ? null : (String) properties.get(name);
     }
 
     @SuppressWarnings("unchecked")
     public <T> T getTag(String key, T defaultValue) {
-        T val = (T) properties.get(key);
+        T val = properties == null ? null : (T) properties.get(key);
         if (val == null)
             return defaultValue;
         return val;
@@ -94,6 +97,8 @@ public abstract class ReaderElement {
 
     public List<String> getKeysWithPrefix(String keyPrefix) {
         List<String> keys = new ArrayList<>();
+        if (properties == null)
+            return keys;
         for (String key : properties.keySet()) {
             if (key.startsWith(keyPrefix)) {
                 keys.add(key);
@@ -103,7 +108,7 @@ public abstract class ReaderElement {
     }
 
     public void setTag(String name, Object value) {
-        properties.put(name, value);
+        getTags().put(name, value);
     }
 
     /**
@@ -118,7 +123,7 @@ public abstract class ReaderElement {
      * for presence of the tag
      */
     public boolean hasTag(String key, String... values) {
-        Object value = properties.get(key);
+        Object value = properties == null ? null : properties.get(key);
         if (value == null)
             return false;
 
@@ -153,6 +158,8 @@ public abstract class ReaderElement {
     }
 
     public boolean hasTagWithKeyPrefix(String keyPrefix) {
+        if (properties == null)
+            return false;
         for (String key : properties.keySet()) {
             if (key.startsWith(keyPrefix)) {
                 return true;
@@ -173,11 +180,13 @@ public abstract class ReaderElement {
     }
 
     public void removeTag(String name) {
-        properties.remove(name);
+        if (properties != null)
+            properties.remove(name);
     }
 
     public void clearTags() {
-        properties.clear();
+        if (properties != null)
+            properties.clear();
     }
 
     public int getType() {
@@ -190,6 +199,6 @@ public abstract class ReaderElement {
 
     @Override
     public String toString() {
-        return properties.toString();
+        return properties == null ? "{}" : properties.toString();
     }
 }
@@ -17,7 +17,6 @@
  */
 package com.graphhopper.reader.dem;
 
-import com.graphhopper.coll.GHIntObjectHashMap;
 import com.graphhopper.storage.DataAccess;
 import com.graphhopper.util.BitUtil;
 import com.graphhopper.util.Downloader;
@@ -40,7 +39,7 @@ public abstract class AbstractSRTMElevationProvider extends TileBasedElevationPr
     private final int WIDTH_BYTE_INDEX = 0;
     private final int DEGREE = 1;
     // use a map as an array is not quite useful if we want to hold only parts of the world
-    private final GHIntObjectHashMap<HeightTile> cacheData = new GHIntObjectHashMap<>();
+    private final HeightTileCache<Integer> cacheData = new HeightTileCache<>(this::closeTile);
     private final double precision = 1e7;
     private final double invPrecision = 1 / precision;
 
@@ -62,13 +61,7 @@ public abstract class AbstractSRTMElevationProvider extends TileBasedElevationPr
     @Override
     public void release() {
         cacheData.clear();
-        if (dir != null) {
-            // for memory mapped type we remove temporary files
-            if (autoRemoveTemporary)
-                dir.clear();
-            else
-                dir.close();
-        }
+        releaseDirectory();
     }
 
     int down(double val) {
@@ -90,47 +83,20 @@ public abstract class AbstractSRTMElevationProvider extends TileBasedElevationPr
         int intKey = calcIntKey(lat, lon);
         HeightTile demProvider = cacheData.get(intKey);
         if (demProvider == null) {
-            if (!cacheDir.exists())
-                cacheDir.mkdirs();
-
-            int minLat = down(lat);
-            int minLon = down(lon);
-
-            String fileName = getFileName(lat, lon);
-            if (fileName == null)
+            String name = getTileName(lat, lon);
+            if (name == null)
                 return 0;
 
-            DataAccess heights = getDirectory().create("dem" + intKey);
-            boolean loadExisting = false;
-            try {
-                loadExisting = heights.loadExisting();
-            } catch (Exception ex) {
-                logger.warn("cannot load dem" + intKey + ", error:" + ex.getMessage());
-            }
-
-            if (!loadExisting) {
-                try {
-                    updateHeightsFromFile(lat, lon, heights);
-                } catch (FileNotFoundException ex) {
-                    demProvider = new HeightTile(minLat, minLon, DEFAULT_WIDTH, DEFAULT_WIDTH, precision, DEGREE, DEGREE);
-                    cacheData.put(intKey, demProvider);
-                    demProvider.setHeights(heights);
-                    demProvider.setSeaLevel(true);
-                    // use small size on disc and in-memory
-                    heights.create(10)
-                            .flush();
-                    return 0;
-                }
-            }
-
+            DataAccess heights = getDirectory().create(name);
+            loadHeights(lat, lon, heights);
             int width = (int) (Math.sqrt(heights.getHeader(WIDTH_BYTE_INDEX)) + 0.5);
             if (width == 0)
                 width = DEFAULT_WIDTH;
 
-            demProvider = new HeightTile(minLat, minLon, width, width, precision, DEGREE, DEGREE);
-            cacheData.put(intKey, demProvider);
+            demProvider = new HeightTile(down(lat), down(lon), width, width, precision, DEGREE, DEGREE);
             demProvider.setInterpolate(interpolate);
             demProvider.setHeights(heights);
+            cacheData.put(intKey, demProvider, maxTiles);
         }
 
         if (demProvider.isSeaLevel())
@@ -139,6 +105,34 @@ public abstract class AbstractSRTMElevationProvider extends TileBasedElevationPr
         return demProvider.getHeight(lat, lon);
     }
 
+    @Override
+    String getTileName(double lat, double lon) {
+        if (lat >= MAX_LAT || lat <= MIN_LAT || getFileName(lat, lon) == null)
+            return null;
+        return "dem" + calcIntKey(lat, lon);
+    }
+
+    @Override
+    void loadHeights(double lat, double lon, DataAccess heights) {
+        try {
+            if (heights.loadExisting())
+                return;
+        } catch (Exception ex) {
+            logger.warn("cannot load " + heights.getName() + ", error:" + ex.getMessage());
+        }
+
+        if (!cacheDir.exists())
+            cacheDir.mkdirs();
+        try {
+            updateHeightsFromFile(lat, lon, heights);
+        } catch (FileNotFoundException ex) {
+            // use small size on disc and in-memory and mark the tile as sea level, see HeightTile.isSeaLevel
+            heights.create(10);
+            heights.setHeader(0, 1);
+            heights.flush();
+        }
+    }
+
     private void updateHeightsFromFile(double lat, double lon, DataAccess heights) throws FileNotFoundException {
         try {
             byte[] bytes = getByteArrayFromFile(lat, lon);
@@ -24,8 +24,6 @@ import java.awt.image.Raster;
 import java.io.File;
 import java.io.IOException;
 import java.net.SocketTimeoutException;
-import java.util.HashMap;
-import java.util.Map;
 
 /**
  * Provides basic methods that are usually used in an ElevationProvider that reads tiff files.
@@ -33,7 +31,7 @@ import java.util.Map;
  * @author Robin Boldt
  */
 public abstract class AbstractTiffElevationProvider extends TileBasedElevationProvider {
-    private final Map<String, HeightTile> cacheData = new HashMap<>();
+    private final HeightTileCache<String> cacheData = new HeightTileCache<>(this::closeTile);
     final double precision = 1e7;
 
     private final int WIDTH;
@@ -57,13 +55,7 @@ public abstract class AbstractTiffElevationProvider extends TileBasedElevationPr
     @Override
     public void release() {
         cacheData.clear();
-        if (dir != null) {
-            // for memory mapped type we remove temporary files
-            if (autoRemoveTemporary)
-                dir.clear();
-            else
-                dir.close();
-        }
+        releaseDirectory();
     }
 
     /**
@@ -107,51 +99,68 @@ public abstract class AbstractTiffElevationProvider extends TileBasedElevationPr
         String name = getFileName(lat, lon);
         HeightTile demProvider = cacheData.get(name);
         if (demProvider == null) {
-            if (!cacheDir.exists())
-                cacheDir.mkdirs();
-
             int minLat = getMinLatForTile(lat);
             int minLon = getMinLonForTile(lon);
             // less restrictive against boundary checking
             demProvider = new HeightTile(minLat, minLon, WIDTH, HEIGHT, LON_DEGREE * precision, LON_DEGREE, LAT_DEGREE);
             demProvider.setInterpolate(interpolate);
 
-            cacheData.put(name, demProvider);
             DataAccess heights = getDirectory().create(name + ".gh");
+            loadHeights(lat, lon, heights);
             demProvider.setHeights(heights);
-            boolean loadExisting = false;
-            try {
-                loadExisting = heights.loadExisting();
-            } catch (Exception ex) {
-                logger.warn("cannot load " + name + ", error: " + ex.getMessage());
-            }
+            cacheData.put(name, demProvider, maxTiles);
+        }
 
-            if (!loadExisting) {
-                String zippedURL = getDownloadURL(lat, lon);
-                File file = new File(cacheDir, new File(getFileNameOfLocalFile(lat, lon)).getName());
+        if (demProvider.isSeaLevel())
+            return 0;
 
-                try {
-                    downloadFile(file, zippedURL);
-                } catch (IOException e) {
-                    demProvider.setSeaLevel(true);
-                    // use small size on disc and in-memory
-                    heights.create(10).flush();
-                    return 0;
-                }
+        return demProvider.getHeight(lat, lon);
+    }
 
-                // short == 2 bytes
-                heights.create(2 * WIDTH * HEIGHT);
+    @Override
+    String getTileName(double lat, double lon) {
+        if (isOutsideSupportedArea(lat, lon))
+            return null;
+        return getFileName(lat, lon) + ".gh";
+    }
 
-                Raster raster = generateRasterFromFile(file, name + ".tif");
-                fillDataAccessWithElevationData(raster, heights, WIDTH);
+    @Override
+    void loadHeights(double lat, double lon, DataAccess heights) {
+        try {
+            if (heights.loadExisting())
+                return;
+        } catch (Exception ex) {
+            logger.warn("cannot load " + heights.getName() + ", error: " + ex.getMessage());
+        }
 
-            } // loadExisting
+        if (!cacheDir.exists())
+            cacheDir.mkdirs();
+        String zippedURL = getDownloadURL(lat, lon);
+        File file = new File(cacheDir, new File(getFileNameOfLocalFile(lat, lon)).getName());
+        try {
+            downloadFile(file, zippedURL);
+        } catch (IOException e) {
+            // use small size on disc and in-memory and mark the tile as sea level, see HeightTile.isSeaLevel
+            heights.create(10);
+            heights.setHeader(0, 1);
+            heights.flush();
+            return;
         }
 
-        if (demProvider.isSeaLevel())
-            return 0;
+        // short == 2 bytes
+        heights.create(2 * WIDTH * HEIGHT);
+        Raster raster = generateRasterFromFile(file, getFileName(lat, lon) + ".tif");
+        fillDataAccessWithElevationData(raster, heights, WIDTH);
+    }
 
-        return demProvider.getHeight(lat, lon);
+    @Override
+    int getTileLatDegree() {
+        return LAT_DEGREE;
+    }
+
+    @Override
+    int getTileLonDegree() {
+        return LON_DEGREE;
     }
 
     abstract Raster generateRasterFromFile(File file, String tifName);
@@ -17,18 +17,24 @@
  */
 package com.graphhopper.reader.dem;
 
+import com.carrotsearch.hppc.IntArrayList;
 import com.carrotsearch.hppc.IntSet;
+import com.carrotsearch.hppc.cursors.IntCursor;
 import com.graphhopper.coll.GHBitSet;
 import com.graphhopper.coll.GHBitSetImpl;
 import com.graphhopper.coll.GHIntHashSet;
 import com.graphhopper.coll.GHTBitSet;
 import com.graphhopper.routing.ev.EnumEncodedValue;
 import com.graphhopper.routing.ev.RoadEnvironment;
-import com.graphhopper.routing.util.AllEdgesIterator;
 import com.graphhopper.storage.BaseGraph;
 import com.graphhopper.storage.NodeAccess;
 import com.graphhopper.util.*;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.function.IntConsumer;
+
 /**
  * Abstract base class for tunnel/bridge edge elevation interpolators. This
  * class estimates elevation of inner nodes of a tunnel/bridge based on
@@ -49,6 +55,11 @@ import com.graphhopper.util.*;
  * Earth surface. Elevations of inner nodes are then interpolated from the outer
  * nodes using {@link NodeElevationInterpolator}. Elevations of pillar nodes are
  * calculated using linear interpolation on distances from tower nodes.
+ * <p>
+ * The work can be split on multiple threads, see {@link #setThreads}. The interpolatable edges are searched by ranges
+ * of edge IDs, but the connected components are still determined in the order of the edge IDs. The components and
+ * the pillar nodes of different edges are independent of each other, so the result is the same for any number of
+ * threads.
  *
  * @author Alexey Valikov
  */
@@ -59,6 +70,7 @@ public class EdgeElevationInterpolator {
     private final NodeElevationInterpolator nodeElevationInterpolator;
     private final RoadEnvironment interpolateKey;
     private final ElevationInterpolator elevationInterpolator = new ElevationInterpolator();
+    private int threads = 1;
 
     public EdgeElevationInterpolator(BaseGraph graph, EnumEncodedValue<RoadEnvironment> roadEnvironmentEnc, RoadEnvironment interpolateKey) {
         this.graph = graph;
@@ -75,33 +87,84 @@ public class EdgeElevationInterpolator {
         return graph;
     }
 
+    /**
+     * Sets the number of threads used to find the interpolatable edges and to interpolate the elevations. Default is 1.
+     */
+    public EdgeElevationInterpolator setThreads(int threads) {
+        if (threads < 1)
+            throw new IllegalArgumentException("threads must be positive but was " + threads);
+        this.threads = threads;
+        return this;
+    }
+
     public void execute() {
-        interpolateElevationsOfTowerNodes();
-        interpolateElevationsOfPillarNodes();
+        IntArrayList interpolatableEdges = findInterpolatableEdges();
+        interpolateElevationsOfTowerNodes(interpolatableEdges);
+        interpolateElevationsOfPillarNodes(interpolatableEdges);
     }
 
-    private void interpolateElevationsOfTowerNodes() {
-        final AllEdgesIterator edge = graph.getAllEdges();
-        final GHBitSet visitedEdgeIds = new GHBitSetImpl(edge.length());
+    private void interpolateElevationsOfTowerNodes(IntArrayList interpolatableEdges) {
+        final GHBitSet visitedEdgeIds = new GHBitSetImpl(graph.getEdges());
         final EdgeExplorer edgeExplorer = graph.createEdgeExplorer();
-
-        while (edge.next()) {
-            final int edgeId = edge.getEdge();
-            if (isInterpolatableEdge(edge)) {
-                if (!visitedEdgeIds.contains(edgeId)) {
-                    interpolateEdge(edge, visitedEdgeIds, edgeExplorer);
-                }
+        final List<int[]> outerNodeIds = new ArrayList<>();
+        final List<int[]> innerNodeIds = new ArrayList<>();
+        for (IntCursor edgeId : interpolatableEdges) {
+            if (!visitedEdgeIds.contains(edgeId.value)) {
+                final IntSet outer = new GHIntHashSet();
+                final GHIntHashSet inner = new GHIntHashSet();
+                gatherOuterAndInnerNodeIds(edgeExplorer, graph.getEdgeIteratorState(edgeId.value, Integer.MIN_VALUE),
+                        visitedEdgeIds, outer, inner);
+                outerNodeIds.add(outer.toArray());
+                innerNodeIds.add(inner.toArray());
             }
-            visitedEdgeIds.add(edgeId);
         }
+        // the inner nodes of a component only have interpolatable edges, so they cannot belong to another component,
+        // and the outer nodes are only read
+        forEachConcurrently(outerNodeIds.size(), component -> nodeElevationInterpolator.
+                interpolateElevationsOfInnerNodes(outerNodeIds.get(component), innerNodeIds.get(component)));
     }
 
-    private void interpolateEdge(final EdgeIteratorState interpolatableEdge,
-                                 final GHBitSet visitedEdgeIds, final EdgeExplorer edgeExplorer) {
-        final IntSet outerNodeIds = new GHIntHashSet();
-        final GHIntHashSet innerNodeIds = new GHIntHashSet();
-        gatherOuterAndInnerNodeIds(edgeExplorer, interpolatableEdge, visitedEdgeIds, outerNodeIds, innerNodeIds);
-        nodeElevationInterpolator.interpolateElevationsOfInnerNodes(outerNodeIds.toArray(), innerNodeIds.toArray());
+    /**
+     * @return the IDs of all interpolatable edges in ascending order
+     */
+    private IntArrayList findInterpolatableEdges() {
+        final int edges = graph.getEdges();
+        final int chunkSize = Math.max(1, (edges + threads - 1) / threads);
+        final IntArrayList[] chunks = new IntArrayList[(edges + chunkSize - 1) / chunkSize];
+        forEachConcurrently(chunks.length, chunk -> {
+            IntArrayList edgeIds = new IntArrayList();
+            for (int edgeId = chunk * chunkSize; edgeId < Math.min(edges, (chunk + 1) * chunkSize); edgeId++) {
+                if (isInterpolatableEdge(graph.getEdgeIteratorState(edgeId, Integer.MIN_VALUE)))
+                    edgeIds.add(edgeId);
+            }
+            chunks[chunk] = edgeIds;
+        });
+        IntArrayList result = new IntArrayList();
+        for (IntArrayList chunk : chunks)
+            result.addAll(chunk);
+        return result;
+    }
+
+    /**
+     * Calls the given action for 0 to size-1, split into ranges that run on different threads
+     */
+    private void forEachConcurrently(int size, IntConsumer action) {
+        if (threads == 1 || size < 2) {
+            for (int i = 0; i < size; i++)
+                action.accept(i);
+            return;
+        }
+        int chunkSize = (size + threads - 1) / threads;
+        List<Callable<String>> callables = new ArrayList<>();
+        for (int start = 0; start < size; start += chunkSize) {
+            final int from = start, to = Math.min(size, start + chunkSize);
+            callables.add(() -> {
+                for (int i = from; i < to; i++)
+                    action.accept(i);
+                return "";
+            });
+        }
+        GHUtility.runConcurrently(callables, threads);
     }
 
     public void gatherOuterAndInnerNodeIds(final EdgeExplorer edgeExplorer,
@@ -130,35 +193,34 @@ public class EdgeElevationInterpolator {
         gatherOuterAndInnerNodeIdsSearch.start(edgeExplorer, interpolatableEdge.getBaseNode());
     }
 
-    private void interpolateElevationsOfPillarNodes() {
-        final EdgeIterator edge = graph.getAllEdges();
+    private void interpolateElevationsOfPillarNodes(IntArrayList interpolatableEdges) {
         final NodeAccess nodeAccess = graph.getNodeAccess();
-        while (edge.next()) {
-            if (isInterpolatableEdge(edge)) {
-                int firstNodeId = edge.getBaseNode();
-                int secondNodeId = edge.getAdjNode();
-
-                double lat0 = nodeAccess.getLat(firstNodeId);
-                double lon0 = nodeAccess.getLon(firstNodeId);
-                double ele0 = nodeAccess.getEle(firstNodeId);
-
-                double lat1 = nodeAccess.getLat(secondNodeId);
-                double lon1 = nodeAccess.getLon(secondNodeId);
-                double ele1 = nodeAccess.getEle(secondNodeId);
-
-                final PointList pointList = edge.fetchWayGeometry(FetchMode.ALL);
-                final int count = pointList.size();
-                for (int index = 1; index < count - 1; index++) {
-                    double lat = pointList.getLat(index);
-                    double lon = pointList.getLon(index);
-                    double ele = elevationInterpolator.calculateElevationBasedOnTwoPoints(lat, lon,
-                            lat0, lon0, ele0, lat1, lon1, ele1);
-                    pointList.set(index, lat, lon, ele);
-                }
-                if (count > 2)
-                    edge.setWayGeometry(pointList.shallowCopy(1, count - 1, false));
-                edge.setDistance(DistanceCalcEarth.DIST_EARTH.calcDistance(pointList));
+        // the geometry of every edge is overwritten in place, so the edges can be processed concurrently
+        forEachConcurrently(interpolatableEdges.size(), index -> {
+            EdgeIteratorState edge = graph.getEdgeIteratorState(interpolatableEdges.get(index), Integer.MIN_VALUE);
+            int firstNodeId = edge.getBaseNode();
+            int secondNodeId = edge.getAdjNode();
+
+            double lat0 = nodeAccess.getLat(firstNodeId);
+            double lon0 = nodeAccess.getLon(firstNodeId);
+            double ele0 = nodeAccess.getEle(firstNodeId);
+
+            double lat1 = nodeAccess.getLat(secondNodeId);
+            double lon1 = nodeAccess.getLon(secondNodeId);
+            double ele1 = nodeAccess.getEle(secondNodeId);
+
+            final PointList pointList = edge.fetchWayGeometry(FetchMode.ALL);
+            final int count = pointList.size();
+            for (int i = 1; i < count - 1; i++) {
+                double lat = pointList.getLat(i);
+                double lon = pointList.getLon(i);
+                double ele = elevationInterpolator.calculateElevationBasedOnTwoPoints(lat, lon,
+                        lat0, lon0, ele0, lat1, lon1, ele1);
+                pointList.set(i, lat, lon, ele);
             }
-        }
+            if (count > 2)
+                edge.setWayGeometry(pointList.shallowCopy(1, count - 1, false));
+            edge.setDistance(DistanceCalcEarth.DIST_EARTH.calcDistance(pointList));
+        });
     }
 }
@@ -18,6 +18,7 @@
 package com.graphhopper.reader.dem;
 
 import com.graphhopper.reader.ReaderNode;
+import com.graphhopper.util.shapes.BBox;
 
 /**
  * @author Peter Karich
@@ -52,6 +53,13 @@ public interface ElevationProvider {
         return getEle(node.getLat(), node.getLon());
     }
 
+    /**
+     * Prepares the elevation data of the given area in advance, if supported. Otherwise the data is loaded when it is
+     * needed in {@link #getEle}.
+     */
+    default void prefetch(BBox bbox) {
+    }
+
     /**
      * Returns true if bilinear interpolation is enabled.
      */
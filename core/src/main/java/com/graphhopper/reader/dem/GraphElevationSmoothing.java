@@ -46,12 +46,11 @@ public class GraphElevationSmoothing {
             if(start == end)
                 continue;
 
+            // All points between start and end are within the max search distance, because we stopped the search at the
+            // first point that is too far away (important for motorways). So we do not need to calculate the distances again.
             double sum = 0;
             for (int j = start; j < end; j++) {
-                // We skip points that are too far away, important for motorways
-                if (MAX_SEARCH_DISTANCE > DistancePlaneProjection.DIST_PLANE.calcDist(geometry.getLat(i), geometry.getLon(i), geometry.getLat(j), geometry.getLon(j))) {
-                    sum += geometry.getEle(j);
-                }
+                sum += geometry.getEle(j);
             }
             double smoothed = sum / (end-start);
             geometry.setElevation(i, smoothed);
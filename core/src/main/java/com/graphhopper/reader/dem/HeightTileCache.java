@@ -0,0 +1,77 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.reader.dem;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Holds the most recently used {@link HeightTile}s. If there are more than the maximum number of tiles the least
+ * recently used tile is passed to the eviction listener, which usually closes its height data. The files of evicted
+ * tiles are kept in the cache directory, so they can be loaded again quickly.
+ */
+class HeightTileCache<K> {
+    // in access order, i.e. the least recently used tile comes first
+    private final Map<K, HeightTile> tiles = new LinkedHashMap<>(16, 0.75f, true);
+    private final Consumer<HeightTile> evictionListener;
+    // consecutive lookups are usually for the same tile, so we skip the map lookup in this case
+    private K lastKey;
+    private HeightTile lastTile;
+
+    HeightTileCache(Consumer<HeightTile> evictionListener) {
+        this.evictionListener = evictionListener;
+    }
+
+    synchronized HeightTile get(K key) {
+        if (lastTile != null && lastKey.equals(key))
+            return lastTile;
+        HeightTile tile = tiles.get(key);
+        if (tile != null) {
+            lastKey = key;
+            lastTile = tile;
+        }
+        return tile;
+    }
+
+    /**
+     * Adds the given tile and evicts the least recently used tiles until at most maxTiles tiles are left
+     */
+    synchronized void put(K key, HeightTile tile, int maxTiles) {
+        tiles.put(key, tile);
+        lastKey = key;
+        lastTile = tile;
+        Iterator<HeightTile> iter = tiles.values().iterator();
+        while (tiles.size() > maxTiles) {
+            HeightTile evicted = iter.next();
+            iter.remove();
+            evictionListener.accept(evicted);
+        }
+    }
+
+    synchronized int size() {
+        return tiles.size();
+    }
+
+    synchronized void clear() {
+        tiles.clear();
+        lastKey = null;
+        lastTile = null;
+    }
+}
@@ -18,6 +18,8 @@
 package com.graphhopper.reader.dem;
 
 import com.graphhopper.storage.DAType;
+import com.graphhopper.storage.DataAccess;
+import com.graphhopper.util.shapes.BBox;
 
 /**
  * The MultiSourceElevationProvider mixes different elevation providers to provide the best available elevation data
@@ -46,13 +48,24 @@ public class MultiSourceElevationProvider extends TileBasedElevationProvider {
         this(new CGIARProvider(cacheDir), new GMTEDProvider(cacheDir));
     }
 
+    private TileBasedElevationProvider getProvider(double lat) {
+        // Sometimes the cgiar data north of 59.999 equals 0
+        return lat < 59.999 && lat > -56 ? srtmProvider : globalProvider;
+    }
+
     @Override
     public double getEle(double lat, double lon) {
-        // Sometimes the cgiar data north of 59.999 equals 0
-        if (lat < 59.999 && lat > -56) {
-            return srtmProvider.getEle(lat, lon);
-        }
-        return globalProvider.getEle(lat, lon);
+        return getProvider(lat).getEle(lat, lon);
+    }
+
+    @Override
+    String getTileName(double lat, double lon) {
+        return getProvider(lat).getTileName(lat, lon);
+    }
+
+    @Override
+    void loadHeights(double lat, double lon, DataAccess heights) {
+        getProvider(lat).loadHeights(lat, lon, heights);
     }
 
     /**
@@ -84,6 +97,32 @@ public class MultiSourceElevationProvider extends TileBasedElevationProvider {
         return this;
     }
 
+    @Override
+    public MultiSourceElevationProvider setMaxTiles(int maxTiles) {
+        srtmProvider.setMaxTiles(maxTiles);
+        globalProvider.setMaxTiles(maxTiles);
+        return this;
+    }
+
+    @Override
+    public MultiSourceElevationProvider setPrefetchThreads(int prefetchThreads) {
+        srtmProvider.setPrefetchThreads(prefetchThreads);
+        globalProvider.setPrefetchThreads(prefetchThreads);
+        return this;
+    }
+
+    @Override
+    public void prefetch(BBox bbox) {
+        // see getEle: the srtm provider is only used between 56°S and 60°N
+        BBox srtmArea = bbox.calculateIntersection(new BBox(-180, 180, -56, 59.999));
+        if (srtmArea != null)
+            srtmProvider.prefetch(srtmArea);
+        if (bbox.minLat <= -56)
+            globalProvider.prefetch(new BBox(bbox.minLon, bbox.maxLon, bbox.minLat, Math.min(bbox.maxLat, -56)));
+        if (bbox.maxLat >= 59.999)
+            globalProvider.prefetch(new BBox(bbox.minLon, bbox.maxLon, Math.max(bbox.minLat, 59.999), bbox.maxLat));
+    }
+
     @Override
     public boolean canInterpolate() {
         return srtmProvider.canInterpolate() && globalProvider.canInterpolate();
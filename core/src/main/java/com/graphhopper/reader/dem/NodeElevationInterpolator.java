@@ -56,7 +56,7 @@ public class NodeElevationInterpolator {
         for (int innerNodeId : innerNodeIds) {
             double lat = nodeAccess.getLat(innerNodeId);
             double lon = nodeAccess.getLon(innerNodeId);
-            nodeAccess.setNode(innerNodeId, lat, lon, ele);
+            setElevation(nodeAccess, innerNodeId, lat, lon, ele);
         }
     }
 
@@ -76,7 +76,7 @@ public class NodeElevationInterpolator {
             double lon = nodeAccess.getLon(innerNodeId);
             double ele = elevationInterpolator.calculateElevationBasedOnTwoPoints(lat, lon, lat0, lon0, ele0,
                     lat1, lon1, ele1);
-            nodeAccess.setNode(innerNodeId, lat, lon, ele);
+            setElevation(nodeAccess, innerNodeId, lat, lon, ele);
         }
     }
 
@@ -100,7 +100,7 @@ public class NodeElevationInterpolator {
             double lon = nodeAccess.getLon(innerNodeId);
             double ele = elevationInterpolator.calculateElevationBasedOnThreePoints(lat, lon, lat0,
                     lon0, ele0, lat1, lon1, ele1, lat2, lon2, ele2);
-            nodeAccess.setNode(innerNodeId, lat, lon, ele);
+            setElevation(nodeAccess, innerNodeId, lat, lon, ele);
         }
     }
 
@@ -116,7 +116,14 @@ public class NodeElevationInterpolator {
             double lat = nodeAccess.getLat(innerNodeId);
             double lon = nodeAccess.getLon(innerNodeId);
             double ele = elevationInterpolator.calculateElevationBasedOnPointList(lat, lon, pointList);
-            nodeAccess.setNode(innerNodeId, lat, lon, ele);
+            setElevation(nodeAccess, innerNodeId, lat, lon, ele);
+        }
+    }
+
+    private static void setElevation(NodeAccess nodeAccess, int nodeId, double lat, double lon, double ele) {
+        // setNode also updates the bounds of the graph, which is not thread-safe
+        synchronized (nodeAccess) {
+            nodeAccess.setNode(nodeId, lat, lon, ele);
         }
     }
 }
@@ -18,14 +18,23 @@
 package com.graphhopper.reader.dem;
 
 import com.graphhopper.storage.DAType;
+import com.graphhopper.storage.DataAccess;
 import com.graphhopper.storage.Directory;
 import com.graphhopper.storage.GHDirectory;
 import com.graphhopper.util.Downloader;
+import com.graphhopper.util.GHUtility;
+import com.graphhopper.util.Helper;
+import com.graphhopper.util.StopWatch;
+import com.graphhopper.util.shapes.BBox;
+import com.graphhopper.util.shapes.GHPoint;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.stream.Collectors;
 
 /**
  * Provides basic methods that are usually used in an ElevationProvider using tiles from files.
@@ -42,6 +51,10 @@ public abstract class TileBasedElevationProvider implements ElevationProvider {
     boolean interpolate = false;
     boolean autoRemoveTemporary = true;
     long sleep = 2000;
+    int maxTiles = Integer.MAX_VALUE;
+    int prefetchThreads = 0;
+    // the tiles that were closed before release was called, i.e. that are no longer in the directory
+    private final Set<String> closedTiles = Collections.synchronizedSet(new HashSet<>());
 
     protected TileBasedElevationProvider(String cacheDirString) {
         File cacheDir = new File(cacheDirString);
@@ -103,6 +116,110 @@ public abstract class TileBasedElevationProvider implements ElevationProvider {
         return this;
     }
 
+    /**
+     * Limits the number of tiles that are kept open. If more tiles are needed the least recently used tile is closed,
+     * but its data is kept in the cache directory and loaded again from there if it is needed later. This limits the
+     * memory usage for large areas, especially with DAType.RAM_STORE. Unlimited by default.
+     */
+    public TileBasedElevationProvider setMaxTiles(int maxTiles) {
+        if (maxTiles < 1)
+            throw new IllegalArgumentException("The maximum number of elevation tiles must be positive but was " + maxTiles);
+        this.maxTiles = maxTiles;
+        return this;
+    }
+
+    /**
+     * Sets the number of threads used by {@link #prefetch(BBox)}. Prefetching is disabled by default.
+     */
+    public TileBasedElevationProvider setPrefetchThreads(int prefetchThreads) {
+        this.prefetchThreads = prefetchThreads;
+        return this;
+    }
+
+    /**
+     * Downloads and decodes all tiles of the given area into the cache directory, in parallel on the configured number
+     * of prefetch threads. Afterwards the tiles only need to be loaded from the cache directory when getEle is called.
+     * Tiles that already exist in the cache directory are skipped.
+     */
+    @Override
+    public void prefetch(BBox bbox) {
+        if (prefetchThreads < 1)
+            return;
+        if (!daType.isStoring()) {
+            logger.warn("Elevation tiles cannot be prefetched, because " + daType + " does not store them in the cache directory");
+            return;
+        }
+        if (!cacheDir.exists())
+            cacheDir.mkdirs();
+
+        Directory directory = getDirectory();
+        // we check one coordinate per tile size, so we find every tile that intersects the area
+        Map<String, GHPoint> tiles = new LinkedHashMap<>();
+        for (double lat = bbox.minLat; lat < bbox.maxLat + getTileLatDegree(); lat += getTileLatDegree()) {
+            for (double lon = bbox.minLon; lon < bbox.maxLon + getTileLonDegree(); lon += getTileLonDegree()) {
+                GHPoint point = new GHPoint(Math.min(lat, bbox.maxLat), Math.min(lon, bbox.maxLon));
+                String name = getTileName(point.lat, point.lon);
+                if (name != null && !new File(directory.getLocation(), name).exists())
+                    tiles.putIfAbsent(name, point);
+            }
+        }
+
+        logger.info("Prefetching " + tiles.size() + " elevation tiles for " + bbox + " using " + prefetchThreads + " threads");
+        StopWatch sw = StopWatch.started();
+        GHUtility.runConcurrently(tiles.entrySet().stream().map(entry -> (Callable<String>) () -> {
+            DataAccess heights = directory.create(entry.getKey());
+            try {
+                loadHeights(entry.getValue().lat, entry.getValue().lon, heights);
+            } finally {
+                directory.close(entry.getKey());
+                closedTiles.add(entry.getKey());
+            }
+            return entry.getKey();
+        }).collect(Collectors.toList()), prefetchThreads);
+        logger.info("Prefetched elevation tiles, took: " + sw.stop().getTimeString());
+    }
+
+    /**
+     * @return the name of the height data of the tile containing the given coordinate or null if there is no such tile
+     */
+    abstract String getTileName(double lat, double lon);
+
+    /**
+     * Loads the height data of the tile containing the given coordinate from the cache directory or creates it from
+     * the downloaded file. This can be called from multiple threads for different tiles.
+     */
+    abstract void loadHeights(double lat, double lon, DataAccess heights);
+
+    int getTileLatDegree() {
+        return 1;
+    }
+
+    int getTileLonDegree() {
+        return 1;
+    }
+
+    /**
+     * Closes the height data of the given tile, which was evicted from the tile cache
+     */
+    void closeTile(HeightTile tile) {
+        getDirectory().close(tile.getHeights().getName());
+        closedTiles.add(tile.getHeights().getName());
+    }
+
+    void releaseDirectory() {
+        if (dir == null)
+            return;
+        // for memory mapped type we remove temporary files
+        if (autoRemoveTemporary) {
+            dir.clear();
+            for (String name : closedTiles)
+                Helper.removeDir(new File(dir.getLocation(), name));
+        } else {
+            dir.close();
+        }
+        closedTiles.clear();
+    }
+
     public TileBasedElevationProvider setDownloader(Downloader downloader) {
         this.downloader = downloader;
         return this;
@@ -0,0 +1,281 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.reader.osm;
+
+import com.carrotsearch.hppc.IntArrayList;
+import com.carrotsearch.hppc.cursors.IntCursor;
+import com.carrotsearch.hppc.cursors.LongCursor;
+import com.carrotsearch.hppc.cursors.LongObjectCursor;
+import com.graphhopper.coll.GHLongHashSet;
+import com.graphhopper.coll.GHLongObjectHashMap;
+import com.graphhopper.reader.ReaderWay;
+import com.graphhopper.routing.OSMReaderConfig;
+import com.graphhopper.routing.ev.BooleanEncodedValue;
+import com.graphhopper.routing.ev.Subnetwork;
+import com.graphhopper.routing.util.AreaIndex;
+import com.graphhopper.routing.util.CustomArea;
+import com.graphhopper.routing.util.EncodingManager;
+import com.graphhopper.routing.util.OSMParsers;
+import com.graphhopper.routing.util.countryrules.CountryRuleFactory;
+import com.graphhopper.routing.weighting.Weighting;
+import com.graphhopper.storage.BaseGraph;
+import com.graphhopper.storage.IntsRef;
+import com.graphhopper.util.EdgeIteratorState;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.*;
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Applies an OSM change file (.osc or .osc.gz) to an existing graph. The tags of modified ways are parsed again and
+ * the flags of their edges (access, speed and all other encoded values) are overwritten in place. The edges of deleted
+ * ways are disabled, i.e. they are no longer accessible for any vehicle. This requires the OSM way id of every edge,
+ * see {@link OSMReaderConfig#setStoreOSMWayIds}.
+ * <p>
+ * The graph is not extended, so new ways and changes of the geometry (node coordinates or the node list of a way) are
+ * ignored and require a new import. The tags of barrier nodes and the relation flags of a way (e.g. route networks)
+ * are taken from the import, changes of nodes and relations are ignored as well.
+ * <p>
+ * The weightings set via {@link #setWeightings} are used to find out if the weight of any edge decreased, which makes
+ * landmark data of these weightings invalid. Contraction hierarchies are invalid after any change.
+ */
+public class OSMChangeUpdater {
+    private static final Logger LOGGER = LoggerFactory.getLogger(OSMChangeUpdater.class);
+    private final BaseGraph baseGraph;
+    private final EncodingManager encodingManager;
+    private final OSMWayIdStorage osmWayIdStorage;
+    private final OSMReader reader;
+    private final List<BooleanEncodedValue> subnetworkEncs;
+    private Map<String, Weighting> weightings = Collections.emptyMap();
+
+    public OSMChangeUpdater(BaseGraph baseGraph, EncodingManager encodingManager, OSMParsers osmParsers,
+                            OSMReaderConfig config, OSMWayIdStorage osmWayIdStorage) {
+        this.baseGraph = baseGraph;
+        this.encodingManager = encodingManager;
+        this.osmWayIdStorage = osmWayIdStorage;
+        this.reader = new OSMReader(baseGraph, encodingManager, osmParsers, config);
+        // the subnetworks were determined after the import, so we need to keep them when we overwrite the flags
+        String subnetworkSuffix = Subnetwork.key("");
+        this.subnetworkEncs = encodingManager.getEncodedValues().stream()
+                .filter(ev -> ev instanceof BooleanEncodedValue && ev.getName().endsWith(subnetworkSuffix))
+                .map(ev -> (BooleanEncodedValue) ev)
+                .collect(Collectors.toList());
+    }
+
+    public OSMChangeUpdater setAreaIndex(AreaIndex<CustomArea> areaIndex) {
+        reader.setAreaIndex(areaIndex);
+        return this;
+    }
+
+    public OSMChangeUpdater setCountryRuleFactory(CountryRuleFactory countryRuleFactory) {
+        reader.setCountryRuleFactory(countryRuleFactory);
+        return this;
+    }
+
+    /**
+     * @param weightings the weightings to check for decreased edge weights, by profile name
+     */
+    public OSMChangeUpdater setWeightings(Map<String, Weighting> weightings) {
+        this.weightings = weightings;
+        return this;
+    }
+
+    public static class Result {
+        private int updatedEdges;
+        private int disabledEdges;
+        private int ignoredWays;
+        private int ignoredNodes;
+        private final Set<String> decreasedWeightProfiles = new TreeSet<>();
+
+        /**
+         * @return the number of edges that were created from modified ways and whose flags were overwritten
+         */
+        public int getUpdatedEdges() {
+            return updatedEdges;
+        }
+
+        /**
+         * @return the number of edges that were created from deleted ways and are no longer accessible
+         */
+        public int getDisabledEdges() {
+            return disabledEdges;
+        }
+
+        /**
+         * @return the number of created or modified ways that could not be applied because they are not in the graph
+         */
+        public int getIgnoredWays() {
+            return ignoredWays;
+        }
+
+        /**
+         * @return the number of created, modified or deleted nodes. their coordinates are not updated.
+         */
+        public int getIgnoredNodes() {
+            return ignoredNodes;
+        }
+
+        /**
+         * @return the profiles (see {@link #setWeightings}) for which the weight of at least one edge decreased
+         */
+        public Set<String> getDecreasedWeightProfiles() {
+            return decreasedWeightProfiles;
+        }
+
+        @Override
+        public String toString() {
+            return "updated edges: " + updatedEdges + ", disabled edges: " + disabledEdges + ", ignored ways: "
+                    + ignoredWays + ", ignored nodes: " + ignoredNodes + ", decreased weights: " + decreasedWeightProfiles;
+        }
+    }
+
+    public Result apply(File oscFile) throws IOException {
+        GHLongObjectHashMap<ReaderWay> modifiedWays = new GHLongObjectHashMap<>();
+        GHLongHashSet deletedWays = new GHLongHashSet();
+        Result result = new Result();
+        try (InputStream in = openInputStream(oscFile)) {
+            readChanges(in, modifiedWays, deletedWays, result);
+        } catch (XMLStreamException ex) {
+            throw new IllegalArgumentException("Could not read OSM change file " + oscFile, ex);
+        }
+
+        // find the edges of the changed ways
+        GHLongObjectHashMap<IntArrayList> edgesByWay = new GHLongObjectHashMap<>();
+        for (int edge = 0; edge < baseGraph.getEdges(); edge++) {
+            long osmWayId = osmWayIdStorage.getOSMWayId(edge);
+            if (modifiedWays.containsKey(osmWayId) || deletedWays.contains(osmWayId)) {
+                IntArrayList edges = edgesByWay.get(osmWayId);
+                if (edges == null)
+                    edgesByWay.put(osmWayId, edges = new IntArrayList());
+                edges.add(edge);
+            }
+        }
+
+        for (LongObjectCursor<ReaderWay> cursor : modifiedWays) {
+            IntArrayList edges = edgesByWay.get(cursor.key);
+            if (edges == null) {
+                // the way is new or was not included in the import before, adding edges is not supported
+                result.ignoredWays++;
+                continue;
+            }
+            ReaderWay way = cursor.value;
+            // the node coordinates are not stored, but the geometry of the way cannot change, so the distance of the
+            // way (needed for the speed from the duration tag of ferries) is the total distance of its edges
+            reader.preprocessWay(way, () -> {
+                double distance = 0;
+                for (IntCursor edge : edges)
+                    distance += baseGraph.getEdgeIteratorState(edge.value, Integer.MIN_VALUE).getDistance();
+                return distance;
+            });
+            for (IntCursor edge : edges) {
+                EdgeIteratorState edgeState = baseGraph.getEdgeIteratorState(edge.value, Integer.MIN_VALUE);
+                setFlags(edgeState, reader.parseWayTags(way, edgeState, osmWayIdStorage.getNodeTags(edge.value),
+                        osmWayIdStorage.getRelationFlags(edge.value)), result);
+                reader.applyWayTags(way, edgeState);
+                result.updatedEdges++;
+            }
+        }
+        for (LongCursor cursor : deletedWays) {
+            IntArrayList edges = edgesByWay.get(cursor.value);
+            if (edges == null)
+                continue;
+            for (IntCursor edge : edges) {
+                // all encoded values are zero, so the edge is not accessible for any vehicle
+                setFlags(baseGraph.getEdgeIteratorState(edge.value, Integer.MIN_VALUE), encodingManager.createEdgeFlags(), result);
+                result.disabledEdges++;
+            }
+        }
+        LOGGER.info("Applied OSM change file {}: {}", oscFile, result);
+        return result;
+    }
+
+    private void setFlags(EdgeIteratorState edge, IntsRef flags, Result result) {
+        double[] oldWeights = new double[2 * weightings.size()];
+        int i = 0;
+        for (Weighting weighting : weightings.values()) {
+            oldWeights[i++] = weighting.calcEdgeWeight(edge, false);
+            oldWeights[i++] = weighting.calcEdgeWeight(edge, true);
+        }
+        boolean[] subnetworks = new boolean[subnetworkEncs.size()];
+        for (int j = 0; j < subnetworks.length; j++)
+            subnetworks[j] = edge.get(subnetworkEncs.get(j));
+
+        edge.setFlags(flags);
+        for (int j = 0; j < subnetworks.length; j++)
+            edge.set(subnetworkEncs.get(j), subnetworks[j]);
+
+        i = 0;
+        for (Map.Entry<String, Weighting> entry : weightings.entrySet()) {
+            Weighting weighting = entry.getValue();
+            if (weighting.calcEdgeWeight(edge, false) < oldWeights[i] || weighting.calcEdgeWeight(edge, true) < oldWeights[i + 1])
+                result.decreasedWeightProfiles.add(entry.getKey());
+            i += 2;
+        }
+    }
+
+    private static InputStream openInputStream(File file) throws IOException {
+        InputStream in = new BufferedInputStream(new FileInputStream(file));
+        return file.getName().endsWith(".gz") ? new GZIPInputStream(in) : in;
+    }
+
+    private static void readChanges(InputStream in, GHLongObjectHashMap<ReaderWay> modifiedWays, GHLongHashSet deletedWays,
+                                    Result result) throws XMLStreamException {
+        XMLStreamReader parser = XMLInputFactory.newInstance().createXMLStreamReader(in, "UTF-8");
+        try {
+            String action = null;
+            for (int event = parser.next(); event != XMLStreamConstants.END_DOCUMENT; event = parser.next()) {
+                if (event != XMLStreamConstants.START_ELEMENT)
+                    continue;
+                switch (parser.getLocalName()) {
+                    case "create":
+                    case "modify":
+                    case "delete":
+                        action = parser.getLocalName();
+                        break;
+                    case "node":
+                        result.ignoredNodes++;
+                        break;
+                    case "way":
+                        if (action == null)
+                            throw new IllegalArgumentException("Way outside of create, modify or delete");
+                        long id = Long.parseLong(parser.getAttributeValue(null, "id"));
+                        if (action.equals("delete")) {
+                            modifiedWays.remove(id);
+                            deletedWays.add(id);
+                        } else {
+                            // the change file contains the complete way, so for multiple changes the last one wins
+                            modifiedWays.put(id, OSMXMLHelper.createWay(id, parser));
+                            deletedWays.remove(id);
+                        }
+                        break;
+                    default:
+                        // relations and the tags and node references of ignored elements
+                }
+            }
+        } finally {
+            parser.close();
+        }
+    }
+}
@@ -18,6 +18,7 @@
 package com.graphhopper.reader.osm;
 
 import com.graphhopper.reader.ReaderElement;
+import com.graphhopper.util.shapes.BBox;
 
 import javax.xml.stream.XMLStreamConstants;
 import javax.xml.stream.XMLStreamException;
@@ -30,10 +31,23 @@ import javax.xml.stream.XMLStreamReader;
  * @author ratrun
  */
 public class OSMFileHeader extends ReaderElement {
+    private BBox bounds;
+
     public OSMFileHeader() {
         super(0, FILEHEADER);
     }
 
+    /**
+     * @return the bounding box of the data given in the file header or null if it is unknown
+     */
+    public BBox getBounds() {
+        return bounds;
+    }
+
+    public void setBounds(BBox bounds) {
+        this.bounds = bounds;
+    }
+
     /**
      * Constructor for XML Parser
      */
@@ -20,8 +20,10 @@ package com.graphhopper.reader.osm;
 
 import com.graphhopper.coll.GHLongIntBTree;
 import com.graphhopper.coll.LongIntMap;
+import com.graphhopper.coll.SparseLongIntMap;
 import com.graphhopper.reader.PillarInfo;
 import com.graphhopper.reader.ReaderNode;
+import com.graphhopper.storage.DAType;
 import com.graphhopper.storage.Directory;
 import com.graphhopper.util.PointAccess;
 import com.graphhopper.util.PointList;
@@ -31,6 +33,7 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.function.DoubleSupplier;
 import java.util.function.IntUnaryOperator;
 
 import static java.util.Collections.emptyMap;
@@ -80,10 +83,22 @@ class OSMNodeData {
     private long nextArtificialOSMNodeId = -Long.MAX_VALUE;
 
     public OSMNodeData(PointAccess nodeAccess, Directory directory) {
+        this(nodeAccess, directory, null);
+    }
+
+    /**
+     * @param nodeIdMapType if this is null the node ids are stored in a {@link GHLongIntBTree} on the heap, otherwise
+     *                      they are stored in a {@link SparseLongIntMap} of the given type
+     */
+    public OSMNodeData(PointAccess nodeAccess, Directory directory, DAType nodeIdMapType) {
         // we use GHLongIntBTree, because it is based on a tree, not an array, so it can store as many entries as there
         // are longs. this also makes it memory efficient, because there is no need to pre-allocate memory for empty
-        // entries.
-        idsByOsmNodeIds = new GHLongIntBTree(200);
+        // entries. for large imports the SparseLongIntMap needs a lot less memory, because most OSM node ids are
+        // used by ways and it only needs one bit per key (plus the value) in dense id ranges. the node tags are
+        // only stored for a small fraction of the nodes, so we always use the tree for them.
+        idsByOsmNodeIds = nodeIdMapType == null
+                ? new GHLongIntBTree(200)
+                : new SparseLongIntMap(directory, "tmp_osm_node_ids", nodeIdMapType);
         towerNodes = nodeAccess;
         pillarNodes = new PillarInfo(towerNodes.is3D(), directory);
 
@@ -143,16 +158,17 @@ class OSMNodeData {
      * Stores the given coordinates for the given OSM node ID, but only if a non-empty node type was set for this
      * OSM node ID previously.
      *
+     * @param getElevation only called if the coordinates are stored, because looking up the elevation can be expensive
      * @return the node type this OSM node was associated with before this method was called
      */
-    public int addCoordinatesIfMapped(long osmNodeId, double lat, double lon, double ele) {
+    public int addCoordinatesIfMapped(long osmNodeId, double lat, double lon, DoubleSupplier getElevation) {
         int nodeType = idsByOsmNodeIds.get(osmNodeId);
         if (nodeType == EMPTY_NODE)
             return nodeType;
         else if (nodeType == JUNCTION_NODE || nodeType == CONNECTION_NODE)
-            addTowerNode(osmNodeId, lat, lon, ele);
+            addTowerNode(osmNodeId, lat, lon, getElevation.getAsDouble());
         else if (nodeType == INTERMEDIATE_NODE || nodeType == END_NODE)
-            addPillarNode(osmNodeId, lat, lon, ele);
+            addPillarNode(osmNodeId, lat, lon, getElevation.getAsDouble());
         else
             throw new IllegalStateException("Unknown node type: " + nodeType + ", or coordinates already set. Possibly duplicate OSM node ID: " + osmNodeId);
         return nodeType;
@@ -265,6 +281,8 @@ class OSMNodeData {
 
     public void release() {
         pillarNodes.clear();
+        if (idsByOsmNodeIds instanceof SparseLongIntMap)
+            ((SparseLongIntMap) idsByOsmNodeIds).clear();
     }
 
     public int towerNodeToId(int towerId) {
@@ -36,6 +36,7 @@ import com.graphhopper.routing.util.countryrules.CountryRule;
 import com.graphhopper.routing.util.countryrules.CountryRuleFactory;
 import com.graphhopper.routing.util.parsers.TurnCostParser;
 import com.graphhopper.storage.BaseGraph;
+import com.graphhopper.storage.DAType;
 import com.graphhopper.storage.IntsRef;
 import com.graphhopper.storage.NodeAccess;
 import com.graphhopper.storage.TurnCostStorage;
@@ -48,6 +49,11 @@ import org.slf4j.LoggerFactory;
 import java.io.File;
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.DoubleSupplier;
 import java.util.function.LongToIntFunction;
 import java.util.regex.Pattern;
 
@@ -89,6 +95,8 @@ public class OSMReader {
     // stores osm way ids used by relations to identify which edge ids needs to be mapped later
     private GHLongHashSet osmWayIdSet = new GHLongHashSet();
     private IntLongMap edgeIdToOsmWayIdMap;
+    private TagParsingPipeline tagParsingPipeline;
+    private OSMWayIdStorage osmWayIdStorage;
 
     public OSMReader(BaseGraph baseGraph, EncodingManager encodingManager, OSMParsers osmParsers, OSMReaderConfig config) {
         this.baseGraph = baseGraph;
@@ -115,6 +123,14 @@ public class OSMReader {
         return this;
     }
 
+    /**
+     * Stores the OSM way id of every edge in the given storage, see {@link OSMChangeUpdater}
+     */
+    public OSMReader setOSMWayIdStorage(OSMWayIdStorage osmWayIdStorage) {
+        this.osmWayIdStorage = osmWayIdStorage;
+        return this;
+    }
+
     /**
      * The area index is queried for each OSM way and the associated areas are added to the way's tags
      */
@@ -162,8 +178,19 @@ public class OSMReader {
                 .setRelationProcessor(this::processRelation)
                 .setEdgeHandler(this::addEdge)
                 .setWorkerThreads(config.getWorkerThreads())
+                .setNodeIdMapType(getNodeIdMapType(config.getNodeIdMap()))
                 .build();
-        waySegmentParser.readOSM(osmFile);
+        if (config.getTagParserThreads() > 1)
+            tagParsingPipeline = new TagParsingPipeline(config.getTagParserThreads());
+        try {
+            waySegmentParser.readOSM(osmFile);
+            if (tagParsingPipeline != null)
+                tagParsingPipeline.flush();
+        } finally {
+            if (tagParsingPipeline != null)
+                tagParsingPipeline.close();
+            tagParsingPipeline = null;
+        }
         osmDataDate = waySegmentParser.getTimeStamp();
         if (baseGraph.getNodes() == 0)
             throw new RuntimeException("Graph after reading OSM must not be empty");
@@ -200,7 +227,7 @@ public class OSMReader {
      * junction between different ways this will be ignored and no artificial edge will be created.
      */
     protected boolean isBarrierNode(ReaderNode node) {
-        return node.getTags().containsKey("barrier") || node.getTags().containsKey("ford");
+        return node.hasTag("barrier") || node.hasTag("ford");
     }
 
     /**
@@ -270,6 +297,19 @@ public class OSMReader {
         way.setTag("custom_areas", customAreas);
     }
 
+    private static DAType getNodeIdMapType(String nodeIdMap) {
+        switch (nodeIdMap) {
+            case "btree":
+                return null;
+            case "ram":
+                return DAType.RAM_INT;
+            case "mmap":
+                return DAType.MMAP;
+            default:
+                throw new IllegalArgumentException("Unknown node id map: " + nodeIdMap);
+        }
+    }
+
     /**
      * This method is called for each segment an OSM way is split into during the second pass of {@link WaySegmentParser}.
      *
@@ -325,13 +365,45 @@ public class OSMReader {
             distance = maxDistance;
         }
 
-        setArtificialWayTags(pointList, way, distance, nodeTags);
-        IntsRef relationFlags = getRelFlagsMap(way.getId());
-        IntsRef edgeFlags = encodingManager.createEdgeFlags();
-        edgeFlags = osmParsers.handleWayTags(edgeFlags, way, relationFlags);
+        if (tagParsingPipeline != null) {
+            tagParsingPipeline.add(new WaySegment(fromIndex, toIndex, pointList, way, nodeTags, distance));
+            return;
+        }
+        IntsRef edgeFlags = parseWayTags(pointList, way, distance, nodeTags, getRelFlagsMap(way.getId()));
         if (edgeFlags.isEmpty())
             return;
+        storeEdge(fromIndex, toIndex, pointList, way, distance, nodeTags, edgeFlags);
+    }
 
+    /**
+     * Sets the artificial way tags for the given edge and runs the tag parsers. This is called concurrently for
+     * different ways if the tag parsing runs on multiple threads.
+     */
+    private IntsRef parseWayTags(PointList pointList, ReaderWay way, double distance, Map<String, Object> nodeTags, IntsRef relationFlags) {
+        setArtificialWayTags(pointList, way, distance, nodeTags);
+        IntsRef edgeFlags = encodingManager.createEdgeFlags();
+        return osmParsers.handleWayTags(edgeFlags, way, relationFlags);
+    }
+
+    /**
+     * Parses the tags of the given OSM way and returns the flags for the given edge, which was created from this way
+     * during the import. This is used to apply OSM change files, see {@link OSMChangeUpdater}.
+     *
+     * @param nodeTags      the tags of the barrier node of the edge as stored during the import
+     * @param relationFlags the relation flags of the way as stored during the import
+     */
+    IntsRef parseWayTags(ReaderWay way, EdgeIteratorState edge, Map<String, Object> nodeTags, IntsRef relationFlags) {
+        // the way was already preprocessed, so we only need the pillar nodes of the edge in the direction of the way
+        PointList pointList = edge.fetchWayGeometry(FetchMode.ALL);
+        return parseWayTags(pointList, way, edge.getDistance(), nodeTags, relationFlags);
+    }
+
+    void applyWayTags(ReaderWay way, EdgeIteratorState edge) {
+        osmParsers.applyWayTags(way, edge);
+    }
+
+    private void storeEdge(int fromIndex, int toIndex, PointList pointList, ReaderWay way, double distance,
+                           Map<String, Object> nodeTags, IntsRef edgeFlags) {
         Map<String, Object> map = new HashMap<>(2);
         // the storage does not accept too long strings -> Helper.cutStringForKV
         if (way.hasTag("way_name")) // do not store empty string if missing tag
@@ -352,6 +424,8 @@ public class OSMReader {
         osmParsers.applyWayTags(way, edge);
 
         checkDistance(edge);
+        if (osmWayIdStorage != null)
+            osmWayIdStorage.set(edge.getEdge(), way.getId(), getRelFlagsMap(way.getId()), nodeTags);
         if (osmWayIdSet.contains(way.getId())) {
             getEdgeIdToOsmWayIdMap().put(edge.getEdge(), way.getId());
         }
@@ -383,6 +457,17 @@ public class OSMReader {
      * refers to the duration of the entire way.
      */
     protected void preprocessWay(ReaderWay way, WaySegmentParser.CoordinateSupplier coordinateSupplier) {
+        preprocessWay(way, () -> calcDistance(way, coordinateSupplier));
+    }
+
+    /**
+     * Like {@link #preprocessWay(ReaderWay, WaySegmentParser.CoordinateSupplier)}, but for ways whose node coordinates
+     * are not available, e.g. when the tags of a way are updated after the import.
+     *
+     * @param wayDistance the distance of the entire way or NaN if it cannot be determined. only called for ways that
+     *                    need it, see {@link #isCalculateWayDistance}
+     */
+    void preprocessWay(ReaderWay way, DoubleSupplier wayDistance) {
         // storing the road name does not yet depend on the flagEncoder so manage it directly
         if (config.isParseWayNames()) {
             // http://wiki.openstreetmap.org/wiki/Key:name
@@ -404,7 +489,7 @@ public class OSMReader {
         if (!isCalculateWayDistance(way))
             return;
 
-        double distance = calcDistance(way, coordinateSupplier);
+        double distance = wayDistance.getAsDouble();
         if (Double.isNaN(distance)) {
             // Some nodes were missing, and we cannot determine the distance. This can happen when ways are only
             // included partially in an OSM extract. In this case we cannot calculate the speed either, so we return.
@@ -511,6 +596,9 @@ public class OSMReader {
      * We use it to set turn restrictions.
      */
     protected void processRelation(ReaderRelation relation, LongToIntFunction getIdForOSMNodeId) {
+        // the relations come after the ways and the turn restrictions need all edges
+        if (tagParsingPipeline != null)
+            tagParsingPipeline.flush();
         if (turnCostStorage != null && relation.hasTag("type", "restriction")) {
             TurnCostParser.ExternalInternalMap map = new TurnCostParser.ExternalInternalMap() {
                 @Override
@@ -613,10 +701,14 @@ public class OSMReader {
     }
 
     IntsRef getRelFlagsMap(long osmId) {
+        return getRelFlagsMap(osmId, tempRelFlags);
+    }
+
+    private IntsRef getRelFlagsMap(long osmId, IntsRef relFlags) {
         long relFlagsAsLong = osmWayIdToRelationFlagsMap.get(osmId);
-        tempRelFlags.ints[0] = (int) relFlagsAsLong;
-        tempRelFlags.ints[1] = (int) (relFlagsAsLong >> 32);
-        return tempRelFlags;
+        relFlags.ints[0] = (int) relFlagsAsLong;
+        relFlags.ints[1] = (int) (relFlagsAsLong >> 32);
+        return relFlags;
     }
 
     void putRelFlagsMap(long osmId, IntsRef relFlags) {
@@ -629,4 +721,108 @@ public class OSMReader {
         return getClass().getSimpleName();
     }
 
+    private static class WaySegment {
+        final int fromIndex;
+        final int toIndex;
+        final PointList pointList;
+        final ReaderWay way;
+        final Map<String, Object> nodeTags;
+        final double distance;
+        IntsRef edgeFlags;
+        // the tags of the way including the artificial tags of this segment, null if the way has no other segments
+        Map<String, Object> wayTags;
+
+        WaySegment(int fromIndex, int toIndex, PointList pointList, ReaderWay way, Map<String, Object> nodeTags, double distance) {
+            this.fromIndex = fromIndex;
+            this.toIndex = toIndex;
+            this.pointList = pointList;
+            this.way = way;
+            this.nodeTags = nodeTags;
+            this.distance = distance;
+        }
+    }
+
+    /**
+     * Runs the tag parsers for batches of edges on worker threads, while the edges are added to the graph on the
+     * reading thread in the order they were read. The segments of a way are always parsed in the same batch one after
+     * another, because setArtificialWayTags modifies the way. For the same reason we keep a copy of the way tags of
+     * every segment and restore them before applyWayTags is called for the edge.
+     */
+    private class TagParsingPipeline {
+        private static final int BATCH_SIZE = 256;
+        private final ExecutorService executorService;
+        private final int maxPendingBatches;
+        private final ArrayDeque<Future<List<WaySegment>>> pendingBatches = new ArrayDeque<>();
+        private List<WaySegment> batch = new ArrayList<>(BATCH_SIZE);
+
+        TagParsingPipeline(int threads) {
+            executorService = Executors.newFixedThreadPool(threads, r -> {
+                Thread thread = new Thread(r, "tag-parser");
+                thread.setDaemon(true);
+                return thread;
+            });
+            maxPendingBatches = 4 * threads;
+        }
+
+        void add(WaySegment segment) {
+            if (batch.size() >= BATCH_SIZE && batch.get(batch.size() - 1).way != segment.way)
+                submitBatch();
+            batch.add(segment);
+        }
+
+        void flush() {
+            submitBatch();
+            while (!pendingBatches.isEmpty())
+                storeBatch(pendingBatches.poll());
+        }
+
+        void close() {
+            executorService.shutdownNow();
+        }
+
+        private void submitBatch() {
+            if (batch.isEmpty())
+                return;
+            final List<WaySegment> segments = batch;
+            batch = new ArrayList<>(BATCH_SIZE);
+            pendingBatches.add(executorService.submit(() -> {
+                IntsRef relationFlags = osmParsers.createRelationFlags();
+                for (int i = 0; i < segments.size(); i++) {
+                    WaySegment s = segments.get(i);
+                    s.edgeFlags = parseWayTags(s.pointList, s.way, s.distance, s.nodeTags, getRelFlagsMap(s.way.getId(), relationFlags));
+                    // the artificial tags are overwritten by the other segments of the way, but applyWayTags needs them
+                    if (i > 0 && segments.get(i - 1).way == s.way || i + 1 < segments.size() && segments.get(i + 1).way == s.way)
+                        s.wayTags = new HashMap<>(s.way.getTags());
+                }
+                return segments;
+            }));
+            // store the finished batches and limit the number of batches in memory
+            while (!pendingBatches.isEmpty() && (pendingBatches.peek().isDone() || pendingBatches.size() > maxPendingBatches))
+                storeBatch(pendingBatches.poll());
+        }
+
+        private void storeBatch(Future<List<WaySegment>> future) {
+            List<WaySegment> segments;
+            try {
+                segments = future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(e);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof RuntimeException)
+                    throw (RuntimeException) e.getCause();
+                throw new RuntimeException(e.getCause());
+            }
+            for (WaySegment s : segments) {
+                if (s.edgeFlags.isEmpty())
+                    continue;
+                if (s.wayTags != null) {
+                    s.way.clearTags();
+                    s.way.getTags().putAll(s.wayTags);
+                }
+                storeEdge(s.fromIndex, s.toIndex, s.pointList, s.way, s.distance, s.nodeTags, s.edgeFlags);
+            }
+        }
+    }
+
 }
@@ -0,0 +1,172 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.reader.osm;
+
+import com.graphhopper.storage.DataAccess;
+import com.graphhopper.storage.Directory;
+import com.graphhopper.storage.IntsRef;
+
+import java.io.*;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Stores the id of the OSM way every edge was created from. This is needed to find the edges of a way when applying
+ * OSM change files, see {@link OSMChangeUpdater}. To parse the tags of a changed way like during the import we also
+ * store the relation flags of every edge and the tags of the barrier node of barrier edges.
+ */
+public class OSMWayIdStorage {
+    private static final int WAY_ID = 0;
+    private static final int NODE_TAGS = 8;
+    private static final int RELATION_FLAGS = 12;
+    private final Directory dir;
+    private final DataAccess da;
+    // the tags of the barrier nodes, every entry starts with its length in bytes
+    private final DataAccess nodeTags;
+    private int relationInts;
+    private int bytesPerEdge;
+    // the first bytes are not used so that 0 means that an edge has no node tags
+    private int nodeTagsBytes = 4;
+
+    public OSMWayIdStorage(Directory dir) {
+        this.dir = dir;
+        this.da = dir.create("osm_way_ids");
+        this.nodeTags = dir.create("osm_node_tags");
+    }
+
+    /**
+     * @param relationInts the number of ints of the relation flags, see OSMParsers.createRelationFlags
+     */
+    public OSMWayIdStorage create(long edges, int relationInts) {
+        setRelationInts(relationInts);
+        da.create(edges * bytesPerEdge);
+        nodeTags.create(1000);
+        return this;
+    }
+
+    public boolean loadExisting() {
+        if (!da.loadExisting() || !nodeTags.loadExisting())
+            return false;
+        setRelationInts(da.getHeader(0));
+        nodeTagsBytes = da.getHeader(4);
+        return true;
+    }
+
+    private void setRelationInts(int relationInts) {
+        this.relationInts = relationInts;
+        this.bytesPerEdge = RELATION_FLAGS + 4 * relationInts;
+    }
+
+    /**
+     * @param nodeTags the tags of the barrier node if this is a barrier edge, otherwise an empty map
+     */
+    public void set(int edge, long osmWayId, IntsRef relationFlags, Map<String, Object> nodeTags) {
+        if (relationFlags.length != relationInts)
+            throw new IllegalArgumentException("Expected " + relationInts + " ints for the relation flags, but got " + relationFlags.length);
+        long pointer = (long) edge * bytesPerEdge;
+        da.ensureCapacity(pointer + bytesPerEdge);
+        da.setInt(pointer + WAY_ID, (int) osmWayId);
+        da.setInt(pointer + WAY_ID + 4, (int) (osmWayId >>> 32));
+        da.setInt(pointer + NODE_TAGS, nodeTags.isEmpty() ? 0 : addNodeTags(nodeTags));
+        for (int i = 0; i < relationInts; i++)
+            da.setInt(pointer + RELATION_FLAGS + 4 * i, relationFlags.ints[relationFlags.offset + i]);
+    }
+
+    public long getOSMWayId(int edge) {
+        long pointer = (long) edge * bytesPerEdge;
+        return ((long) da.getInt(pointer + WAY_ID + 4) << 32) | (da.getInt(pointer + WAY_ID) & 0xFFFF_FFFFL);
+    }
+
+    public IntsRef getRelationFlags(int edge) {
+        long pointer = (long) edge * bytesPerEdge;
+        IntsRef relationFlags = new IntsRef(relationInts);
+        for (int i = 0; i < relationInts; i++)
+            relationFlags.ints[i] = da.getInt(pointer + RELATION_FLAGS + 4 * i);
+        return relationFlags;
+    }
+
+    /**
+     * @return the tags of the barrier node for barrier edges, otherwise an empty map
+     */
+    public Map<String, Object> getNodeTags(int edge) {
+        int tagsPointer = da.getInt((long) edge * bytesPerEdge + NODE_TAGS);
+        if (tagsPointer == 0)
+            return Collections.emptyMap();
+        byte[] bytes = new byte[nodeTags.getInt(tagsPointer)];
+        nodeTags.getBytes(tagsPointer + 4, bytes, bytes.length);
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes))) {
+            int count = in.readInt();
+            Map<String, Object> tags = new LinkedHashMap<>(count);
+            for (int i = 0; i < count; i++)
+                tags.put(in.readUTF(), in.readUTF());
+            return tags;
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    private int addNodeTags(Map<String, Object> tags) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(tags.size());
+            for (Map.Entry<String, Object> tag : tags.entrySet()) {
+                out.writeUTF(tag.getKey());
+                out.writeUTF(String.valueOf(tag.getValue()));
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        int pointer = nodeTagsBytes;
+        if ((long) pointer + 4 + bytes.size() > Integer.MAX_VALUE)
+            throw new IllegalStateException("Too many tags of barrier nodes");
+        nodeTags.ensureCapacity(pointer + 4 + bytes.size());
+        nodeTags.setInt(pointer, bytes.size());
+        nodeTags.setBytes(pointer + 4, bytes.toByteArray(), bytes.size());
+        nodeTagsBytes += 4 + bytes.size();
+        return pointer;
+    }
+
+    public void flush() {
+        da.setHeader(0, relationInts);
+        da.setHeader(4, nodeTagsBytes);
+        da.flush();
+        nodeTags.flush();
+    }
+
+    /**
+     * Closes this storage and removes its files.
+     */
+    public void remove() {
+        dir.remove("osm_way_ids");
+        dir.remove("osm_node_tags");
+    }
+
+    public void close() {
+        da.close();
+        nodeTags.close();
+    }
+
+    public boolean isClosed() {
+        return da.isClosed();
+    }
+
+    public long getCapacity() {
+        return da.getCapacity() + nodeTags.getCapacity();
+    }
+}
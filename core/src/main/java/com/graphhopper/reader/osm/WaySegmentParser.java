@@ -24,12 +24,14 @@ import com.graphhopper.reader.ReaderNode;
 import com.graphhopper.reader.ReaderRelation;
 import com.graphhopper.reader.ReaderWay;
 import com.graphhopper.reader.dem.ElevationProvider;
+import com.graphhopper.storage.DAType;
 import com.graphhopper.storage.Directory;
 import com.graphhopper.storage.RAMDirectory;
 import com.graphhopper.util.Helper;
 import com.graphhopper.util.PointAccess;
 import com.graphhopper.util.PointList;
 import com.graphhopper.util.StopWatch;
+import com.graphhopper.util.shapes.BBox;
 import com.graphhopper.util.shapes.GHPoint3D;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -80,8 +82,9 @@ public class WaySegmentParser {
 
     private final OSMNodeData nodeData;
     private Date timestamp;
+    private BBox bounds;
 
-    private WaySegmentParser(PointAccess nodeAccess, Directory directory, ElevationProvider eleProvider,
+    private WaySegmentParser(PointAccess nodeAccess, Directory directory, DAType nodeIdMapType, ElevationProvider eleProvider,
                              Predicate<ReaderWay> wayFilter, Predicate<ReaderNode> splitNodeFilter, WayPreprocessor wayPreprocessor,
                              Consumer<ReaderRelation> relationPreprocessor, RelationProcessor relationProcessor,
                              EdgeHandler edgeHandler, int workerThreads) {
@@ -94,7 +97,7 @@ public class WaySegmentParser {
         this.edgeHandler = edgeHandler;
         this.workerThreads = workerThreads;
 
-        this.nodeData = new OSMNodeData(nodeAccess, directory);
+        this.nodeData = new OSMNodeData(nodeAccess, directory, nodeIdMapType);
     }
 
     /**
@@ -114,6 +117,10 @@ public class WaySegmentParser {
 
         LOGGER.info("Creating graph. Node count (pillar+tower): " + nodes + ", " + Helper.getMemInfo());
 
+        // the elevation is only looked up during pass2, so we can prepare the elevation data of the whole area here
+        if (bounds != null)
+            eleProvider.prefetch(bounds);
+
         LOGGER.info("pass2 - start");
         StopWatch sw2 = new StopWatch().start();
         readOSM(osmFile, new Pass2Handler());
@@ -184,6 +191,7 @@ public class WaySegmentParser {
         @Override
         public void handleFileHeader(OSMFileHeader fileHeader) throws ParseException {
             timestamp = Helper.createFormatter().parse(fileHeader.getTag("timestamp"));
+            bounds = fileHeader.getBounds();
         }
 
         @Override
@@ -218,7 +226,7 @@ public class WaySegmentParser {
                 LOGGER.info("pass2 - processed nodes: " + nf(nodeCounter) + ", accepted nodes: " + nf(acceptedNodes) +
                         ", " + Helper.getMemInfo());
 
-            int nodeType = nodeData.addCoordinatesIfMapped(node.getId(), node.getLat(), node.getLon(), eleProvider.getEle(node));
+            int nodeType = nodeData.addCoordinatesIfMapped(node.getId(), node.getLat(), node.getLon(), () -> eleProvider.getEle(node));
             if (nodeType == EMPTY_NODE)
                 return;
 
@@ -421,6 +429,7 @@ public class WaySegmentParser {
         private EdgeHandler edgeHandler = (from, to, pointList, way, nodeTags) ->
                 System.out.println("edge " + from + "->" + to + " (" + pointList.size() + " points)");
         private int workerThreads = 2;
+        private DAType nodeIdMapType;
 
         /**
          * @param nodeAccess used to store tower node coordinates while parsing the ways
@@ -502,9 +511,18 @@ public class WaySegmentParser {
             return this;
         }
 
+        /**
+         * @param nodeIdMapType the type of the storage used for the mapping of OSM node ids to internal ids, or null to
+         *                      keep them in a tree on the heap, see {@link OSMNodeData}
+         */
+        public Builder setNodeIdMapType(DAType nodeIdMapType) {
+            this.nodeIdMapType = nodeIdMapType;
+            return this;
+        }
+
         public WaySegmentParser build() {
             return new WaySegmentParser(
-                    nodeAccess, directory, elevationProvider, wayFilter, splitNodeFilter, wayPreprocessor, relationPreprocessor, relationProcessor,
+                    nodeAccess, directory, nodeIdMapType, elevationProvider, wayFilter, splitNodeFilter, wayPreprocessor, relationPreprocessor, relationProcessor,
                     edgeHandler, workerThreads
             );
         }
@@ -62,7 +62,8 @@ public class DateRangeParser implements ConditionalValueParser {
         return Calendar.getInstance(Helper.UTC, Locale.US);
     }
 
-    static ParsedCalendar parseDateString(String dateString) throws ParseException {
+    // the DateFormats are not thread-safe and the tag parsers can be called from multiple threads during import
+    static synchronized ParsedCalendar parseDateString(String dateString) throws ParseException {
         // Replace occurrences of public holidays
         dateString = dateString.replaceAll("(,( )*)?(PH|SH)", "");
         dateString = dateString.trim();
@@ -126,7 +127,7 @@ public class DateRangeParser implements ConditionalValueParser {
     }
 
     @Override
-    public ConditionState checkCondition(String dateRangeString) throws ParseException {
+    public synchronized ConditionState checkCondition(String dateRangeString) throws ParseException {
         DateRange dr = getRange(dateRangeString);
         if (dr == null)
             return ConditionState.INVALID;
@@ -1,15 +1,18 @@
 // This software is released into the Public Domain.  See copying.txt for details.
 package com.graphhopper.reader.osm.pbf;
 
-import com.carrotsearch.hppc.LongIndexedContainer;
+import com.carrotsearch.hppc.IntArrayList;
+import com.carrotsearch.hppc.LongArrayList;
+import com.google.protobuf.CodedInputStream;
 import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.WireFormat;
 import com.graphhopper.reader.ReaderElement;
 import com.graphhopper.reader.ReaderNode;
 import com.graphhopper.reader.ReaderRelation;
 import com.graphhopper.reader.ReaderWay;
 import com.graphhopper.reader.osm.OSMFileHeader;
 import com.graphhopper.util.Helper;
-import org.openstreetmap.osmosis.osmbinary.Fileformat;
+import com.graphhopper.util.shapes.BBox;
 import org.openstreetmap.osmosis.osmbinary.Osmformat;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -28,6 +31,7 @@ import java.util.zip.Inflater;
  */
 public class PbfBlobDecoder implements Runnable {
     private static final Logger log = LoggerFactory.getLogger(PbfBlobDecoder.class);
+    private static final ThreadLocal<DecodingBuffers> BUFFERS = ThreadLocal.withInitial(DecodingBuffers::new);
     private final boolean checkData = false;
     private final String blobType;
     private final byte[] rawBlob;
@@ -49,15 +53,36 @@ public class PbfBlobDecoder implements Runnable {
     }
 
     private byte[] readBlobContent() throws IOException {
-        Fileformat.Blob blob = Fileformat.Blob.parseFrom(rawBlob);
-        byte[] blobData;
+        // we parse the blob directly from the raw data to avoid copying the compressed data
+        CodedInputStream in = CodedInputStream.newInstance(rawBlob);
+        int rawOffset = -1, rawLength = 0, zlibOffset = -1, zlibLength = 0, rawSize = 0;
+        for (int tag = in.readTag(); tag != 0; tag = in.readTag()) {
+            switch (WireFormat.getTagFieldNumber(tag)) {
+                case 1:
+                    rawLength = in.readRawVarint32();
+                    rawOffset = in.getTotalBytesRead();
+                    in.skipRawBytes(rawLength);
+                    break;
+                case 2:
+                    rawSize = in.readInt32();
+                    break;
+                case 3:
+                    zlibLength = in.readRawVarint32();
+                    zlibOffset = in.getTotalBytesRead();
+                    in.skipRawBytes(zlibLength);
+                    break;
+                default:
+                    in.skipField(tag);
+            }
+        }
 
-        if (blob.hasRaw()) {
-            blobData = blob.getRaw().toByteArray();
-        } else if (blob.hasZlibData()) {
+        byte[] blobData;
+        if (rawOffset >= 0) {
+            blobData = Arrays.copyOfRange(rawBlob, rawOffset, rawOffset + rawLength);
+        } else if (zlibOffset >= 0) {
             Inflater inflater = new Inflater();
-            inflater.setInput(blob.getZlibData().toByteArray());
-            blobData = new byte[blob.getRawSize()];
+            inflater.setInput(rawBlob, zlibOffset, zlibLength);
+            blobData = new byte[rawSize];
             try {
                 inflater.inflate(blobData);
             } catch (DataFormatException e) {
@@ -97,242 +122,340 @@ public class PbfBlobDecoder implements Runnable {
         OSMFileHeader fileheader = new OSMFileHeader();
         long milliSecondDate = header.getOsmosisReplicationTimestamp();
         fileheader.setTag("timestamp", Helper.createFormatter().format(new Date(milliSecondDate * 1000)));
+        // the bounding box is given in nanodegrees
+        if (header.hasBbox()) {
+            Osmformat.HeaderBBox bbox = header.getBbox();
+            fileheader.setBounds(new BBox(bbox.getLeft() * 1e-9, bbox.getRight() * 1e-9, bbox.getBottom() * 1e-9, bbox.getTop() * 1e-9));
+        }
         decodedEntities.add(fileheader);
-
-        // Build a new bound object which corresponds to the header.
-/*
-         Bound bound;
-         if (header.hasBbox()) {
-         HeaderBBox bbox = header.getBbox();
-         bound = new Bound(bbox.getRight() * COORDINATE_SCALING_FACTOR, bbox.getLeft() * COORDINATE_SCALING_FACTOR,
-         bbox.getTop() * COORDINATE_SCALING_FACTOR, bbox.getBottom() * COORDINATE_SCALING_FACTOR,
-         header.getSource());
-         } else {
-         bound = new Bound(header.getSource());
-         }
-
-         // Add the bound object to the results.
-         decodedEntities.add(new BoundContainer(bound));
-         */
     }
 
-    private Map<String, String> buildTags(List<Integer> keys, List<Integer> values, PbfFieldDecoder fieldDecoder) {
-
-        // Ensure parallel lists are of equal size.
-        if (checkData) {
-            if (keys.size() != values.size()) {
-                throw new RuntimeException("Number of tag keys (" + keys.size() + ") and tag values ("
-                        + values.size() + ") don't match");
+    /**
+     * Parses the primitive block directly from the inflated data instead of building the protobuf objects, which
+     * would box every id and coordinate. The values of the repeated fields are read into primitive arrays that are
+     * reused by the decoding thread, and the tags are put into the elements without a temporary map.
+     */
+    private void processOsmPrimitives(byte[] data) throws IOException {
+        CodedInputStream in = CodedInputStream.newInstance(data);
+        IntArrayList stringOffsets = new IntArrayList();
+        IntArrayList stringLengths = new IntArrayList();
+        IntArrayList groupOffsets = new IntArrayList();
+        IntArrayList groupLengths = new IntArrayList();
+        int granularity = 100;
+        int dateGranularity = 1000;
+        long latOffset = 0;
+        long lonOffset = 0;
+        // the primitive groups usually come before the granularity and the offsets, so we decode them afterwards
+        for (int tag = in.readTag(); tag != 0; tag = in.readTag()) {
+            switch (WireFormat.getTagFieldNumber(tag)) {
+                case 1:
+                    int oldLimit = in.pushLimit(in.readRawVarint32());
+                    for (int stringTag = in.readTag(); stringTag != 0; stringTag = in.readTag()) {
+                        if (WireFormat.getTagFieldNumber(stringTag) == 1) {
+                            int length = in.readRawVarint32();
+                            stringOffsets.add(in.getTotalBytesRead());
+                            stringLengths.add(length);
+                            in.skipRawBytes(length);
+                        } else
+                            in.skipField(stringTag);
+                    }
+                    in.popLimit(oldLimit);
+                    break;
+                case 2:
+                    int length = in.readRawVarint32();
+                    groupOffsets.add(in.getTotalBytesRead());
+                    groupLengths.add(length);
+                    in.skipRawBytes(length);
+                    break;
+                case 17:
+                    granularity = in.readInt32();
+                    break;
+                case 18:
+                    dateGranularity = in.readInt32();
+                    break;
+                case 19:
+                    latOffset = in.readInt64();
+                    break;
+                case 20:
+                    lonOffset = in.readInt64();
+                    break;
+                default:
+                    in.skipField(tag);
             }
         }
 
-        Iterator<Integer> keyIterator = keys.iterator();
-        Iterator<Integer> valueIterator = values.iterator();
-        if (keyIterator.hasNext()) {
-            Map<String, String> tags = new HashMap<>(keys.size());
-            while (keyIterator.hasNext()) {
-                String key = fieldDecoder.decodeString(keyIterator.next());
-                String value = fieldDecoder.decodeString(valueIterator.next());
-                tags.put(key, value);
+        PbfFieldDecoder fieldDecoder = new PbfFieldDecoder(data, stringOffsets, stringLengths, granularity, latOffset, lonOffset, dateGranularity);
+        DecodingBuffers buffers = BUFFERS.get();
+        for (int i = 0; i < groupOffsets.size(); i++) {
+            CodedInputStream group = CodedInputStream.newInstance(data, groupOffsets.get(i), groupLengths.get(i));
+            for (int tag = group.readTag(); tag != 0; tag = group.readTag()) {
+                int oldLimit;
+                switch (WireFormat.getTagFieldNumber(tag)) {
+                    case 1:
+                        oldLimit = group.pushLimit(group.readRawVarint32());
+                        processNode(group, fieldDecoder, buffers);
+                        group.popLimit(oldLimit);
+                        break;
+                    case 2:
+                        oldLimit = group.pushLimit(group.readRawVarint32());
+                        processDenseNodes(group, fieldDecoder, buffers);
+                        group.popLimit(oldLimit);
+                        break;
+                    case 3:
+                        oldLimit = group.pushLimit(group.readRawVarint32());
+                        processWay(group, fieldDecoder, buffers);
+                        group.popLimit(oldLimit);
+                        break;
+                    case 4:
+                        oldLimit = group.pushLimit(group.readRawVarint32());
+                        processRelation(group, fieldDecoder, buffers);
+                        group.popLimit(oldLimit);
+                        break;
+                    default:
+                        group.skipField(tag);
+                }
             }
-            return tags;
         }
-        return null;
     }
 
-    private void processNodes(List<Osmformat.Node> nodes, PbfFieldDecoder fieldDecoder) {
-        for (Osmformat.Node node : nodes) {
-            Map<String, String> tags = buildTags(node.getKeysList(), node.getValsList(), fieldDecoder);
-
-            ReaderNode osmNode = new ReaderNode(node.getId(), fieldDecoder.decodeLatitude(node
-                    .getLat()), fieldDecoder.decodeLatitude(node.getLon()));
-            osmNode.setTags(tags);
-
-            // Add the bound object to the results.
-            decodedEntities.add(osmNode);
+    private void processNode(CodedInputStream in, PbfFieldDecoder fieldDecoder, DecodingBuffers buffers) throws IOException {
+        long id = 0, lat = 0, lon = 0;
+        buffers.keys.clear();
+        buffers.values.clear();
+        for (int tag = in.readTag(); tag != 0; tag = in.readTag()) {
+            switch (WireFormat.getTagFieldNumber(tag)) {
+                case 1:
+                    id = in.readSInt64();
+                    break;
+                case 2:
+                    readInts(in, tag, buffers.keys);
+                    break;
+                case 3:
+                    readInts(in, tag, buffers.values);
+                    break;
+                case 8:
+                    lat = in.readSInt64();
+                    break;
+                case 9:
+                    lon = in.readSInt64();
+                    break;
+                default:
+                    in.skipField(tag);
+            }
         }
+        ReaderNode node = new ReaderNode(id, fieldDecoder.decodeLatitude(lat), fieldDecoder.decodeLongitude(lon));
+        setTags(node, buffers.keys, buffers.values, fieldDecoder);
+        decodedEntities.add(node);
     }
 
-    private void processNodes(Osmformat.DenseNodes nodes, PbfFieldDecoder fieldDecoder) {
-        List<Long> idList = nodes.getIdList();
-        List<Long> latList = nodes.getLatList();
-        List<Long> lonList = nodes.getLonList();
+    private void processDenseNodes(CodedInputStream in, PbfFieldDecoder fieldDecoder, DecodingBuffers buffers) throws IOException {
+        LongArrayList ids = buffers.ids, lats = buffers.lats, lons = buffers.lons;
+        IntArrayList keysValues = buffers.keys;
+        ids.clear();
+        lats.clear();
+        lons.clear();
+        keysValues.clear();
+        for (int tag = in.readTag(); tag != 0; tag = in.readTag()) {
+            switch (WireFormat.getTagFieldNumber(tag)) {
+                case 1:
+                    readSInt64s(in, tag, ids);
+                    break;
+                case 8:
+                    readSInt64s(in, tag, lats);
+                    break;
+                case 9:
+                    readSInt64s(in, tag, lons);
+                    break;
+                case 10:
+                    readInts(in, tag, keysValues);
+                    break;
+                default:
+                    // we do not need the dense info (version, timestamp, user, ...)
+                    in.skipField(tag);
+            }
+        }
 
-        // Ensure parallel lists are of equal size.
         if (checkData) {
-            if ((idList.size() != latList.size()) || (idList.size() != lonList.size())) {
-                throw new RuntimeException("Number of ids (" + idList.size() + "), latitudes (" + latList.size()
-                        + "), and longitudes (" + lonList.size() + ") don't match");
+            if ((ids.size() != lats.size()) || (ids.size() != lons.size())) {
+                throw new RuntimeException("Number of ids (" + ids.size() + "), latitudes (" + lats.size()
+                        + "), and longitudes (" + lons.size() + ") don't match");
             }
         }
 
-        Iterator<Integer> keysValuesIterator = nodes.getKeysValsList().iterator();
-
-        /*
-         Osmformat.DenseInfo denseInfo;
-         if (nodes.hasDenseinfo()) {
-         denseInfo = nodes.getDenseinfo();
-         } else {
-         denseInfo = null;
-         }
-         */
         long nodeId = 0;
         long latitude = 0;
         long longitude = 0;
-//		int userId = 0;
-//		int userSid = 0;
-//		long timestamp = 0;
-//		long changesetId = 0;
-        for (int i = 0; i < idList.size(); i++) {
+        int keyValueIndex = 0;
+        for (int i = 0; i < ids.size(); i++) {
             // Delta decode node fields.
-            nodeId += idList.get(i);
-            latitude += latList.get(i);
-            longitude += lonList.get(i);
-
-            /*
-             if (denseInfo != null) {
-             // Delta decode dense info fields.
-             userId += denseInfo.getUid(i);
-             userSid += denseInfo.getUserSid(i);
-             timestamp += denseInfo.getTimestamp(i);
-             changesetId += denseInfo.getChangeset(i);
-
-             // Build the user, but only if one exists.
-             OsmUser user;
-             if (userId >= 0) {
-             user = new OsmUser(userId, fieldDecoder.decodeString(userSid));
-             } else {
-             user = OsmUser.NONE;
-             }
-
-             entityData = new CommonEntityData(nodeId, denseInfo.getVersion(i),
-             fieldDecoder.decodeTimestamp(timestamp), user, changesetId);
-             } else {
-             entityData = new CommonEntityData(nodeId, EMPTY_VERSION, EMPTY_TIMESTAMP, OsmUser.NONE,
-             EMPTY_CHANGESET);
-             }
-             */
-            // Build the tags. The key and value string indexes are sequential
-            // in the same PBF array. Each set of tags is delimited by an index
-            // with a value of 0.
-            Map<String, String> tags = null;
-            while (keysValuesIterator.hasNext()) {
-                int keyIndex = keysValuesIterator.next();
-                if (keyIndex == 0) {
-                    break;
-                }
-                if (checkData) {
-                    if (!keysValuesIterator.hasNext()) {
-                        throw new RuntimeException(
-                                "The PBF DenseInfo keys/values list contains a key with no corresponding value.");
-                    }
-                }
-                int valueIndex = keysValuesIterator.next();
-
-                if (tags == null) {
-                    // divide by 2 as key&value, multiple by 2 because of the better approximation
-                    tags = new HashMap<>(Math.max(3, 2 * (nodes.getKeysValsList().size() / 2) / idList.size()));
-                }
+            nodeId += ids.get(i);
+            latitude += lats.get(i);
+            longitude += lons.get(i);
+            ReaderNode node = new ReaderNode(nodeId, fieldDecoder.decodeLatitude(latitude), fieldDecoder.decodeLongitude(longitude));
 
-                tags.put(fieldDecoder.decodeString(keyIndex), fieldDecoder.decodeString(valueIndex));
+            // The key and value string indexes are sequential in the same PBF array. Each set of tags is delimited
+            // by an index with a value of 0.
+            while (keyValueIndex < keysValues.size()) {
+                int keyIndex = keysValues.get(keyValueIndex++);
+                if (keyIndex == 0)
+                    break;
+                if (keyValueIndex == keysValues.size())
+                    throw new RuntimeException("The PBF DenseInfo keys/values list contains a key with no corresponding value.");
+                int valueIndex = keysValues.get(keyValueIndex++);
+                node.setTag(fieldDecoder.decodeString(keyIndex), fieldDecoder.decodeString(valueIndex));
             }
 
-            ReaderNode node = new ReaderNode(nodeId, fieldDecoder.decodeLatitude(latitude), fieldDecoder.decodeLongitude(longitude));
-            node.setTags(tags);
-
-            // Add the bound object to the results.
             decodedEntities.add(node);
         }
     }
 
-    private void processWays(List<Osmformat.Way> ways, PbfFieldDecoder fieldDecoder) {
-        for (Osmformat.Way way : ways) {
-            Map<String, String> tags = buildTags(way.getKeysList(), way.getValsList(), fieldDecoder);
-            ReaderWay osmWay = new ReaderWay(way.getId());
-            osmWay.setTags(tags);
-
-            // Build up the list of way nodes for the way. The node ids are
-            // delta encoded meaning that each id is stored as a delta against
-            // the previous one.
-            long nodeId = 0;
-            LongIndexedContainer wayNodes = osmWay.getNodes();
-            for (long nodeIdOffset : way.getRefsList()) {
-                nodeId += nodeIdOffset;
-                wayNodes.add(nodeId);
+    private void processWay(CodedInputStream in, PbfFieldDecoder fieldDecoder, DecodingBuffers buffers) throws IOException {
+        long id = 0;
+        buffers.keys.clear();
+        buffers.values.clear();
+        buffers.ids.clear();
+        for (int tag = in.readTag(); tag != 0; tag = in.readTag()) {
+            switch (WireFormat.getTagFieldNumber(tag)) {
+                case 1:
+                    id = in.readInt64();
+                    break;
+                case 2:
+                    readInts(in, tag, buffers.keys);
+                    break;
+                case 3:
+                    readInts(in, tag, buffers.values);
+                    break;
+                case 8:
+                    readSInt64s(in, tag, buffers.ids);
+                    break;
+                default:
+                    in.skipField(tag);
             }
+        }
+        ReaderWay way = new ReaderWay(id);
+        setTags(way, buffers.keys, buffers.values, fieldDecoder);
 
-            decodedEntities.add(osmWay);
+        // The node ids are delta encoded meaning that each id is stored as a delta against the previous one.
+        LongArrayList wayNodes = way.getNodes();
+        wayNodes.ensureCapacity(buffers.ids.size());
+        long nodeId = 0;
+        for (int i = 0; i < buffers.ids.size(); i++) {
+            nodeId += buffers.ids.get(i);
+            wayNodes.add(nodeId);
         }
+        decodedEntities.add(way);
     }
 
-    private void buildRelationMembers(ReaderRelation relation,
-                                      List<Long> memberIds, List<Integer> memberRoles, List<Osmformat.Relation.MemberType> memberTypes,
-                                      PbfFieldDecoder fieldDecoder) {
+    private void processRelation(CodedInputStream in, PbfFieldDecoder fieldDecoder, DecodingBuffers buffers) throws IOException {
+        long id = 0;
+        buffers.keys.clear();
+        buffers.values.clear();
+        buffers.ids.clear();
+        buffers.roles.clear();
+        buffers.types.clear();
+        for (int tag = in.readTag(); tag != 0; tag = in.readTag()) {
+            switch (WireFormat.getTagFieldNumber(tag)) {
+                case 1:
+                    id = in.readInt64();
+                    break;
+                case 2:
+                    readInts(in, tag, buffers.keys);
+                    break;
+                case 3:
+                    readInts(in, tag, buffers.values);
+                    break;
+                case 8:
+                    readInts(in, tag, buffers.roles);
+                    break;
+                case 9:
+                    readSInt64s(in, tag, buffers.ids);
+                    break;
+                case 10:
+                    readInts(in, tag, buffers.types);
+                    break;
+                default:
+                    in.skipField(tag);
+            }
+        }
+        ReaderRelation relation = new ReaderRelation(id);
+        setTags(relation, buffers.keys, buffers.values, fieldDecoder);
 
-        // Ensure parallel lists are of equal size.
         if (checkData) {
-            if ((memberIds.size() != memberRoles.size()) || (memberIds.size() != memberTypes.size())) {
-                throw new RuntimeException("Number of member ids (" + memberIds.size() + "), member roles ("
-                        + memberRoles.size() + "), and member types (" + memberTypes.size() + ") don't match");
+            if ((buffers.ids.size() != buffers.roles.size()) || (buffers.ids.size() != buffers.types.size())) {
+                throw new RuntimeException("Number of member ids (" + buffers.ids.size() + "), member roles ("
+                        + buffers.roles.size() + "), and member types (" + buffers.types.size() + ") don't match");
             }
         }
 
-        Iterator<Long> memberIdIterator = memberIds.iterator();
-        Iterator<Integer> memberRoleIterator = memberRoles.iterator();
-        Iterator<Osmformat.Relation.MemberType> memberTypeIterator = memberTypes.iterator();
-
-        // Build up the list of relation members for the way. The member ids are
-        // delta encoded meaning that each id is stored as a delta against
-        // the previous one.
+        // The member ids are delta encoded meaning that each id is stored as a delta against the previous one.
         long refId = 0;
-        while (memberIdIterator.hasNext()) {
-            Osmformat.Relation.MemberType memberType = memberTypeIterator.next();
-            refId += memberIdIterator.next();
-
+        for (int i = 0; i < buffers.ids.size(); i++) {
+            refId += buffers.ids.get(i);
+            int memberType = buffers.types.get(i);
             int entityType = ReaderRelation.Member.NODE;
-            if (memberType == Osmformat.Relation.MemberType.WAY) {
+            if (memberType == Osmformat.Relation.MemberType.WAY_VALUE) {
                 entityType = ReaderRelation.Member.WAY;
-            } else if (memberType == Osmformat.Relation.MemberType.RELATION) {
+            } else if (memberType == Osmformat.Relation.MemberType.RELATION_VALUE) {
                 entityType = ReaderRelation.Member.RELATION;
             }
-            if (checkData) {
-                if (entityType == ReaderRelation.Member.NODE && memberType != Osmformat.Relation.MemberType.NODE) {
-                    throw new RuntimeException("Member type of " + memberType + " is not supported.");
-                }
-            }
-
-            ReaderRelation.Member member = new ReaderRelation.Member(entityType, refId, fieldDecoder.decodeString(memberRoleIterator.next()));
-            relation.add(member);
+            relation.add(new ReaderRelation.Member(entityType, refId, fieldDecoder.decodeString(buffers.roles.get(i))));
         }
+        decodedEntities.add(relation);
     }
 
-    private void processRelations(List<Osmformat.Relation> relations, PbfFieldDecoder fieldDecoder) {
-        for (Osmformat.Relation relation : relations) {
-            Map<String, String> tags = buildTags(relation.getKeysList(), relation.getValsList(), fieldDecoder);
-
-            ReaderRelation osmRelation = new ReaderRelation(relation.getId());
-            osmRelation.setTags(tags);
-
-            buildRelationMembers(osmRelation, relation.getMemidsList(), relation.getRolesSidList(),
-                    relation.getTypesList(), fieldDecoder);
-
-            // Add the bound object to the results.
-            decodedEntities.add(osmRelation);
+    private void setTags(ReaderElement element, IntArrayList keys, IntArrayList values, PbfFieldDecoder fieldDecoder) {
+        // Ensure parallel lists are of equal size.
+        if (checkData) {
+            if (keys.size() != values.size()) {
+                throw new RuntimeException("Number of tag keys (" + keys.size() + ") and tag values ("
+                        + values.size() + ") don't match");
+            }
         }
+        for (int i = 0; i < keys.size(); i++)
+            element.setTag(fieldDecoder.decodeString(keys.get(i)), fieldDecoder.decodeString(values.get(i)));
     }
 
-    private void processOsmPrimitives(byte[] data) throws InvalidProtocolBufferException {
-        Osmformat.PrimitiveBlock block = Osmformat.PrimitiveBlock.parseFrom(data);
-        PbfFieldDecoder fieldDecoder = new PbfFieldDecoder(block);
+    /**
+     * Reads a repeated varint field, which can be packed or not.
+     */
+    private static void readInts(CodedInputStream in, int tag, IntArrayList target) throws IOException {
+        if (WireFormat.getTagWireType(tag) == WireFormat.WIRETYPE_LENGTH_DELIMITED) {
+            int oldLimit = in.pushLimit(in.readRawVarint32());
+            while (in.getBytesUntilLimit() > 0)
+                target.add(in.readRawVarint32());
+            in.popLimit(oldLimit);
+        } else {
+            target.add(in.readRawVarint32());
+        }
+    }
 
-        for (Osmformat.PrimitiveGroup primitiveGroup : block.getPrimitivegroupList()) {
-            processNodes(primitiveGroup.getDense(), fieldDecoder);
-            processNodes(primitiveGroup.getNodesList(), fieldDecoder);
-            processWays(primitiveGroup.getWaysList(), fieldDecoder);
-            processRelations(primitiveGroup.getRelationsList(), fieldDecoder);
+    /**
+     * Reads a repeated sint64 field, which can be packed or not.
+     */
+    private static void readSInt64s(CodedInputStream in, int tag, LongArrayList target) throws IOException {
+        if (WireFormat.getTagWireType(tag) == WireFormat.WIRETYPE_LENGTH_DELIMITED) {
+            int oldLimit = in.pushLimit(in.readRawVarint32());
+            while (in.getBytesUntilLimit() > 0)
+                target.add(in.readSInt64());
+            in.popLimit(oldLimit);
+        } else {
+            target.add(in.readSInt64());
         }
     }
 
+    /**
+     * The arrays for the values of the repeated fields, they are reused for all elements decoded by a thread.
+     */
+    private static class DecodingBuffers {
+        final LongArrayList ids = new LongArrayList();
+        final LongArrayList lats = new LongArrayList();
+        final LongArrayList lons = new LongArrayList();
+        final IntArrayList keys = new IntArrayList();
+        final IntArrayList values = new IntArrayList();
+        final IntArrayList roles = new IntArrayList();
+        final IntArrayList types = new IntArrayList();
+    }
+
     private void runAndTrapExceptions() {
         try {
             decodedEntities = new ArrayList<>();
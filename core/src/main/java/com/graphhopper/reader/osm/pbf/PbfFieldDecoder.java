@@ -1,8 +1,9 @@
 // This software is released into the Public Domain.  See copying.txt for details.
 package com.graphhopper.reader.osm.pbf;
 
-import org.openstreetmap.osmosis.osmbinary.Osmformat;
+import com.carrotsearch.hppc.IntArrayList;
 
+import java.nio.charset.StandardCharsets;
 import java.util.Date;
 
 /**
@@ -14,29 +15,34 @@ import java.util.Date;
  */
 public class PbfFieldDecoder {
     private static final double COORDINATE_SCALING_FACTOR = 0.000000001;
-    private String[] strings;
-    private int coordGranularity;
-    private long coordLatitudeOffset;
-    private long coordLongitudeOffset;
-    private int dateGranularity;
+    // the strings are decoded lazily
+    private final String[] strings;
+    private final byte[] stringData;
+    private final int[] stringOffsets;
+    private final int[] stringLengths;
+    private final int coordGranularity;
+    private final long coordLatitudeOffset;
+    private final long coordLongitudeOffset;
+    private final int dateGranularity;
 
     /**
-     * Creates a new instance.
-     * <p>
+     * Creates a new instance that decodes the strings of the string table only when they are used. Most strings of
+     * a block are never needed, e.g. the user names.
      *
-     * @param primitiveBlock The primitive block containing the fields to be decoded.
+     * @param stringData    the data containing the string table
+     * @param stringOffsets the offsets of the UTF-8 encoded strings in stringData
+     * @param stringLengths the lengths of the UTF-8 encoded strings in bytes
      */
-    public PbfFieldDecoder(Osmformat.PrimitiveBlock primitiveBlock) {
-        this.coordGranularity = primitiveBlock.getGranularity();
-        this.coordLatitudeOffset = primitiveBlock.getLatOffset();
-        this.coordLongitudeOffset = primitiveBlock.getLonOffset();
-        this.dateGranularity = primitiveBlock.getDateGranularity();
-
-        Osmformat.StringTable stringTable = primitiveBlock.getStringtable();
-        strings = new String[stringTable.getSCount()];
-        for (int i = 0; i < strings.length; i++) {
-            strings[i] = stringTable.getS(i).toStringUtf8();
-        }
+    public PbfFieldDecoder(byte[] stringData, IntArrayList stringOffsets, IntArrayList stringLengths,
+                           int coordGranularity, long coordLatitudeOffset, long coordLongitudeOffset, int dateGranularity) {
+        this.coordGranularity = coordGranularity;
+        this.coordLatitudeOffset = coordLatitudeOffset;
+        this.coordLongitudeOffset = coordLongitudeOffset;
+        this.dateGranularity = dateGranularity;
+        this.stringData = stringData;
+        this.stringOffsets = stringOffsets.toArray();
+        this.stringLengths = stringLengths.toArray();
+        this.strings = new String[this.stringOffsets.length];
     }
 
     /**
@@ -80,6 +86,9 @@ public class PbfFieldDecoder {
      * @return The string as a String.
      */
     public String decodeString(int rawString) {
-        return strings[rawString];
+        String string = strings[rawString];
+        if (string == null)
+            strings[rawString] = string = new String(stringData, stringOffsets[rawString], stringLengths[rawString], StandardCharsets.UTF_8);
+        return string;
     }
 }
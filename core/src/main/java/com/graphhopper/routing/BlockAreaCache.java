@@ -0,0 +1,208 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing;
+
+import com.graphhopper.routing.util.EdgeFilter;
+import com.graphhopper.storage.Graph;
+import com.graphhopper.storage.GraphEdgeIdFinder;
+import com.graphhopper.storage.index.LocationIndex;
+import com.graphhopper.util.PMap;
+import com.graphhopper.util.Parameters;
+import com.graphhopper.util.shapes.GHPoint;
+
+import java.io.*;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.regex.Pattern;
+
+/**
+ * Resolves the block_area parameter of requests. The blocked edges found for a block_area are kept in an LRU cache
+ * keyed by the profile and the normalized block_area, so requests with the same closures do not need to query the
+ * location index and intersect the edge geometries again. Additionally named block areas can be registered, which can
+ * be used in the block_area parameter instead of the coordinates, e.g. block_area=roadworks_1;49.4,9.7,100. The named
+ * areas are stored in a file and loaded again on restart.
+ * <p>
+ * The blocked edges depend on the weighting as edges with infinite weight are not included. This is why the cache
+ * key contains the profile, and this is only valid because block_area cannot be combined with a custom model in the
+ * request. Use {@link #clear()} if the graph changes.
+ */
+public class BlockAreaCache {
+    private static final Pattern NAME_PATTERN = Pattern.compile("[a-zA-Z_][a-zA-Z0-9_-]*");
+    private final Graph graph;
+    private final LocationIndex locationIndex;
+    private final Map<String, GraphEdgeIdFinder.BlockArea> cache;
+    private final File namedAreasFile;
+    private final Map<String, String> namedAreas = new TreeMap<>();
+
+    /**
+     * @param maxEntries     the maximum number of cached block areas, 0 disables the cache
+     * @param namedAreasFile the file to store the named areas or null if they should not be stored
+     */
+    public BlockAreaCache(Graph graph, LocationIndex locationIndex, int maxEntries, File namedAreasFile) {
+        if (maxEntries < 0)
+            throw new IllegalArgumentException("maximum number of block areas must not be negative but was " + maxEntries);
+        this.graph = graph;
+        this.locationIndex = locationIndex;
+        this.namedAreasFile = namedAreasFile;
+        // use accessOrder==true to remove the oldest accessed entry, not the oldest inserted
+        this.cache = maxEntries == 0 ? null : Collections.synchronizedMap(
+                new LinkedHashMap<String, GraphEdgeIdFinder.BlockArea>(16, 0.75f, true) {
+                    @Override
+                    protected boolean removeEldestEntry(Map.Entry<String, GraphEdgeIdFinder.BlockArea> eldest) {
+                        return size() > maxEntries;
+                    }
+                });
+        if (namedAreasFile != null && namedAreasFile.exists())
+            loadNamedAreas();
+    }
+
+    /**
+     * Same as {@link GraphEdgeIdFinder#createBlockArea} but uses the cache and resolves the named areas.
+     */
+    public GraphEdgeIdFinder.BlockArea createBlockArea(String profile, List<GHPoint> points, PMap hints, EdgeFilter edgeFilter) {
+        String blockAreaStr = normalize(hints.getString(Parameters.Routing.BLOCK_AREA, ""));
+        double useEdgeIdsUntilAreaSize = hints.getDouble(Parameters.Routing.BLOCK_AREA + ".edge_id_max_area", 1000 * 1000);
+        GraphEdgeIdFinder.BlockArea blockArea = null;
+        String key = profile + "|" + useEdgeIdsUntilAreaSize + "|" + blockAreaStr;
+        if (cache != null)
+            blockArea = cache.get(key);
+        if (blockArea == null) {
+            // we do not lock during the calculation, so the same block area might be calculated twice in rare cases
+            blockArea = new GraphEdgeIdFinder(graph, locationIndex).parseBlockArea(blockAreaStr, edgeFilter, useEdgeIdsUntilAreaSize);
+            if (cache != null)
+                cache.put(key, blockArea);
+        }
+        GraphEdgeIdFinder.checkPointsNotBlocked(blockArea, points);
+        return blockArea;
+    }
+
+    /**
+     * Replaces the named areas in the specified block_area string and brings the numbers into a canonical form. The
+     * order of the shapes does not matter, so they are sorted.
+     */
+    String normalize(String blockAreaStr) {
+        if (blockAreaStr.trim().isEmpty())
+            return "";
+        List<String> shapes = new ArrayList<>();
+        for (String shape : blockAreaStr.split(";")) {
+            shape = shape.trim();
+            String namedArea;
+            synchronized (this) {
+                namedArea = namedAreas.get(shape);
+            }
+            if (namedArea != null)
+                shapes.add(namedArea);
+            else
+                shapes.add(normalizeShape(shape));
+        }
+        Collections.sort(shapes);
+        return String.join(";", shapes);
+    }
+
+    private static String normalizeShape(String shape) {
+        String[] values = shape.split(",");
+        StringBuilder sb = new StringBuilder();
+        for (String value : values) {
+            if (sb.length() > 0)
+                sb.append(',');
+            try {
+                sb.append(new BigDecimal(value.trim()).stripTrailingZeros().toPlainString());
+            } catch (NumberFormatException ex) {
+                throw new IllegalArgumentException("Invalid " + Parameters.Routing.BLOCK_AREA + " '" + shape
+                        + "', this is neither a named area nor a list of coordinates");
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Registers a named block area and stores it in the file of the named areas.
+     *
+     * @param area the shapes of the area in the format of the block_area parameter, it must not contain named areas
+     */
+    public synchronized void putNamedArea(String name, String area) {
+        if (!NAME_PATTERN.matcher(name).matches())
+            throw new IllegalArgumentException("Invalid name '" + name + "' for a block area, use letters, digits, '_' and '-'");
+        String normalized = normalize(area);
+        if (normalized.isEmpty())
+            throw new IllegalArgumentException("Block area '" + name + "' must not be empty");
+        // make sure the area can be used in a request
+        new GraphEdgeIdFinder(graph, locationIndex).parseBlockArea(normalized, EdgeFilter.ALL_EDGES, 0);
+        namedAreas.put(name, normalized);
+        storeNamedAreas();
+    }
+
+    /**
+     * @return true if a named area was removed
+     */
+    public synchronized boolean removeNamedArea(String name) {
+        if (namedAreas.remove(name) == null)
+            return false;
+        storeNamedAreas();
+        return true;
+    }
+
+    public synchronized Map<String, String> getNamedAreas() {
+        return new TreeMap<>(namedAreas);
+    }
+
+    /**
+     * Removes the cached blocked edges, which is necessary if the graph was modified.
+     */
+    public void clear() {
+        if (cache != null)
+            cache.clear();
+    }
+
+    public int size() {
+        return cache == null ? 0 : cache.size();
+    }
+
+    private void loadNamedAreas() {
+        Properties properties = new Properties();
+        try (Reader reader = new InputStreamReader(new FileInputStream(namedAreasFile), StandardCharsets.UTF_8)) {
+            properties.load(reader);
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Cannot read named block areas from " + namedAreasFile, ex);
+        }
+        for (String name : properties.stringPropertyNames()) {
+            namedAreas.put(name, properties.getProperty(name));
+        }
+    }
+
+    private void storeNamedAreas() {
+        if (namedAreasFile == null)
+            return;
+        Properties properties = new Properties();
+        properties.putAll(namedAreas);
+        try {
+            Files.createDirectories(namedAreasFile.getAbsoluteFile().getParentFile().toPath());
+            // write into a temporary file first so that a failure does not destroy the existing areas
+            File tmpFile = new File(namedAreasFile.getPath() + ".tmp");
+            try (Writer writer = new OutputStreamWriter(new FileOutputStream(tmpFile), StandardCharsets.UTF_8)) {
+                properties.store(writer, "named block areas");
+            }
+            Files.move(tmpFile.toPath(), namedAreasFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Cannot store named block areas in " + namedAreasFile, ex);
+        }
+    }
+}
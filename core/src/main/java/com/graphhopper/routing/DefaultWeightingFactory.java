@@ -22,6 +22,7 @@ import com.graphhopper.config.Profile;
 import com.graphhopper.routing.util.EncodingManager;
 import com.graphhopper.routing.util.FlagEncoder;
 import com.graphhopper.routing.weighting.*;
+import com.graphhopper.routing.weighting.custom.AreaEdgeCache;
 import com.graphhopper.routing.weighting.custom.CustomModelParser;
 import com.graphhopper.routing.weighting.custom.CustomProfile;
 import com.graphhopper.routing.weighting.custom.CustomWeighting;
@@ -38,10 +39,19 @@ import static com.graphhopper.util.Helper.toLowerCase;
 public class DefaultWeightingFactory implements WeightingFactory {
     private final BaseGraph graph;
     private final EncodingManager encodingManager;
+    private final AreaEdgeCache areaEdgeCache;
 
     public DefaultWeightingFactory(BaseGraph graph, EncodingManager encodingManager) {
+        this(graph, encodingManager, null);
+    }
+
+    /**
+     * @param areaEdgeCache the edges of the areas used in custom models, can be null
+     */
+    public DefaultWeightingFactory(BaseGraph graph, EncodingManager encodingManager, AreaEdgeCache areaEdgeCache) {
         this.graph = graph;
         this.encodingManager = encodingManager;
+        this.areaEdgeCache = areaEdgeCache;
     }
 
     @Override
@@ -78,7 +88,7 @@ public class DefaultWeightingFactory implements WeightingFactory {
             CustomProfile customProfile = (CustomProfile) profile;
 
             queryCustomModel = CustomModel.merge(customProfile.getCustomModel(), queryCustomModel);
-            weighting = CustomModelParser.createWeighting(encoder, encodingManager, turnCostProvider, queryCustomModel);
+            weighting = CustomModelParser.createWeighting(encoder, encodingManager, turnCostProvider, queryCustomModel, areaEdgeCache);
         } else if ("shortest".equalsIgnoreCase(weightingStr)) {
             weighting = new ShortestWeighting(encoder.getAccessEnc(), encoder.getAverageSpeedEnc(), turnCostProvider);
         } else if ("fastest".equalsIgnoreCase(weightingStr)) {
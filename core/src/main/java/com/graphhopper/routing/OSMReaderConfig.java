@@ -25,7 +25,11 @@ public class OSMReaderConfig {
     private double elevationMaxWayPointDistance = Double.MAX_VALUE;
     private boolean smoothElevation = false;
     private double longEdgeSamplingDistance = Double.MAX_VALUE;
+    private int elevationInterpolationThreads = 1;
     private int workerThreads = 2;
+    private int tagParserThreads = 1;
+    private String nodeIdMap = "btree";
+    private boolean storeOSMWayIds = false;
 
     public String getPreferredLanguage() {
         return preferredLanguage;
@@ -102,6 +106,18 @@ public class OSMReaderConfig {
         return this;
     }
 
+    public int getElevationInterpolationThreads() {
+        return elevationInterpolationThreads;
+    }
+
+    /**
+     * Sets the number of threads used to interpolate the elevation of tunnels, bridges and ferries after the import
+     */
+    public OSMReaderConfig setElevationInterpolationThreads(int elevationInterpolationThreads) {
+        this.elevationInterpolationThreads = elevationInterpolationThreads;
+        return this;
+    }
+
     public int getWorkerThreads() {
         return workerThreads;
     }
@@ -113,4 +129,45 @@ public class OSMReaderConfig {
         this.workerThreads = workerThreads;
         return this;
     }
+
+    public int getTagParserThreads() {
+        return tagParserThreads;
+    }
+
+    /**
+     * Sets the number of threads used to parse the way tags during the OSM import. With more than one thread the tag
+     * parsing runs in parallel to reading the OSM file, while the edges are still added to the graph in the same order.
+     */
+    public OSMReaderConfig setTagParserThreads(int tagParserThreads) {
+        this.tagParserThreads = tagParserThreads;
+        return this;
+    }
+
+    public boolean isStoreOSMWayIds() {
+        return storeOSMWayIds;
+    }
+
+    /**
+     * Enables storing the OSM way id of every edge, which is required to apply OSM change files after the import.
+     */
+    public OSMReaderConfig setStoreOSMWayIds(boolean storeOSMWayIds) {
+        this.storeOSMWayIds = storeOSMWayIds;
+        return this;
+    }
+
+    public String getNodeIdMap() {
+        return nodeIdMap;
+    }
+
+    /**
+     * Sets how the OSM node ids are mapped to internal ids during the import: 'btree' keeps them in a tree on the heap,
+     * 'ram' and 'mmap' use a more compact map that is stored in memory or in a memory mapped file. The compact map
+     * needs a lot less memory for large imports like the planet file.
+     */
+    public OSMReaderConfig setNodeIdMap(String nodeIdMap) {
+        if (!nodeIdMap.equals("btree") && !nodeIdMap.equals("ram") && !nodeIdMap.equals("mmap"))
+            throw new IllegalArgumentException("Unknown node id map: " + nodeIdMap + ", use btree, ram or mmap");
+        this.nodeIdMap = nodeIdMap;
+        return this;
+    }
 }
@@ -32,10 +32,12 @@ import com.graphhopper.routing.lm.LandmarkStorage;
 import com.graphhopper.routing.querygraph.QueryGraph;
 import com.graphhopper.routing.util.*;
 import com.graphhopper.routing.weighting.BlockAreaWeighting;
+import com.graphhopper.routing.weighting.PrecomputedWeighting;
 import com.graphhopper.routing.weighting.Weighting;
 import com.graphhopper.routing.weighting.custom.CustomProfile;
 import com.graphhopper.routing.weighting.custom.FindMinMax;
 import com.graphhopper.storage.BaseGraph;
+import com.graphhopper.storage.EdgeWeightStorage;
 import com.graphhopper.storage.Graph;
 import com.graphhopper.storage.GraphEdgeIdFinder;
 import com.graphhopper.storage.RoutingCHGraph;
@@ -70,6 +72,8 @@ public class Router {
     private final Map<String, LandmarkStorage> landmarks;
     private final boolean chEnabled;
     private final boolean lmEnabled;
+    private BlockAreaCache blockAreaCache;
+    private Map<String, EdgeWeightStorage> edgeWeights = Collections.emptyMap();
 
     public Router(BaseGraph graph, EncodingManager encodingManager, LocationIndex locationIndex,
                   Map<String, Profile> profilesByName, PathDetailsBuilderFactory pathDetailsBuilderFactory,
@@ -96,6 +100,22 @@ public class Router {
         }
     }
 
+    /**
+     * @param blockAreaCache the cache used to resolve the block_area parameter or null to resolve it for every request
+     */
+    public Router setBlockAreaCache(BlockAreaCache blockAreaCache) {
+        this.blockAreaCache = blockAreaCache;
+        return this;
+    }
+
+    /**
+     * @param edgeWeights the precomputed edge weights per profile, they are used for requests without custom model
+     */
+    public Router setEdgeWeights(Map<String, EdgeWeightStorage> edgeWeights) {
+        this.edgeWeights = edgeWeights;
+        return this;
+    }
+
     public GHResponse route(GHRequest request) {
         try {
             checkNoLegacyParameters(request);
@@ -188,9 +208,9 @@ public class Router {
         if (chEnabled && !disableCH) {
             return new CHSolver(request, profilesByName, routerConfig, encodingManager, chGraphs);
         } else if (lmEnabled && !disableLM) {
-            return new LMSolver(request, profilesByName, routerConfig, encodingManager, weightingFactory, graph, locationIndex, landmarks);
+            return new LMSolver(request, profilesByName, routerConfig, encodingManager, weightingFactory, graph, locationIndex, blockAreaCache, edgeWeights, landmarks);
         } else {
-            return new FlexSolver(request, profilesByName, routerConfig, encodingManager, weightingFactory, graph, locationIndex);
+            return new FlexSolver(request, profilesByName, routerConfig, encodingManager, weightingFactory, graph, locationIndex, blockAreaCache, edgeWeights);
         }
     }
 
@@ -472,14 +492,19 @@ public class Router {
         private final WeightingFactory weightingFactory;
         private final BaseGraph baseGraph;
         private final LocationIndex locationIndex;
+        private final BlockAreaCache blockAreaCache;
+        private final Map<String, EdgeWeightStorage> edgeWeights;
 
         FlexSolver(GHRequest request, Map<String, Profile> profilesByName, RouterConfig routerConfig,
-                   EncodedValueLookup lookup, WeightingFactory weightingFactory, BaseGraph graph, LocationIndex locationIndex) {
+                   EncodedValueLookup lookup, WeightingFactory weightingFactory, BaseGraph graph, LocationIndex locationIndex,
+                   BlockAreaCache blockAreaCache, Map<String, EdgeWeightStorage> edgeWeights) {
             super(request, profilesByName, routerConfig, lookup);
             this.routerConfig = routerConfig;
             this.weightingFactory = weightingFactory;
             this.baseGraph = graph;
             this.locationIndex = locationIndex;
+            this.blockAreaCache = blockAreaCache;
+            this.edgeWeights = edgeWeights;
         }
 
         @Override
@@ -493,9 +518,15 @@ public class Router {
             PMap requestHints = new PMap(request.getHints());
             requestHints.putObject(CustomModel.KEY, request.getCustomModel());
             Weighting weighting = weightingFactory.createWeighting(profile, requestHints, false);
+            EdgeWeightStorage profileEdgeWeights = edgeWeights.get(profile.getName());
+            // the precomputed weights are only valid for the custom model of the profile
+            if (profileEdgeWeights != null && request.getCustomModel() == null)
+                weighting = new PrecomputedWeighting(weighting, profileEdgeWeights);
             if (requestHints.has(Parameters.Routing.BLOCK_AREA)) {
-                GraphEdgeIdFinder.BlockArea blockArea = GraphEdgeIdFinder.createBlockArea(baseGraph, locationIndex,
-                        request.getPoints(), requestHints, new FiniteWeightFilter(weighting));
+                // the cache is keyed by the profile, which is fine as block_area cannot be combined with a custom model
+                GraphEdgeIdFinder.BlockArea blockArea = blockAreaCache == null
+                        ? GraphEdgeIdFinder.createBlockArea(baseGraph, locationIndex, request.getPoints(), requestHints, new FiniteWeightFilter(weighting))
+                        : blockAreaCache.createBlockArea(profile.getName(), request.getPoints(), requestHints, new FiniteWeightFilter(weighting));
                 weighting = new BlockAreaWeighting(weighting, blockArea);
             }
             return weighting;
@@ -547,8 +578,9 @@ public class Router {
         private final Map<String, LandmarkStorage> landmarks;
 
         LMSolver(GHRequest request, Map<String, Profile> profilesByName, RouterConfig routerConfig, EncodedValueLookup lookup,
-                 WeightingFactory weightingFactory, BaseGraph graph, LocationIndex locationIndex, Map<String, LandmarkStorage> landmarks) {
-            super(request, profilesByName, routerConfig, lookup, weightingFactory, graph, locationIndex);
+                 WeightingFactory weightingFactory, BaseGraph graph, LocationIndex locationIndex, BlockAreaCache blockAreaCache,
+                 Map<String, EdgeWeightStorage> edgeWeights, Map<String, LandmarkStorage> landmarks) {
+            super(request, profilesByName, routerConfig, lookup, weightingFactory, graph, locationIndex, blockAreaCache, edgeWeights);
             this.landmarks = landmarks;
         }
 
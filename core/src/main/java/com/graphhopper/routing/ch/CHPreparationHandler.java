@@ -28,6 +28,7 @@ import org.slf4j.LoggerFactory;
 
 import java.util.*;
 import java.util.concurrent.Callable;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 import static com.graphhopper.util.Helper.createFormatter;
@@ -46,6 +47,8 @@ public class CHPreparationHandler {
     private final List<CHProfile> chProfiles = new ArrayList<>();
     private int preparationThreads;
     private PMap pMap = new PMap();
+    private Consumer<String> preparedCallback = name -> {
+    };
 
     public CHPreparationHandler() {
         setPreparationThreads(1);
@@ -96,6 +99,15 @@ public class CHPreparationHandler {
         this.preparationThreads = preparationThreads;
     }
 
+    /**
+     * Sets a callback that is called with the name of every CH preparation once it is finished and flushed. It is
+     * called from the preparation threads.
+     */
+    public CHPreparationHandler setPreparedCallback(Consumer<String> preparedCallback) {
+        this.preparedCallback = preparedCallback;
+        return this;
+    }
+
     public Map<String, RoutingCHGraph> load(BaseGraph graph, List<CHConfig> chConfigs) {
         Map<String, RoutingCHGraph> loaded = Collections.synchronizedMap(new LinkedHashMap<>());
         List<Callable<String>> callables = chConfigs.stream()
@@ -140,6 +152,7 @@ public class CHPreparationHandler {
                 if (closeEarly)
                     prepare.close();
                 properties.put(CH.PREPARE + "date." + name, createFormatter().format(new Date()));
+                preparedCallback.accept(name);
                 return name;
             });
         }
@@ -9,4 +9,6 @@ public interface BooleanEncodedValue extends EncodedValue {
     void setBool(boolean reverse, IntsRef ref, boolean value);
 
     boolean getBool(boolean reverse, IntsRef ref);
+
+    boolean getBool(boolean reverse, EdgeIntAccess access);
 }
@@ -21,6 +21,8 @@ public interface DecimalEncodedValue extends EncodedValue {
 
     double getDecimal(boolean reverse, IntsRef ref);
 
+    double getDecimal(boolean reverse, EdgeIntAccess access);
+
     /**
      * The maximum double value this EncodedValue accepts for setDecimal without throwing an exception.
      */
@@ -122,7 +122,15 @@ public final class DecimalEncodedValueImpl extends IntEncodedValueImpl implement
 
     @Override
     public double getDecimal(boolean reverse, IntsRef ref) {
-        int value = getInt(reverse, ref);
+        return toDecimal(getInt(reverse, ref));
+    }
+
+    @Override
+    public double getDecimal(boolean reverse, EdgeIntAccess access) {
+        return toDecimal(getInt(reverse, access));
+    }
+
+    private double toDecimal(int value) {
         if (useMaximumAsInfinity && value == maxStorableValue || defaultIsInfinity && value == 0)
             return Double.POSITIVE_INFINITY;
         return value * factor;
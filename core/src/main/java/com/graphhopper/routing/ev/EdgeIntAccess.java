@@ -0,0 +1,30 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing.ev;
+
+/**
+ * Read access to the ints in which the encoded values of a single edge are stored. Unlike an
+ * {@link com.graphhopper.storage.IntsRef} this allows reading an encoded value directly from the storage of the graph,
+ * without copying all ints of the edge first.
+ */
+public interface EdgeIntAccess {
+    /**
+     * @return the int at the specified index of the flags of the edge
+     */
+    int getInt(int index);
+}
@@ -76,4 +76,8 @@ public final class EnumEncodedValue<E extends Enum> extends IntEncodedValueImpl
         return arr[value];
     }
 
+    public final E getEnum(boolean reverse, EdgeIntAccess access) {
+        return arr[super.getInt(reverse, access)];
+    }
+
 }
@@ -16,6 +16,11 @@ public interface IntEncodedValue extends EncodedValue {
      */
     int getInt(boolean reverse, IntsRef ref);
 
+    /**
+     * Same as {@link #getInt(boolean, IntsRef)}, but reads only the int that holds this value via the specified access.
+     */
+    int getInt(boolean reverse, EdgeIntAccess access);
+
     /**
      * This method stores the specified integer value in the specified IntsRef.
      */
@@ -189,17 +189,27 @@ public class IntEncodedValueImpl implements IntEncodedValue {
 
     @Override
     public final int getInt(boolean reverse, IntsRef ref) {
-        int flags;
         // if we do not store both directions ignore reverse == true for convenient reading
-        if (storeTwoDirections && reverse) {
-            flags = ref.ints[bwdDataIndex + ref.offset];
-            return minStorableValue + (flags & bwdMask) >>> bwdShift;
-        } else {
-            flags = ref.ints[fwdDataIndex + ref.offset];
-            if (negateReverseDirection && reverse)
-                return -(minStorableValue + (flags & fwdMask) >>> fwdShift);
-            return minStorableValue + (flags & fwdMask) >>> fwdShift;
-        }
+        if (storeTwoDirections && reverse)
+            return decodeBwd(ref.ints[bwdDataIndex + ref.offset]);
+        return decodeFwd(reverse, ref.ints[fwdDataIndex + ref.offset]);
+    }
+
+    @Override
+    public final int getInt(boolean reverse, EdgeIntAccess access) {
+        if (storeTwoDirections && reverse)
+            return decodeBwd(access.getInt(bwdDataIndex));
+        return decodeFwd(reverse, access.getInt(fwdDataIndex));
+    }
+
+    private int decodeBwd(int flags) {
+        return minStorableValue + (flags & bwdMask) >>> bwdShift;
+    }
+
+    private int decodeFwd(boolean reverse, int flags) {
+        if (negateReverseDirection && reverse)
+            return -(minStorableValue + (flags & fwdMask) >>> fwdShift);
+        return minStorableValue + (flags & fwdMask) >>> fwdShift;
     }
 
     @Override
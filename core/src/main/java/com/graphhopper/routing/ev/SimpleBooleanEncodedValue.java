@@ -62,4 +62,9 @@ public final class SimpleBooleanEncodedValue extends IntEncodedValueImpl impleme
     public final boolean getBool(boolean reverse, IntsRef ref) {
         return getInt(reverse, ref) == 1;
     }
+
+    @Override
+    public final boolean getBool(boolean reverse, EdgeIntAccess access) {
+        return getInt(reverse, access) == 1;
+    }
 }
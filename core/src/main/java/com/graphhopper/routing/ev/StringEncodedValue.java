@@ -92,7 +92,14 @@ public final class StringEncodedValue extends IntEncodedValueImpl {
     }
 
     public final String getString(boolean reverse, IntsRef ref) {
-        int value = super.getInt(reverse, ref);
+        return indexToString(super.getInt(reverse, ref));
+    }
+
+    public final String getString(boolean reverse, EdgeIntAccess access) {
+        return indexToString(super.getInt(reverse, access));
+    }
+
+    private String indexToString(int value) {
         if (value == 0) {
             return null;
         }
@@ -41,6 +41,7 @@ import java.io.Reader;
 import java.net.URL;
 import java.util.*;
 import java.util.concurrent.Callable;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 import static com.graphhopper.util.Helper.*;
@@ -60,6 +61,8 @@ public class LMPreparationHandler {
     private int preparationThreads;
     private boolean logDetails = false;
     private AreaIndex<SplitArea> areaIndex;
+    private Consumer<String> preparedCallback = name -> {
+    };
 
     public LMPreparationHandler() {
         setPreparationThreads(1);
@@ -139,6 +142,15 @@ public class LMPreparationHandler {
         return lmProfiles;
     }
 
+    /**
+     * Sets a callback that is called with the name of every LM preparation once it is finished and flushed. It is
+     * called from the preparation threads.
+     */
+    public LMPreparationHandler setPreparedCallback(Consumer<String> preparedCallback) {
+        this.preparedCallback = preparedCallback;
+        return this;
+    }
+
     /**
      * Loads the landmark data for all given configs if available.
      *
@@ -188,6 +200,7 @@ public class LMPreparationHandler {
                     prepare.close();
                 LOGGER.info("LM {} finished {}", name, getMemInfo());
                 properties.put(Landmark.PREPARE + "date." + name, createFormatter().format(new Date()));
+                preparedCallback.accept(name);
                 return name;
             });
         }
@@ -0,0 +1,103 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing.weighting;
+
+import com.graphhopper.routing.util.AllEdgesIterator;
+import com.graphhopper.storage.BaseGraph;
+import com.graphhopper.storage.EdgeWeightStorage;
+import com.graphhopper.util.EdgeIteratorState;
+
+/**
+ * Reads the weights and times of the base graph edges from an {@link EdgeWeightStorage} instead of calculating them.
+ * Virtual edges and loops are passed to the wrapped weighting, as well as the turn costs. This is only correct if the
+ * wrapped weighting calculates the same edge weights as the weighting used for {@link #prepare}.
+ */
+public class PrecomputedWeighting extends AbstractAdjustedWeighting {
+    private final EdgeWeightStorage storage;
+    private final int baseEdges;
+
+    public PrecomputedWeighting(Weighting superWeighting, EdgeWeightStorage storage) {
+        super(superWeighting);
+        this.storage = storage;
+        this.baseEdges = storage.getEdges();
+    }
+
+    /**
+     * Calculates the weights and times of all edges of the specified graph with the specified weighting.
+     */
+    public static void prepare(BaseGraph graph, Weighting weighting, EdgeWeightStorage storage) {
+        if (storage.getEdges() != graph.getEdges())
+            throw new IllegalArgumentException("The storage was created for " + storage.getEdges() + " edges, but the graph has " + graph.getEdges());
+        AllEdgesIterator iter = graph.getAllEdges();
+        while (iter.next()) {
+            storage.set(iter.getEdge(), false, weighting.calcEdgeWeight(iter, false), calcMillis(weighting, iter, false));
+            storage.set(iter.getEdge(), true, weighting.calcEdgeWeight(iter, true), calcMillis(weighting, iter, true));
+        }
+    }
+
+    private static long calcMillis(Weighting weighting, EdgeIteratorState edge, boolean reverse) {
+        try {
+            return weighting.calcEdgeMillis(edge, reverse);
+        } catch (IllegalArgumentException | IllegalStateException ex) {
+            // some weightings do not allow to calculate the time of inaccessible edges, we calculate it on demand then
+            return EdgeWeightStorage.NO_MILLIS;
+        }
+    }
+
+    @Override
+    public boolean edgeHasNoAccess(EdgeIteratorState edgeState, boolean reverse) {
+        if (isNotStored(edgeState))
+            return superWeighting.edgeHasNoAccess(edgeState, reverse);
+        // edges without access have an infinite weight, and we are allowed to return true for all such edges
+        return Double.isInfinite(storage.getWeight(edgeState.getEdge(), isStorageReverse(edgeState, reverse)));
+    }
+
+    @Override
+    public double calcEdgeWeight(EdgeIteratorState edgeState, boolean reverse) {
+        if (isNotStored(edgeState))
+            return superWeighting.calcEdgeWeight(edgeState, reverse);
+        return storage.getWeight(edgeState.getEdge(), isStorageReverse(edgeState, reverse));
+    }
+
+    @Override
+    public long calcEdgeMillis(EdgeIteratorState edgeState, boolean reverse) {
+        if (isNotStored(edgeState))
+            return superWeighting.calcEdgeMillis(edgeState, reverse);
+        int millis = storage.getMillis(edgeState.getEdge(), isStorageReverse(edgeState, reverse));
+        return millis == EdgeWeightStorage.NO_MILLIS ? superWeighting.calcEdgeMillis(edgeState, reverse) : millis;
+    }
+
+    private boolean isNotStored(EdgeIteratorState edgeState) {
+        // the weights of loops depend on the state of the edge, so we do not use the stored weights for them
+        return edgeState.getEdge() >= baseEdges || edgeState.getBaseNode() == edgeState.getAdjNode();
+    }
+
+    private static boolean isStorageReverse(EdgeIteratorState edgeState, boolean reverse) {
+        return reverse != edgeState.get(EdgeIteratorState.REVERSE_STATE);
+    }
+
+    @Override
+    public String getName() {
+        return superWeighting.getName();
+    }
+
+    @Override
+    public String toString() {
+        return superWeighting.toString();
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing.weighting.custom;
+
+import com.carrotsearch.hppc.cursors.IntCursor;
+import com.graphhopper.coll.GHBitSet;
+import com.graphhopper.coll.GHBitSetImpl;
+import com.graphhopper.coll.GHIntHashSet;
+import com.graphhopper.coll.GHTBitSet;
+import com.graphhopper.storage.BaseGraph;
+import com.graphhopper.storage.index.LocationIndex;
+import com.graphhopper.util.shapes.BBox;
+import com.graphhopper.util.shapes.Polygon;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.Polygonal;
+import org.locationtech.jts.geom.prep.PreparedPolygon;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Finds the edges of the base graph that intersect the areas of custom models. The edges of an area are determined
+ * once via the location index and kept in an LRU cache, so requests that use the same areas (e.g. the areas of a
+ * profile) can check the membership of an edge in O(1) instead of intersecting its geometry with the area.
+ */
+public class AreaEdgeCache {
+    private final BaseGraph graph;
+    private final LocationIndex locationIndex;
+    private final Map<Geometry, GHBitSet> cache;
+
+    /**
+     * @param maxAreas the maximum number of areas for which the edges are cached
+     */
+    public AreaEdgeCache(BaseGraph graph, LocationIndex locationIndex, int maxAreas) {
+        if (maxAreas < 1)
+            throw new IllegalArgumentException("maximum number of areas must be positive but was " + maxAreas);
+        this.graph = graph;
+        this.locationIndex = locationIndex;
+        // use accessOrder==true to remove the oldest accessed entry, not the oldest inserted
+        this.cache = Collections.synchronizedMap(new LinkedHashMap<Geometry, GHBitSet>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Geometry, GHBitSet> eldest) {
+                return size() > maxAreas;
+            }
+        });
+    }
+
+    /**
+     * @return the ids of the base graph edges that intersect the specified area
+     */
+    GHBitSet getEdges(Geometry area) {
+        GHBitSet edges = cache.get(area);
+        if (edges == null) {
+            // we do not lock during the calculation, so the same area might be calculated twice in rare cases
+            edges = findEdges(area);
+            cache.put(area, edges);
+        }
+        return edges;
+    }
+
+    int getBaseEdges() {
+        return graph.getEdges();
+    }
+
+    public int size() {
+        return cache.size();
+    }
+
+    private GHBitSet findEdges(Geometry area) {
+        Polygon polygon = new Polygon(new PreparedPolygon((Polygonal) area));
+        GHIntHashSet candidates = new GHIntHashSet();
+        locationIndex.query(BBox.fromEnvelope(area.getEnvelopeInternal()), candidates::add);
+        GHIntHashSet edges = new GHIntHashSet(candidates.size());
+        for (IntCursor edge : candidates) {
+            if (CustomWeightingHelper.in(polygon, graph.getEdgeIteratorState(edge.value, Integer.MIN_VALUE)))
+                edges.add(edge.value);
+        }
+        // a hash set needs roughly 64 bits per entry, so we use a dense bitset if the area contains many edges
+        if (edges.size() > graph.getEdges() / 64) {
+            GHBitSet bitSet = new GHBitSetImpl(graph.getEdges());
+            for (IntCursor edge : edges) {
+                bitSet.add(edge.value);
+            }
+            return bitSet;
+        }
+        return new GHTBitSet(edges);
+    }
+}
@@ -0,0 +1,59 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing.weighting.custom;
+
+import com.graphhopper.coll.GHBitSet;
+import com.graphhopper.util.EdgeIteratorState;
+import com.graphhopper.util.shapes.Polygon;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.Polygonal;
+import org.locationtech.jts.geom.prep.PreparedPolygon;
+
+/**
+ * An area of a custom model that is used to evaluate the in_area conditions of one weighting. For edges of the base
+ * graph we look up the precomputed edges of the area, virtual edges (and all edges if no {@link AreaEdgeCache} is
+ * available) are intersected with the polygon.
+ */
+public class AreaEdges {
+    private final Polygon polygon;
+    // null if the edges of the area are not known
+    private final GHBitSet edges;
+    private final int baseEdges;
+
+    private AreaEdges(Polygon polygon, GHBitSet edges, int baseEdges) {
+        this.polygon = polygon;
+        this.edges = edges;
+        this.baseEdges = baseEdges;
+    }
+
+    /**
+     * @param cache can be null
+     */
+    public static AreaEdges create(Geometry area, AreaEdgeCache cache) {
+        Polygon polygon = new Polygon(new PreparedPolygon((Polygonal) area));
+        if (cache == null)
+            return new AreaEdges(polygon, null, 0);
+        return new AreaEdges(polygon, cache.getEdges(area), cache.getBaseEdges());
+    }
+
+    public boolean contains(EdgeIteratorState edge) {
+        if (edges != null && edge.getEdge() < baseEdges)
+            return edges.contains(edge.getEdge());
+        return CustomWeightingHelper.in(polygon, edge);
+    }
+}
@@ -0,0 +1,282 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing.weighting.custom;
+
+import com.graphhopper.json.Statement;
+import com.graphhopper.util.CustomModel;
+import com.graphhopper.util.JsonFeature;
+import org.locationtech.jts.geom.Polygonal;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Caches the classes that are compiled from custom models. Lookups do not lock: the entries are stored in a
+ * ConcurrentHashMap and every entry holds the compilation as a FutureTask, so that a class is compiled at most once per
+ * key even if many threads request the same custom model at the same time. Threads with other keys are not blocked
+ * while a class is compiled. If the cache grows beyond its maximum size the least recently used entries are removed
+ * (approximate LRU): one thread removes the oldest tenth of the entries at once, so the entries only need to be sorted
+ * every now and then.
+ */
+public class CustomModelClassCache {
+    private final int maxSize;
+    private final ConcurrentHashMap<Key, Entry> entries = new ConcurrentHashMap<>();
+    private final ReentrantLock evictionLock = new ReentrantLock();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * @param maxSize the maximum number of classes, 0 disables the cache
+     */
+    public CustomModelClassCache(int maxSize) {
+        if (maxSize < 0)
+            throw new IllegalArgumentException("maximum size must not be negative but was " + maxSize);
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * @return the cached class for the given key or the class created by the compiler, which is called at most once
+     * per key. If the compiler fails its exception is thrown and nothing is cached.
+     */
+    Class<?> get(Key key, Supplier<Class<?>> compiler) {
+        if (maxSize == 0) {
+            misses.increment();
+            return compiler.get();
+        }
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            Entry newEntry = new Entry(new FutureTask<>(compiler::get));
+            entry = entries.putIfAbsent(key, newEntry);
+            if (entry == null) {
+                misses.increment();
+                entry = newEntry;
+                entry.task.run();
+                evictIfNecessary();
+            } else {
+                hits.increment();
+            }
+        } else {
+            hits.increment();
+        }
+        entry.lastAccess = System.nanoTime();
+        try {
+            return entry.task.get();
+        } catch (ExecutionException ex) {
+            entries.remove(key, entry);
+            if (ex.getCause() instanceof RuntimeException)
+                throw (RuntimeException) ex.getCause();
+            throw new IllegalStateException(ex.getCause());
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the compilation of the custom model", ex);
+        }
+    }
+
+    /**
+     * @return the cached class for the given key or null if it is not cached or still being compiled. This does not
+     * count as hit or miss.
+     */
+    Class<?> getIfPresent(Key key) {
+        Entry entry = entries.get(key);
+        if (entry == null)
+            return null;
+        Class<?> clazz = entry.getIfCompiled();
+        if (clazz != null)
+            entry.lastAccess = System.nanoTime();
+        return clazz;
+    }
+
+    /**
+     * Moves the compiled classes of this cache to the given cache, where the least recently used ones are evicted if
+     * it grows beyond its maximum size.
+     */
+    void moveTo(CustomModelClassCache target) {
+        for (Map.Entry<Key, Entry> e : entries.entrySet()) {
+            if (entries.remove(e.getKey(), e.getValue()) && target.maxSize > 0 && e.getValue().getIfCompiled() != null)
+                target.entries.putIfAbsent(e.getKey(), e.getValue());
+        }
+        target.evictIfNecessary();
+    }
+
+    private void evictIfNecessary() {
+        if (entries.size() <= maxSize || !evictionLock.tryLock())
+            return;
+        try {
+            List<Map.Entry<Key, Entry>> list = new ArrayList<>(entries.entrySet());
+            int remove = list.size() - (maxSize - maxSize / 10);
+            if (remove <= 0)
+                return;
+            list.sort(Comparator.comparingLong(e -> e.getValue().lastAccess));
+            for (int i = 0; i < remove; i++) {
+                entries.remove(list.get(i).getKey(), list.get(i).getValue());
+            }
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public void clear() {
+        entries.clear();
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * @return the fraction of lookups that did not compile a new class, or 0 if there was no lookup yet
+     */
+    public double getHitRate() {
+        long hits = getHits();
+        long requests = hits + getMisses();
+        return requests == 0 ? 0 : (double) hits / requests;
+    }
+
+    private static class Entry {
+        final FutureTask<Class<?>> task;
+        volatile long lastAccess = System.nanoTime();
+
+        Entry(FutureTask<Class<?>> task) {
+            this.task = task;
+        }
+
+        /**
+         * @return the class or null if the compilation did not finish or failed
+         */
+        Class<?> getIfCompiled() {
+            if (!task.isDone())
+                return null;
+            try {
+                return task.get();
+            } catch (ExecutionException | InterruptedException ex) {
+                return null;
+            }
+        }
+    }
+
+    /**
+     * The key contains only the parts of a custom model that end up in the compiled class: the speed and priority
+     * statements and the ids of the areas, but not their geometry which is passed to the class at runtime. Comparing
+     * these parts is much cheaper than creating a string representation of the whole model, which includes the
+     * coordinates of all areas. We copy the statements because a CustomModel is mutable.
+     */
+    static final class Key {
+        // if the same custom model is used with a different base profile we cannot use the cached version
+        private final String avgSpeedEncName;
+        private final double globalMaxSpeed;
+        private final String priorityEncName;
+        private final double globalMaxPriority;
+        private final List<Statement> speed;
+        private final List<Statement> priority;
+        // the compilation checks the geometry type, bbox and properties of the areas
+        private final Map<String, Integer> areaTypes;
+        private final int hashCode;
+
+        private Key(String avgSpeedEncName, double globalMaxSpeed, String priorityEncName, double globalMaxPriority,
+                    List<Statement> speed, List<Statement> priority, Map<String, Integer> areaTypes) {
+            this.avgSpeedEncName = avgSpeedEncName;
+            this.globalMaxSpeed = globalMaxSpeed;
+            this.priorityEncName = priorityEncName;
+            this.globalMaxPriority = globalMaxPriority;
+            this.speed = speed;
+            this.priority = priority;
+            this.areaTypes = areaTypes;
+            this.hashCode = Objects.hash(avgSpeedEncName, globalMaxSpeed, priorityEncName, globalMaxPriority, speed, priority, areaTypes);
+        }
+
+        /**
+         * @param priorityEncName can be null
+         */
+        static Key create(CustomModel customModel, String avgSpeedEncName, double globalMaxSpeed,
+                          String priorityEncName, double globalMaxPriority) {
+            int length = length(customModel.getSpeed()) + length(customModel.getPriority());
+            if (length > 100_000) throw new IllegalArgumentException("Custom Model too big: " + length);
+
+            Map<String, Integer> areaTypes = new HashMap<>(customModel.getAreas().size());
+            for (Map.Entry<String, JsonFeature> area : customModel.getAreas().entrySet()) {
+                areaTypes.put(area.getKey(), getAreaType(area.getValue()));
+            }
+            return new Key(avgSpeedEncName, globalMaxSpeed, priorityEncName, globalMaxPriority,
+                    new ArrayList<>(customModel.getSpeed()), new ArrayList<>(customModel.getPriority()), areaTypes);
+        }
+
+        private static int length(List<Statement> statements) {
+            int length = 0;
+            for (Statement statement : statements) {
+                length += statement.getKeyword().getName().length() + statement.getOperation().getName().length() + 16;
+                if (statement.getCondition() != null)
+                    length += statement.getCondition().length();
+                if (statement.getValue() != null)
+                    length += statement.getValue().length();
+            }
+            return length;
+        }
+
+        private static int getAreaType(JsonFeature feature) {
+            if (feature == null || feature.getGeometry() == null)
+                return 0;
+            if (!(feature.getGeometry() instanceof Polygonal))
+                return 1;
+            if (feature.getProperties() != null && !feature.getProperties().isEmpty() || feature.getBBox() != null)
+                return 2;
+            return 3;
+        }
+
+        /**
+         * @return a string that is equal for equal keys, also in another JVM
+         */
+        String toCanonicalString() {
+            return "speed:" + avgSpeedEncName + ",global_max_speed:" + globalMaxSpeed
+                    + ",priority:" + priorityEncName + ",global_max_priority:" + globalMaxPriority
+                    + ",speed_statements:" + speed + ",priority_statements:" + priority + ",areas:" + new TreeMap<>(areaTypes);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Key key = (Key) o;
+            return hashCode == key.hashCode
+                    && Double.compare(globalMaxSpeed, key.globalMaxSpeed) == 0
+                    && Double.compare(globalMaxPriority, key.globalMaxPriority) == 0
+                    && avgSpeedEncName.equals(key.avgSpeedEncName)
+                    && Objects.equals(priorityEncName, key.priorityEncName)
+                    && speed.equals(key.speed)
+                    && priority.equals(key.priority)
+                    && areaTypes.equals(key.areaTypes);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+}
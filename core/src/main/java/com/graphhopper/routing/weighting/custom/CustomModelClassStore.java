@@ -0,0 +1,231 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing.weighting.custom;
+
+import com.graphhopper.routing.ev.EncodedValue;
+import com.graphhopper.routing.ev.EncodedValueLookup;
+import com.graphhopper.routing.ev.EncodedValueSerializer;
+import com.graphhopper.util.Constants;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Stores the bytecode of the classes compiled from custom models on disk, so that they do not need to be compiled
+ * again after a restart. Every GraphHopper version gets its own sub directory. The files are named after a hash of the
+ * custom model key and the layout of the encoded values. The full key is stored in the file as well and compared
+ * before a class is used, so a hash collision cannot lead to a wrong class. Only use a directory that is not writable
+ * for others, as the classes are loaded without further checks.
+ */
+public class CustomModelClassStore {
+    private static final Logger logger = LoggerFactory.getLogger(CustomModelClassStore.class);
+    private static final int FORMAT_VERSION = 2;
+    private static final String SUFFIX = ".bytecode";
+    private final File dir;
+    // classes that were loaded by preload but not yet requested
+    private final Map<String, LoadedClass> preloaded = new ConcurrentHashMap<>();
+
+    public CustomModelClassStore(File storeDir) {
+        this.dir = new File(storeDir, createVersion());
+    }
+
+    static String createVersion() {
+        String version = Constants.VERSION + (Constants.SNAPSHOT ? "-SNAPSHOT" : "");
+        if (Constants.GIT_INFO != null)
+            version += "-" + Constants.GIT_INFO.getCommitHash();
+        return version.replaceAll("[^a-zA-Z0-9._-]", "_");
+    }
+
+    /**
+     * @return the full key of the compiled class, which depends on the custom model key and the encoded values
+     */
+    static String createKey(CustomModelClassCache.Key key, EncodedValueLookup lookup) {
+        StringBuilder sb = new StringBuilder();
+        for (EncodedValue encodedValue : lookup.getEncodedValues()) {
+            sb.append(EncodedValueSerializer.serializeEncodedValue(encodedValue)).append('\n');
+        }
+        return sb.append(key.toCanonicalString()).toString();
+    }
+
+    /**
+     * @return the class for the specified key or null if it was not stored or cannot be loaded
+     */
+    Class<?> load(String key) {
+        String id = createId(key);
+        LoadedClass loaded = preloaded.remove(id);
+        if (loaded != null && loaded.key.equals(key))
+            return loaded.clazz;
+
+        File file = new File(dir, id + SUFFIX);
+        if (!file.exists())
+            return null;
+        try {
+            loaded = read(file);
+            if (!loaded.key.equals(key))
+                return null;
+            // the modification time tells preload which classes were used recently
+            file.setLastModified(System.currentTimeMillis());
+            return loaded.clazz;
+        } catch (IOException | LinkageError | ClassNotFoundException ex) {
+            logger.warn("Cannot load custom model class from " + file + ", removing it", ex);
+            file.delete();
+            return null;
+        }
+    }
+
+    /**
+     * Writes the bytecode of a compiled class. Errors are only logged as the class can still be used.
+     *
+     * @param className the name of the class created for the custom model
+     * @param bytecodes the bytecode of this class and of all its nested classes
+     */
+    void store(String key, String className, Map<String, byte[]> bytecodes) {
+        File file = new File(dir, createId(key) + SUFFIX);
+        try {
+            Files.createDirectories(dir.toPath());
+            // write into a temporary file first to make sure concurrent readers never see a partial file
+            File tmpFile = File.createTempFile("custom_model", ".tmp", dir);
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile)))) {
+                out.writeInt(FORMAT_VERSION);
+                writeString(out, key);
+                out.writeUTF(className);
+                out.writeInt(bytecodes.size());
+                for (Map.Entry<String, byte[]> entry : bytecodes.entrySet()) {
+                    out.writeUTF(entry.getKey());
+                    out.writeInt(entry.getValue().length);
+                    out.write(entry.getValue());
+                }
+            }
+            Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException ex) {
+            logger.warn("Cannot store custom model class in " + file, ex);
+        }
+    }
+
+    /**
+     * Loads the classes of the most recently used custom models, so that the first requests after a restart do not
+     * need to read them from disk.
+     *
+     * @return the number of loaded classes
+     */
+    public int preload(int count) {
+        File[] files = dir.listFiles((d, name) -> name.endsWith(SUFFIX));
+        if (files == null || count <= 0)
+            return 0;
+        Arrays.sort(files, Comparator.comparingLong(File::lastModified).reversed());
+        int loaded = 0;
+        for (int i = 0; i < files.length && loaded < count; i++) {
+            try {
+                String name = files[i].getName();
+                preloaded.put(name.substring(0, name.length() - SUFFIX.length()), read(files[i]));
+                loaded++;
+            } catch (IOException | LinkageError | ClassNotFoundException ex) {
+                logger.warn("Cannot preload custom model class from " + files[i] + ", removing it", ex);
+                files[i].delete();
+            }
+        }
+        logger.info("preloaded " + loaded + " custom model classes from " + dir);
+        return loaded;
+    }
+
+    File getDir() {
+        return dir;
+    }
+
+    private static LoadedClass read(File file) throws IOException, ClassNotFoundException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            int formatVersion = in.readInt();
+            if (formatVersion != FORMAT_VERSION)
+                throw new IOException("Unexpected format version " + formatVersion);
+            String key = readString(in);
+            String className = in.readUTF();
+            int count = in.readInt();
+            Map<String, byte[]> bytecodes = new HashMap<>(count);
+            for (int i = 0; i < count; i++) {
+                String name = in.readUTF();
+                byte[] bytes = new byte[in.readInt()];
+                in.readFully(bytes);
+                bytecodes.put(name, bytes);
+            }
+            Class<?> clazz = new BytecodeClassLoader(CustomModelClassStore.class.getClassLoader(), bytecodes).loadClass(className);
+            if (!CustomWeightingHelper.class.isAssignableFrom(clazz))
+                throw new IOException("Unexpected class " + clazz);
+            return new LoadedClass(key, clazz);
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String str) throws IOException {
+        byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static String createId(String key) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(key.getBytes(StandardCharsets.UTF_8));
+            StringBuilder sb = new StringBuilder(hash.length * 2);
+            for (byte b : hash) {
+                sb.append(String.format("%02x", b));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private static class LoadedClass {
+        final String key;
+        final Class<?> clazz;
+
+        LoadedClass(String key, Class<?> clazz) {
+            this.key = key;
+            this.clazz = clazz;
+        }
+    }
+
+    private static class BytecodeClassLoader extends ClassLoader {
+        private final Map<String, byte[]> bytecodes;
+
+        BytecodeClassLoader(ClassLoader parent, Map<String, byte[]> bytecodes) {
+            super(parent);
+            this.bytecodes = bytecodes;
+        }
+
+        @Override
+        protected Class<?> findClass(String name) throws ClassNotFoundException {
+            byte[] bytes = bytecodes.get(name);
+            if (bytes == null)
+                throw new ClassNotFoundException(name);
+            return defineClass(name, bytes, 0, bytes.length);
+        }
+    }
+}
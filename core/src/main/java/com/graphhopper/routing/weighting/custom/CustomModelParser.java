@@ -24,8 +24,6 @@ import com.graphhopper.routing.util.EncodingManager;
 import com.graphhopper.routing.util.FlagEncoder;
 import com.graphhopper.routing.weighting.TurnCostProvider;
 import com.graphhopper.util.*;
-import com.graphhopper.util.shapes.BBox;
-import com.graphhopper.util.shapes.Polygon;
 import org.codehaus.commons.compiler.CompileException;
 import org.codehaus.commons.compiler.Location;
 import org.codehaus.commons.compiler.io.Readers;
@@ -33,12 +31,12 @@ import org.codehaus.janino.Scanner;
 import org.codehaus.janino.*;
 import org.codehaus.janino.util.DeepCopier;
 import org.locationtech.jts.geom.Polygonal;
-import org.locationtech.jts.geom.prep.PreparedPolygon;
 import org.slf4j.LoggerFactory;
 
 import java.io.*;
 import java.util.*;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
 
 public class CustomModelParser {
     private static final AtomicLong longVal = new AtomicLong(1);
@@ -49,27 +47,46 @@ public class CustomModelParser {
 
     // Without a cache the class creation takes 10-40ms which makes routingLM8 requests 20% slower on average.
     // CH requests and preparation is unaffected as cached weighting from preparation is used.
-    // Use accessOrder==true to remove oldest accessed entry, not oldest inserted.
     private static final int CACHE_SIZE = Integer.getInteger("graphhopper.custom_weighting.cache_size", 1000);
-    private static final Map<String, Class<?>> CACHE = Collections.synchronizedMap(
-            new LinkedHashMap<String, Class<?>>(CACHE_SIZE, 0.75f, true) {
-                protected boolean removeEldestEntry(Map.Entry eldest) {
-                    return size() > CACHE_SIZE;
-                }
-            });
+    private static final CustomModelClassCache CACHE = new CustomModelClassCache(CACHE_SIZE);
 
     // This internal cache ensures that the "internal" Weighting classes specified in the profiles, are never removed regardless
-    // of how frequent other Weightings are created and accessed. We only need to synchronize the get and put methods alone.
-    // E.g. we do not care for the race condition where two identical classes are requested and one of them is overwritten.
-    // TODO perf compare with ConcurrentHashMap, but I guess, if there is a difference at all, it is not big for small maps
-    private static final Map<String, Class<?>> INTERNAL_CACHE = Collections.synchronizedMap(new HashMap<>());
+    // of how frequent other Weightings are created and accessed.
+    private static final CustomModelClassCache INTERNAL_CACHE = new CustomModelClassCache(Integer.MAX_VALUE);
+
+    // Optionally the compiled classes are stored on disk, so they survive a restart.
+    private static volatile CustomModelClassStore classStore;
 
     private CustomModelParser() {
         // utility class
     }
 
+    /**
+     * @return the cache of the classes compiled for custom models that are not internal, e.g. to monitor its hit rate
+     */
+    public static CustomModelClassCache getCache() {
+        return CACHE;
+    }
+
+    /**
+     * Sets the disk store for the classes compiled from custom models, which is used if a class is not in the
+     * in-memory cache. Use null to disable it.
+     */
+    public static void setClassStore(CustomModelClassStore store) {
+        classStore = store;
+    }
+
     public static CustomWeighting createWeighting(FlagEncoder baseFlagEncoder, EncodedValueLookup lookup,
                                                   TurnCostProvider turnCostProvider, CustomModel customModel) {
+        return createWeighting(baseFlagEncoder, lookup, turnCostProvider, customModel, null);
+    }
+
+    /**
+     * @param areaEdgeCache the edges of the areas of the custom model, can be null
+     */
+    public static CustomWeighting createWeighting(FlagEncoder baseFlagEncoder, EncodedValueLookup lookup,
+                                                  TurnCostProvider turnCostProvider, CustomModel customModel,
+                                                  AreaEdgeCache areaEdgeCache) {
         if (customModel == null)
             throw new IllegalStateException("CustomModel cannot be null");
         DecimalEncodedValue avgSpeedEnc = lookup.getDecimalEncodedValue(EncodingManager.getKey(baseFlagEncoder.toString(), "average_speed"));
@@ -78,7 +95,7 @@ public class CustomModelParser {
 
         double maxSpeed = avgSpeedEnc.getMaxOrMaxStorableDecimal();
         CustomWeighting.Parameters parameters = createWeightingParameters(customModel, lookup,
-                avgSpeedEnc, maxSpeed, priorityEnc);
+                avgSpeedEnc, maxSpeed, priorityEnc, areaEdgeCache);
         return new CustomWeighting(baseFlagEncoder.getAccessEnc(), baseFlagEncoder.getAverageSpeedEnc(), turnCostProvider, parameters);
     }
 
@@ -91,35 +108,39 @@ public class CustomModelParser {
     static CustomWeighting.Parameters createWeightingParameters(CustomModel customModel, EncodedValueLookup lookup,
                                                                 DecimalEncodedValue avgSpeedEnc, double globalMaxSpeed,
                                                                 DecimalEncodedValue priorityEnc) {
+        return createWeightingParameters(customModel, lookup, avgSpeedEnc, globalMaxSpeed, priorityEnc, null);
+    }
+
+    /**
+     * @param areaEdgeCache can be null
+     */
+    static CustomWeighting.Parameters createWeightingParameters(CustomModel customModel, EncodedValueLookup lookup,
+                                                                DecimalEncodedValue avgSpeedEnc, double globalMaxSpeed,
+                                                                DecimalEncodedValue priorityEnc, AreaEdgeCache areaEdgeCache) {
 
         double globalMaxPriority = priorityEnc == null ? 1 : priorityEnc.getMaxStorableDecimal();
-        // if the same custom model is used with a different base profile we cannot use the cached version
-        String key = customModel + ",speed:" + avgSpeedEnc.getName() + ",global_max_speed:" + globalMaxSpeed
-                + (priorityEnc == null ? "" : "prio:" + priorityEnc.getName() + ",global_max_priority:" + globalMaxPriority);
-        if (key.length() > 100_000) throw new IllegalArgumentException("Custom Model too big: " + key.length());
-
-        Class<?> clazz = customModel.isInternal() ? INTERNAL_CACHE.get(key) : null;
-        if (CACHE_SIZE > 0 && clazz == null)
-            clazz = CACHE.get(key);
-        if (clazz == null) {
-            clazz = createClazz(customModel, lookup, globalMaxSpeed, globalMaxPriority);
-            if (customModel.isInternal()) {
-                INTERNAL_CACHE.put(key, clazz);
-                if (INTERNAL_CACHE.size() > 100) {
-                    CACHE.putAll(INTERNAL_CACHE);
-                    INTERNAL_CACHE.clear();
-                    LoggerFactory.getLogger(CustomModelParser.class).warn("Internal cache must stay small but was "
-                            + INTERNAL_CACHE.size() + ". Cleared it. Misuse of CustomModel::internal?");
-                }
-            } else if (CACHE_SIZE > 0) {
-                CACHE.put(key, clazz);
+        CustomModelClassCache.Key key = CustomModelClassCache.Key.create(customModel, avgSpeedEnc.getName(), globalMaxSpeed,
+                priorityEnc == null ? null : priorityEnc.getName(), globalMaxPriority);
+        Class<?> clazz;
+        if (customModel.isInternal()) {
+            clazz = INTERNAL_CACHE.get(key, () -> {
+                // the class might have been moved to the regular cache, see below
+                Class<?> cached = CACHE.getIfPresent(key);
+                return cached != null ? cached : loadOrCreateClazz(key, customModel, lookup, globalMaxSpeed, globalMaxPriority);
+            });
+            if (INTERNAL_CACHE.size() > 100) {
+                LoggerFactory.getLogger(CustomModelParser.class).warn("Internal cache must stay small but was "
+                        + INTERNAL_CACHE.size() + ". Moved it to the regular cache. Misuse of CustomModel::internal?");
+                INTERNAL_CACHE.moveTo(CACHE);
             }
+        } else {
+            clazz = CACHE.get(key, () -> loadOrCreateClazz(key, customModel, lookup, globalMaxSpeed, globalMaxPriority));
         }
 
         try {
             // The class does not need to be thread-safe as we create an instance per request
             CustomWeightingHelper prio = (CustomWeightingHelper) clazz.getDeclaredConstructor().newInstance();
-            prio.init(lookup, avgSpeedEnc, priorityEnc, customModel.getAreas());
+            prio.init(lookup, avgSpeedEnc, priorityEnc, customModel.getAreas(), areaEdgeCache);
             return new CustomWeighting.Parameters(prio::getSpeed, prio::getPriority, prio.getMaxSpeed(), prio.getMaxPriority(),
                     customModel.getDistanceInfluence(), customModel.getHeadingPenalty());
         } catch (ReflectiveOperationException ex) {
@@ -127,6 +148,19 @@ public class CustomModelParser {
         }
     }
 
+    private static Class<?> loadOrCreateClazz(CustomModelClassCache.Key key, CustomModel customModel, EncodedValueLookup lookup,
+                                              double globalMaxSpeed, double globalMaxPriority) {
+        CustomModelClassStore store = classStore;
+        if (store == null)
+            return createClazz(customModel, lookup, globalMaxSpeed, globalMaxPriority, null);
+        String storeKey = CustomModelClassStore.createKey(key, lookup);
+        Class<?> clazz = store.load(storeKey);
+        if (clazz == null)
+            clazz = createClazz(customModel, lookup, globalMaxSpeed, globalMaxPriority,
+                    (className, bytecodes) -> store.store(storeKey, className, bytecodes));
+        return clazz;
+    }
+
     /**
      * This method does the following:
      * <ul>
@@ -145,7 +179,8 @@ public class CustomModelParser {
      * </ul>
      */
     private static Class<?> createClazz(CustomModel customModel, EncodedValueLookup lookup,
-                                        double globalMaxSpeed, double globalMaxPriority) {
+                                        double globalMaxSpeed, double globalMaxPriority,
+                                        BiConsumer<String, Map<String, byte[]>> bytecodeConsumer) {
         try {
             HashSet<String> priorityVariables = new LinkedHashSet<>();
             // initial value of minimum has to be >0 so that multiple_by with a negative value leads to a negative value and not 0
@@ -175,7 +210,11 @@ public class CustomModelParser {
                     parseAbstractCompilationUnit();
             cu = injectStatements(priorityStatements, speedStatements, cu);
             SimpleCompiler sc = createCompiler(counter, cu);
-            return sc.getClassLoader().loadClass("com.graphhopper.routing.weighting.custom.JaninoCustomWeightingHelperSubclass" + counter);
+            String className = "com.graphhopper.routing.weighting.custom.JaninoCustomWeightingHelperSubclass" + counter;
+            Class<?> clazz = sc.getClassLoader().loadClass(className);
+            if (bytecodeConsumer != null)
+                bytecodeConsumer.accept(className, sc.getBytecodes());
+            return clazz;
         } catch (Exception ex) {
             String errString = "Cannot compile expression";
             throw new IllegalArgumentException(errString + ": " + ex.getMessage(), ex);
@@ -291,12 +330,7 @@ public class CustomModelParser {
                         + ") lookup.getEncodedValue(\"" + arg + "\", EncodedValue.class);\n");
             } else if (arg.startsWith(IN_AREA_PREFIX)) {
                 if (!includedAreaImports) {
-                    importSourceCode.append("import " + BBox.class.getName() + ";\n");
-                    importSourceCode.append("import " + GHUtility.class.getName() + ";\n");
-                    importSourceCode.append("import " + PreparedPolygon.class.getName() + ";\n");
-                    importSourceCode.append("import " + Polygonal.class.getName() + ";\n");
                     importSourceCode.append("import " + JsonFeature.class.getName() + ";\n");
-                    importSourceCode.append("import " + Polygon.class.getName() + ";\n");
                     includedAreaImports = true;
                 }
 
@@ -312,9 +346,9 @@ public class CustomModelParser {
                     throw new IllegalArgumentException("Currently only type=Polygon is supported for areas but was " + feature.getGeometry().getGeometryType());
                 if (feature.getProperties() != null && !feature.getProperties().isEmpty() || feature.getBBox() != null)
                     throw new IllegalArgumentException("Bounding box and properties of area " + id + " must be empty");
-                classSourceCode.append("protected " + Polygon.class.getSimpleName() + " " + arg + ";\n");
+                classSourceCode.append("protected " + AreaEdges.class.getSimpleName() + " " + arg + ";\n");
                 initSourceCode.append("JsonFeature feature_" + id + " = (JsonFeature) areas.get(\"" + id + "\");\n");
-                initSourceCode.append("this." + arg + " = new Polygon(new PreparedPolygon((Polygonal) feature_" + id + ".getGeometry()));\n");
+                initSourceCode.append("this." + arg + " = " + AreaEdges.class.getSimpleName() + ".create(feature_" + id + ".getGeometry(), areaEdgeCache);\n");
             } else {
                 if (!isValidVariableName(arg))
                     throw new IllegalArgumentException("Variable not supported: " + arg);
@@ -331,7 +365,8 @@ public class CustomModelParser {
                 + classSourceCode
                 + "   @Override\n"
                 + "   public void init(EncodedValueLookup lookup, " + DecimalEncodedValue.class.getName() + " avgSpeedEnc, "
-                + DecimalEncodedValue.class.getName() + " priorityEnc, Map<String, " + JsonFeature.class.getName() + "> areas) {\n"
+                + DecimalEncodedValue.class.getName() + " priorityEnc, Map<String, " + JsonFeature.class.getName() + "> areas, "
+                + AreaEdgeCache.class.getSimpleName() + " areaEdgeCache) {\n"
                 + initSourceCode
                 + "   }\n\n"
                 // we need these placeholder methods so that the hooks in DeepCopier are invoked
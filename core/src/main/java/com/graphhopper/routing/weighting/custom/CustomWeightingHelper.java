@@ -39,7 +39,11 @@ public class CustomWeightingHelper {
     protected CustomWeightingHelper() {
     }
 
-    public void init(EncodedValueLookup lookup, DecimalEncodedValue avgSpeedEnc, DecimalEncodedValue priorityEnc, Map<String, JsonFeature> areas) {
+    /**
+     * @param areaEdgeCache the edges of the areas, can be null
+     */
+    public void init(EncodedValueLookup lookup, DecimalEncodedValue avgSpeedEnc, DecimalEncodedValue priorityEnc,
+                     Map<String, JsonFeature> areas, AreaEdgeCache areaEdgeCache) {
         this.avg_speed_enc = avgSpeedEnc;
         this.priority_enc = priorityEnc;
     }
@@ -75,12 +79,16 @@ public class CustomWeightingHelper {
         return 1;
     }
 
+    public static boolean in(AreaEdges area, EdgeIteratorState edge) {
+        return area.contains(edge);
+    }
+
     public static boolean in(Polygon p, EdgeIteratorState edge) {
         BBox bbox = GHUtility.createBBox(edge);
         if (!p.getBounds().intersects(bbox))
             return false;
         if (p.isRectangle())
             return true;
-        return p.intersects(edge.fetchWayGeometry(FetchMode.ALL).makeImmutable()); // TODO PERF: cache bbox and edge wayGeometry for multiple area
+        return p.intersects(edge.fetchWayGeometry(FetchMode.ALL).makeImmutable());
     }
 }
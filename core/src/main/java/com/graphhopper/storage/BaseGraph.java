@@ -145,6 +145,9 @@ public class BaseGraph implements Graph, Closeable {
         if (isFrozen())
             throw new IllegalStateException("base graph already frozen");
         store.setFrozen(true);
+        // no turn costs are added to a frozen graph, so we can index them for faster lookups
+        if (supportsTurnCosts())
+            turnCostStorage.buildIndex();
     }
 
     public synchronized boolean isFrozen() {
@@ -244,6 +247,8 @@ public class BaseGraph implements Graph, Closeable {
 
         setInitialized();
         loadWayGeometryHeader();
+        if (supportsTurnCosts() && isFrozen())
+            turnCostStorage.buildIndex();
     }
 
     /**
@@ -641,7 +646,7 @@ public class BaseGraph implements Graph, Closeable {
         }
     }
 
-    static class EdgeIteratorStateImpl implements EdgeIteratorState {
+    static class EdgeIteratorStateImpl implements EdgeIteratorState, EdgeIntAccess {
         final BaseGraph baseGraph;
         final BaseGraphNodesAndEdges store;
         long edgePointer = -1;
@@ -736,6 +741,14 @@ public class BaseGraph implements Graph, Closeable {
             return edgeFlags;
         }
 
+        /**
+         * Reads a single int of the flags, so that reading an encoded value does not need to copy all flags.
+         */
+        @Override
+        public final int getInt(int index) {
+            return refreshFlags ? store.getFlagInt(edgePointer, index) : edgeFlags.ints[index];
+        }
+
         @Override
         public final EdgeIteratorState setFlags(IntsRef edgeFlags) {
             assert edgeId < store.getEdges() : "must be edge but was shortcut: " + edgeId + " >= " + store.getEdges() + ". Use setFlagsAndWeight";
@@ -746,7 +759,7 @@ public class BaseGraph implements Graph, Closeable {
 
         @Override
         public boolean get(BooleanEncodedValue property) {
-            return property.getBool(reverse, getFlags());
+            return property.getBool(reverse, this);
         }
 
         @Override
@@ -758,7 +771,7 @@ public class BaseGraph implements Graph, Closeable {
 
         @Override
         public boolean getReverse(BooleanEncodedValue property) {
-            return property.getBool(!reverse, getFlags());
+            return property.getBool(!reverse, this);
         }
 
         @Override
@@ -780,7 +793,7 @@ public class BaseGraph implements Graph, Closeable {
 
         @Override
         public int get(IntEncodedValue property) {
-            return property.getInt(reverse, getFlags());
+            return property.getInt(reverse, this);
         }
 
         @Override
@@ -792,7 +805,7 @@ public class BaseGraph implements Graph, Closeable {
 
         @Override
         public int getReverse(IntEncodedValue property) {
-            return property.getInt(!reverse, getFlags());
+            return property.getInt(!reverse, this);
         }
 
         @Override
@@ -814,7 +827,7 @@ public class BaseGraph implements Graph, Closeable {
 
         @Override
         public double get(DecimalEncodedValue property) {
-            return property.getDecimal(reverse, getFlags());
+            return property.getDecimal(reverse, this);
         }
 
         @Override
@@ -826,7 +839,7 @@ public class BaseGraph implements Graph, Closeable {
 
         @Override
         public double getReverse(DecimalEncodedValue property) {
-            return property.getDecimal(!reverse, getFlags());
+            return property.getDecimal(!reverse, this);
         }
 
         @Override
@@ -848,7 +861,7 @@ public class BaseGraph implements Graph, Closeable {
 
         @Override
         public <T extends Enum<?>> T get(EnumEncodedValue<T> property) {
-            return property.getEnum(reverse, getFlags());
+            return property.getEnum(reverse, this);
         }
 
         @Override
@@ -860,7 +873,7 @@ public class BaseGraph implements Graph, Closeable {
 
         @Override
         public <T extends Enum<?>> T getReverse(EnumEncodedValue<T> property) {
-            return property.getEnum(!reverse, getFlags());
+            return property.getEnum(!reverse, this);
         }
 
         @Override
@@ -882,7 +895,7 @@ public class BaseGraph implements Graph, Closeable {
 
         @Override
         public String get(StringEncodedValue property) {
-            return property.getString(reverse, getFlags());
+            return property.getString(reverse, this);
         }
 
         @Override
@@ -894,7 +907,7 @@ public class BaseGraph implements Graph, Closeable {
 
         @Override
         public String getReverse(StringEncodedValue property) {
-            return property.getString(!reverse, getFlags());
+            return property.getString(!reverse, this);
         }
 
         @Override
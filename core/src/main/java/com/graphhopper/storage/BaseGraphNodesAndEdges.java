@@ -246,6 +246,11 @@ class BaseGraphNodesAndEdges {
             edgeFlags.ints[i] = edges.getInt(edgePointer + E_FLAGS + i * 4);
     }
 
+    public int getFlagInt(long edgePointer, int index) {
+        assert index >= 0 && index < intsForFlags : "flag index " + index + " out of bounds [0," + intsForFlags + "[";
+        return edges.getInt(edgePointer + E_FLAGS + index * 4);
+    }
+
     public void writeFlags(long edgePointer, IntsRef edgeFlags) {
         int size = edgeFlags.ints.length;
         for (int i = 0; i < size; ++i)
@@ -51,6 +51,12 @@ public interface Directory {
      */
     void remove(String name);
 
+    /**
+     * Closes the specified object and removes it from the directory, but keeps its files. The object can be created
+     * and loaded again afterwards.
+     */
+    void close(String name);
+
     /**
      * @return the default type of a newly created DataAccess object
      */
@@ -0,0 +1,139 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.storage;
+
+import com.graphhopper.util.Constants;
+import com.graphhopper.util.GHUtility;
+
+/**
+ * DataAccess-based storage for the weights and travel times of the edges of the base graph for one profile. For every
+ * edge we store the weight and the time in milliseconds for both directions (relative to the storage direction of the
+ * edge) using the layout: FWD_WEIGHT | BWD_WEIGHT | FWD_MILLIS | BWD_MILLIS. The weights are stored as doubles, so they
+ * are identical to the weights calculated by the weighting. Times that do not fit into an int are stored as
+ * {@link #NO_MILLIS}.
+ *
+ * @see com.graphhopper.routing.weighting.PrecomputedWeighting
+ */
+public class EdgeWeightStorage {
+    public static final int NO_MILLIS = -1;
+    private static final int E_FWD_WEIGHT = 0;
+    private static final int E_BWD_WEIGHT = 8;
+    private static final int E_FWD_MILLIS = 16;
+    private static final int E_BWD_MILLIS = 20;
+    private static final int BYTES_PER_EDGE = 24;
+    private final Directory dir;
+    private final DataAccess weights;
+    private int edgeCount = -1;
+    private int profileVersion;
+
+    public EdgeWeightStorage(Directory dir, String profile) {
+        String name = "edge_weights_" + profile;
+        this.dir = dir;
+        this.weights = dir.create(name, dir.getDefaultType(name, true));
+    }
+
+    /**
+     * @param profileVersion the version of the profile the weights are calculated for, see
+     *                       {@link com.graphhopper.config.Profile#getVersion()}
+     */
+    public EdgeWeightStorage create(int edges, int profileVersion) {
+        if (edgeCount >= 0)
+            throw new IllegalStateException("EdgeWeightStorage can only be created once");
+        weights.create((long) edges * BYTES_PER_EDGE);
+        this.edgeCount = edges;
+        this.profileVersion = profileVersion;
+        return this;
+    }
+
+    public boolean loadExisting() {
+        if (!weights.loadExisting())
+            return false;
+        GHUtility.checkDAVersion(weights.getName(), Constants.VERSION_EDGE_WEIGHTS, weights.getHeader(0));
+        edgeCount = weights.getHeader(4);
+        profileVersion = weights.getHeader(8);
+        return true;
+    }
+
+    public void flush() {
+        weights.setHeader(0, Constants.VERSION_EDGE_WEIGHTS);
+        weights.setHeader(4, edgeCount);
+        weights.setHeader(8, profileVersion);
+        weights.flush();
+    }
+
+    public void close() {
+        weights.close();
+    }
+
+    /**
+     * Closes this storage and removes its files, e.g. because the weights are outdated.
+     */
+    public void remove() {
+        dir.remove(weights.getName());
+    }
+
+    public boolean isClosed() {
+        return weights.isClosed();
+    }
+
+    /**
+     * The number of edges of this storage.
+     */
+    public int getEdges() {
+        return edgeCount;
+    }
+
+    public int getProfileVersion() {
+        return profileVersion;
+    }
+
+    /**
+     * @param reverse true for the direction against the storage direction of the edge
+     */
+    public void set(int edge, boolean reverse, double weight, long millis) {
+        long pointer = toPointer(edge);
+        long bits = Double.doubleToRawLongBits(weight);
+        int weightPos = reverse ? E_BWD_WEIGHT : E_FWD_WEIGHT;
+        weights.setInt(pointer + weightPos, (int) bits);
+        weights.setInt(pointer + weightPos + 4, (int) (bits >>> 32));
+        weights.setInt(pointer + (reverse ? E_BWD_MILLIS : E_FWD_MILLIS),
+                millis < 0 || millis > Integer.MAX_VALUE ? NO_MILLIS : (int) millis);
+    }
+
+    public double getWeight(int edge, boolean reverse) {
+        long pos = toPointer(edge) + (reverse ? E_BWD_WEIGHT : E_FWD_WEIGHT);
+        long bits = (weights.getInt(pos) & 0xFFFF_FFFFL) | ((long) weights.getInt(pos + 4) << 32);
+        return Double.longBitsToDouble(bits);
+    }
+
+    /**
+     * @return the time in milliseconds or {@link #NO_MILLIS} if it was too large to be stored
+     */
+    public int getMillis(int edge, boolean reverse) {
+        return weights.getInt(toPointer(edge) + (reverse ? E_BWD_MILLIS : E_FWD_MILLIS));
+    }
+
+    public long getCapacity() {
+        return weights.getCapacity();
+    }
+
+    private long toPointer(int edge) {
+        assert edge >= 0 && edge < edgeCount : "edge not in bounds: [0, " + edgeCount + "[";
+        return (long) edge * BYTES_PER_EDGE;
+    }
+}
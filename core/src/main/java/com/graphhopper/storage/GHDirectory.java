@@ -176,6 +176,15 @@ public class GHDirectory implements Directory {
         removeBackingFile(old, name);
     }
 
+    @Override
+    public void close(String name) {
+        DataAccess old = map.remove(name);
+        if (old == null)
+            throw new IllegalStateException("Couldn't close DataAccess: " + name);
+
+        old.close();
+    }
+
     private void removeBackingFile(DataAccess da, String name) {
         if (da.getType().isStoring())
             removeDir(new File(location + name));
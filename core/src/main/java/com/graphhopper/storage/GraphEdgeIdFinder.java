@@ -96,11 +96,15 @@ public class GraphEdgeIdFinder {
         String blockAreaStr = hints.getString(Parameters.Routing.BLOCK_AREA, "");
         GraphEdgeIdFinder.BlockArea blockArea = new GraphEdgeIdFinder(graph, locationIndex).
                 parseBlockArea(blockAreaStr, edgeFilter, hints.getDouble(Parameters.Routing.BLOCK_AREA + ".edge_id_max_area", 1000 * 1000));
+        checkPointsNotBlocked(blockArea, points);
+        return blockArea;
+    }
+
+    public static void checkPointsNotBlocked(BlockArea blockArea, List<GHPoint> points) {
         for (GHPoint p : points) {
             if (blockArea.contains(p))
                 throw new IllegalArgumentException("Request with " + Parameters.Routing.BLOCK_AREA + " contained query point " + p + ". This is not allowed.");
         }
-        return blockArea;
     }
 
     /**
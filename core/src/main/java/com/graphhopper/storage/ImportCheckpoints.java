@@ -0,0 +1,170 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.storage;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.zip.CRC32;
+
+/**
+ * Records the finished stages of an import in the {@link StorableProperties}, so that an import that failed or was
+ * interrupted can be resumed from the last finished stage instead of starting again from the OSM file. For every stage
+ * we store the names of the files it wrote together with their CRC32 checksums, which are validated before the stored
+ * data is used for resuming. Only the files written by a stage are read to calculate its checksums, files of earlier
+ * stages are validated via the earlier stages. The stages are expected to flush their data before they are marked as
+ * finished.
+ */
+public class ImportCheckpoints {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ImportCheckpoints.class);
+    /**
+     * The graph was created from the OSM file.
+     */
+    public static final String IMPORT = "import";
+    /**
+     * The subnetworks were determined and the graph post-processing (e.g. elevation interpolation) was done.
+     */
+    public static final String SUBNETWORKS = "subnetworks";
+    public static final String LOCATION_INDEX = "location_index";
+    private static final String PREFIX = "checkpoint.";
+    private static final String COMPLETE = PREFIX + "complete";
+
+    private final StorableProperties properties;
+    private final String location;
+
+    /**
+     * @param location the folder of the stored files
+     */
+    public ImportCheckpoints(StorableProperties properties, String location) {
+        this.properties = properties;
+        this.location = location;
+    }
+
+    public static String chStage(String profile) {
+        return "ch." + profile;
+    }
+
+    public static String lmStage(String lmConfigName) {
+        return "lm." + lmConfigName;
+    }
+
+    /**
+     * @return true if at least the import stage was finished but not the whole import, i.e. the import can be resumed
+     */
+    public boolean isResumable() {
+        return isFinished(IMPORT) && !properties.get(COMPLETE).equals("true");
+    }
+
+    public boolean isFinished(String stage) {
+        return !properties.get(PREFIX + stage).isEmpty();
+    }
+
+    /**
+     * Marks the given stage as finished and flushes the properties. All files of this stage must be flushed already.
+     *
+     * @param files the names of the files written by this stage. files that do not exist are ignored. only these
+     *              files are read to calculate their checksums
+     */
+    public void finish(String stage, List<String> files) {
+        List<String> existing = files.stream().filter(f -> new File(location, f).isFile()).collect(Collectors.toList());
+        properties.put(PREFIX + stage, existing.stream().map(f -> f + ":" + checksum(f)).collect(Collectors.joining(",")));
+        properties.flush();
+        LOGGER.info("checkpoint {} finished, files: {}", stage, existing);
+    }
+
+    /**
+     * @param stages the stages in the order they were finished. if a file was written by several stages only the
+     *               checksum of the last stage is used
+     * @return true if all given stages were finished and their files still have the same checksums
+     */
+    public boolean isValid(String... stages) {
+        Map<String, String> checksums = new LinkedHashMap<>();
+        for (String stage : stages) {
+            if (!isFinished(stage))
+                return false;
+            for (String entry : properties.get(PREFIX + stage).split(",")) {
+                int index = entry.lastIndexOf(':');
+                if (index < 0)
+                    // no files were written
+                    continue;
+                checksums.put(entry.substring(0, index), entry.substring(index + 1));
+            }
+        }
+        for (Map.Entry<String, String> entry : checksums.entrySet()) {
+            if (!new File(location, entry.getKey()).isFile()) {
+                LOGGER.warn("file {} of checkpoints {} is missing", entry.getKey(), Arrays.toString(stages));
+                return false;
+            }
+            if (!entry.getValue().equals(checksum(entry.getKey()))) {
+                LOGGER.warn("checksum of file {} of checkpoints {} does not match", entry.getKey(), Arrays.toString(stages));
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Removes the given stage and flushes the properties, so that the stage is not used even if the import fails
+     * before the next flush.
+     */
+    public void remove(String stage) {
+        properties.remove(PREFIX + stage);
+        properties.flush();
+    }
+
+    /**
+     * Marks the whole import as finished, afterwards the checksums are no longer validated when the graph is loaded.
+     */
+    public void complete() {
+        properties.put(COMPLETE, "true");
+        properties.flush();
+    }
+
+    /**
+     * @return the finished stages
+     */
+    public List<String> getFinishedStages() {
+        return properties.getAll().keySet().stream()
+                .filter(k -> k.startsWith(PREFIX) && !k.equals(COMPLETE))
+                .map(k -> k.substring(PREFIX.length()))
+                .collect(Collectors.toList());
+    }
+
+    private String checksum(String file) {
+        CRC32 crc = new CRC32();
+        byte[] buffer = new byte[1 << 20];
+        try (InputStream in = new FileInputStream(new File(location, file))) {
+            int len;
+            while ((len = in.read(buffer)) > 0)
+                crc.update(buffer, 0, len);
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Cannot read " + file + " for checksum", ex);
+        }
+        return Long.toHexString(crc.getValue());
+    }
+}
@@ -38,6 +38,8 @@ public class StorableProperties {
 
     private final Map<String, String> map = new LinkedHashMap<>();
     private final DataAccess da;
+    // the number of bytes that might contain properties, the rest of the DataAccess contains only zeros
+    private int writtenBytes;
 
     public StorableProperties(Directory dir) {
         // reduce size
@@ -50,6 +52,7 @@ public class StorableProperties {
             return false;
 
         int len = (int) da.getCapacity();
+        writtenBytes = len;
         byte[] bytes = new byte[len];
         da.getBytes(0, bytes, len);
         try {
@@ -67,6 +70,11 @@ public class StorableProperties {
             // TODO at the moment the size is limited to da.segmentSize() !
             byte[] bytes = sw.toString().getBytes(UTF_CS);
             da.setBytes(0, bytes, bytes.length);
+            // the DataAccess cannot be truncated, so we overwrite the rest of the previous content, otherwise removed
+            // properties would be loaded again
+            if (writtenBytes > bytes.length)
+                da.setBytes(bytes.length, new byte[writtenBytes - bytes.length], writtenBytes - bytes.length);
+            writtenBytes = bytes.length;
             da.flush();
         } catch (IOException ex) {
             throw new RuntimeException(ex);
@@ -119,6 +127,7 @@ public class StorableProperties {
 
     public synchronized StorableProperties create(long size) {
         da.create(size);
+        writtenBytes = 0;
         return this;
     }
 
@@ -21,6 +21,8 @@ import com.graphhopper.routing.ev.DecimalEncodedValue;
 import com.graphhopper.routing.ev.TurnCost;
 import com.graphhopper.util.EdgeIterator;
 
+import java.util.Arrays;
+
 /**
  * A key/value store, where the unique keys are turn relations, and the values are IntRefs.
  * A turn relation is a triple (fromEdge, viaNode, toEdge),
@@ -30,6 +32,10 @@ import com.graphhopper.util.EdgeIterator;
  * <p>
  * In practice, the IntRefs are used to store generalized travel costs per turn relation per vehicle type.
  * In practice, we only store 0 or infinity. (Can turn, or cannot turn.)
+ * <p>
+ * The entries of a via node form a linked list, which has to be traversed for every lookup. Once all turn costs
+ * are added, {@link #buildIndex()} creates an in-memory hash table of all turn relations so that lookups need
+ * constant time. This happens automatically when the graph is frozen.
  *
  * @author Karl Hübner
  * @author Peter Karich
@@ -48,6 +54,8 @@ public class TurnCostStorage {
     private BaseGraph baseGraph;
     private DataAccess turnCosts;
     private int turnCostsCount;
+    // null if not built yet or if turn costs were added afterwards
+    private volatile Index index;
 
     public TurnCostStorage(BaseGraph baseGraph, DataAccess turnCosts) {
         this.baseGraph = baseGraph;
@@ -66,6 +74,7 @@ public class TurnCostStorage {
     }
 
     public void close() {
+        index = null;
         turnCosts.close();
     }
 
@@ -97,6 +106,8 @@ public class TurnCostStorage {
     }
 
     private void merge(IntsRef tcFlags, int fromEdge, int viaNode, int toEdge) {
+        // the index does not know about new entries
+        index = null;
         int newEntryIndex = turnCostsCount;
         ensureTurnCostIndex(newEntryIndex);
         boolean oldEntryFound = false;
@@ -174,6 +185,12 @@ public class TurnCostStorage {
     }
 
     private void readFlags(IntsRef tcFlags, int fromEdge, int viaNode, int toEdge) {
+        Index index = this.index;
+        if (index != null) {
+            int entry = index.find(fromEdge, viaNode, toEdge);
+            tcFlags.ints[0] = entry == NO_TURN_ENTRY ? EMPTY_FLAGS : turnCosts.getInt((long) entry * BYTES_PER_ENTRY + TC_FLAGS);
+            return;
+        }
         int turnCostIndex = baseGraph.getNodeAccess().getTurnCostIndex(viaNode);
         int i = 0;
         for (; i < 1000; i++) {
@@ -199,6 +216,27 @@ public class TurnCostStorage {
         tcFlags.ints[0] = EMPTY_FLAGS;
     }
 
+    /**
+     * Creates a hash table of all turn relations, which speeds up {@link #get} considerably for nodes with several
+     * turn cost entries. The table is not stored on disk, it takes 12 to 20 bytes per entry. Adding turn costs
+     * afterwards removes the table again.
+     */
+    public void buildIndex() {
+        Index newIndex = new Index(turnCostsCount);
+        for (int node = 0; node < baseGraph.getNodes(); node++) {
+            int entry = baseGraph.getNodeAccess().getTurnCostIndex(node);
+            while (entry != NO_TURN_ENTRY) {
+                newIndex.add(entry, node);
+                entry = turnCosts.getInt((long) entry * BYTES_PER_ENTRY + TC_NEXT);
+            }
+        }
+        index = newIndex;
+    }
+
+    boolean hasIndex() {
+        return index != null;
+    }
+
     private void ensureTurnCostIndex(int nodeIndex) {
         turnCosts.ensureCapacity(((long) nodeIndex + 4) * BYTES_PER_ENTRY);
     }
@@ -303,5 +341,56 @@ public class TurnCostStorage {
         }
     }
 
-}
+    /**
+     * An open addressing hash table with linear probing from (fromEdge, viaNode, toEdge) to the entry index. The via
+     * node is part of the key, because the same edge pair can be connected at both of its nodes.
+     */
+    private class Index {
+        private final int[] entries;
+        // the via node of every entry as the entries do not contain it
+        private final int[] viaNodes;
+        private final int mask;
+
+        Index(int size) {
+            // use at most half of the slots to keep the probe sequences short
+            int capacity = Integer.highestOneBit(Math.max(1, 2 * size - 1)) << 1;
+            entries = new int[capacity];
+            Arrays.fill(entries, NO_TURN_ENTRY);
+            viaNodes = new int[size];
+            mask = capacity - 1;
+        }
 
+        void add(int entry, int viaNode) {
+            viaNodes[entry] = viaNode;
+            long pointer = (long) entry * BYTES_PER_ENTRY;
+            int slot = hash(turnCosts.getInt(pointer + TC_FROM), viaNode, turnCosts.getInt(pointer + TC_TO)) & mask;
+            while (entries[slot] != NO_TURN_ENTRY) {
+                slot = (slot + 1) & mask;
+            }
+            entries[slot] = entry;
+        }
+
+        int find(int fromEdge, int viaNode, int toEdge) {
+            int slot = hash(fromEdge, viaNode, toEdge) & mask;
+            while (true) {
+                int entry = entries[slot];
+                if (entry == NO_TURN_ENTRY)
+                    return NO_TURN_ENTRY;
+                if (viaNodes[entry] == viaNode) {
+                    long pointer = (long) entry * BYTES_PER_ENTRY;
+                    if (fromEdge == turnCosts.getInt(pointer + TC_FROM) && toEdge == turnCosts.getInt(pointer + TC_TO))
+                        return entry;
+                }
+                slot = (slot + 1) & mask;
+            }
+        }
+    }
+
+    private static int hash(int fromEdge, int viaNode, int toEdge) {
+        int h = fromEdge * 0x9E3779B1 + viaNode;
+        h = h * 0x9E3779B1 + toEdge;
+        h *= 0x9E3779B1;
+        // the table uses the lower bits, so we mix in the higher ones
+        return h ^ (h >>> 16);
+    }
+}
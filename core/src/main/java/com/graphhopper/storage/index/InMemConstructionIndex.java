@@ -134,4 +134,30 @@ public class InMemConstructionIndex {
             put(keyPart, subentry, depth, value);
         }
     }
+
+    /**
+     * Appends the values of the other index to this index. If the other index contains only larger values (e.g. it
+     * was filled with a later range of edges) the result is the same as if all values were added to this index.
+     */
+    void merge(InMemConstructionIndex other) {
+        if (other.entries.length != entries.length)
+            throw new IllegalArgumentException("Cannot merge indices with different structures");
+        merge(root, other.root);
+    }
+
+    private void merge(InMemTreeEntry treeEntry, InMemTreeEntry otherTreeEntry) {
+        for (int i = 0; i < otherTreeEntry.subEntries.length; i++) {
+            InMemEntry otherSubEntry = otherTreeEntry.getSubEntry(i);
+            if (otherSubEntry == null)
+                continue;
+            InMemEntry subEntry = treeEntry.getSubEntry(i);
+            if (subEntry == null)
+                // the other index is no longer used, so we can take over its entries
+                treeEntry.setSubEntry(i, otherSubEntry);
+            else if (subEntry.isLeaf())
+                ((InMemLeafEntry) subEntry).addAll((InMemLeafEntry) otherSubEntry);
+            else
+                merge((InMemTreeEntry) subEntry, (InMemTreeEntry) otherSubEntry);
+        }
+    }
 }
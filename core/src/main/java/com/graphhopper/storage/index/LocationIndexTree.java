@@ -18,7 +18,6 @@
 package com.graphhopper.storage.index;
 
 import com.carrotsearch.hppc.IntHashSet;
-import com.graphhopper.routing.util.AllEdgesIterator;
 import com.graphhopper.routing.util.EdgeFilter;
 import com.graphhopper.storage.Directory;
 import com.graphhopper.storage.Graph;
@@ -28,7 +27,10 @@ import com.graphhopper.util.shapes.BBox;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
 
 import static com.graphhopper.util.DistancePlaneProjection.DIST_PLANE;
 
@@ -58,6 +60,7 @@ public class LocationIndexTree implements LocationIndex {
     private final NodeAccess nodeAccess;
     private int maxRegionSearch = 4;
     private int minResolutionInMeter = 300;
+    private int threads = 1;
     private boolean initialized = false;
 
     LineIntIndex lineIntIndex;
@@ -119,6 +122,18 @@ public class LocationIndexTree implements LocationIndex {
     }
 
 
+    /**
+     * Sets the number of threads used by {@link #prepareIndex()}. Default is 1. Every thread adds a range of edges
+     * to its own in-memory tree. Merging these trees gives the same index as a single thread, so the stored index does
+     * not depend on the number of threads.
+     */
+    public LocationIndexTree setThreads(int threads) {
+        if (threads < 1)
+            throw new IllegalArgumentException("threads must be positive but was " + threads);
+        this.threads = threads;
+        return this;
+    }
+
     public LocationIndex setResolution(int minResolutionInMeter) {
         if (minResolutionInMeter <= 0)
             throw new IllegalStateException("Negative precision is not allowed!");
@@ -175,6 +190,7 @@ public class LocationIndexTree implements LocationIndex {
                 + ", leafs:" + Helper.nf(lineIntIndex.getLeafs())
                 + ", precision:" + minResolutionInMeter
                 + ", depth:" + indexStructureInfo.getEntries().length
+                + ", threads:" + threads
                 + ", checksum:" + checksum()
                 + ", entries:" + Arrays.toString(indexStructureInfo.getEntries())
                 + ", entriesPerLeaf:" + (float) lineIntIndex.getSize() / lineIntIndex.getLeafs());
@@ -184,20 +200,48 @@ public class LocationIndexTree implements LocationIndex {
 
     InMemConstructionIndex prepareInMemConstructionIndex(BBox bounds, EdgeFilter edgeFilter) {
         indexStructureInfo = IndexStructureInfo.create(bounds, minResolutionInMeter);
-        InMemConstructionIndex inMem = new InMemConstructionIndex(indexStructureInfo);
-        AllEdgesIterator allIter = graph.getAllEdges();
+        int edges = graph.getEdges();
+        if (threads == 1 || edges < 2) {
+            InMemConstructionIndex inMem = new InMemConstructionIndex(indexStructureInfo);
+            addEdges(inMem, edgeFilter, 0, edges);
+            return inMem;
+        }
+        // the edges in the leafs have to be in ascending order like for a single thread, so every thread fills its own
+        // index with a range of edges and afterwards we append them in the order of the ranges
+        int chunkSize = (edges + threads - 1) / threads;
+        InMemConstructionIndex[] chunks = new InMemConstructionIndex[(edges + chunkSize - 1) / chunkSize];
+        List<Callable<String>> callables = new ArrayList<>();
+        for (int i = 0; i < chunks.length; i++) {
+            final int chunk = i;
+            callables.add(() -> {
+                InMemConstructionIndex inMem = new InMemConstructionIndex(indexStructureInfo);
+                addEdges(inMem, edgeFilter, chunk * chunkSize, Math.min(edges, (chunk + 1) * chunkSize));
+                chunks[chunk] = inMem;
+                return "";
+            });
+        }
+        GHUtility.runConcurrently(callables, threads);
+        for (int i = 1; i < chunks.length; i++) {
+            chunks[0].merge(chunks[i]);
+            chunks[i] = null;
+        }
+        return chunks[0];
+    }
+
+    private void addEdges(InMemConstructionIndex inMem, EdgeFilter edgeFilter, int fromEdge, int toEdge) {
+        int edge = fromEdge;
         try {
-            while (allIter.next()) {
-                if (!edgeFilter.accept(allIter))
+            for (; edge < toEdge; edge++) {
+                EdgeIteratorState edgeState = graph.getEdgeIteratorState(edge, Integer.MIN_VALUE);
+                if (!edgeFilter.accept(edgeState))
                     continue;
-                int edge = allIter.getEdge();
-                int nodeA = allIter.getBaseNode();
-                int nodeB = allIter.getAdjNode();
+                int nodeA = edgeState.getBaseNode();
+                int nodeB = edgeState.getAdjNode();
                 double lat1 = nodeAccess.getLat(nodeA);
                 double lon1 = nodeAccess.getLon(nodeA);
                 double lat2;
                 double lon2;
-                PointList points = allIter.fetchWayGeometry(FetchMode.PILLAR_ONLY);
+                PointList points = edgeState.fetchWayGeometry(FetchMode.PILLAR_ONLY);
                 int len = points.size();
                 for (int i = 0; i < len; i++) {
                     lat2 = points.getLat(i);
@@ -211,10 +255,8 @@ public class LocationIndexTree implements LocationIndex {
                 inMem.addToAllTilesOnLine(edge, lat1, lon1, lat2, lon2);
             }
         } catch (Exception ex1) {
-            logger.error("Problem! base:" + allIter.getBaseNode() + ", adj:" + allIter.getAdjNode()
-                    + ", edge:" + allIter.getEdge(), ex1);
+            logger.error("Problem! edge:" + edge, ex1);
         }
-        return inMem;
     }
 
     int checksum() {
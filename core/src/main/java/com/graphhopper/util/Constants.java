@@ -75,6 +75,7 @@ public class Constants {
     public static final int VERSION_GEOMETRY = 6;
     public static final int VERSION_LOCATION_IDX = 5;
     public static final int VERSION_EDGEKV_STORAGE = 1;
+    public static final int VERSION_EDGE_WEIGHTS = 0;
     /**
      * The version without the snapshot string
      */
@@ -59,6 +59,11 @@ public interface EdgeIteratorState {
             return reverse;
         }
 
+        @Override
+        public boolean getBool(boolean reverse, EdgeIntAccess access) {
+            return reverse;
+        }
+
         @Override
         public void setBool(boolean reverse, IntsRef ref, boolean value) {
             throw new IllegalStateException("reverse state cannot be modified");
@@ -24,9 +24,12 @@ import com.graphhopper.json.Statement;
 import com.graphhopper.reader.ReaderWay;
 import com.graphhopper.reader.dem.SRTMProvider;
 import com.graphhopper.reader.dem.SkadiProvider;
+import com.graphhopper.routing.ch.PrepareContractionHierarchies;
 import com.graphhopper.routing.ev.EncodedValueLookup;
 import com.graphhopper.routing.ev.RoadEnvironment;
 import com.graphhopper.routing.ev.Subnetwork;
+import com.graphhopper.routing.lm.LMConfig;
+import com.graphhopper.routing.lm.PrepareLandmarks;
 import com.graphhopper.routing.util.AllEdgesIterator;
 import com.graphhopper.routing.util.DefaultSnapFilter;
 import com.graphhopper.routing.util.EdgeFilter;
@@ -36,6 +39,7 @@ import com.graphhopper.routing.util.parsers.OSMRoadEnvironmentParser;
 import com.graphhopper.routing.util.parsers.TagParser;
 import com.graphhopper.routing.weighting.Weighting;
 import com.graphhopper.routing.weighting.custom.CustomProfile;
+import com.graphhopper.storage.CHConfig;
 import com.graphhopper.storage.IntsRef;
 import com.graphhopper.storage.index.LocationIndexTree;
 import com.graphhopper.storage.index.Snap;
@@ -60,6 +64,8 @@ import org.locationtech.jts.geom.Coordinate;
 import org.locationtech.jts.geom.GeometryFactory;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
 import java.util.*;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -1645,6 +1651,43 @@ public class GraphHopperTest {
         assertEquals(3587, response.getBest().getDistance(), 1);
     }
 
+    @Test
+    public void testPrecomputedEdgeWeights() {
+        CustomModel customModel = new CustomModel().setDistanceInfluence(70).
+                addToPriority(Statement.If("road_class == PRIMARY", Statement.Op.MULTIPLY, "0.7"));
+        GraphHopper hopper = new GraphHopper().
+                setGraphHopperLocation(GH_LOCATION).
+                setOSMFile(MONACO).
+                setProfiles(new CustomProfile("car").setCustomModel(customModel).setVehicle("car")).
+                setEdgeWeightProfiles(Collections.singletonList("car")).
+                setStoreOnFlush(true);
+        hopper.getLMPreparationHandler().setLMProfiles(new LMProfile("car"));
+        hopper.importOrLoad();
+
+        GHRequest request = new GHRequest(43.727687, 7.418737, 43.74958, 7.436566).setProfile("car");
+        ResponsePath precomputed = hopper.route(request).getBest();
+        // with a custom model in the request the weights are calculated, and this custom model does not change them
+        ResponsePath calculated = hopper.route(request.setCustomModel(new CustomModel())).getBest();
+        assertEquals(calculated.getRouteWeight(), precomputed.getRouteWeight(), 1.e-6);
+        assertEquals(calculated.getTime(), precomputed.getTime());
+        assertEquals(calculated.getPoints().size(), precomputed.getPoints().size());
+        ResponsePath flexible = hopper.route(new GHRequest(43.727687, 7.418737, 43.74958, 7.436566).
+                setProfile("car").putHint("lm.disable", true)).getBest();
+        assertEquals(precomputed.getRouteWeight(), flexible.getRouteWeight(), 1.e-6);
+        hopper.close();
+
+        // the stored weights are loaded again
+        hopper = new GraphHopper().
+                setGraphHopperLocation(GH_LOCATION).
+                setProfiles(new CustomProfile("car").setCustomModel(customModel).setVehicle("car")).
+                setEdgeWeightProfiles(Collections.singletonList("car"));
+        hopper.getLMPreparationHandler().setLMProfiles(new LMProfile("car"));
+        assertTrue(hopper.load());
+        assertEquals(precomputed.getRouteWeight(), hopper.route(new GHRequest(43.727687, 7.418737, 43.74958, 7.436566).
+                setProfile("car")).getBest().getRouteWeight(), 1.e-6);
+        hopper.close();
+    }
+
     @Test
     public void testCreateWeightingHintsMerging() {
         final String profile = "profile";
@@ -2595,4 +2638,92 @@ public class GraphHopperTest {
         }
     }
 
+    @Test
+    void testResumeImportAfterFailedPreparation() {
+        GraphHopper failingHopper = new GraphHopper() {
+            @Override
+            protected Map<String, PrepareContractionHierarchies.Result> prepareCH(boolean closeEarly, List<CHConfig> configsToPrepare) {
+                throw new IllegalStateException("CH preparation failed");
+            }
+        };
+        initCheckpointHopper(failingHopper);
+        IllegalStateException e = assertThrows(IllegalStateException.class, failingHopper::importOrLoad);
+        assertEquals("CH preparation failed", e.getMessage());
+        failingHopper.close();
+
+        // the graph, the location index and the landmarks are reused
+        List<LMConfig> preparedLMs = new ArrayList<>();
+        GraphHopper hopper = new GraphHopper() {
+            @Override
+            protected void importOSM() {
+                fail("the finished import stage should be reused");
+            }
+
+            @Override
+            protected List<PrepareLandmarks> prepareLM(boolean closeEarly, List<LMConfig> configsToPrepare) {
+                preparedLMs.addAll(configsToPrepare);
+                return super.prepareLM(closeEarly, configsToPrepare);
+            }
+        };
+        initCheckpointHopper(hopper).importOrLoad();
+        assertTrue(preparedLMs.isEmpty());
+        assertEquals("true", hopper.getProperties().get("checkpoint.complete"));
+        GHResponse rsp = hopper.route(new GHRequest(43.727687, 7.418737, 43.74958, 7.436566).setProfile("car"));
+        assertFalse(rsp.hasErrors(), rsp.getErrors().toString());
+        assertEquals(3586.9, rsp.getBest().getDistance(), .1);
+        hopper.close();
+
+        hopper = initCheckpointHopper(new GraphHopper());
+        assertTrue(hopper.load());
+        assertFalse(hopper.getCHGraphs().isEmpty());
+        hopper.close();
+    }
+
+    @Test
+    void testResumeImportWithInvalidChecksum() throws IOException {
+        GraphHopper failingHopper = new GraphHopper() {
+            @Override
+            protected List<PrepareLandmarks> prepareLM(boolean closeEarly, List<LMConfig> configsToPrepare) {
+                throw new IllegalStateException("LM preparation failed");
+            }
+        };
+        initCheckpointHopper(failingHopper);
+        assertThrows(IllegalStateException.class, failingHopper::importOrLoad);
+        assertFalse(failingHopper.getProperties().get("checkpoint.location_index").isEmpty());
+        failingHopper.close();
+
+        try (RandomAccessFile file = new RandomAccessFile(new File(GH_LOCATION, "edges"), "rw")) {
+            file.seek(file.length() / 2);
+            int b = file.read();
+            file.seek(file.length() / 2);
+            file.write(b ^ 0xFF);
+        }
+
+        // the stored graph is corrupt so we start over
+        AtomicInteger imports = new AtomicInteger();
+        GraphHopper hopper = new GraphHopper() {
+            @Override
+            protected void importOSM() {
+                imports.incrementAndGet();
+                super.importOSM();
+            }
+        };
+        initCheckpointHopper(hopper).importOrLoad();
+        assertEquals(1, imports.get());
+        GHResponse rsp = hopper.route(new GHRequest(43.727687, 7.418737, 43.74958, 7.436566).setProfile("car"));
+        assertFalse(rsp.hasErrors(), rsp.getErrors().toString());
+        assertEquals(3586.9, rsp.getBest().getDistance(), .1);
+        hopper.close();
+    }
+
+    private static GraphHopper initCheckpointHopper(GraphHopper hopper) {
+        hopper.setGraphHopperLocation(GH_LOCATION).
+                setOSMFile(MONACO).
+                setProfiles(new Profile("car").setVehicle("car").setWeighting("fastest")).
+                setImportCheckpoints(true);
+        hopper.getCHPreparationHandler().setCHProfiles(new CHProfile("car"));
+        hopper.getLMPreparationHandler().setLMProfiles(new LMProfile("car"));
+        return hopper;
+    }
+
 }
@@ -0,0 +1,73 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.coll;
+
+import com.graphhopper.storage.DAType;
+import com.graphhopper.storage.RAMDirectory;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class SparseLongIntMapTest {
+
+    @Test
+    public void testPutAndGet() {
+        SparseLongIntMap map = new SparseLongIntMap(new RAMDirectory(), "test", DAType.RAM_INT);
+        assertEquals(-1, map.get(0));
+        assertEquals(-1, map.put(0, 5));
+        assertEquals(-1, map.put(63, 7));
+        assertEquals(-1, map.put(64, 9));
+        assertEquals(-1, map.put(9485854858458484L, 21));
+        assertEquals(5, map.put(0, 6));
+        assertEquals(6, map.get(0));
+        assertEquals(7, map.get(63));
+        assertEquals(9, map.get(64));
+        assertEquals(21, map.get(9485854858458484L));
+        assertEquals(-1, map.get(1));
+        assertEquals(-1, map.get(404));
+        assertEquals(-1, map.get(-Long.MAX_VALUE));
+        assertEquals(-1, map.put(-Long.MAX_VALUE, 3));
+        assertEquals(3, map.get(-Long.MAX_VALUE));
+        assertEquals(5, map.getSize());
+    }
+
+    @Test
+    public void testRandom() {
+        Random rand = new Random(123);
+        SparseLongIntMap map = new SparseLongIntMap(new RAMDirectory(), "test", DAType.RAM_INT);
+        Map<Long, Integer> expected = new HashMap<>();
+        for (int i = 0; i < 200_000; i++) {
+            // mostly dense keys in a few ranges with some sparse keys in between
+            long key = rand.nextInt(10) == 0 ? rand.nextLong() & Long.MAX_VALUE : rand.nextInt(5) * 1_000_000_000L + rand.nextInt(100_000);
+            int value = rand.nextInt();
+            Integer old = expected.put(key, value);
+            assertEquals(old == null ? -1 : old, map.put(key, value));
+        }
+        assertEquals(expected.size(), map.getSize());
+        for (Map.Entry<Long, Integer> e : expected.entrySet())
+            assertEquals(e.getValue(), map.get(e.getKey()));
+        for (int i = 0; i < 10_000; i++) {
+            long key = rand.nextInt(5) * 1_000_000_000L + rand.nextInt(200_000);
+            assertEquals(expected.getOrDefault(key, -1), map.get(key));
+        }
+    }
+}
@@ -168,6 +168,67 @@ public class ShortestPathTreeTest {
         );
     }
 
+    @Test
+    public void testMultipleSources() {
+        long[] timesFrom0 = searchTimes(0);
+        long[] timesFrom8 = searchTimes(8);
+
+        List<ShortestPathTree.IsoLabel> result = new ArrayList<>();
+        ShortestPathTree instance = new ShortestPathTree(graph, new FastestWeighting(carEncoder, new PMap()), false, TraversalMode.NODE_BASED);
+        instance.setTimeLimit(Double.MAX_VALUE);
+        instance.addSource(0, 0, 0, 0);
+        instance.addSource(8, 0, 0, 0);
+        instance.search(result::add);
+        assertEquals(9, result.size());
+        for (ShortestPathTree.IsoLabel label : result) {
+            assertEquals(Math.min(timesFrom0[label.node], timesFrom8[label.node]), label.time, "node " + label.node);
+        }
+        assertEquals(0, result.get(0).time);
+        assertEquals(0, result.get(1).time);
+        assertThrows(IllegalStateException.class, () -> instance.addSource(1, 0, 0, 0));
+    }
+
+    @Test
+    public void testMultipleSourcesWithOffset() {
+        List<ShortestPathTree.IsoLabel> result = new ArrayList<>();
+        ShortestPathTree instance = new ShortestPathTree(graph, new FastestWeighting(carEncoder, new PMap()), false, TraversalMode.NODE_BASED);
+        instance.setTimeLimit(25_000);
+        instance.addSource(0, 0, 0, 0);
+        // node 4 is reached from node 0 after 9s, so the larger offset is ignored and the smaller one is kept
+        instance.addSource(4, 20, 20_000, 0);
+        instance.addSource(4, 5, 5_000, 0);
+        instance.search(result::add);
+        assertAll(
+                () -> assertEquals(0, result.get(0).time), () -> assertEquals(0, result.get(0).node),
+                () -> assertEquals(5000, result.get(1).time), () -> assertEquals(4, result.get(1).node),
+                () -> assertEquals(14000, result.get(2).time), () -> assertEquals(6, result.get(2).node)
+        );
+    }
+
+    @Test
+    public void testEdgeBasedWithRepeatedSource() {
+        List<ShortestPathTree.IsoLabel> result = new ArrayList<>();
+        ShortestPathTree instance = new ShortestPathTree(graph, new FastestWeighting(carEncoder, new PMap()), false, TraversalMode.EDGE_BASED);
+        instance.setTimeLimit(Double.MAX_VALUE);
+        instance.addSource(0, 5, 5_000, 0);
+        instance.addSource(0, 0, 0, 0);
+        instance.addSource(0, 0, 0, 0);
+        instance.search(result::add);
+        // the same tree as for a single source
+        assertEquals(countDirectedEdges(graph) + 1, result.size());
+        assertEquals(1, result.stream().filter(l -> l.edge == -1).count());
+        assertEquals(0, result.get(0).time);
+        assertEquals(9000, result.get(1).time);
+    }
+
+    private long[] searchTimes(int from) {
+        long[] times = new long[graph.getNodes()];
+        ShortestPathTree instance = new ShortestPathTree(graph, new FastestWeighting(carEncoder, new PMap()), false, TraversalMode.NODE_BASED);
+        instance.setTimeLimit(Double.MAX_VALUE);
+        instance.search(from, l -> times[l.node] = l.time);
+        return times;
+    }
+
     @Test
     public void testEdgeBasedWithFreeUTurns() {
         List<ShortestPathTree.IsoLabel> result = new ArrayList<>();
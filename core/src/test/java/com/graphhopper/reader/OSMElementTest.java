@@ -22,8 +22,7 @@ import org.junit.jupiter.api.Test;
 import java.util.HashMap;
 import java.util.Map;
 
-import static org.junit.jupiter.api.Assertions.assertFalse;
-import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.*;
 
 /**
  * @author Peter Karich
@@ -48,4 +47,19 @@ public class OSMElementTest {
         instance.setTags(null);
         assertFalse(instance.hasTag("test", "xy"));
     }
+
+    @Test
+    public void testNoTags() {
+        ReaderElement instance = new ReaderNode(1, 50, 10);
+        assertFalse(instance.hasTags());
+        assertFalse(instance.hasTag("barrier"));
+        assertNull(instance.getTag("barrier"));
+        assertEquals("default", instance.getTag("barrier", "default"));
+        assertTrue(instance.getKeysWithPrefix("bar").isEmpty());
+        instance.removeTag("barrier");
+
+        instance.getTags().put("barrier", "gate");
+        assertTrue(instance.hasTag("barrier", "gate"));
+        assertTrue(instance.hasTagWithKeyPrefix("bar"));
+    }
 }
@@ -56,6 +56,16 @@ public class MultiSourceElevationProviderTest {
         assertEquals(2, instance.getEle(-56.0001, 0), .1);
     }
 
+    @Test
+    public void testGetTileName() {
+        CGIARProvider cgiar = new CGIARProvider();
+        GMTEDProvider gmted = new GMTEDProvider();
+        instance = new MultiSourceElevationProvider(cgiar, gmted);
+        assertEquals(cgiar.getTileName(49.9, 11.5), instance.getTileName(49.9, 11.5));
+        assertEquals(gmted.getTileName(60.5, 11.5), instance.getTileName(60.5, 11.5));
+        assertEquals(gmted.getTileName(-60.5, 11.5), instance.getTileName(-60.5, 11.5));
+    }
+
     /*
     Enabling this test requires you to change the pom.xml and increase the memory limit for running tests.
     Change to: <argLine>-Xmx500m -Xms500m</argLine>
@@ -17,14 +17,16 @@
  */
 package com.graphhopper.reader.dem;
 
+import com.graphhopper.util.shapes.BBox;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Disabled;
 import org.junit.jupiter.api.Test;
 
+import java.io.File;
 import java.io.IOException;
 
-import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.*;
 
 /**
  * @author Peter Karich
@@ -99,6 +101,31 @@ public class SRTMProviderTest {
         assertEquals(161, instance.getEle(55.8943144, -3), 1e-1);
     }
 
+    @Test
+    public void testMaxTiles() {
+        instance = new SRTMProvider("./files/");
+        instance.setMaxTiles(1);
+        for (int i = 0; i < 2; i++) {
+            // every call needs to load the tile again, because the previous one was closed
+            assertEquals(466, instance.getEle(49.968651, 11.574869), 1e-1);
+            assertEquals(1678, instance.getEle(-28.88316, -71.070557), 1e-1);
+            assertEquals(161, instance.getEle(55.8943144, -3), 1e-1);
+        }
+    }
+
+    @Test
+    public void testPrefetch() {
+        instance = new SRTMProvider("./files/");
+        instance.setPrefetchThreads(2);
+        instance.prefetch(new BBox(11.2, 11.8, 49.5, 50.5));
+        assertTrue(new File("./files/dem" + instance.calcIntKey(49.5, 11.2)).exists());
+        assertTrue(new File("./files/dem" + instance.calcIntKey(50.5, 11.2)).exists());
+        assertEquals(466, instance.getEle(49.968651, 11.574869), 1e-1);
+        instance.release();
+        // the prefetched tiles are temporary files as well
+        assertFalse(new File("./files/dem" + instance.calcIntKey(49.5, 11.2)).exists());
+    }
+
     @Disabled
     @Test
     public void testGetEle() {
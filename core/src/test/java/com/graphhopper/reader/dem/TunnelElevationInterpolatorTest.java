@@ -19,12 +19,17 @@ package com.graphhopper.reader.dem;
 
 import com.graphhopper.coll.GHIntHashSet;
 import com.graphhopper.routing.ev.RoadEnvironment;
+import com.graphhopper.storage.BaseGraph;
 import com.graphhopper.storage.IntsRef;
 import com.graphhopper.storage.NodeAccess;
 import com.graphhopper.util.EdgeIteratorState;
+import com.graphhopper.util.FetchMode;
 import com.graphhopper.util.GHUtility;
+import com.graphhopper.util.Helper;
 import org.junit.jupiter.api.Test;
 
+import java.util.Random;
+
 import static org.junit.jupiter.api.Assertions.assertEquals;
 
 /**
@@ -295,4 +300,35 @@ public class TunnelElevationInterpolatorTest extends EdgeElevationInterpolatorTe
         assertEquals(10, na.getEle(8), PRECISION);
         assertEquals(0, na.getEle(9), PRECISION);
     }
+
+    @Test
+    public void interpolatesConcurrently() {
+        BaseGraph graph2 = new BaseGraph.Builder(encodingManager).set3D(true).create();
+        createRandomTunnels(graph);
+        createRandomTunnels(graph2);
+        new EdgeElevationInterpolator(graph, roadEnvEnc, RoadEnvironment.TUNNEL).execute();
+        new EdgeElevationInterpolator(graph2, roadEnvEnc, RoadEnvironment.TUNNEL).setThreads(4).execute();
+
+        for (int node = 0; node < graph.getNodes(); node++)
+            assertEquals(graph.getNodeAccess().getEle(node), graph2.getNodeAccess().getEle(node), "node " + node);
+        for (int edge = 0; edge < graph.getEdges(); edge++) {
+            EdgeIteratorState state = graph.getEdgeIteratorState(edge, Integer.MIN_VALUE);
+            EdgeIteratorState state2 = graph2.getEdgeIteratorState(edge, Integer.MIN_VALUE);
+            assertEquals(state.fetchWayGeometry(FetchMode.ALL), state2.fetchWayGeometry(FetchMode.ALL), "edge " + edge);
+            assertEquals(state.getDistance(), state2.getDistance(), "edge " + edge);
+        }
+        graph2.close();
+    }
+
+    private void createRandomTunnels(BaseGraph graph) {
+        Random random = new Random(123);
+        NodeAccess na = graph.getNodeAccess();
+        for (int node = 0; node < 1000; node++)
+            na.setNode(node, node * 0.001, 0, random.nextInt(100));
+        for (int node = 0; node < 999; node++) {
+            EdgeIteratorState edge = graph.edge(node, node + 1).setDistance(100);
+            edge.setFlags(random.nextDouble() < 0.3 ? normalFlags : interpolatableFlags);
+            edge.setWayGeometry(Helper.createPointList3D((node + 0.5) * 0.001, 0.0001, random.nextInt(100)));
+        }
+    }
 }
@@ -0,0 +1,218 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.reader.osm;
+
+import com.graphhopper.GraphHopper;
+import com.graphhopper.config.CHProfile;
+import com.graphhopper.config.LMProfile;
+import com.graphhopper.config.Profile;
+import com.graphhopper.routing.ch.PrepareContractionHierarchies;
+import com.graphhopper.routing.ev.*;
+import com.graphhopper.routing.lm.LMConfig;
+import com.graphhopper.routing.lm.PrepareLandmarks;
+import com.graphhopper.storage.BaseGraph;
+import com.graphhopper.storage.CHConfig;
+import com.graphhopper.util.EdgeIteratorState;
+import com.graphhopper.util.Helper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.util.*;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class OSMChangeUpdaterTest {
+    private static final String DIR = "./target/tmp/osm-change-test";
+
+    @AfterEach
+    public void tearDown() {
+        Helper.removeDir(new File(DIR));
+    }
+
+    @Test
+    public void testApplyChange() {
+        GraphHopper hopper = createHopper().importOrLoad();
+        assertEquals(3, hopper.getBaseGraph().getEdges());
+        assertFalse(hopper.getCHGraphs().isEmpty());
+        assertFalse(hopper.getLandmarks().isEmpty());
+        assertAccess(hopper, 10, true);
+        assertAccess(hopper, 11, true);
+
+        OSMChangeUpdater.Result result = hopper.applyOSMChange(new File(getClass().getResource("test-osm-change.osc").getFile()));
+        assertEquals(2, result.getUpdatedEdges());
+        assertEquals(1, result.getDisabledEdges());
+        assertEquals(1, result.getIgnoredWays());
+        assertEquals(1, result.getIgnoredNodes());
+        // the weights only increased, so the landmarks are still valid, but the CH graphs are not
+        assertTrue(result.getDecreasedWeightProfiles().isEmpty());
+        assertTrue(hopper.getCHGraphs().isEmpty());
+        assertFalse(hopper.getLandmarks().isEmpty());
+        assertAccess(hopper, 10, false);
+        assertAccess(hopper, 11, false);
+        assertEquals("route 666", getEdges(hopper, 10)[0].getName());
+        hopper.close();
+
+        // the changes are stored and the CH graph is prepared again
+        CountingHopper reloaded = createHopper();
+        reloaded.importOrLoad();
+        assertEquals(Collections.singletonList("ch.car"), reloaded.prepared);
+        assertFalse(reloaded.getCHGraphs().isEmpty());
+        assertEquals("", reloaded.getProperties().get("prepare.ch.invalid.car"));
+        assertAccess(reloaded, 10, false);
+        assertAccess(reloaded, 11, false);
+        reloaded.close();
+
+        // ... but only once
+        reloaded = createHopper();
+        reloaded.importOrLoad();
+        assertEquals(Collections.emptyList(), reloaded.prepared);
+        assertFalse(reloaded.getCHGraphs().isEmpty());
+        assertFalse(reloaded.getLandmarks().isEmpty());
+        assertFalse(reloaded.getProperties().getAll().containsKey("prepare.ch.invalid.car"));
+        reloaded.close();
+    }
+
+    @Test
+    public void testKeepBarriersAndRelations() {
+        GraphHopper hopper = createBarrierHopper().importOrLoad();
+        // the bollard is a barrier edge in the middle of the way
+        assertEquals(3, hopper.getBaseGraph().getEdges());
+        assertBarrierAndNetwork(hopper);
+        hopper.close();
+
+        // the barrier and the bike network must still be there after a change of the way, also after a restart
+        hopper = createBarrierHopper().importOrLoad();
+        OSMChangeUpdater.Result result = hopper.applyOSMChange(new File(getClass().getResource("test-osm-change-barrier.osc").getFile()));
+        assertEquals(3, result.getUpdatedEdges());
+        DecimalEncodedValue maxSpeedEnc = hopper.getEncodingManager().getDecimalEncodedValue(MaxSpeed.KEY);
+        for (EdgeIteratorState edge : getEdges(hopper, 20))
+            assertEquals(30, edge.get(maxSpeedEnc), 1, "edge " + edge);
+        assertBarrierAndNetwork(hopper);
+        hopper.close();
+    }
+
+    @Test
+    public void testFerryDuration() {
+        GraphHopper hopper = new GraphHopper();
+        hopper.getReaderConfig().setStoreOSMWayIds(true);
+        hopper.setOSMFile(getClass().getResource("test-osm-change-ferry.xml").getFile()).
+                setGraphHopperLocation(DIR).
+                setProfiles(new Profile("car").setVehicle("car").setWeighting("fastest")).
+                setMinNetworkSize(0);
+        hopper.importOrLoad();
+        DecimalEncodedValue speedEnc = hopper.getEncodingManager().getEncoder("car").getAverageSpeedEnc();
+        // the ferry with the shorter duration is faster
+        double speed = getEdges(hopper, 41)[0].get(speedEnc);
+        for (EdgeIteratorState edge : getEdges(hopper, 40))
+            assertTrue(edge.get(speedEnc) < speed, "edge " + edge);
+
+        // after the change both ferries have the same duration, so the modified ferry must have the speed a new
+        // import would give it
+        OSMChangeUpdater.Result result = hopper.applyOSMChange(new File(getClass().getResource("test-osm-change-ferry.osc").getFile()));
+        assertEquals(2, result.getUpdatedEdges());
+        for (EdgeIteratorState edge : getEdges(hopper, 40)) {
+            assertEquals(speed, edge.get(speedEnc), 1.e-6, "edge " + edge);
+            assertEquals(speed, edge.getReverse(speedEnc), 1.e-6, "edge " + edge);
+        }
+        hopper.close();
+    }
+
+    private GraphHopper createBarrierHopper() {
+        GraphHopper hopper = new GraphHopper();
+        hopper.getReaderConfig().setStoreOSMWayIds(true);
+        return hopper.setOSMFile(getClass().getResource("test-osm-change-barrier.xml").getFile()).
+                setGraphHopperLocation(DIR).
+                setProfiles(new Profile("car").setVehicle("car").setWeighting("fastest"),
+                        new Profile("bike").setVehicle("bike").setWeighting("fastest")).
+                setMinNetworkSize(0);
+    }
+
+    private static void assertBarrierAndNetwork(GraphHopper hopper) {
+        BooleanEncodedValue carAccessEnc = hopper.getEncodingManager().getEncoder("car").getAccessEnc();
+        EnumEncodedValue<RouteNetwork> bikeNetworkEnc = hopper.getEncodingManager().getEnumEncodedValue(RouteNetwork.key("bike"), RouteNetwork.class);
+        int barrierEdges = 0;
+        for (EdgeIteratorState edge : getEdges(hopper, 20)) {
+            boolean barrier = hopper.getOSMWayIdStorage().getNodeTags(edge.getEdge()).containsKey("barrier");
+            if (barrier)
+                barrierEdges++;
+            assertEquals(!barrier, edge.get(carAccessEnc), "edge " + edge);
+            assertEquals(RouteNetwork.LOCAL, edge.get(bikeNetworkEnc), "edge " + edge);
+        }
+        assertEquals(1, barrierEdges);
+    }
+
+    @Test
+    public void testOSMWayIdsRequired() {
+        GraphHopper hopper = createHopper();
+        hopper.getReaderConfig().setStoreOSMWayIds(false);
+        hopper.importOrLoad();
+        IllegalStateException e = assertThrows(IllegalStateException.class,
+                () -> hopper.applyOSMChange(new File(getClass().getResource("test-osm-change.osc").getFile())));
+        assertTrue(e.getMessage().contains("store_osm_way_ids"), e.getMessage());
+        hopper.close();
+    }
+
+    private CountingHopper createHopper() {
+        CountingHopper hopper = new CountingHopper();
+        hopper.getReaderConfig().setStoreOSMWayIds(true);
+        hopper.setOSMFile(getClass().getResource("test-osm.xml").getFile()).
+                setGraphHopperLocation(DIR).
+                setProfiles(new Profile("car").setVehicle("car").setWeighting("fastest")).
+                setMinNetworkSize(0);
+        hopper.getCHPreparationHandler().setCHProfiles(new CHProfile("car"));
+        hopper.getLMPreparationHandler().setLMProfiles(new LMProfile("car"));
+        return hopper;
+    }
+
+    private static class CountingHopper extends GraphHopper {
+        final List<String> prepared = new ArrayList<>();
+
+        @Override
+        protected Map<String, PrepareContractionHierarchies.Result> prepareCH(boolean closeEarly, List<CHConfig> configsToPrepare) {
+            configsToPrepare.forEach(c -> prepared.add("ch." + c.getName()));
+            return super.prepareCH(closeEarly, configsToPrepare);
+        }
+
+        @Override
+        protected List<PrepareLandmarks> prepareLM(boolean closeEarly, List<LMConfig> configsToPrepare) {
+            configsToPrepare.forEach(c -> prepared.add("lm." + c.getName()));
+            return super.prepareLM(closeEarly, configsToPrepare);
+        }
+    }
+
+    private static void assertAccess(GraphHopper hopper, long osmWayId, boolean expected) {
+        BooleanEncodedValue accessEnc = hopper.getEncodingManager().getEncoder("car").getAccessEnc();
+        for (EdgeIteratorState edge : getEdges(hopper, osmWayId)) {
+            assertEquals(expected, edge.get(accessEnc), "edge " + edge);
+            assertEquals(expected, edge.getReverse(accessEnc), "edge " + edge);
+        }
+    }
+
+    private static EdgeIteratorState[] getEdges(GraphHopper hopper, long osmWayId) {
+        BaseGraph graph = hopper.getBaseGraph();
+        OSMWayIdStorage wayIds = hopper.getOSMWayIdStorage();
+        EdgeIteratorState[] edges = IntStream.range(0, graph.getEdges())
+                .filter(edge -> wayIds.getOSMWayId(edge) == osmWayId)
+                .mapToObj(edge -> graph.getEdgeIteratorState(edge, Integer.MIN_VALUE))
+                .toArray(EdgeIteratorState[]::new);
+        assertTrue(edges.length > 0, "no edges for way " + osmWayId);
+        return edges;
+    }
+}
@@ -985,6 +985,54 @@ public class OSMReaderTest {
         assertEquals(Country.BGR, iter.get(countryEnc));
     }
 
+    @Test
+    public void testParallelTagParsing() {
+        assertSameGraph(importAndorra(1, "btree", dir + "/andorra1"), importAndorra(4, "btree", dir + "/andorra4"));
+    }
+
+    @Test
+    public void testCompactNodeIdMap() {
+        assertSameGraph(importAndorra(1, "btree", dir + "/andorra_btree"), importAndorra(1, "ram", dir + "/andorra_ram"));
+    }
+
+    private static void assertSameGraph(BaseGraph expected, BaseGraph graph) {
+        assertEquals(expected.getNodes(), graph.getNodes());
+        assertEquals(expected.getEdges(), graph.getEdges());
+        for (int edge = 0; edge < graph.getEdges(); edge++) {
+            EdgeIteratorState expectedEdge = expected.getEdgeIteratorState(edge, Integer.MIN_VALUE);
+            EdgeIteratorState edgeState = graph.getEdgeIteratorState(edge, Integer.MIN_VALUE);
+            assertEquals(expectedEdge.getBaseNode(), edgeState.getBaseNode());
+            assertEquals(expectedEdge.getAdjNode(), edgeState.getAdjNode());
+            assertEquals(expectedEdge.getFlags(), edgeState.getFlags(), "flags of edge " + edge);
+            assertEquals(expectedEdge.getName(), edgeState.getName());
+            assertEquals(expectedEdge.getDistance(), edgeState.getDistance(), 1.e-6);
+            assertEquals(expectedEdge.fetchWayGeometry(FetchMode.ALL), edgeState.fetchWayGeometry(FetchMode.ALL));
+        }
+        assertEquals(countTurnRelations(expected), countTurnRelations(graph));
+    }
+
+    private static int countTurnRelations(BaseGraph graph) {
+        TurnCostStorage.TurnRelationIterator iter = graph.getTurnCostStorage().getAllTurnRelations();
+        int count = 0;
+        while (iter.next())
+            count++;
+        return count;
+    }
+
+    private BaseGraph importAndorra(int tagParserThreads, String nodeIdMap, String location) {
+        GraphHopper hopper = new GraphHopper();
+        hopper.getReaderConfig().setTagParserThreads(tagParserThreads).setNodeIdMap(nodeIdMap);
+        hopper.setFlagEncodersString("car|turn_costs=true,foot,bike,motorcycle");
+        hopper.setEncodedValuesString("surface,max_speed,road_access,country");
+        hopper.setCountryRuleFactory(new CountryRuleFactory());
+        hopper.setOSMFile("../core/files/andorra.osm.pbf").
+                setGraphHopperLocation(location).
+                setProfiles(new Profile("car").setVehicle("car").setWeighting("fastest")).
+                setMinNetworkSize(0).
+                importOrLoad();
+        return hopper.getBaseGraph();
+    }
+
     @Test
     public void testFixWayName() {
         assertEquals("B8, B12", OSMReader.fixWayName("B8;B12"));
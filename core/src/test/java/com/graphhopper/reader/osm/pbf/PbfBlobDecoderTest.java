@@ -0,0 +1,155 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.reader.osm.pbf;
+
+import com.carrotsearch.hppc.LongArrayList;
+import com.google.protobuf.ByteString;
+import com.graphhopper.reader.ReaderElement;
+import com.graphhopper.reader.ReaderNode;
+import com.graphhopper.reader.ReaderRelation;
+import com.graphhopper.reader.ReaderWay;
+import org.junit.jupiter.api.Test;
+import org.openstreetmap.osmosis.osmbinary.Fileformat;
+import org.openstreetmap.osmosis.osmbinary.Osmformat;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.Deflater;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PbfBlobDecoderTest {
+
+    @Test
+    public void testDecodePrimitives() {
+        Osmformat.StringTable.Builder strings = Osmformat.StringTable.newBuilder();
+        // index 0 separates the tags of the dense nodes
+        for (String s : Arrays.asList("", "highway", "residential", "name", "Straße", "outer", "type", "multipolygon"))
+            strings.addS(ByteString.copyFromUtf8(s));
+
+        // nodes 10, 11 and 15, the ids and coordinates are delta coded
+        Osmformat.DenseNodes denseNodes = Osmformat.DenseNodes.newBuilder().
+                addAllId(Arrays.asList(10L, 1L, 4L)).
+                addAllLat(Arrays.asList(51_200_000L, 1_000L, -2_000L)).
+                addAllLon(Arrays.asList(9_400_000L, -1_000L, 3_000L)).
+                addAllKeysVals(Arrays.asList(1, 2, 0, 0, 3, 4, 0)).
+                build();
+        Osmformat.Node node = Osmformat.Node.newBuilder().setId(40).setLat(51_300_000).setLon(9_500_000).
+                addKeys(3).addVals(4).build();
+        Osmformat.Way way = Osmformat.Way.newBuilder().setId(20).
+                addAllRefs(Arrays.asList(10L, 1L, 4L)).
+                addKeys(1).addVals(2).addKeys(3).addVals(4).
+                build();
+        Osmformat.Relation relation = Osmformat.Relation.newBuilder().setId(30).
+                addKeys(6).addVals(7).
+                addAllMemids(Arrays.asList(20L, -5L, 15L)).
+                addTypes(Osmformat.Relation.MemberType.WAY).addRolesSid(5).
+                addTypes(Osmformat.Relation.MemberType.NODE).addRolesSid(0).
+                addTypes(Osmformat.Relation.MemberType.RELATION).addRolesSid(0).
+                build();
+        Osmformat.PrimitiveBlock block = Osmformat.PrimitiveBlock.newBuilder().
+                setStringtable(strings).
+                addPrimitivegroup(Osmformat.PrimitiveGroup.newBuilder().setDense(denseNodes)).
+                addPrimitivegroup(Osmformat.PrimitiveGroup.newBuilder().addNodes(node)).
+                addPrimitivegroup(Osmformat.PrimitiveGroup.newBuilder().addWays(way)).
+                addPrimitivegroup(Osmformat.PrimitiveGroup.newBuilder().addRelations(relation)).
+                setGranularity(1000).
+                setLatOffset(1_000_000).
+                build();
+
+        for (boolean compressed : new boolean[]{false, true}) {
+            List<ReaderElement> elements = decode(block, compressed);
+            assertEquals(6, elements.size());
+
+            ReaderNode node10 = (ReaderNode) elements.get(0);
+            assertEquals(10, node10.getId());
+            // 1e-9 * (lat_offset + granularity * lat)
+            assertEquals(51.201, node10.getLat(), 1.e-9);
+            assertEquals(9.4, node10.getLon(), 1.e-9);
+            assertEquals("residential", node10.getTag("highway"));
+            ReaderNode node11 = (ReaderNode) elements.get(1);
+            assertEquals(11, node11.getId());
+            assertEquals(51.202, node11.getLat(), 1.e-9);
+            assertEquals(9.399, node11.getLon(), 1.e-9);
+            assertFalse(node11.hasTags());
+            ReaderNode node15 = (ReaderNode) elements.get(2);
+            assertEquals(15, node15.getId());
+            assertEquals(51.200, node15.getLat(), 1.e-9);
+            assertEquals(9.402, node15.getLon(), 1.e-9);
+            assertEquals("Straße", node15.getTag("name"));
+            assertEquals(1, node15.getTags().size());
+
+            ReaderNode node40 = (ReaderNode) elements.get(3);
+            assertEquals(40, node40.getId());
+            assertEquals(51.301, node40.getLat(), 1.e-9);
+            assertEquals(9.5, node40.getLon(), 1.e-9);
+            assertEquals("Straße", node40.getTag("name"));
+
+            ReaderWay way20 = (ReaderWay) elements.get(4);
+            assertEquals(20, way20.getId());
+            assertEquals(LongArrayList.from(10, 11, 15), way20.getNodes());
+            assertEquals("residential", way20.getTag("highway"));
+            assertEquals("Straße", way20.getTag("name"));
+
+            ReaderRelation relation30 = (ReaderRelation) elements.get(5);
+            assertEquals(30, relation30.getId());
+            assertEquals("multipolygon", relation30.getTag("type"));
+            List<ReaderRelation.Member> members = relation30.getMembers();
+            assertEquals(3, members.size());
+            assertEquals(ReaderRelation.Member.WAY, members.get(0).getType());
+            assertEquals(20, members.get(0).getRef());
+            assertEquals("outer", members.get(0).getRole());
+            assertEquals(ReaderRelation.Member.NODE, members.get(1).getType());
+            assertEquals(15, members.get(1).getRef());
+            assertEquals("", members.get(1).getRole());
+            assertEquals(ReaderRelation.Member.RELATION, members.get(2).getType());
+            assertEquals(30, members.get(2).getRef());
+        }
+    }
+
+    private static List<ReaderElement> decode(Osmformat.PrimitiveBlock block, boolean compressed) {
+        byte[] data = block.toByteArray();
+        Fileformat.Blob.Builder blob = Fileformat.Blob.newBuilder();
+        if (compressed) {
+            Deflater deflater = new Deflater();
+            deflater.setInput(data);
+            deflater.finish();
+            byte[] buffer = new byte[data.length + 100];
+            int length = deflater.deflate(buffer);
+            deflater.end();
+            blob.setZlibData(ByteString.copyFrom(buffer, 0, length)).setRawSize(data.length);
+        } else {
+            blob.setRaw(ByteString.copyFrom(data));
+        }
+
+        List<ReaderElement> result = new ArrayList<>();
+        new PbfBlobDecoder("OSMData", blob.build().toByteArray(), new PbfBlobDecoderListener() {
+            @Override
+            public void complete(List<ReaderElement> decodedEntities) {
+                result.addAll(decodedEntities);
+            }
+
+            @Override
+            public void error(Exception ex) {
+                throw new AssertionError(ex);
+            }
+        }).run();
+        return result;
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing;
+
+import com.graphhopper.routing.util.AccessFilter;
+import com.graphhopper.routing.util.AllEdgesIterator;
+import com.graphhopper.routing.util.EdgeFilter;
+import com.graphhopper.routing.util.EncodingManager;
+import com.graphhopper.routing.util.FlagEncoder;
+import com.graphhopper.routing.util.FlagEncoders;
+import com.graphhopper.storage.BaseGraph;
+import com.graphhopper.storage.GraphEdgeIdFinder;
+import com.graphhopper.storage.RAMDirectory;
+import com.graphhopper.storage.index.LocationIndexTree;
+import com.graphhopper.util.GHUtility;
+import com.graphhopper.util.PMap;
+import com.graphhopper.util.shapes.GHPoint;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BlockAreaCacheTest {
+    private FlagEncoder encoder;
+    private BaseGraph graph;
+    private LocationIndexTree locationIndex;
+
+    @BeforeEach
+    void setup() {
+        encoder = FlagEncoders.createCar();
+        graph = new BaseGraph.Builder(EncodingManager.create(encoder)).create();
+        GHUtility.buildRandomGraph(graph, new Random(123), 500, 2.5, false, false,
+                encoder.getAccessEnc(), encoder.getAverageSpeedEnc(), 60.0, 0, 0.8, 0);
+        locationIndex = new LocationIndexTree(graph, new RAMDirectory());
+        locationIndex.prepareIndex();
+    }
+
+    @Test
+    void normalize() {
+        BlockAreaCache cache = new BlockAreaCache(graph, locationIndex, 10, null);
+        assertEquals("", cache.normalize(" "));
+        assertEquals("49.4,9.7,100", cache.normalize("49.400, 9.70,100.0"));
+        assertEquals("49.4,9.7,100;49.5,9.7", cache.normalize("49.5,9.7;49.4,9.7,100"));
+        assertThrows(IllegalArgumentException.class, () -> cache.normalize("49.4,abc,100"));
+        assertThrows(IllegalArgumentException.class, () -> cache.normalize("unknown"));
+    }
+
+    @Test
+    void sameEdgesAsGraphEdgeIdFinder() {
+        BlockAreaCache cache = new BlockAreaCache(graph, locationIndex, 10, null);
+        EdgeFilter filter = AccessFilter.allEdges(encoder.getAccessEnc());
+        List<GHPoint> points = Collections.singletonList(new GHPoint(49.41, 9.71));
+        PMap hints = new PMap().putObject("block_area", "49.404,9.704,300;49.402,9.702,49.406,9.706");
+        GraphEdgeIdFinder.BlockArea expected = GraphEdgeIdFinder.createBlockArea(graph, locationIndex, points, hints, filter);
+        GraphEdgeIdFinder.BlockArea blockArea = cache.createBlockArea("car", points, hints, filter);
+        int blocked = 0;
+        AllEdgesIterator iter = graph.getAllEdges();
+        while (iter.next()) {
+            assertEquals(expected.intersects(iter), blockArea.intersects(iter), "edge " + iter.getEdge());
+            if (blockArea.intersects(iter)) blocked++;
+        }
+        assertTrue(blocked > 0);
+
+        // the same block area in a different notation is found in the cache, but only for the same profile
+        PMap otherHints = new PMap().putObject("block_area", "49.402,9.702,49.406,9.706;49.4040,9.7040,300");
+        assertSame(blockArea, cache.createBlockArea("car", points, otherHints, filter));
+        assertNotSame(blockArea, cache.createBlockArea("other", points, otherHints, filter));
+        assertEquals(2, cache.size());
+
+        // query points within the block area are still rejected
+        assertThrows(IllegalArgumentException.class, () -> cache.createBlockArea("car",
+                Collections.singletonList(new GHPoint(49.404, 9.704)), hints, filter));
+
+        cache.clear();
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void disabledCache() {
+        BlockAreaCache cache = new BlockAreaCache(graph, locationIndex, 0, null);
+        PMap hints = new PMap().putObject("block_area", "49.404,9.704,300");
+        EdgeFilter filter = AccessFilter.allEdges(encoder.getAccessEnc());
+        assertNotSame(cache.createBlockArea("car", Collections.emptyList(), hints, filter),
+                cache.createBlockArea("car", Collections.emptyList(), hints, filter));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void namedAreas(@TempDir File dir) {
+        File file = new File(dir, "block_areas.properties");
+        BlockAreaCache cache = new BlockAreaCache(graph, locationIndex, 10, file);
+        cache.putNamedArea("roadworks_1", "49.404,9.704,300");
+        assertThrows(IllegalArgumentException.class, () -> cache.putNamedArea("1 invalid", "49.404,9.704,300"));
+        assertThrows(IllegalArgumentException.class, () -> cache.putNamedArea("invalid", "49.404,9.704,300,1,2"));
+        assertEquals("49.404,9.704,300;49.5,9.7", cache.normalize("roadworks_1;49.5,9.7"));
+
+        EdgeFilter filter = AccessFilter.allEdges(encoder.getAccessEnc());
+        GraphEdgeIdFinder.BlockArea blockArea = cache.createBlockArea("car", Collections.emptyList(),
+                new PMap().putObject("block_area", "roadworks_1"), filter);
+        assertSame(blockArea, cache.createBlockArea("car", Collections.emptyList(),
+                new PMap().putObject("block_area", "49.404,9.704,300"), filter));
+
+        // the named areas are loaded again
+        BlockAreaCache loaded = new BlockAreaCache(graph, locationIndex, 10, file);
+        assertEquals(Collections.singletonMap("roadworks_1", "49.404,9.704,300"), loaded.getNamedAreas());
+        assertTrue(loaded.removeNamedArea("roadworks_1"));
+        assertFalse(loaded.removeNamedArea("roadworks_1"));
+        assertTrue(new BlockAreaCache(graph, locationIndex, 10, file).getNamedAreas().isEmpty());
+    }
+}
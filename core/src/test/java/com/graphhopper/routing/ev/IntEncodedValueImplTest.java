@@ -29,6 +29,24 @@ public class IntEncodedValueImplTest {
         assertEquals(20, prop.getInt(true, ref));
     }
 
+    @Test
+    public void edgeIntAccess() {
+        IntEncodedValue directed = new IntEncodedValueImpl("directed", 10, 0, false, true);
+        IntEncodedValue negated = new IntEncodedValueImpl("negated", 20, 0, true, false);
+        EncodedValue.InitializerConfig config = new EncodedValue.InitializerConfig();
+        directed.init(config);
+        negated.init(config);
+        IntsRef ref = new IntsRef(2);
+        directed.setInt(false, ref, 10);
+        directed.setInt(true, ref, 20);
+        negated.setInt(false, ref, 30);
+        EdgeIntAccess access = index -> ref.ints[index];
+        assertEquals(10, directed.getInt(false, access));
+        assertEquals(20, directed.getInt(true, access));
+        assertEquals(30, negated.getInt(false, access));
+        assertEquals(-30, negated.getInt(true, access));
+    }
+
     @Test
     public void multiIntsUsage() {
         IntEncodedValue prop = new IntEncodedValueImpl("test", 31, true);
@@ -0,0 +1,112 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing.weighting;
+
+import com.graphhopper.routing.querygraph.QueryGraph;
+import com.graphhopper.routing.util.EdgeFilter;
+import com.graphhopper.routing.util.EncodingManager;
+import com.graphhopper.routing.util.FlagEncoder;
+import com.graphhopper.routing.util.FlagEncoders;
+import com.graphhopper.routing.weighting.custom.CustomModelParser;
+import com.graphhopper.storage.BaseGraph;
+import com.graphhopper.storage.EdgeWeightStorage;
+import com.graphhopper.storage.RAMDirectory;
+import com.graphhopper.storage.index.LocationIndexTree;
+import com.graphhopper.storage.index.Snap;
+import com.graphhopper.util.CustomModel;
+import com.graphhopper.util.EdgeExplorer;
+import com.graphhopper.util.EdgeIterator;
+import com.graphhopper.util.GHUtility;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static com.graphhopper.json.Statement.If;
+import static com.graphhopper.json.Statement.Op.MULTIPLY;
+import static org.junit.jupiter.api.Assertions.*;
+
+class PrecomputedWeightingTest {
+    private EncodingManager encodingManager;
+    private FlagEncoder encoder;
+    private BaseGraph graph;
+    private Weighting weighting;
+
+    @BeforeEach
+    void setup() {
+        encoder = FlagEncoders.createCar();
+        encodingManager = EncodingManager.create(encoder);
+        graph = new BaseGraph.Builder(encodingManager).create();
+        GHUtility.buildRandomGraph(graph, new Random(42), 200, 2.5, true, true,
+                encoder.getAccessEnc(), encoder.getAverageSpeedEnc(), null, 0.7, 0.8, 0.8);
+        CustomModel customModel = new CustomModel().setDistanceInfluence(70).
+                addToPriority(If("road_class == PRIMARY", MULTIPLY, "0.5"));
+        weighting = CustomModelParser.createWeighting(encoder, encodingManager, TurnCostProvider.NO_TURN_COST_PROVIDER, customModel);
+    }
+
+    @Test
+    void sameWeightsAsWeighting() {
+        EdgeWeightStorage storage = new EdgeWeightStorage(new RAMDirectory(), "car").create(graph.getEdges(), 1);
+        PrecomputedWeighting.prepare(graph, weighting, storage);
+        PrecomputedWeighting precomputed = new PrecomputedWeighting(weighting, storage);
+        assertEquals(weighting.getName(), precomputed.getName());
+
+        // compare both directions of all edges, also when the edge state is reversed
+        int infinite = 0;
+        EdgeExplorer explorer = graph.createEdgeExplorer();
+        for (int node = 0; node < graph.getNodes(); node++) {
+            EdgeIterator iter = explorer.setBaseNode(node);
+            while (iter.next()) {
+                for (boolean reverse : new boolean[]{false, true}) {
+                    double expected = weighting.calcEdgeWeight(iter, reverse);
+                    assertEquals(expected, precomputed.calcEdgeWeight(iter, reverse), "edge " + iter.getEdge());
+                    assertEquals(weighting.calcEdgeWeightWithAccess(iter, reverse), precomputed.calcEdgeWeightWithAccess(iter, reverse));
+                    if (Double.isFinite(expected))
+                        assertEquals(weighting.calcEdgeMillis(iter, reverse), precomputed.calcEdgeMillis(iter, reverse));
+                    else
+                        infinite++;
+                }
+            }
+        }
+        assertTrue(infinite > 0);
+    }
+
+    @Test
+    void virtualEdges() {
+        EdgeWeightStorage storage = new EdgeWeightStorage(new RAMDirectory(), "car").create(graph.getEdges(), 1);
+        PrecomputedWeighting.prepare(graph, weighting, storage);
+        LocationIndexTree locationIndex = new LocationIndexTree(graph, new RAMDirectory());
+        locationIndex.prepareIndex();
+        Snap snap = locationIndex.findClosest(49.405, 9.705, EdgeFilter.ALL_EDGES);
+        assertTrue(snap.isValid());
+        QueryGraph queryGraph = QueryGraph.create(graph, snap);
+        Weighting precomputed = queryGraph.wrapWeighting(new PrecomputedWeighting(weighting, storage));
+        Weighting expected = queryGraph.wrapWeighting(weighting);
+        EdgeIterator iter = queryGraph.createEdgeExplorer().setBaseNode(graph.getNodes());
+        while (iter.next()) {
+            assertEquals(expected.calcEdgeWeight(iter, false), precomputed.calcEdgeWeight(iter, false));
+            assertEquals(expected.calcEdgeWeight(iter, true), precomputed.calcEdgeWeight(iter, true));
+        }
+    }
+
+    @Test
+    void wrongNumberOfEdges() {
+        EdgeWeightStorage storage = new EdgeWeightStorage(new RAMDirectory(), "car").create(graph.getEdges() - 1, 1);
+        assertThrows(IllegalArgumentException.class, () -> PrecomputedWeighting.prepare(graph, weighting, storage));
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing.weighting.custom;
+
+import com.graphhopper.routing.querygraph.QueryGraph;
+import com.graphhopper.routing.util.AllEdgesIterator;
+import com.graphhopper.routing.util.EdgeFilter;
+import com.graphhopper.routing.util.EncodingManager;
+import com.graphhopper.routing.util.FlagEncoder;
+import com.graphhopper.routing.util.FlagEncoders;
+import com.graphhopper.storage.BaseGraph;
+import com.graphhopper.storage.RAMDirectory;
+import com.graphhopper.storage.index.LocationIndexTree;
+import com.graphhopper.storage.index.Snap;
+import com.graphhopper.util.*;
+import com.graphhopper.util.shapes.Polygon;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.prep.PreparedPolygon;
+
+import java.util.Collections;
+import java.util.Random;
+
+import static com.graphhopper.json.Statement.If;
+import static com.graphhopper.json.Statement.Op.MULTIPLY;
+import static org.junit.jupiter.api.Assertions.*;
+
+class AreaEdgeCacheTest {
+    private FlagEncoder encoder;
+    private EncodingManager encodingManager;
+    private BaseGraph graph;
+    private LocationIndexTree locationIndex;
+    private Geometry area;
+    private Polygon polygon;
+
+    @BeforeEach
+    void setup() {
+        encoder = FlagEncoders.createCar();
+        encodingManager = EncodingManager.create(encoder);
+        graph = new BaseGraph.Builder(encodingManager).create();
+        GHUtility.buildRandomGraph(graph, new Random(123), 500, 2.5, false, false,
+                encoder.getAccessEnc(), encoder.getAverageSpeedEnc(), 60.0, 0, 0.8, 0);
+        locationIndex = new LocationIndexTree(graph, new RAMDirectory());
+        locationIndex.prepareIndex();
+        // a triangle within the bounds of the random graph, see GHUtility.buildRandomGraph
+        area = new GeometryFactory().createPolygon(new Coordinate[]{new Coordinate(9.702, 49.402),
+                new Coordinate(9.708, 49.403), new Coordinate(9.704, 49.408), new Coordinate(9.702, 49.402)});
+        polygon = new Polygon(new PreparedPolygon((org.locationtech.jts.geom.Polygon) area));
+    }
+
+    @Test
+    void sameEdgesAsGeometricCheck() {
+        AreaEdgeCache cache = new AreaEdgeCache(graph, locationIndex, 10);
+        AreaEdges areaEdges = AreaEdges.create(area, cache);
+        AreaEdges withoutCache = AreaEdges.create(area, null);
+        int inside = 0;
+        AllEdgesIterator iter = graph.getAllEdges();
+        while (iter.next()) {
+            boolean expected = CustomWeightingHelper.in(polygon, iter);
+            assertEquals(expected, areaEdges.contains(iter), "edge " + iter.getEdge());
+            assertEquals(expected, withoutCache.contains(iter), "edge " + iter.getEdge());
+            if (expected) inside++;
+        }
+        assertTrue(inside > 10 && inside < graph.getEdges(), "edges in area: " + inside);
+
+        // the edges are calculated only once, also for an equal geometry
+        assertSame(cache.getEdges(area), cache.getEdges(area.copy()));
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    void virtualEdges() {
+        AreaEdges areaEdges = AreaEdges.create(area, new AreaEdgeCache(graph, locationIndex, 10));
+        Snap snap = locationIndex.findClosest(49.405, 9.705, EdgeFilter.ALL_EDGES);
+        assertTrue(snap.isValid());
+        QueryGraph queryGraph = QueryGraph.create(graph, snap);
+        EdgeIterator iter = queryGraph.createEdgeExplorer().setBaseNode(graph.getNodes());
+        int virtualEdges = 0;
+        while (iter.next()) {
+            assertTrue(iter.getEdge() >= graph.getEdges());
+            assertEquals(CustomWeightingHelper.in(polygon, iter), areaEdges.contains(iter));
+            virtualEdges++;
+        }
+        assertTrue(virtualEdges > 0);
+    }
+
+    @Test
+    void customModel() {
+        CustomModel customModel = new CustomModel().addToPriority(If("in_area1", MULTIPLY, "0.5"));
+        customModel.getAreas().put("area1", new JsonFeature("area1", "Feature", null, area, Collections.emptyMap()));
+        CustomWeighting.EdgeToDoubleMapping cached = CustomModelParser.createWeightingParameters(customModel, encodingManager,
+                encoder.getAverageSpeedEnc(), 140, null, new AreaEdgeCache(graph, locationIndex, 10)).getEdgeToPriorityMapping();
+        CustomWeighting.EdgeToDoubleMapping notCached = CustomModelParser.createWeightingParameters(customModel, encodingManager,
+                encoder.getAverageSpeedEnc(), 140, null).getEdgeToPriorityMapping();
+        AllEdgesIterator iter = graph.getAllEdges();
+        while (iter.next()) {
+            assertEquals(notCached.get(iter, false), cached.get(iter, false), 1.e-6);
+            assertEquals(CustomWeightingHelper.in(polygon, iter) ? 0.5 : 1, cached.get(iter, false), 1.e-6);
+        }
+    }
+}
@@ -0,0 +1,166 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing.weighting.custom;
+
+import com.graphhopper.util.CustomModel;
+import com.graphhopper.util.JsonFeature;
+import org.junit.jupiter.api.Test;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.GeometryFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.graphhopper.json.Statement.If;
+import static com.graphhopper.json.Statement.Op.LIMIT;
+import static com.graphhopper.json.Statement.Op.MULTIPLY;
+import static org.junit.jupiter.api.Assertions.*;
+
+class CustomModelClassCacheTest {
+
+    private static CustomModelClassCache.Key key(CustomModel customModel) {
+        return CustomModelClassCache.Key.create(customModel, "car_average_speed", 140, null, 1);
+    }
+
+    @Test
+    void keyIgnoresAreaGeometryAndDistanceInfluence() {
+        CustomModel model1 = new CustomModel().addToPriority(If("in_area1", MULTIPLY, "0.5")).setDistanceInfluence(10);
+        model1.getAreas().put("area1", createArea(1));
+        CustomModel model2 = new CustomModel().addToPriority(If("in_area1", MULTIPLY, "0.5")).setDistanceInfluence(20);
+        model2.getAreas().put("area1", createArea(2));
+        assertEquals(key(model1), key(model2));
+        assertEquals(key(model1).hashCode(), key(model2).hashCode());
+
+        model2.addToSpeed(If("true", LIMIT, "100"));
+        assertNotEquals(key(model1), key(model2));
+        assertNotEquals(key(model1), CustomModelClassCache.Key.create(model1, "car_average_speed", 120, null, 1));
+        // the key must not change if the model is modified afterwards
+        CustomModelClassCache.Key key = key(model1);
+        model1.addToSpeed(If("true", LIMIT, "100"));
+        assertNotEquals(key, key(model1));
+    }
+
+    @Test
+    void evictLeastRecentlyUsed() {
+        CustomModelClassCache cache = new CustomModelClassCache(10);
+        List<CustomModelClassCache.Key> keys = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            keys.add(key(new CustomModel().addToPriority(If("true", MULTIPLY, "0." + i))));
+            cache.get(keys.get(i), () -> Object.class);
+        }
+        // use the first key again, afterwards the second key is the least recently used one
+        cache.get(keys.get(0), () -> fail("must be cached"));
+        cache.get(key(new CustomModel().addToPriority(If("true", MULTIPLY, "0.99"))), () -> Object.class);
+        assertEquals(9, cache.size());
+        assertEquals(1, cache.getHits());
+        assertEquals(11, cache.getMisses());
+        cache.get(keys.get(0), () -> fail("must be cached"));
+        AtomicInteger compilations = new AtomicInteger();
+        cache.get(keys.get(1), () -> {
+            compilations.incrementAndGet();
+            return Object.class;
+        });
+        assertEquals(1, compilations.get());
+    }
+
+    @Test
+    void compileOnceUnderContention() throws Exception {
+        CustomModelClassCache cache = new CustomModelClassCache(100);
+        CustomModelClassCache.Key key = key(new CustomModel().addToPriority(If("true", MULTIPLY, "0.5")));
+        AtomicInteger compilations = new AtomicInteger();
+        int threads = 8;
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Class<?>>> results = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                results.add(executor.submit(() -> {
+                    start.await();
+                    return cache.get(key, () -> {
+                        compilations.incrementAndGet();
+                        try {
+                            Thread.sleep(50);
+                        } catch (InterruptedException ex) {
+                            throw new RuntimeException(ex);
+                        }
+                        return Object.class;
+                    });
+                }));
+            }
+            start.countDown();
+            for (Future<Class<?>> result : results) {
+                assertEquals(Object.class, result.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(1, compilations.get());
+        assertEquals(1, cache.getMisses());
+        assertEquals(threads - 1, cache.getHits());
+        assertEquals((threads - 1.0) / threads, cache.getHitRate(), 1.e-6);
+    }
+
+    @Test
+    void failedCompilationIsNotCached() {
+        CustomModelClassCache cache = new CustomModelClassCache(100);
+        CustomModelClassCache.Key key = key(new CustomModel().addToPriority(If("true", MULTIPLY, "0.5")));
+        IllegalArgumentException ex = assertThrows(IllegalArgumentException.class, () -> cache.get(key, () -> {
+            throw new IllegalArgumentException("cannot compile");
+        }));
+        assertEquals("cannot compile", ex.getMessage());
+        assertEquals(0, cache.size());
+        assertEquals(Object.class, cache.get(key, () -> Object.class));
+    }
+
+    @Test
+    void moveTo() {
+        CustomModelClassCache internalCache = new CustomModelClassCache(Integer.MAX_VALUE);
+        List<CustomModelClassCache.Key> keys = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            keys.add(key(new CustomModel().addToPriority(If("true", MULTIPLY, "0." + i))));
+            internalCache.get(keys.get(i), () -> Object.class);
+        }
+        CustomModelClassCache cache = new CustomModelClassCache(10);
+        assertNull(cache.getIfPresent(keys.get(0)));
+        internalCache.moveTo(cache);
+        assertEquals(0, internalCache.size());
+        assertEquals(3, cache.size());
+        // the classes need not be compiled again
+        assertEquals(Object.class, cache.getIfPresent(keys.get(0)));
+        for (CustomModelClassCache.Key key : keys)
+            assertEquals(Object.class, cache.get(key, () -> fail("must be cached")));
+        assertEquals(0, cache.getMisses());
+
+        // the target cache keeps its maximum size
+        for (int i = 0; i < 3; i++)
+            internalCache.get(key(new CustomModel().addToPriority(If("true", MULTIPLY, "0.9" + i))), () -> Object.class);
+        CustomModelClassCache smallCache = new CustomModelClassCache(2);
+        internalCache.moveTo(smallCache);
+        assertEquals(0, internalCache.size());
+        assertEquals(2, smallCache.size());
+    }
+
+    private static JsonFeature createArea(double offset) {
+        return new JsonFeature("area", "Feature", null, new GeometryFactory().createPolygon(new Coordinate[]{
+                new Coordinate(offset, offset), new Coordinate(offset + 1, offset), new Coordinate(offset + 1, offset + 1),
+                new Coordinate(offset, offset)}), Collections.emptyMap());
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing.weighting.custom;
+
+import com.graphhopper.routing.ev.DecimalEncodedValue;
+import com.graphhopper.routing.ev.EnumEncodedValue;
+import com.graphhopper.routing.ev.RoadClass;
+import com.graphhopper.routing.util.EncodingManager;
+import com.graphhopper.routing.util.FlagEncoder;
+import com.graphhopper.routing.util.FlagEncoders;
+import com.graphhopper.storage.BaseGraph;
+import com.graphhopper.util.CustomModel;
+import com.graphhopper.util.EdgeIteratorState;
+import com.graphhopper.util.Helper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.UUID;
+
+import static com.graphhopper.json.Statement.If;
+import static com.graphhopper.json.Statement.Op.MULTIPLY;
+import static org.junit.jupiter.api.Assertions.*;
+
+class CustomModelClassStoreTest {
+    private static final String DIR = "./target/tmp/custom-model-class-store";
+    private EncodingManager encodingManager;
+    private DecimalEncodedValue avgSpeedEnc;
+    private EnumEncodedValue<RoadClass> roadClassEnc;
+
+    @BeforeEach
+    void setup() {
+        FlagEncoder encoder = FlagEncoders.createCar();
+        encodingManager = EncodingManager.create(encoder);
+        avgSpeedEnc = encoder.getAverageSpeedEnc();
+        roadClassEnc = encodingManager.getEnumEncodedValue(RoadClass.KEY, RoadClass.class);
+    }
+
+    @AfterEach
+    void tearDown() {
+        CustomModelParser.setClassStore(null);
+        Helper.removeDir(new File(DIR));
+    }
+
+    @Test
+    void storeAndLoad() {
+        // use a new model, so that it was not cached in memory by another test
+        String value = "0." + Math.abs(UUID.randomUUID().getMostSignificantBits());
+        CustomModel customModel = new CustomModel().addToPriority(If("road_class == PRIMARY", MULTIPLY, value));
+        CustomModelParser.setClassStore(new CustomModelClassStore(new File(DIR)));
+        CustomModelParser.createWeightingParameters(customModel, encodingManager, avgSpeedEnc, 140, null);
+        CustomModelParser.setClassStore(null);
+
+        // a new store simulates a restart
+        CustomModelClassStore store = new CustomModelClassStore(new File(DIR));
+        assertEquals(1, store.getDir().listFiles().length);
+        String key = CustomModelClassStore.createKey(CustomModelClassCache.Key.create(customModel, avgSpeedEnc.getName(), 140, null, 1), encodingManager);
+        Class<?> clazz = store.load(key);
+        assertNotNull(clazz);
+        assertPriority(clazz, Double.parseDouble(value));
+
+        // a different encoded value layout leads to another key
+        EncodingManager otherEncodingManager = EncodingManager.create(FlagEncoders.createCar(), FlagEncoders.createBike());
+        assertNull(store.load(CustomModelClassStore.createKey(CustomModelClassCache.Key.create(customModel,
+                avgSpeedEnc.getName(), 140, null, 1), otherEncodingManager)));
+
+        assertEquals(1, store.preload(10));
+        assertPriority(store.load(key), Double.parseDouble(value));
+        assertEquals(0, store.preload(0));
+    }
+
+    @Test
+    void removeInvalidFiles() throws IOException {
+        CustomModelClassStore store = new CustomModelClassStore(new File(DIR));
+        String key = CustomModelClassStore.createKey(CustomModelClassCache.Key.create(
+                new CustomModel().addToPriority(If("road_class == PRIMARY", MULTIPLY, "0.5")), avgSpeedEnc.getName(), 140, null, 1), encodingManager);
+        store.store(key, "Invalid", Collections.singletonMap("Invalid", new byte[]{1, 2, 3}));
+        File[] files = store.getDir().listFiles();
+        assertEquals(1, files.length);
+        assertNull(store.load(key));
+        assertFalse(files[0].exists());
+
+        Files.write(files[0].toPath(), new byte[]{0, 0});
+        assertEquals(0, store.preload(10));
+        assertFalse(files[0].exists());
+    }
+
+    private void assertPriority(Class<?> clazz, double expected) {
+        try {
+            CustomWeightingHelper helper = (CustomWeightingHelper) clazz.getDeclaredConstructor().newInstance();
+            helper.init(encodingManager, avgSpeedEnc, null, new CustomModel().getAreas(), null);
+            BaseGraph graph = new BaseGraph.Builder(encodingManager).create();
+            EdgeIteratorState primary = graph.edge(0, 1).setDistance(100).set(roadClassEnc, RoadClass.PRIMARY);
+            EdgeIteratorState secondary = graph.edge(1, 2).setDistance(100).set(roadClassEnc, RoadClass.SECONDARY);
+            assertEquals(expected, helper.getPriority(primary, false), 1.e-6);
+            assertEquals(1, helper.getPriority(secondary, false), 1.e-6);
+        } catch (ReflectiveOperationException ex) {
+            throw new AssertionError(ex);
+        }
+    }
+}
@@ -283,4 +283,37 @@ public class BaseGraphTest extends AbstractGraphStorageTester {
         edge.set(rcEnc, RoadClass.CORRIDOR);
         assertEquals(RoadClass.CORRIDOR, edge.get(rcEnc));
     }
+
+    @Test
+    public void getWithoutReadingAllFlags() {
+        BaseGraph graph = createGHStorage();
+        EnumEncodedValue<RoadClass> rcEnc = encodingManager.getEnumEncodedValue(RoadClass.KEY, RoadClass.class);
+        graph.edge(0, 1).set(rcEnc, RoadClass.PRIMARY).set(carAccessEnc, true, false).set(carAvSpeedEnc, 50);
+        graph.edge(1, 2).set(rcEnc, RoadClass.TRACK).set(carAccessEnc, false, true).set(carAvSpeedEnc, 10);
+
+        // the values are read directly from the storage before getFlags is called and from the flags afterwards
+        EdgeIterator iter = graph.createEdgeExplorer().setBaseNode(1);
+        while (iter.next()) {
+            RoadClass roadClass = iter.get(rcEnc);
+            boolean fwd = iter.get(carAccessEnc), bwd = iter.getReverse(carAccessEnc);
+            double speed = iter.get(carAvSpeedEnc);
+            IntsRef flags = iter.getFlags();
+            assertEquals(rcEnc.getEnum(false, flags), roadClass);
+            assertEquals(carAccessEnc.getBool(iter.get(REVERSE_STATE), flags), fwd);
+            assertEquals(carAccessEnc.getBool(!iter.get(REVERSE_STATE), flags), bwd);
+            assertEquals(carAvSpeedEnc.getDecimal(false, flags), speed);
+            assertEquals(roadClass, iter.get(rcEnc));
+            assertEquals(speed, iter.get(carAvSpeedEnc));
+        }
+        EdgeIteratorState edge = graph.getEdgeIteratorState(0, 0);
+        assertEquals(RoadClass.PRIMARY, edge.get(rcEnc));
+        assertFalse(edge.get(carAccessEnc));
+        assertTrue(edge.getReverse(carAccessEnc));
+        assertEquals(50, edge.get(carAvSpeedEnc));
+        edge = graph.getEdgeIteratorState(1, 2);
+        assertEquals(RoadClass.TRACK, edge.get(rcEnc));
+        assertFalse(edge.get(carAccessEnc));
+        assertTrue(edge.getReverse(carAccessEnc));
+        assertEquals(10, edge.get(carAvSpeedEnc));
+    }
 }
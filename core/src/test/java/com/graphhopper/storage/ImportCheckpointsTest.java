@@ -0,0 +1,110 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.storage;
+
+import com.graphhopper.util.Helper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ImportCheckpointsTest {
+    private static final String DIR = "./target/tmp/import-checkpoints";
+
+    @BeforeEach
+    public void setUp() {
+        Helper.removeDir(new File(DIR));
+        new File(DIR).mkdirs();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        Helper.removeDir(new File(DIR));
+    }
+
+    @Test
+    public void testRemoveAfterReload() throws IOException {
+        write("a", "content of a");
+        StorableProperties properties = createProperties();
+        properties.create(100);
+        ImportCheckpoints checkpoints = new ImportCheckpoints(properties, DIR);
+        checkpoints.finish("stage1", Collections.singletonList("a"));
+        checkpoints.finish("stage2", Collections.singletonList("a"));
+        properties.close();
+
+        properties = createProperties();
+        assertTrue(properties.loadExisting());
+        checkpoints = new ImportCheckpoints(properties, DIR);
+        assertTrue(checkpoints.isValid("stage1"));
+        checkpoints.remove("stage1");
+        properties.close();
+
+        // the removed stage must not come back
+        properties = createProperties();
+        assertTrue(properties.loadExisting());
+        checkpoints = new ImportCheckpoints(properties, DIR);
+        assertFalse(checkpoints.isFinished("stage1"));
+        assertFalse(checkpoints.isValid("stage1"));
+        assertTrue(checkpoints.isValid("stage2"));
+        assertEquals(Collections.singletonList("stage2"), checkpoints.getFinishedStages());
+        properties.close();
+    }
+
+    @Test
+    public void testFilesOfLaterStages() throws IOException {
+        write("a", "content of a");
+        write("b", "content of b");
+        StorableProperties properties = createProperties();
+        properties.create(100);
+        ImportCheckpoints checkpoints = new ImportCheckpoints(properties, DIR);
+        checkpoints.finish("stage1", Arrays.asList("a", "b", "missing"));
+        assertTrue(checkpoints.isValid("stage1"));
+
+        // the second stage only writes b, so only b needs to be validated for it
+        write("b", "changed content of b");
+        checkpoints.finish("stage2", Collections.singletonList("b"));
+        assertFalse(checkpoints.isValid("stage1"));
+        assertTrue(checkpoints.isValid("stage2"));
+        assertTrue(checkpoints.isValid("stage1", "stage2"));
+        assertFalse(checkpoints.isValid("stage1", "stage3"));
+
+        write("a", "changed content of a");
+        assertTrue(checkpoints.isValid("stage2"));
+        assertFalse(checkpoints.isValid("stage1", "stage2"));
+
+        assertTrue(new File(DIR, "b").delete());
+        assertFalse(checkpoints.isValid("stage2"));
+        properties.close();
+    }
+
+    private static StorableProperties createProperties() {
+        return new StorableProperties(new GHDirectory(DIR, DAType.RAM_STORE));
+    }
+
+    private static void write(String file, String content) throws IOException {
+        Files.write(new File(DIR, file).toPath(), content.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -68,6 +68,37 @@ public class StorablePropertiesTest {
         Helper.removeDir(new File(dir));
     }
 
+    @Test
+    public void testRemove() {
+        String dir = "./target/test";
+        Helper.removeDir(new File(dir));
+        StorableProperties instance = new StorableProperties(createDir(dir, true));
+        instance.create(1000);
+        instance.put("test.min", 123);
+        instance.put("test.removed", "some longer value");
+        instance.flush();
+        instance.close();
+
+        instance = new StorableProperties(createDir(dir, true));
+        assertTrue(instance.loadExisting());
+        instance.remove("test.removed");
+        instance.flush();
+        instance.close();
+
+        // the removed property must not be loaded again, also not after the next flush
+        for (int i = 0; i < 2; i++) {
+            instance = new StorableProperties(createDir(dir, true));
+            assertTrue(instance.loadExisting());
+            assertEquals("123", instance.get("test.min"));
+            assertEquals("", instance.get("test.removed"));
+            assertEquals(1, instance.getAll().size());
+            instance.flush();
+            instance.close();
+        }
+
+        Helper.removeDir(new File(dir));
+    }
+
     @Test
     public void testLoadProperties() throws IOException {
         Map<String, String> map = new HashMap<>();
@@ -23,19 +23,18 @@ import com.graphhopper.routing.ev.TurnCost;
 import com.graphhopper.routing.util.EncodingManager;
 import com.graphhopper.routing.util.FlagEncoder;
 import com.graphhopper.routing.util.FlagEncoders;
+import com.graphhopper.util.EdgeIterator;
 import com.graphhopper.util.GHUtility;
 import com.graphhopper.util.PMap;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
-import java.util.Arrays;
-import java.util.HashSet;
-import java.util.List;
-import java.util.Set;
+import java.util.*;
 
 import static com.graphhopper.util.GHUtility.getEdge;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class TurnCostStorageTest {
 
@@ -161,4 +160,50 @@ public class TurnCostStorageTest {
         assertFalse(iterator.next());
     }
 
+    @Test
+    public void testIndex() {
+        BaseGraph g = new BaseGraph.Builder(manager).create();
+        FlagEncoder encoder = manager.getEncoder("car");
+        GHUtility.buildRandomGraph(g, new Random(42), 100, 2.5, true, true,
+                encoder.getAccessEnc(), encoder.getAverageSpeedEnc(), 60.0, 0.8, 0.8, 0.8);
+        DecimalEncodedValue carEnc = manager.getDecimalEncodedValue(TurnCost.key("car"));
+        TurnCostStorage turnCostStorage = g.getTurnCostStorage();
+        Random rnd = new Random(123);
+        for (int node = 0; node < g.getNodes(); node++) {
+            // include u-turns and loops, i.e. the same edge pair at different nodes
+            List<Integer> edges = new ArrayList<>();
+            EdgeIterator iter = g.createEdgeExplorer().setBaseNode(node);
+            while (iter.next())
+                edges.add(iter.getEdge());
+            for (int from : edges)
+                for (int to : edges)
+                    if (rnd.nextDouble() < 0.5)
+                        turnCostStorage.set(carEnc, from, node, to, rnd.nextInt(3) + 1);
+        }
+
+        List<int[]> turns = new ArrayList<>();
+        for (int node = 0; node < g.getNodes(); node++) {
+            EdgeIterator inIter = g.createEdgeExplorer().setBaseNode(node);
+            while (inIter.next()) {
+                EdgeIterator outIter = g.createEdgeExplorer().setBaseNode(node);
+                while (outIter.next())
+                    turns.add(new int[]{inIter.getEdge(), node, outIter.getEdge()});
+            }
+        }
+        double[] withoutIndex = new double[turns.size()];
+        for (int i = 0; i < turns.size(); i++)
+            withoutIndex[i] = turnCostStorage.get(carEnc, turns.get(i)[0], turns.get(i)[1], turns.get(i)[2]);
+
+        assertFalse(turnCostStorage.hasIndex());
+        g.freeze();
+        assertTrue(turnCostStorage.hasIndex());
+        for (int i = 0; i < turns.size(); i++)
+            assertEquals(withoutIndex[i], turnCostStorage.get(carEnc, turns.get(i)[0], turns.get(i)[1], turns.get(i)[2]), 0);
+
+        // adding turn costs removes the index
+        int[] turn = turns.get(0);
+        turnCostStorage.set(manager.getDecimalEncodedValue(TurnCost.key("bike")), turn[0], turn[1], turn[2], 2);
+        assertFalse(turnCostStorage.hasIndex());
+        assertEquals(withoutIndex[0], turnCostStorage.get(carEnc, turn[0], turn[1], turn[2]), 0);
+    }
 }
@@ -686,4 +686,35 @@ public class LocationIndexTreeTest {
                     "1, 78, 1, PILLAR"), output);
         }
     }
+
+    @Test
+    public void testMultipleThreadsCreateSameIndex() {
+        FlagEncoder encoder = encodingManager.getEncoder("car");
+        BaseGraph graph = new BaseGraph.Builder(encodingManager).create();
+        GHUtility.buildRandomGraph(graph, new Random(42), 1000, 2.5, true, true,
+                encoder.getAccessEnc(), encoder.getAverageSpeedEnc(), 60.0, 0.8, 0.8, 0.8);
+        // add some pillar nodes, so that edges cover several tiles
+        Random rnd = new Random(123);
+        AllEdgesIterator iter = graph.getAllEdges();
+        while (iter.next()) {
+            if (rnd.nextBoolean())
+                iter.setWayGeometry(Helper.createPointList(49.4 + rnd.nextDouble() * 0.01, 9.7 + rnd.nextDouble() * 0.01));
+        }
+
+        LocationIndexTree single = createIndexNoPrepare(graph, 50);
+        single.prepareIndex();
+        for (int threads : new int[]{2, 3, 8}) {
+            LocationIndexTree multi = createIndexNoPrepare(graph, 50).setThreads(threads);
+            multi.prepareIndex();
+            DataAccess expected = single.lineIntIndex.dataAccess;
+            DataAccess actual = multi.lineIntIndex.dataAccess;
+            assertEquals(single.lineIntIndex.getSize(), multi.lineIntIndex.getSize());
+            assertEquals(single.lineIntIndex.getLeafs(), multi.lineIntIndex.getLeafs());
+            for (int i = 0; i < 5; i++)
+                assertEquals(expected.getHeader(i * 4), actual.getHeader(i * 4));
+            assertEquals(expected.getCapacity(), actual.getCapacity());
+            for (long pointer = 0; pointer < expected.getCapacity(); pointer += 4)
+                assertEquals(expected.getInt(pointer), actual.getInt(pointer), "threads: " + threads + ", pointer: " + pointer);
+        }
+    }
 }
@@ -0,0 +1,271 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.bmw.hmm;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Variant of {@link ViterbiAlgorithm} that identifies the state candidates of a time step by their
+ * index in the candidate list instead of using them as hash map keys. Emission and transition
+ * log probabilities are passed as plain double arrays, which the caller can reuse for all time
+ * steps, and the forward message and back pointers are kept in double and int arrays. This avoids
+ * boxing, hashing and the allocation of map entries and transition objects in the inner loop.
+ *
+ * <p>The results are the same as those of {@link ViterbiAlgorithm} for the same candidate order,
+ * including the tie-breaking between sequences with equal probability.
+ *
+ * <p>Back pointers are stored as one int array per time step. Transition descriptors are only
+ * kept for the best transition into each candidate (like {@link ViterbiAlgorithm}) and are
+ * dropped as soon as no candidate of the next time step points back to this candidate.
+ *
+ * @param <S> the state type
+ * @param <O> the observation type
+ * @param <D> the transition descriptor type
+ */
+public class IndexedViterbiAlgorithm<S, O, D> {
+
+    private final List<List<S>> candidatesPerStep = new ArrayList<>();
+    private final List<O> observations = new ArrayList<>();
+    /**
+     * For each time step t > 0 and candidate i of t, backPointers.get(t)[i] is the index of the
+     * previous candidate in the most likely sequence ending in i, or -1 if i has zero probability.
+     */
+    private final List<int[]> backPointers = new ArrayList<>();
+    private final List<Object[]> descriptors = new ArrayList<>();
+
+    private double[] message = new double[0];
+    private double[] newMessage = new double[0];
+    private boolean[] referenced = new boolean[0];
+    private boolean isBroken = false;
+
+    /**
+     * Lets the HMM computation start at the given first observation and uses the given emission
+     * probabilities as the initial state probability for each starting state.
+     *
+     * @param candidates the list must not be modified afterwards
+     * @param emissionLogProbabilities the emission log probability of candidates.get(i) at index
+     * i, the array can be longer than the number of candidates
+     *
+     * @throws IllegalStateException if this method has already been called
+     */
+    public void startWithInitialObservation(O observation, List<S> candidates,
+            double[] emissionLogProbabilities) {
+        if (!observations.isEmpty() || isBroken) {
+            throw new IllegalStateException("Initial probabilities have already been set.");
+        }
+        final int n = candidates.size();
+        message = ensureCapacity(message, n);
+        System.arraycopy(emissionLogProbabilities, 0, message, 0, n);
+        isBroken = hmmBreak(message, n);
+        if (isBroken) return;
+
+        candidatesPerStep.add(candidates);
+        observations.add(observation);
+        backPointers.add(null);
+        descriptors.add(null);
+    }
+
+    /**
+     * Processes the next time step. Must not be called if the HMM is broken.
+     *
+     * @param candidates the list must not be modified afterwards
+     * @param emissionLogProbabilities the emission log probability of candidates.get(i) at index i
+     * @param transitionLogProbabilities the transition log probability from candidate j of the
+     * previous time step to candidate i is stored at index j * candidates.size() + i. Use
+     * Double.NEGATIVE_INFINITY for missing transitions.
+     * @param transitionDescriptors optional objects that describe the transitions, stored at the same
+     * indices as the transition log probabilities. Can be null.
+     *
+     * @throws IllegalStateException if {@link #startWithInitialObservation} has not been called
+     * before or if this method is called after an HMM break has occurred
+     */
+    public void nextStep(O observation, List<S> candidates, double[] emissionLogProbabilities,
+            double[] transitionLogProbabilities, D[] transitionDescriptors) {
+        if (observations.isEmpty()) {
+            throw new IllegalStateException("startWithInitialObservation() must be called first.");
+        }
+        if (isBroken) {
+            throw new IllegalStateException("Method must not be called after an HMM break.");
+        }
+
+        final int prevCount = candidatesPerStep.get(candidatesPerStep.size() - 1).size();
+        final int n = candidates.size();
+        newMessage = ensureCapacity(newMessage, n);
+        final int[] stepBackPointers = new int[n];
+        final Object[] stepDescriptors = transitionDescriptors == null ? null : new Object[n];
+        for (int i = 0; i < n; i++) {
+            double maxLogProbability = Double.NEGATIVE_INFINITY;
+            int maxPrev = -1;
+            for (int j = 0; j < prevCount; j++) {
+                final double logProbability = message[j] + transitionLogProbabilities[j * n + i];
+                if (logProbability > maxLogProbability) {
+                    maxLogProbability = logProbability;
+                    maxPrev = j;
+                }
+            }
+            newMessage[i] = maxLogProbability + emissionLogProbabilities[i];
+            stepBackPointers[i] = maxPrev;
+            if (maxPrev >= 0 && stepDescriptors != null) {
+                stepDescriptors[i] = transitionDescriptors[maxPrev * n + i];
+            }
+        }
+        isBroken = hmmBreak(newMessage, n);
+        if (isBroken) return;
+
+        final double[] tmp = message;
+        message = newMessage;
+        newMessage = tmp;
+        releaseUnreferencedDescriptors(stepBackPointers, prevCount);
+        candidatesPerStep.add(candidates);
+        observations.add(observation);
+        backPointers.add(stepBackPointers);
+        descriptors.add(stepDescriptors);
+    }
+
+    /**
+     * Returns the most likely sequence of states for all time steps. This includes the initial
+     * observation time step. If an HMM break occurred in the last time step t, then the most
+     * likely sequence up to t-1 is returned. See also {@link #isBroken()}.
+     */
+    @SuppressWarnings("unchecked")
+    public List<SequenceState<S, O, D>> computeMostLikelySequence() {
+        if (observations.isEmpty()) {
+            return new ArrayList<>();
+        }
+        final int lastStep = observations.size() - 1;
+        final List<SequenceState<S, O, D>> result = new ArrayList<>(lastStep + 1);
+        int index = mostLikelyIndex();
+        for (int t = lastStep; t >= 0; t--) {
+            final Object[] stepDescriptors = descriptors.get(t);
+            final D descriptor = stepDescriptors == null ? null : (D) stepDescriptors[index];
+            result.add(new SequenceState<>(candidatesPerStep.get(t).get(index), observations.get(t),
+                    descriptor));
+            if (t > 0) {
+                index = backPointers.get(t)[index];
+            }
+        }
+        Collections.reverse(result);
+        return result;
+    }
+
+    /**
+     * See {@link ViterbiAlgorithm#getConvergedTimeSteps()}.
+     */
+    public int getConvergedTimeSteps() {
+        if (observations.isEmpty()) {
+            return 0;
+        }
+        int t = observations.size() - 1;
+        boolean[] current = new boolean[candidatesPerStep.get(t).size()];
+        int count = 0;
+        for (int i = 0; i < current.length; i++) {
+            // candidates without back pointer have zero probability and are not considered
+            if (t == 0 || backPointers.get(t)[i] >= 0) {
+                current[i] = true;
+                count++;
+            }
+        }
+        // walk back all sequences at the same time until they meet in a single state
+        while (count > 1) {
+            if (t == 0) {
+                return 0;
+            }
+            final int[] stepBackPointers = backPointers.get(t);
+            final boolean[] prev = new boolean[candidatesPerStep.get(t - 1).size()];
+            count = 0;
+            for (int i = 0; i < current.length; i++) {
+                if (current[i] && !prev[stepBackPointers[i]]) {
+                    prev[stepBackPointers[i]] = true;
+                    count++;
+                }
+            }
+            current = prev;
+            t--;
+        }
+        return count == 0 ? 0 : t + 1;
+    }
+
+    /**
+     * Returns whether an HMM break occurred in the last time step, i.e. the probability of all
+     * states equals zero.
+     */
+    public boolean isBroken() {
+        return isBroken;
+    }
+
+    /**
+     * Drops the transition descriptors of the previous time step that are not part of any most
+     * likely sequence ending in the current time step, so that they can be garbage collected.
+     */
+    private void releaseUnreferencedDescriptors(int[] stepBackPointers, int prevCount) {
+        final Object[] prevDescriptors = descriptors.get(descriptors.size() - 1);
+        if (prevDescriptors == null) {
+            return;
+        }
+        referenced = ensureCapacity(referenced, prevCount);
+        Arrays.fill(referenced, 0, prevCount, false);
+        for (int prev : stepBackPointers) {
+            if (prev >= 0) {
+                referenced[prev] = true;
+            }
+        }
+        for (int j = 0; j < prevCount; j++) {
+            if (!referenced[j]) {
+                prevDescriptors[j] = null;
+            }
+        }
+    }
+
+    /**
+     * Retrieves the first candidate of the current forward message with maximum probability.
+     */
+    private int mostLikelyIndex() {
+        int result = -1;
+        double maxLogProbability = Double.NEGATIVE_INFINITY;
+        final int n = candidatesPerStep.get(candidatesPerStep.size() - 1).size();
+        for (int i = 0; i < n; i++) {
+            if (message[i] > maxLogProbability) {
+                result = i;
+                maxLogProbability = message[i];
+            }
+        }
+        assert result >= 0; // Otherwise an HMM break would have occurred.
+        return result;
+    }
+
+    private static boolean hmmBreak(double[] message, int n) {
+        for (int i = 0; i < n; i++) {
+            if (message[i] != Double.NEGATIVE_INFINITY) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static double[] ensureCapacity(double[] array, int size) {
+        return array.length >= size ? array : new double[Math.max(size, array.length * 2)];
+    }
+
+    private static boolean[] ensureCapacity(boolean[] array, int size) {
+        return array.length >= size ? array : new boolean[Math.max(size, array.length * 2)];
+    }
+}
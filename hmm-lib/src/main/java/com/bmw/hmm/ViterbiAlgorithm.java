@@ -20,9 +20,11 @@ package com.bmw.hmm;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * Implementation of the Viterbi algorithm for time-inhomogeneous Markov processes,
@@ -255,6 +257,37 @@ public class ViterbiAlgorithm<S, O, D> {
         }
     }
 
+    /**
+     * Returns the number of time steps, starting from the first one, for which the most likely sequences
+     * ending in any state candidate of the last time step are identical. The most likely sequence
+     * of these time steps will not change anymore when further observations are added, so they can
+     * already be processed if observations arrive one after another.
+     */
+    public int getConvergedTimeSteps() {
+        if (message == null) {
+            return 0;
+        }
+        Set<ExtendedState<S, O, D>> states = Collections.newSetFromMap(new IdentityHashMap<>());
+        states.addAll(lastExtendedStates.values());
+        // walk back all sequences at the same time until they meet in a single state
+        while (states.size() > 1) {
+            final Set<ExtendedState<S, O, D>> prevStates = Collections.newSetFromMap(new IdentityHashMap<>());
+            for (ExtendedState<S, O, D> es : states) {
+                if (es.backPointer == null) {
+                    // reached the first time step without meeting
+                    return 0;
+                }
+                prevStates.add(es.backPointer);
+            }
+            states = prevStates;
+        }
+        int timeSteps = 0;
+        for (ExtendedState<S, O, D> es = states.iterator().next(); es != null; es = es.backPointer) {
+            timeSteps++;
+        }
+        return timeSteps;
+    }
+
     /**
      * Returns whether an HMM occurred in the last time step.
      *
@@ -0,0 +1,107 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.bmw.hmm;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class IndexedViterbiAlgorithmTest {
+
+    @Test
+    public void testSameResultAsViterbiAlgorithm() {
+        Random rand = new Random(42);
+        for (int run = 0; run < 200; run++) {
+            ViterbiAlgorithm<String, Integer, String> viterbi = new ViterbiAlgorithm<>();
+            IndexedViterbiAlgorithm<String, Integer, String> indexedViterbi = new IndexedViterbiAlgorithm<>();
+            List<String> prevCandidates = null;
+            int timeSteps = 1 + rand.nextInt(20);
+            for (int t = 0; t < timeSteps; t++) {
+                List<String> candidates = new ArrayList<>();
+                int n = 1 + rand.nextInt(6);
+                Map<String, Double> emissions = new HashMap<>();
+                double[] emissionArray = new double[n];
+                for (int i = 0; i < n; i++) {
+                    String candidate = t + "_" + i;
+                    candidates.add(candidate);
+                    // coarse values to get some ties
+                    emissionArray[i] = -rand.nextInt(4);
+                    emissions.put(candidate, emissionArray[i]);
+                }
+                if (t == 0) {
+                    viterbi.startWithInitialObservation(t, candidates, emissions);
+                    indexedViterbi.startWithInitialObservation(t, candidates, emissionArray);
+                } else {
+                    Map<Transition<String>, Double> transitions = new HashMap<>();
+                    Map<Transition<String>, String> descriptors = new HashMap<>();
+                    double[] transitionArray = new double[prevCandidates.size() * n];
+                    String[] descriptorArray = new String[prevCandidates.size() * n];
+                    Arrays.fill(transitionArray, Double.NEGATIVE_INFINITY);
+                    for (int j = 0; j < prevCandidates.size(); j++) {
+                        for (int i = 0; i < n; i++) {
+                            if (rand.nextInt(10) < 2)
+                                continue;
+                            Transition<String> transition = new Transition<>(prevCandidates.get(j), candidates.get(i));
+                            transitionArray[j * n + i] = -rand.nextInt(4);
+                            descriptorArray[j * n + i] = transition.toString();
+                            transitions.put(transition, transitionArray[j * n + i]);
+                            descriptors.put(transition, descriptorArray[j * n + i]);
+                        }
+                    }
+                    viterbi.nextStep(t, candidates, emissions, transitions, descriptors);
+                    indexedViterbi.nextStep(t, candidates, emissionArray, transitionArray, descriptorArray);
+                }
+                assertEquals(viterbi.isBroken(), indexedViterbi.isBroken());
+                if (viterbi.isBroken())
+                    break;
+                assertEquals(viterbi.getConvergedTimeSteps(), indexedViterbi.getConvergedTimeSteps());
+                prevCandidates = candidates;
+            }
+            assertEquals(viterbi.computeMostLikelySequence(), indexedViterbi.computeMostLikelySequence());
+        }
+    }
+
+    @Test
+    public void testBreakAtFirstTransition() {
+        IndexedViterbiAlgorithm<String, Integer, String> viterbi = new IndexedViterbiAlgorithm<>();
+        List<String> candidates = Arrays.asList("a", "b");
+        viterbi.startWithInitialObservation(0, candidates, new double[]{-1, -2});
+        assertFalse(viterbi.isBroken());
+        double[] transitions = new double[4];
+        Arrays.fill(transitions, Double.NEGATIVE_INFINITY);
+        viterbi.nextStep(1, candidates, new double[]{-1, -2}, transitions, null);
+        assertTrue(viterbi.isBroken());
+        List<SequenceState<String, Integer, String>> seq = viterbi.computeMostLikelySequence();
+        assertEquals(1, seq.size());
+        assertEquals("a", seq.get(0).state);
+        assertThrows(IllegalStateException.class, () -> viterbi.nextStep(2, candidates, new double[]{-1, -2}, transitions, null));
+    }
+
+    @Test
+    public void testEmptySequence() {
+        IndexedViterbiAlgorithm<String, Integer, String> viterbi = new IndexedViterbiAlgorithm<>();
+        assertTrue(viterbi.computeMostLikelySequence().isEmpty());
+        assertEquals(0, viterbi.getConvergedTimeSteps());
+        viterbi.startWithInitialObservation(0, Collections.emptyList(), new double[0]);
+        assertTrue(viterbi.isBroken());
+        assertTrue(viterbi.computeMostLikelySequence().isEmpty());
+    }
+}
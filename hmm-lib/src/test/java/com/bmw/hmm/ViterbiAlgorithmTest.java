@@ -352,4 +352,42 @@ public class ViterbiAlgorithmTest {
         assertEquals(Rain.T, result.get(3).state);
     }
 
-}
\ No newline at end of file
+    @Test
+    public void testConvergedTimeSteps() {
+        final List<Rain> candidates = Arrays.asList(Rain.T, Rain.F);
+        final Map<Rain, Double> emissionLogProbabilities = new LinkedHashMap<>();
+        emissionLogProbabilities.put(Rain.T, log(0.5));
+        emissionLogProbabilities.put(Rain.F, log(0.5));
+
+        final ViterbiAlgorithm<Rain, Umbrella, Descriptor> viterbi = new ViterbiAlgorithm<>();
+        assertEquals(0, viterbi.getConvergedTimeSteps());
+        viterbi.startWithInitialObservation(Umbrella.T, candidates, emissionLogProbabilities);
+        assertEquals(0, viterbi.getConvergedTimeSteps());
+
+        // both candidates can only be reached from Rain.T, so the first time step converged
+        final Map<Transition<Rain>, Double> fromRain = new LinkedHashMap<>();
+        fromRain.put(new Transition<>(Rain.T, Rain.T), log(0.5));
+        fromRain.put(new Transition<>(Rain.T, Rain.F), log(0.5));
+        viterbi.nextStep(Umbrella.T, candidates, emissionLogProbabilities, fromRain);
+        assertEquals(1, viterbi.getConvergedTimeSteps());
+
+        // both candidates are best reached from Rain.F
+        final Map<Transition<Rain>, Double> fromSun = new LinkedHashMap<>();
+        fromSun.put(new Transition<>(Rain.F, Rain.T), log(0.5));
+        fromSun.put(new Transition<>(Rain.F, Rain.F), log(0.5));
+        fromSun.put(new Transition<>(Rain.T, Rain.T), log(0.1));
+        viterbi.nextStep(Umbrella.T, candidates, emissionLogProbabilities, fromSun);
+        assertEquals(2, viterbi.getConvergedTimeSteps());
+
+        // the paths do not meet anymore
+        final Map<Transition<Rain>, Double> keep = new LinkedHashMap<>();
+        keep.put(new Transition<>(Rain.T, Rain.T), log(0.5));
+        keep.put(new Transition<>(Rain.F, Rain.F), log(0.5));
+        viterbi.nextStep(Umbrella.T, candidates, emissionLogProbabilities, keep);
+        assertEquals(2, viterbi.getConvergedTimeSteps());
+
+        final List<SequenceState<Rain, Umbrella, Descriptor>> result = viterbi.computeMostLikelySequence();
+        assertEquals(Arrays.asList(Rain.T, Rain.F), states(result).subList(0, 2));
+    }
+
+}
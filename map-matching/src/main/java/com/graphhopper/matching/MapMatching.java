@@ -17,25 +17,18 @@
  */
 package com.graphhopper.matching;
 
+import com.bmw.hmm.IndexedViterbiAlgorithm;
 import com.bmw.hmm.SequenceState;
-import com.bmw.hmm.Transition;
-import com.bmw.hmm.ViterbiAlgorithm;
 import com.carrotsearch.hppc.IntHashSet;
 import com.graphhopper.GraphHopper;
 import com.graphhopper.config.Profile;
-import com.graphhopper.routing.AStarBidirection;
-import com.graphhopper.routing.BidirRoutingAlgorithm;
-import com.graphhopper.routing.DijkstraBidirectionRef;
 import com.graphhopper.routing.Path;
 import com.graphhopper.routing.ev.BooleanEncodedValue;
 import com.graphhopper.routing.ev.Subnetwork;
-import com.graphhopper.routing.lm.LMApproximator;
-import com.graphhopper.routing.lm.LandmarkStorage;
 import com.graphhopper.routing.querygraph.QueryGraph;
 import com.graphhopper.routing.querygraph.VirtualEdgeIteratorState;
 import com.graphhopper.routing.util.DefaultSnapFilter;
 import com.graphhopper.routing.util.EdgeFilter;
-import com.graphhopper.routing.util.TraversalMode;
 import com.graphhopper.routing.weighting.Weighting;
 import com.graphhopper.storage.BaseGraph;
 import com.graphhopper.storage.Graph;
@@ -48,6 +41,10 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.stream.Collectors;
 
 import static com.graphhopper.util.DistancePlaneProjection.DIST_PLANE;
@@ -75,7 +72,6 @@ public class MapMatching {
     private final Logger logger = LoggerFactory.getLogger(getClass());
 
     private final BaseGraph graph;
-    private final LandmarkStorage landmarks;
     private final LocationIndexTree locationIndex;
     private double measurementErrorSigma = 50.0;
     private double transitionProbabilityBeta = 2.0;
@@ -85,6 +81,9 @@ public class MapMatching {
     private Weighting weighting;
     private final BooleanEncodedValue inSubnetworkEnc;
     private QueryGraph queryGraph;
+    private ExecutorService executorService;
+    private int segmentSize;
+    private int segmentOverlap;
 
     public MapMatching(GraphHopper graphHopper, PMap hints) {
         this.locationIndex = (LocationIndexTree) graphHopper.getLocationIndex();
@@ -111,24 +110,8 @@ public class MapMatching {
             throw new IllegalArgumentException("Could not find profile '" + profileStr + "', choose one of: " + profileNames);
         }
 
-        boolean disableLM = hints.getBool(Parameters.Landmark.DISABLE, false);
-        boolean disableCH = hints.getBool(Parameters.CH.DISABLE, false);
-
-        // see map-matching/#177: both ch.disable and lm.disable can be used to force Dijkstra which is the better
-        // (=faster) choice when the observations are close to each other
-        boolean useDijkstra = disableLM || disableCH;
-
-        if (graphHopper.getLMPreparationHandler().isEnabled() && !useDijkstra) {
-            // using LM because u-turn prevention does not work properly with (node-based) CH
-            landmarks = graphHopper.getLandmarks().get(profile.getName());
-            if (landmarks == null) {
-                throw new IllegalArgumentException("Cannot find LM preparation for the requested profile: '" + profile.getName() + "'" +
-                        "\nYou can try disabling LM using " + Parameters.Landmark.DISABLE + "=true" +
-                        "\navailable LM profiles: " + graphHopper.getLandmarks().keySet());
-            }
-        } else {
-            landmarks = null;
-        }
+        // the transitions between the candidates are calculated with one-to-many Dijkstra searches, see
+        // TransitionRouter, so neither LM nor CH are used and lm.disable or ch.disable have no effect
         graph = graphHopper.getBaseGraph();
         unwrappedWeighting = graphHopper.createWeighting(profile, hints);
         inSubnetworkEnc = graphHopper.getEncodingManager().getBooleanEncodedValue(Subnetwork.key(profileStr));
@@ -151,25 +134,32 @@ public class MapMatching {
         this.measurementErrorSigma = measurementErrorSigma;
     }
 
+    /**
+     * Matches long traces in segments on the given executor. Traces with more than segmentSize (filtered) observations
+     * are split into segments of segmentSize observations. Consecutive segments share segmentOverlap observations and
+     * are joined at an observation of the overlap for which both segments chose the same candidate, preferably in the
+     * middle of the overlap. The result can differ from the result without segments if the most likely sequence
+     * depends on observations that are further away than half of the overlap, which is rare for a sufficient overlap.
+     *
+     * @param executorService the executor the segments are matched on or null to disable matching in segments
+     */
+    public void setSegmentation(ExecutorService executorService, int segmentSize, int segmentOverlap) {
+        if (segmentOverlap < 1)
+            throw new IllegalArgumentException("segment overlap must be at least 1 but was " + segmentOverlap);
+        if (segmentSize <= 2 * segmentOverlap)
+            throw new IllegalArgumentException("segment size must be larger than twice the overlap " + segmentOverlap + " but was " + segmentSize);
+        this.executorService = executorService;
+        this.segmentSize = segmentSize;
+        this.segmentOverlap = segmentOverlap;
+    }
+
     public MatchResult match(List<Observation> observations) {
         List<Observation> filteredObservations = filterObservations(observations);
 
-        // Snap observations to links. Generates multiple candidate snaps per observation.
-        List<Collection<Snap>> snapsPerObservation = filteredObservations.stream()
-                .map(o -> findCandidateSnaps(o.getPoint().lat, o.getPoint().lon))
-                .collect(Collectors.toList());
-
-        // Create the query graph, containing split edges so that all the places where an observation might have happened
-        // are a node. This modifies the Snap objects and puts the new node numbers into them.
-        queryGraph = QueryGraph.create(graph, snapsPerObservation.stream().flatMap(Collection::stream).collect(Collectors.toList()));
-        weighting = queryGraph.wrapWeighting(unwrappedWeighting);
-
-        // Creates candidates from the Snaps of all observations (a candidate is basically a
-        // Snap + direction).
-        List<ObservationWithCandidateStates> timeSteps = createTimeSteps(filteredObservations, snapsPerObservation);
-
         // Compute the most likely sequence of map matching candidates:
-        List<SequenceState<State, Observation, Path>> seq = computeViterbiSequence(timeSteps);
+        List<SequenceState<State, Observation, Path>> seq = executorService != null && filteredObservations.size() > segmentSize
+                ? computeMostLikelySequenceInSegments(filteredObservations)
+                : computeViterbi(filteredObservations).computeMostLikelySequence();
 
         List<EdgeIteratorState> path = seq.stream().filter(s1 -> s1.transitionDescriptor != null).flatMap(s1 -> s1.transitionDescriptor.calcEdges().stream()).collect(Collectors.toList());
 
@@ -183,6 +173,242 @@ public class MapMatching {
         return result;
     }
 
+    /**
+     * Creates a session to match the observations of a trace one after another while they are recorded, see
+     * {@link MatchingSession}. The session uses this MapMatching instance, so it must not be used for anything else.
+     *
+     * @param maxLag the maximum number of observations that are kept unmatched when the most likely sequence does
+     *               not converge
+     */
+    public MatchingSession createSession(int maxLag) {
+        return new MatchingSession(this, 2 * measurementErrorSigma, maxLag);
+    }
+
+    /**
+     * Runs the Viterbi algorithm for the given observations, which must have been filtered already.
+     *
+     * @throws IllegalArgumentException if the sequence is broken
+     */
+    private IndexedViterbiAlgorithm<State, Observation, Path> computeViterbi(List<Observation> filteredObservations) {
+        // Snap observations to links. Generates multiple candidate snaps per observation.
+        List<Collection<Snap>> snapsPerObservation = filteredObservations.stream()
+                .map(o -> findCandidateSnaps(o.getPoint().lat, o.getPoint().lon))
+                .collect(Collectors.toList());
+        return computeViterbiSequence(createQueryGraphAndTimeSteps(filteredObservations, snapsPerObservation), 0);
+    }
+
+    /**
+     * A time step of a {@link MatchingSession}: the candidates of an observation together with their emission
+     * probabilities and the transitions from the candidates of the previous time step.
+     */
+    static class SessionTimeStep {
+        final Observation observation;
+        // copies of the snaps before a query graph was created for them, so that they can be used for the query graph
+        // of the next time step
+        final List<Snap> snaps;
+        final List<State> candidates;
+        final double[] emissionLogProbabilities;
+        // the transition from candidate j of the previous time step to candidate i is stored at j * candidates.size() + i
+        final double[] transitionLogProbabilities;
+        final Path[] roadPaths;
+        // the candidates that can be reached from the previous time step
+        final boolean[] reached;
+
+        SessionTimeStep(Observation observation, List<Snap> snaps, List<State> candidates, double[] emissionLogProbabilities,
+                        double[] transitionLogProbabilities, Path[] roadPaths, boolean[] reached) {
+            this.observation = observation;
+            this.snaps = snaps;
+            this.candidates = candidates;
+            this.emissionLogProbabilities = emissionLogProbabilities;
+            this.transitionLogProbabilities = transitionLogProbabilities;
+            this.roadPaths = roadPaths;
+            this.reached = reached;
+        }
+    }
+
+    /**
+     * Creates the time step for the given observation, which must have been filtered already. Only the candidates of
+     * this observation and the previous time step are snapped and routed, so the effort does not depend on the
+     * number of previous time steps.
+     *
+     * @param prev the previous time step or null if the given observation starts a new sequence
+     */
+    SessionTimeStep createSessionTimeStep(SessionTimeStep prev, Observation observation) {
+        final List<Snap> snaps = findCandidateSnaps(observation.getPoint().lat, observation.getPoint().lon);
+        final List<Snap> snapCopies = copySnaps(snaps);
+        final HmmProbabilities probabilities = new HmmProbabilities(measurementErrorSigma, transitionProbabilityBeta);
+        final List<State> candidates;
+        List<State> prevCandidates = null;
+        if (prev == null) {
+            candidates = new ArrayList<>(createQueryGraphAndTimeSteps(Collections.singletonList(observation),
+                    Collections.singletonList(snaps)).get(0).candidates);
+        } else {
+            List<ObservationWithCandidateStates> timeSteps = createQueryGraphAndTimeSteps(Arrays.asList(prev.observation, observation),
+                    Arrays.asList(copySnaps(prev.snaps), snaps));
+            prevCandidates = alignCandidates(prev.candidates, timeSteps.get(0).candidates);
+            candidates = new ArrayList<>(timeSteps.get(1).candidates);
+        }
+        final int n = candidates.size();
+        final double[] emissionLogProbabilities = new double[n];
+        for (int i = 0; i < n; i++) {
+            emissionLogProbabilities[i] = probabilities.emissionLogProbability(candidates.get(i).getSnap().getQueryDistance());
+        }
+        final boolean[] reached = new boolean[n];
+        if (prev == null) {
+            Arrays.fill(reached, true);
+            return new SessionTimeStep(observation, snapCopies, candidates, emissionLogProbabilities, null, null, reached);
+        }
+
+        final int size = prevCandidates.size() * n;
+        final double[] transitionLogProbabilities = new double[size];
+        final Path[] roadPaths = new Path[size];
+        Arrays.fill(transitionLogProbabilities, Double.NEGATIVE_INFINITY);
+        final double linearDistance = distanceCalc.calcDist(prev.observation.getPoint().lat, prev.observation.getPoint().lon,
+                observation.getPoint().lat, observation.getPoint().lon)
+                + observation.getAccumulatedLinearDistanceToPrevious();
+        // the same distance limit as in computeViterbiSequence
+        final TransitionRouter transitionRouter = new TransitionRouter(queryGraph, weighting, maxVisitedNodes);
+        if (addTransitions(transitionRouter, probabilities, prevCandidates, prev.reached, candidates, linearDistance,
+                linearDistance * 4 + 2_000, transitionLogProbabilities, roadPaths, reached) == 0)
+            addTransitions(transitionRouter, probabilities, prevCandidates, prev.reached, candidates, linearDistance,
+                    Double.POSITIVE_INFINITY, transitionLogProbabilities, roadPaths, reached);
+        return new SessionTimeStep(observation, snapCopies, candidates, emissionLogProbabilities,
+                transitionLogProbabilities, roadPaths, reached);
+    }
+
+    /**
+     * @return the candidates of the current query graph that correspond to the given candidates, which were created
+     * for an earlier query graph, in the same order
+     */
+    private List<State> alignCandidates(List<State> candidates, Collection<State> newCandidates) {
+        List<State> result = new ArrayList<>(candidates.size());
+        for (State candidate : candidates) {
+            State match = null;
+            for (State newCandidate : newCandidates) {
+                if (isSameCandidate(candidate, newCandidate)) {
+                    match = newCandidate;
+                    break;
+                }
+            }
+            if (match == null)
+                throw new IllegalStateException("Cannot find candidate " + candidate + " in the query graph");
+            result.add(match);
+        }
+        return result;
+    }
+
+    private boolean isSameCandidate(State state1, State state2) {
+        if (state1.isOnDirectedEdge() != state2.isOnDirectedEdge())
+            return false;
+        if (!state1.isOnDirectedEdge())
+            return state1.getSnap().getClosestNode() == state2.getSnap().getClosestNode();
+        // the virtual nodes and edges differ between query graphs, but the snapped point and direction are the same
+        return state1.getSnap().getSnappedPoint().lat == state2.getSnap().getSnappedPoint().lat
+                && state1.getSnap().getSnappedPoint().lon == state2.getSnap().getSnappedPoint().lon
+                && equalEdges(resolveToRealEdge(state1.getOutgoingVirtualEdge()), resolveToRealEdge(state2.getOutgoingVirtualEdge()));
+    }
+
+    /**
+     * Creating a query graph modifies the snaps, so we need to copy them to use them for another query graph
+     */
+    private static List<Snap> copySnaps(List<Snap> snaps) {
+        List<Snap> copies = new ArrayList<>(snaps.size());
+        for (Snap snap : snaps) {
+            Snap copy = new Snap(snap.getQueryPoint().lat, snap.getQueryPoint().lon);
+            copy.setClosestEdge(snap.getClosestEdge());
+            copy.setClosestNode(snap.getClosestNode());
+            copy.setQueryDistance(snap.getQueryDistance());
+            copy.setWayIndex(snap.getWayIndex());
+            copy.setSnappedPosition(snap.getSnappedPosition());
+            copy.calcSnappedPoint(DistanceCalcEarth.DIST_EARTH);
+            copies.add(copy);
+        }
+        return copies;
+    }
+
+    private List<SequenceState<State, Observation, Path>> computeMostLikelySequenceInSegments(List<Observation> filteredObservations) {
+        List<Integer> segmentStarts = new ArrayList<>();
+        for (int start = 0; start + segmentOverlap < filteredObservations.size(); start += segmentSize - segmentOverlap)
+            segmentStarts.add(start);
+
+        // the snapping is independent for every observation, so we do it in the segment tasks as well
+        List<Callable<List<Collection<Snap>>>> snapTasks = new ArrayList<>();
+        for (int i = 0; i < segmentStarts.size(); i++) {
+            // the snaps of the overlap are only calculated for the previous segment
+            int from = i == 0 ? 0 : segmentStarts.get(i) + segmentOverlap;
+            int to = Math.min(filteredObservations.size(), segmentStarts.get(i) + segmentSize);
+            List<Observation> segment = filteredObservations.subList(from, to);
+            snapTasks.add(() -> segment.stream().map(o -> findCandidateSnaps(o.getPoint().lat, o.getPoint().lon)).collect(Collectors.toList()));
+        }
+        List<Collection<Snap>> snapsPerObservation = new ArrayList<>(filteredObservations.size());
+        for (List<Collection<Snap>> snaps : invokeAll(snapTasks))
+            snapsPerObservation.addAll(snaps);
+
+        // all segments share the query graph and the candidates, so the sequences of two segments can be joined
+        // where they contain the same candidate
+        List<ObservationWithCandidateStates> timeSteps = createQueryGraphAndTimeSteps(filteredObservations, snapsPerObservation);
+        List<Callable<List<SequenceState<State, Observation, Path>>>> viterbiTasks = new ArrayList<>();
+        for (int start : segmentStarts) {
+            List<ObservationWithCandidateStates> segment = timeSteps.subList(start, Math.min(timeSteps.size(), start + segmentSize));
+            viterbiTasks.add(() -> computeViterbiSequence(segment, start).computeMostLikelySequence());
+        }
+        List<List<SequenceState<State, Observation, Path>>> sequences = invokeAll(viterbiTasks);
+
+        List<SequenceState<State, Observation, Path>> result = new ArrayList<>(sequences.get(0));
+        for (int i = 1; i < sequences.size(); i++) {
+            int start = segmentStarts.get(i);
+            List<SequenceState<State, Observation, Path>> seq = sequences.get(i);
+            int middle = segmentOverlap / 2;
+            int joinIndex = -1;
+            for (int o = 0; o < segmentOverlap; o++) {
+                if (result.get(start + o).state == seq.get(o).state && (joinIndex < 0 || Math.abs(o - middle) < Math.abs(joinIndex - middle)))
+                    joinIndex = o;
+            }
+            if (joinIndex < 0) {
+                // the segments do not agree anywhere in the overlap, so we match this segment again starting with
+                // the candidate the previous segment chose in the middle of the overlap
+                joinIndex = middle;
+                List<ObservationWithCandidateStates> segment = new ArrayList<>(timeSteps.subList(start + middle, start + seq.size()));
+                segment.set(0, new ObservationWithCandidateStates(segment.get(0).observation, Collections.singletonList(result.get(start + middle).state)));
+                seq = new ArrayList<>(seq.subList(0, middle));
+                seq.addAll(computeViterbiSequence(segment, start + middle).computeMostLikelySequence());
+            }
+            result.subList(start + joinIndex + 1, result.size()).clear();
+            result.addAll(seq.subList(joinIndex + 1, seq.size()));
+        }
+        return result;
+    }
+
+    private <T> List<T> invokeAll(List<Callable<T>> tasks) {
+        try {
+            List<T> results = new ArrayList<>(tasks.size());
+            for (Future<T> future : executorService.invokeAll(tasks))
+                results.add(future.get());
+            return results;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(ex);
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof RuntimeException)
+                throw (RuntimeException) ex.getCause();
+            throw new RuntimeException(ex.getCause());
+        }
+    }
+
+    /**
+     * Creates the query graph and the time steps for the given observations.
+     */
+    private List<ObservationWithCandidateStates> createQueryGraphAndTimeSteps(List<Observation> filteredObservations, List<Collection<Snap>> snapsPerObservation) {
+        // Create the query graph, containing split edges so that all the places where an observation might have happened
+        // are a node. This modifies the Snap objects and puts the new node numbers into them.
+        queryGraph = QueryGraph.create(graph, snapsPerObservation.stream().flatMap(Collection::stream).collect(Collectors.toList()));
+        weighting = queryGraph.wrapWeighting(unwrappedWeighting);
+
+        // Creates candidates from the Snaps of all observations (a candidate is basically a
+        // Snap + direction).
+        return createCandidateTimeSteps(filteredObservations, snapsPerObservation);
+    }
+
     /**
      * Filters observations to only those which will be used for map matching (i.e. those which
      * are separated by at least 2 * measurementErrorSigman
@@ -274,7 +500,7 @@ public class MapMatching {
      * transition probabilities. Creates directed candidates for virtual nodes and undirected
      * candidates for real nodes.
      */
-    private List<ObservationWithCandidateStates> createTimeSteps(List<Observation> filteredObservations, List<Collection<Snap>> splitsPerObservation) {
+    private List<ObservationWithCandidateStates> createCandidateTimeSteps(List<Observation> filteredObservations, List<Collection<Snap>> splitsPerObservation) {
         if (splitsPerObservation.size() != filteredObservations.size()) {
             throw new IllegalArgumentException(
                     "filteredGPXEntries and queriesPerEntry must have same size.");
@@ -320,45 +546,65 @@ public class MapMatching {
     }
 
     /**
-     * Computes the most likely state sequence for the observations.
+     * Runs the Viterbi algorithm for the time steps, use computeMostLikelySequence to get the most likely state sequence.
+     * This method only reads the query graph, so it can be called concurrently for different time steps.
+     *
+     * @param firstTimeStep the index of the first of the given time steps in the trace
      */
-    private List<SequenceState<State, Observation, Path>> computeViterbiSequence(List<ObservationWithCandidateStates> timeSteps) {
+    private IndexedViterbiAlgorithm<State, Observation, Path> computeViterbiSequence(List<ObservationWithCandidateStates> timeSteps, int firstTimeStep) {
         final HmmProbabilities probabilities = new HmmProbabilities(measurementErrorSigma, transitionProbabilityBeta);
-        final ViterbiAlgorithm<State, Observation, Path> viterbi = new ViterbiAlgorithm<>();
-
-        int timeStepCounter = 0;
+        final IndexedViterbiAlgorithm<State, Observation, Path> viterbi = new IndexedViterbiAlgorithm<>();
+        final TransitionRouter transitionRouter = new TransitionRouter(queryGraph, weighting, maxVisitedNodes);
+
+        // the probabilities and paths are indexed by the position of the candidates in their time step, the arrays
+        // are reused for all time steps, see IndexedViterbiAlgorithm
+        double[] emissionLogProbabilities = new double[16];
+        double[] transitionLogProbabilities = new double[64];
+        Path[] roadPaths = new Path[64];
+        // the candidates of the previous time step with a non-zero probability, transitions from other candidates
+        // cannot be part of the most likely sequence and need not be calculated
+        boolean[] reachable = null;
+        int timeStepCounter = firstTimeStep;
         ObservationWithCandidateStates prevTimeStep = null;
+        List<State> prevCandidates = null;
         for (ObservationWithCandidateStates timeStep : timeSteps) {
-            final Map<State, Double> emissionLogProbabilities = new HashMap<>();
-            Map<Transition<State>, Double> transitionLogProbabilities = new HashMap<>();
-            Map<Transition<State>, Path> roadPaths = new HashMap<>();
-            for (State candidate : timeStep.candidates) {
+            final List<State> candidates = new ArrayList<>(timeStep.candidates);
+            final int n = candidates.size();
+            if (emissionLogProbabilities.length < n)
+                emissionLogProbabilities = new double[n];
+            for (int i = 0; i < n; i++) {
                 // distance from observation to road in meters
-                final double distance = candidate.getSnap().getQueryDistance();
-                emissionLogProbabilities.put(candidate, probabilities.emissionLogProbability(distance));
+                final double distance = candidates.get(i).getSnap().getQueryDistance();
+                emissionLogProbabilities[i] = probabilities.emissionLogProbability(distance);
             }
 
             if (prevTimeStep == null) {
-                viterbi.startWithInitialObservation(timeStep.observation, timeStep.candidates, emissionLogProbabilities);
+                viterbi.startWithInitialObservation(timeStep.observation, candidates, emissionLogProbabilities);
+                reachable = new boolean[n];
+                Arrays.fill(reachable, true);
             } else {
+                final int size = prevCandidates.size() * n;
+                if (transitionLogProbabilities.length < size) {
+                    transitionLogProbabilities = new double[size];
+                    roadPaths = new Path[size];
+                }
+                Arrays.fill(transitionLogProbabilities, 0, size, Double.NEGATIVE_INFINITY);
+                Arrays.fill(roadPaths, 0, size, null);
+
                 final double linearDistance = distanceCalc.calcDist(prevTimeStep.observation.getPoint().lat, prevTimeStep.observation.getPoint().lon,
                         timeStep.observation.getPoint().lat, timeStep.observation.getPoint().lon)
                         + timeStep.observation.getAccumulatedLinearDistanceToPrevious();
 
-                for (State from : prevTimeStep.candidates) {
-                    for (State to : timeStep.candidates) {
-                        final Path path = createRouter().calcPath(from.getSnap().getClosestNode(), to.getSnap().getClosestNode(), from.isOnDirectedEdge() ? from.getOutgoingVirtualEdge().getEdge() : EdgeIterator.ANY_EDGE, to.isOnDirectedEdge() ? to.getIncomingVirtualEdge().getEdge() : EdgeIterator.ANY_EDGE);
-                        if (path.isFound()) {
-                            double transitionLogProbability = probabilities.transitionLogProbability(path.getDistance(), linearDistance);
-                            Transition<State> transition = new Transition<>(from, to);
-                            roadPaths.put(transition, path);
-                            transitionLogProbabilities.put(transition, transitionLogProbability);
-                        }
-                    }
-                }
-                viterbi.nextStep(timeStep.observation, timeStep.candidates,
-                        emissionLogProbabilities, transitionLogProbabilities,
-                        roadPaths);
+                // paths much longer than the linear distance are very unlikely, so we do not search them, unless
+                // the sequence would break otherwise
+                final boolean[] reached = new boolean[n];
+                if (addTransitions(transitionRouter, probabilities, prevCandidates, reachable, candidates, linearDistance,
+                        linearDistance * 4 + 2_000, transitionLogProbabilities, roadPaths, reached) == 0)
+                    addTransitions(transitionRouter, probabilities, prevCandidates, reachable, candidates, linearDistance,
+                            Double.POSITIVE_INFINITY, transitionLogProbabilities, roadPaths, reached);
+                reachable = reached;
+                viterbi.nextStep(timeStep.observation, candidates, emissionLogProbabilities,
+                        transitionLogProbabilities, roadPaths);
             }
             if (viterbi.isBroken()) {
                 fail(timeStepCounter, prevTimeStep, timeStep);
@@ -366,9 +612,43 @@ public class MapMatching {
 
             timeStepCounter++;
             prevTimeStep = timeStep;
+            prevCandidates = candidates;
         }
 
-        return viterbi.computeMostLikelySequence();
+        return viterbi;
+    }
+
+    /**
+     * Calculates the transitions from the reachable candidates of the previous time step to the given candidates. The
+     * transition from candidate j to candidate i is stored at index j * toCandidates.size() + i.
+     *
+     * @param reached is filled with the candidates that were reached
+     * @return the number of reached candidates
+     */
+    private int addTransitions(TransitionRouter transitionRouter, HmmProbabilities probabilities,
+                               List<State> fromCandidates, boolean[] fromReachable, List<State> toCandidates,
+                               double linearDistance, double maxDistance,
+                               double[] transitionLogProbabilities, Path[] roadPaths, boolean[] reached) {
+        final int n = toCandidates.size();
+        int reachedCount = 0;
+        for (int j = 0; j < fromCandidates.size(); j++) {
+            if (!fromReachable[j])
+                continue;
+            // a single one-to-many search per candidate of the previous time step
+            final Path[] paths = transitionRouter.calcPaths(fromCandidates.get(j), toCandidates, maxDistance);
+            for (int i = 0; i < n; i++) {
+                final Path path = paths[i];
+                if (path != null && path.isFound()) {
+                    roadPaths[j * n + i] = path;
+                    transitionLogProbabilities[j * n + i] = probabilities.transitionLogProbability(path.getDistance(), linearDistance);
+                    if (!reached[i]) {
+                        reached[i] = true;
+                        reachedCount++;
+                    }
+                }
+            }
+        }
+        return reachedCount;
     }
 
     private void fail(int timeStepCounter, ObservationWithCandidateStates prevTimeStep, ObservationWithCandidateStates timeStep) {
@@ -389,33 +669,7 @@ public class MapMatching {
                 + ". If a match is expected consider increasing max_visited_nodes.");
     }
 
-    private BidirRoutingAlgorithm createRouter() {
-        BidirRoutingAlgorithm router;
-        if (landmarks != null) {
-            AStarBidirection algo = new AStarBidirection(queryGraph, weighting, TraversalMode.EDGE_BASED) {
-                @Override
-                protected void initCollections(int size) {
-                    super.initCollections(50);
-                }
-            };
-            int activeLM = Math.min(8, landmarks.getLandmarkCount());
-            LMApproximator lmApproximator = LMApproximator.forLandmarks(queryGraph, landmarks, activeLM);
-            algo.setApproximation(lmApproximator);
-            algo.setMaxVisitedNodes(maxVisitedNodes);
-            router = algo;
-        } else {
-            router = new DijkstraBidirectionRef(queryGraph, weighting, TraversalMode.EDGE_BASED) {
-                @Override
-                protected void initCollections(int size) {
-                    super.initCollections(50);
-                }
-            };
-            router.setMaxVisitedNodes(maxVisitedNodes);
-        }
-        return router;
-    }
-
-    private List<EdgeMatch> prepareEdgeMatches(List<SequenceState<State, Observation, Path>> seq) {
+    List<EdgeMatch> prepareEdgeMatches(List<SequenceState<State, Observation, Path>> seq) {
         // This creates a list of directed edges (EdgeIteratorState instances turned the right way),
         // each associated with 0 or more of the observations.
         // These directed edges are edges of the real street graph, where nodes are intersections.
@@ -487,7 +741,7 @@ public class MapMatching {
         }
     }
 
-    private boolean equalEdges(EdgeIteratorState edge1, EdgeIteratorState edge2) {
+    static boolean equalEdges(EdgeIteratorState edge1, EdgeIteratorState edge2) {
         return edge1.getEdge() == edge2.getEdge()
                 && edge1.getBaseNode() == edge2.getBaseNode()
                 && edge1.getAdjNode() == edge2.getAdjNode();
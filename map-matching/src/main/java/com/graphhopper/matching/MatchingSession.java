@@ -0,0 +1,261 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.matching;
+
+import com.bmw.hmm.IndexedViterbiAlgorithm;
+import com.bmw.hmm.SequenceState;
+import com.graphhopper.matching.MapMatching.SessionTimeStep;
+import com.graphhopper.routing.Path;
+import com.graphhopper.util.DistanceCalc;
+import com.graphhopper.util.DistancePlaneProjection;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Matches the observations of a trace while they are recorded, e.g. for vehicles that send their positions
+ * continuously. Observations are added one after another and the matched edges are returned as soon as they are
+ * known, i.e. when the most likely sequences of all candidates of the latest observation converged. If they do not
+ * converge for more than maxLag observations, the currently most likely sequence is used. The memory used by a
+ * session therefore does not grow with the length of the trace.
+ * <p>
+ * Every observation is snapped and routed only once: the transitions from the candidates of the previous observation
+ * are calculated when it is added and the Viterbi algorithm continues with it. After a part of the sequence was
+ * matched the Viterbi algorithm restarts at the matched state of the last matched observation, with the probability
+ * of the matched sequence, and is repeated for the pending observations from their stored probabilities. If the
+ * sequence breaks, e.g. because of a gap in the trace, the pending observations are matched and a new sequence is
+ * started, so the matched edges are not necessarily connected.
+ * <p>
+ * The last returned edge match is held back until the next edge is known, because the following observations might
+ * still be on the same edge. Call {@link #finish()} to get the remaining edge matches.
+ */
+public class MatchingSession {
+    private final DistanceCalc distanceCalc = new DistancePlaneProjection();
+    private final MapMatching mapMatching;
+    private final double minObservationDistance;
+    private final int maxLag;
+    // the time steps of the filtered observations that are not matched yet, the first one is the last matched
+    // observation with only its matched state if hasAnchor
+    private List<SessionTimeStep> window = new ArrayList<>();
+    private IndexedViterbiAlgorithm<State, Observation, Path> viterbi;
+    private boolean hasAnchor;
+    private Observation lastObservation;
+    private Observation skippedObservation;
+    private double accumulatedDistance;
+    private EdgeMatch pendingEdgeMatch;
+    private boolean finished;
+
+    MatchingSession(MapMatching mapMatching, double minObservationDistance, int maxLag) {
+        if (maxLag < 1)
+            throw new IllegalArgumentException("maxLag must be at least 1 but was " + maxLag);
+        this.mapMatching = mapMatching;
+        this.minObservationDistance = minObservationDistance;
+        this.maxLag = maxLag;
+    }
+
+    /**
+     * Adds the next observation of the trace.
+     *
+     * @return the edge matches that are final now, possibly empty
+     */
+    public synchronized List<EdgeMatch> add(Observation observation) {
+        if (finished)
+            throw new IllegalStateException("The session is already finished");
+        List<EdgeMatch> result = new ArrayList<>();
+        if (window.isEmpty()) {
+            observation.setAccumulatedLinearDistanceToPrevious(0);
+            lastObservation = observation;
+            append(mapMatching.createSessionTimeStep(null, observation), result);
+            return result;
+        }
+
+        // observations that are close to each other are skipped, see MapMatching.filterObservations
+        double distanceToLast = calcDist(lastObservation, observation);
+        lastObservation = observation;
+        SessionTimeStep lastFiltered = window.get(window.size() - 1);
+        double distanceToFiltered = calcDist(lastFiltered.observation, observation);
+        if (distanceToFiltered <= minObservationDistance) {
+            accumulatedDistance += distanceToLast;
+            skippedObservation = observation;
+            return result;
+        }
+        observation.setAccumulatedLinearDistanceToPrevious(accumulatedDistance + distanceToLast - distanceToFiltered);
+        accumulatedDistance = 0;
+        skippedObservation = null;
+        append(mapMatching.createSessionTimeStep(lastFiltered, observation), result);
+        commit(Math.max(viterbi.getConvergedTimeSteps(), window.size() - maxLag), result);
+        return result;
+    }
+
+    /**
+     * Matches the remaining observations and ends this session.
+     *
+     * @return the remaining edge matches
+     */
+    public synchronized List<EdgeMatch> finish() {
+        if (finished)
+            throw new IllegalStateException("The session is already finished");
+        finished = true;
+        List<EdgeMatch> result = new ArrayList<>();
+        // like MapMatching.filterObservations we always keep the last observation
+        if (skippedObservation != null) {
+            SessionTimeStep lastFiltered = window.get(window.size() - 1);
+            skippedObservation.setAccumulatedLinearDistanceToPrevious(accumulatedDistance - calcDist(lastFiltered.observation, skippedObservation));
+            append(mapMatching.createSessionTimeStep(lastFiltered, skippedObservation), result);
+        }
+        commit(window.size(), result);
+        flushPending(result);
+        window = Collections.emptyList();
+        viterbi = null;
+        return result;
+    }
+
+    /**
+     * @return the number of observations that are not matched yet
+     */
+    public synchronized int getPendingObservations() {
+        return hasAnchor ? window.size() - 1 : window.size();
+    }
+
+    /**
+     * Continues the Viterbi algorithm with the given time step. If the sequence breaks, the window is matched and a
+     * new sequence is started with the time step. Time steps without candidates cannot start a sequence and are
+     * dropped.
+     */
+    private void append(SessionTimeStep timeStep, List<EdgeMatch> result) {
+        if (window.isEmpty()) {
+            viterbi = new IndexedViterbiAlgorithm<>();
+            viterbi.startWithInitialObservation(timeStep.observation, timeStep.candidates, timeStep.emissionLogProbabilities);
+            if (viterbi.isBroken())
+                return;
+            // the transitions to this time step are not used and all of its candidates can be the start of the sequence
+            boolean[] reached = new boolean[timeStep.candidates.size()];
+            Arrays.fill(reached, true);
+            window.add(new SessionTimeStep(timeStep.observation, timeStep.snaps, timeStep.candidates,
+                    timeStep.emissionLogProbabilities, null, null, reached));
+            return;
+        }
+        viterbi.nextStep(timeStep.observation, timeStep.candidates, timeStep.emissionLogProbabilities,
+                timeStep.transitionLogProbabilities, timeStep.roadPaths);
+        if (viterbi.isBroken()) {
+            // match what we have and start a new sequence with the new observation
+            commit(window.size(), result);
+            flushPending(result);
+            window = new ArrayList<>();
+            hasAnchor = false;
+            append(timeStep, result);
+            return;
+        }
+        window.add(timeStep);
+    }
+
+    /**
+     * Matches the first time steps of the window and restarts the Viterbi algorithm at the state of the last matched
+     * time step.
+     */
+    private void commit(int timeSteps, List<EdgeMatch> result) {
+        if (timeSteps <= (hasAnchor ? 1 : 0))
+            return;
+        List<SequenceState<State, Observation, Path>> seq = viterbi.computeMostLikelySequence().subList(0, timeSteps);
+        List<EdgeMatch> edgeMatches = mapMatching.prepareEdgeMatches(seq);
+        Observation anchor = hasAnchor ? window.get(0).observation : null;
+        for (EdgeMatch edgeMatch : edgeMatches) {
+            // the anchor was already returned with the previous edge matches
+            if (anchor != null)
+                edgeMatch.getStates().removeIf(state -> state.getEntry() == anchor);
+            if (pendingEdgeMatch == null) {
+                pendingEdgeMatch = edgeMatch;
+            } else if (MapMatching.equalEdges(pendingEdgeMatch.getEdgeState(), edgeMatch.getEdgeState())) {
+                List<State> states = new ArrayList<>(pendingEdgeMatch.getStates());
+                states.addAll(edgeMatch.getStates());
+                pendingEdgeMatch = new EdgeMatch(pendingEdgeMatch.getEdgeState(), states);
+            } else {
+                result.add(pendingEdgeMatch);
+                pendingEdgeMatch = edgeMatch;
+            }
+        }
+
+        // keep the matched state of the last matched observation as the only candidate at the start of the next
+        // sequence, all following sequences must continue from there
+        State state = seq.get(timeSteps - 1).state;
+        double logProbability = calcLogProbability(seq);
+        SessionTimeStep last = window.get(timeSteps - 1);
+        int index = indexOf(last.candidates, state);
+        List<SessionTimeStep> pending = new ArrayList<>(window.subList(timeSteps, window.size()));
+        window = new ArrayList<>();
+        hasAnchor = true;
+        append(new SessionTimeStep(last.observation, last.snaps, Collections.singletonList(state),
+                new double[]{logProbability}, null, null, new boolean[]{true}), result);
+        for (int t = 0; t < pending.size(); t++) {
+            // the transitions were calculated already, so repeating the Viterbi algorithm is cheap
+            append(t == 0 ? fromCandidate(pending.get(t), index) : pending.get(t), result);
+        }
+    }
+
+    /**
+     * @return the log probability of the given sequence of the first time steps of the window
+     */
+    private double calcLogProbability(List<SequenceState<State, Observation, Path>> seq) {
+        double logProbability = 0;
+        int prevIndex = -1;
+        for (int t = 0; t < seq.size(); t++) {
+            SessionTimeStep timeStep = window.get(t);
+            int index = indexOf(timeStep.candidates, seq.get(t).state);
+            logProbability += timeStep.emissionLogProbabilities[index];
+            if (t > 0)
+                logProbability += timeStep.transitionLogProbabilities[prevIndex * timeStep.candidates.size() + index];
+            prevIndex = index;
+        }
+        return logProbability;
+    }
+
+    /**
+     * @return the given time step with only the transitions from the candidate at the given index of the previous
+     * time step
+     */
+    private static SessionTimeStep fromCandidate(SessionTimeStep timeStep, int index) {
+        int n = timeStep.candidates.size();
+        double[] transitionLogProbabilities = Arrays.copyOfRange(timeStep.transitionLogProbabilities, index * n, index * n + n);
+        Path[] roadPaths = Arrays.copyOfRange(timeStep.roadPaths, index * n, index * n + n);
+        boolean[] reached = new boolean[n];
+        for (int i = 0; i < n; i++)
+            reached[i] = roadPaths[i] != null;
+        return new SessionTimeStep(timeStep.observation, timeStep.snaps, timeStep.candidates,
+                timeStep.emissionLogProbabilities, transitionLogProbabilities, roadPaths, reached);
+    }
+
+    private static int indexOf(List<State> candidates, State state) {
+        for (int i = 0; i < candidates.size(); i++) {
+            if (candidates.get(i) == state)
+                return i;
+        }
+        throw new IllegalStateException("State " + state + " is not a candidate");
+    }
+
+    private void flushPending(List<EdgeMatch> result) {
+        if (pendingEdgeMatch != null)
+            result.add(pendingEdgeMatch);
+        pendingEdgeMatch = null;
+    }
+
+    private double calcDist(Observation o1, Observation o2) {
+        return distanceCalc.calcDist(o1.getPoint().lat, o1.getPoint().lon, o2.getPoint().lat, o2.getPoint().lon);
+    }
+}
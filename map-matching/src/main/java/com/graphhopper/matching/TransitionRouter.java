@@ -0,0 +1,157 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.matching;
+
+import com.carrotsearch.hppc.IntArrayList;
+import com.carrotsearch.hppc.IntObjectHashMap;
+import com.graphhopper.routing.Path;
+import com.graphhopper.routing.PathExtractor;
+import com.graphhopper.routing.SPTEntry;
+import com.graphhopper.routing.util.TraversalMode;
+import com.graphhopper.routing.weighting.Weighting;
+import com.graphhopper.storage.Graph;
+import com.graphhopper.util.EdgeExplorer;
+import com.graphhopper.util.EdgeIterator;
+import com.graphhopper.util.GHUtility;
+
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Calculates the paths from one candidate of the previous time step to all candidates of the current time step
+ * with a single edge-based one-to-many Dijkstra, instead of one point-to-point search per candidate pair. The
+ * search stops when all candidates are settled, when the distance limit is exceeded or when more than
+ * maxVisitedNodes were visited.
+ * <p>
+ * The found paths are the same as the ones of a bidirectional search with the outgoing and incoming virtual edges
+ * of the candidates as restrictions, see {@link com.graphhopper.routing.BidirRoutingAlgorithm#calcPath(int, int, int, int)}.
+ */
+class TransitionRouter {
+    private final Graph graph;
+    private final Weighting weighting;
+    private final int maxVisitedNodes;
+    private final EdgeExplorer edgeExplorer;
+    private final TraversalMode traversalMode = TraversalMode.EDGE_BASED;
+    private int visitedNodes;
+
+    TransitionRouter(Graph graph, Weighting weighting, int maxVisitedNodes) {
+        this.graph = graph;
+        this.weighting = weighting;
+        this.maxVisitedNodes = maxVisitedNodes;
+        this.edgeExplorer = graph.createEdgeExplorer();
+    }
+
+    /**
+     * @param maxDistance paths longer than this distance in meters are not searched
+     * @return the paths from the given candidate to the given targets, the entry for a target is null if no path
+     * was found
+     */
+    Path[] calcPaths(State from, List<State> targets, double maxDistance) {
+        Path[] paths = new Path[targets.size()];
+        int fromNode = from.getSnap().getClosestNode();
+        int fromOutEdge = from.isOnDirectedEdge() ? from.getOutgoingVirtualEdge().getEdge() : EdgeIterator.ANY_EDGE;
+
+        IntObjectHashMap<IntArrayList> targetsByNode = new IntObjectHashMap<>(targets.size());
+        int remaining = 0;
+        for (int i = 0; i < targets.size(); i++) {
+            State to = targets.get(i);
+            int toNode = to.getSnap().getClosestNode();
+            if (fromNode == toNode && fromOutEdge == EdgeIterator.ANY_EDGE && !to.isOnDirectedEdge()) {
+                // start and end are the same and no directions are restricted, the bidirectional search returns an
+                // empty path with weight zero in this case
+                paths[i] = PathExtractor.extractPath(graph, weighting, new SPTEntry(fromNode, 0));
+                continue;
+            }
+            IntArrayList list = targetsByNode.get(toNode);
+            if (list == null) {
+                list = new IntArrayList(2);
+                targetsByNode.put(toNode, list);
+            }
+            list.add(i);
+            remaining++;
+        }
+        if (remaining == 0)
+            return paths;
+
+        visitedNodes = 0;
+        IntObjectHashMap<Label> bestLabels = new IntObjectHashMap<>(64);
+        PriorityQueue<Label> queue = new PriorityQueue<>(64);
+        queue.add(new Label(EdgeIterator.NO_EDGE, fromNode, 0, 0, null));
+        while (!queue.isEmpty() && remaining > 0 && visitedNodes <= maxVisitedNodes) {
+            Label current = queue.poll();
+            if (current.isDeleted())
+                continue;
+            visitedNodes++;
+
+            // the start label itself only reaches a target if no directions are restricted, which is handled above
+            IntArrayList targetIndices = EdgeIterator.Edge.isValid(current.edge) ? targetsByNode.get(current.adjNode) : null;
+            if (targetIndices != null) {
+                for (int k = 0; k < targetIndices.size(); k++) {
+                    int index = targetIndices.get(k);
+                    if (paths[index] != null)
+                        continue;
+                    State to = targets.get(index);
+                    // the first settled label of a node is the best one for undirected candidates, for directed
+                    // candidates the path must arrive via the incoming virtual edge
+                    if (!to.isOnDirectedEdge() || to.getIncomingVirtualEdge().getEdge() == current.edge) {
+                        paths[index] = PathExtractor.extractPath(graph, weighting, current);
+                        remaining--;
+                    }
+                }
+            }
+
+            EdgeIterator iter = edgeExplorer.setBaseNode(current.adjNode);
+            while (iter.next()) {
+                if (!EdgeIterator.Edge.isValid(current.edge) && fromOutEdge != EdgeIterator.ANY_EDGE && iter.getEdge() != fromOutEdge)
+                    continue;
+                double weight = GHUtility.calcWeightWithTurnWeightWithAccess(weighting, iter, false, current.edge) + current.weight;
+                if (Double.isInfinite(weight))
+                    continue;
+                double distance = current.distance + iter.getDistance();
+                if (distance > maxDistance)
+                    continue;
+                int traversalId = traversalMode.createTraversalId(iter, false);
+                Label label = bestLabels.get(traversalId);
+                if (label == null || label.weight > weight) {
+                    if (label != null)
+                        label.setDeleted();
+                    label = new Label(iter.getEdge(), iter.getAdjNode(), weight, distance, current);
+                    bestLabels.put(traversalId, label);
+                    queue.add(label);
+                }
+            }
+        }
+        return paths;
+    }
+
+    /**
+     * @return the number of nodes visited by the last call of {@link #calcPaths}
+     */
+    int getVisitedNodes() {
+        return visitedNodes;
+    }
+
+    private static class Label extends SPTEntry {
+        final double distance;
+
+        Label(int edge, int adjNode, double weight, double distance, Label parent) {
+            super(edge, adjNode, weight, parent);
+            this.distance = distance;
+        }
+    }
+}
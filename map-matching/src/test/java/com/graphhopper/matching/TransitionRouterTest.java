@@ -0,0 +1,126 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.matching;
+
+import com.graphhopper.routing.Dijkstra;
+import com.graphhopper.routing.Path;
+import com.graphhopper.routing.util.EncodingManager;
+import com.graphhopper.routing.util.FlagEncoder;
+import com.graphhopper.routing.util.FlagEncoders;
+import com.graphhopper.routing.util.TraversalMode;
+import com.graphhopper.routing.weighting.FastestWeighting;
+import com.graphhopper.routing.weighting.Weighting;
+import com.graphhopper.storage.BaseGraph;
+import com.graphhopper.storage.NodeAccess;
+import com.graphhopper.storage.index.Snap;
+import com.graphhopper.util.GHUtility;
+import com.graphhopper.util.shapes.GHPoint;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TransitionRouterTest {
+    private final FlagEncoder encoder = FlagEncoders.createCar();
+    private final EncodingManager em = EncodingManager.create(encoder);
+    private final Weighting weighting = new FastestWeighting(encoder);
+
+    @Test
+    public void testSameAsDijkstra() {
+        long seed = System.nanoTime();
+        Random rnd = new Random(seed);
+        for (int run = 0; run < 10; run++) {
+            BaseGraph graph = new BaseGraph.Builder(em).create();
+            GHUtility.buildRandomGraph(graph, rnd, 100, 2.5, false, false,
+                    encoder.getAccessEnc(), encoder.getAverageSpeedEnc(), null, 0, 0.8, 0.8);
+            TransitionRouter router = new TransitionRouter(graph, weighting, Integer.MAX_VALUE);
+            int from = rnd.nextInt(graph.getNodes());
+            List<State> targets = new ArrayList<>();
+            for (int i = 0; i < 10; i++)
+                targets.add(createState(graph, rnd.nextInt(graph.getNodes())));
+            // the start is a target as well
+            targets.add(createState(graph, from));
+
+            Path[] paths = router.calcPaths(createState(graph, from), targets, Double.POSITIVE_INFINITY);
+            assertEquals(targets.size(), paths.length);
+            for (int i = 0; i < targets.size(); i++) {
+                int to = targets.get(i).getSnap().getClosestNode();
+                Path expected = new Dijkstra(graph, weighting, TraversalMode.EDGE_BASED).calcPath(from, to);
+                String msg = "seed: " + seed + ", run: " + run + ", " + from + "->" + to;
+                if (!expected.isFound()) {
+                    assertNull(paths[i], msg);
+                    continue;
+                }
+                assertNotNull(paths[i], msg);
+                assertTrue(paths[i].isFound(), msg);
+                assertEquals(expected.getWeight(), paths[i].getWeight(), 1.e-6, msg);
+                assertEquals(expected.getDistance(), paths[i].getDistance(), 1.e-3, msg);
+                assertEquals(expected.getTime(), paths[i].getTime(), msg);
+                assertEquals(from, paths[i].calcNodes().get(0), msg);
+                assertEquals(to, paths[i].calcNodes().get(paths[i].calcNodes().size() - 1), msg);
+            }
+        }
+    }
+
+    @Test
+    public void testMaxVisitedNodesPerSearch() {
+        // 0-1-2-3-4-5-6-7-8-9
+        BaseGraph graph = new BaseGraph.Builder(em).create();
+        NodeAccess na = graph.getNodeAccess();
+        for (int i = 0; i < 10; i++) {
+            na.setNode(i, 49.4, 9.7 + i * 0.001);
+            if (i > 0)
+                GHUtility.setSpeed(60, true, true, encoder.getAccessEnc(), encoder.getAverageSpeedEnc(),
+                        graph.edge(i - 1, i).setDistance(100));
+        }
+        List<State> targets = Arrays.asList(createState(graph, 2), createState(graph, 9));
+
+        TransitionRouter router = new TransitionRouter(graph, weighting, Integer.MAX_VALUE);
+        Path[] paths = router.calcPaths(createState(graph, 0), targets, Double.POSITIVE_INFINITY);
+        assertEquals(200, paths[0].getDistance(), 1.e-3);
+        assertEquals(900, paths[1].getDistance(), 1.e-3);
+        assertTrue(router.getVisitedNodes() > 10, "visited nodes: " + router.getVisitedNodes());
+
+        router = new TransitionRouter(graph, weighting, 5);
+        for (int i = 0; i < 3; i++) {
+            // the limit applies to every search separately, so the result does not depend on previous searches
+            paths = router.calcPaths(createState(graph, 0), targets, Double.POSITIVE_INFINITY);
+            assertEquals(200, paths[0].getDistance(), 1.e-3);
+            assertNull(paths[1]);
+            // like the other routing algorithms the search stops once more than maxVisitedNodes were visited
+            assertEquals(6, router.getVisitedNodes());
+        }
+
+        // the distance limit stops the search as well
+        router = new TransitionRouter(graph, weighting, Integer.MAX_VALUE);
+        paths = router.calcPaths(createState(graph, 0), targets, 500);
+        assertEquals(200, paths[0].getDistance(), 1.e-3);
+        assertNull(paths[1]);
+    }
+
+    private static State createState(BaseGraph graph, int node) {
+        NodeAccess na = graph.getNodeAccess();
+        Snap snap = new Snap(na.getLat(node), na.getLon(node));
+        snap.setClosestNode(node);
+        return new State(new Observation(new GHPoint(na.getLat(node), na.getLon(node))), snap);
+    }
+}
@@ -17,7 +17,6 @@
  */
 package com.graphhopper.tools;
 
-import com.carrotsearch.hppc.IntArrayList;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
 import com.graphhopper.*;
@@ -56,8 +55,10 @@ import java.nio.file.Paths;
 import java.text.SimpleDateFormat;
 import java.util.*;
 import java.util.Map.Entry;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static com.graphhopper.util.GHUtility.readCountries;
 import static com.graphhopper.util.Helper.*;
@@ -278,6 +279,22 @@ public class Measurement {
                             withPoints(100).edgeBased().sod().withInstructions().simplify().pathDetails());
                 }
             }
+            List<String> throughputThreads = Helper.parseList(args.getString("measurement.throughput.threads", "[]"));
+            if (!throughputThreads.isEmpty()) {
+                gcAndWait();
+                for (String threadsStr : throughputThreads) {
+                    int threads = Integer.parseInt(threadsStr);
+                    if (runSlow)
+                        measureThroughput(hopper, new QuerySettings("routing", count / 20, false, false).
+                                withInstructions(), threads);
+                    if (hopper.getLMPreparationHandler().isEnabled())
+                        measureThroughput(hopper, new QuerySettings("routingLM8", count / 20, false, true).
+                                withInstructions().activeLandmarks(8), threads);
+                    if (hopper.getCHGraphs().get("profile_no_tc") != null)
+                        measureThroughput(hopper, new QuerySettings("routingCH", count, true, false).
+                                withInstructions().sod(), threads);
+                }
+            }
             measureCountryAreaIndex(count);
 
         } catch (Exception ex) {
@@ -554,69 +571,16 @@ public class Measurement {
         final AtomicLong visitedNodesSum = new AtomicLong(0);
         final AtomicLong maxVisitedNodes = new AtomicLong(0);
         final Random rand = new Random(seed);
-        final NodeAccess na = g.getNodeAccess();
 
         MiniPerfTest miniPerf = new MiniPerfTest().setIterations(querySettings.count).start((warmup, run) -> {
-            GHRequest req = new GHRequest(querySettings.points);
-            IntArrayList nodes = new IntArrayList(querySettings.points);
-            // we try a few times to find points that do not lie within our blocked area
-            for (int i = 0; i < 5; i++) {
-                nodes.clear();
-                List<GHPoint> points = new ArrayList<>();
-                List<String> pointHints = new ArrayList<>();
-                int tries = 0;
-                while (nodes.size() < querySettings.points) {
-                    int node = rand.nextInt(maxNode);
-                    if (++tries > g.getNodes())
-                        throw new RuntimeException("Could not find accessible points");
-                    // probe location. it could be a pedestrian area or an edge removed in the subnetwork removal process
-                    if (GHUtility.count(edgeExplorer.setBaseNode(node)) == 0)
-                        continue;
-                    nodes.add(node);
-                    points.add(new GHPoint(na.getLat(node), na.getLon(node)));
-                    if (querySettings.withPointHints) {
-                        // we add some point hint to make sure the name similarity filter has to do some actual work
-                        pointHints.add("probably_not_found");
-                    }
-                }
-                req.setPoints(points);
-                req.setPointHints(pointHints);
-                if (querySettings.blockArea == null)
-                    break;
-                try {
-                    req.getHints().putObject(BLOCK_AREA, querySettings.blockArea);
-                    // run this method to check if creating the blocked area is possible
-                    GraphEdgeIdFinder.createBlockArea(hopper.getBaseGraph(), hopper.getLocationIndex(), req.getPoints(), req.getHints(), edgeFilter);
-                    break;
-                } catch (IllegalArgumentException ex) {
-                    if (i >= 4)
-                        throw new RuntimeException("Give up after 5 tries. Cannot find points outside of the block_area "
-                                + querySettings.blockArea + " - too big block_area or map too small? Request:" + req);
-                }
-            }
-            req.setProfile(profileName);
-            req.getHints().
-                    putObject(CH.DISABLE, !querySettings.ch).
-                    putObject("stall_on_demand", querySettings.sod).
-                    putObject(Landmark.DISABLE, !querySettings.lm).
-                    putObject(Landmark.ACTIVE_COUNT, querySettings.activeLandmarks).
-                    putObject("instructions", querySettings.withInstructions);
-
-            if (querySettings.alternative)
-                req.setAlgorithm(ALT_ROUTE);
-
-            if (querySettings.pathDetails)
-                req.setPathDetails(Arrays.asList(Parameters.Details.AVERAGE_SPEED, Parameters.Details.EDGE_ID, Parameters.Details.STREET_NAME));
-
-            if (!querySettings.simplify)
-                req.getHints().putObject(Parameters.Routing.WAY_POINT_MAX_DISTANCE, 0);
+            GHRequest req = createRequest(hopper, querySettings, profileName, edgeFilter, edgeExplorer, rand);
 
             GHResponse rsp;
             try {
                 rsp = hopper.route(req);
             } catch (Exception ex) {
                 // 'not found' can happen if import creates more than one subnetwork
-                throw new RuntimeException("Error while calculating route! nodes: " + nodes + ", request:" + req, ex);
+                throw new RuntimeException("Error while calculating route! request:" + req, ex);
             }
 
             if (rsp.hasErrors()) {
@@ -690,6 +654,171 @@ public class Measurement {
         print(prefix, miniPerf);
     }
 
+    /**
+     * Runs the given queries on the given number of threads against the same GraphHopper instance. The total number
+     * of queries is split among the threads and every thread uses its own random generator. Reports the throughput,
+     * the latency percentiles of every thread and the allocation rate.
+     */
+    private void measureThroughput(final GraphHopper hopper, final QuerySettings querySettings, int threads) {
+        final String profileName = querySettings.edgeBased ? "profile_tc" : "profile_no_tc";
+        final Weighting weighting = hopper.createWeighting(hopper.getProfile(profileName), new PMap());
+        final EdgeFilter edgeFilter = new DefaultSnapFilter(weighting, hopper.getEncodingManager().getBooleanEncodedValue(Subnetwork.key(profileName)));
+        final int queriesPerThread = Math.max(1, querySettings.count / threads);
+        final long[][] latencies = new long[threads][queriesPerThread];
+        final long[] allocatedBytes = new long[threads];
+        final AtomicInteger failedCount = new AtomicInteger(0);
+        final AtomicReference<Throwable> error = new AtomicReference<>();
+        final java.lang.management.ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+        final boolean measureAllocation = threadBean instanceof com.sun.management.ThreadMXBean
+                && ((com.sun.management.ThreadMXBean) threadBean).isThreadAllocatedMemorySupported();
+        // the threads create their requests first and then all threads start at the same time
+        final CountDownLatch readyLatch = new CountDownLatch(threads);
+        final CountDownLatch startLatch = new CountDownLatch(1);
+        List<Thread> threadList = new ArrayList<>(threads);
+        for (int t = 0; t < threads; t++) {
+            final int threadIndex = t;
+            threadList.add(new Thread(() -> {
+                try {
+                    // create the requests in advance, so we do not measure the time to create them
+                    List<GHRequest> requests = new ArrayList<>(queriesPerThread);
+                    try {
+                        EdgeExplorer edgeExplorer = hopper.getBaseGraph().createEdgeExplorer(edgeFilter);
+                        Random rand = new Random(seed + threadIndex);
+                        for (int i = 0; i < queriesPerThread; i++)
+                            requests.add(createRequest(hopper, querySettings, profileName, edgeFilter, edgeExplorer, rand));
+                    } finally {
+                        readyLatch.countDown();
+                    }
+                    startLatch.await();
+                    long threadId = Thread.currentThread().getId();
+                    long allocatedBefore = measureAllocation ? ((com.sun.management.ThreadMXBean) threadBean).getThreadAllocatedBytes(threadId) : 0;
+                    for (int i = 0; i < queriesPerThread; i++) {
+                        long start = System.nanoTime();
+                        GHResponse rsp = hopper.route(requests.get(i));
+                        latencies[threadIndex][i] = System.nanoTime() - start;
+                        if (rsp.hasErrors())
+                            failedCount.incrementAndGet();
+                    }
+                    if (measureAllocation)
+                        allocatedBytes[threadIndex] = ((com.sun.management.ThreadMXBean) threadBean).getThreadAllocatedBytes(threadId) - allocatedBefore;
+                } catch (Throwable ex) {
+                    failedCount.incrementAndGet();
+                    if (!error.compareAndSet(null, ex))
+                        error.get().addSuppressed(ex);
+                }
+            }, "measurement-" + t));
+        }
+        threadList.forEach(Thread::start);
+        StopWatch sw;
+        try {
+            readyLatch.await();
+            sw = new StopWatch().start();
+            startLatch.countDown();
+            for (Thread thread : threadList) {
+                thread.join();
+            }
+        } catch (InterruptedException ex) {
+            throw new RuntimeException(ex);
+        }
+        double seconds = sw.stop().getSeconds();
+
+        String prefix = "throughput." + querySettings.prefix + ".threads_" + threads;
+        if (error.get() != null) {
+            // the latencies of the failed threads are incomplete, so we do not report them
+            put(prefix + ".failed_count", failedCount.get());
+            throw new IllegalStateException("Throughput measurement " + prefix + " failed", error.get());
+        }
+        long totalQueries = (long) threads * queriesPerThread;
+        long totalAllocatedBytes = 0;
+        for (int t = 0; t < threads; t++) {
+            long[] threadLatencies = latencies[t];
+            Arrays.sort(threadLatencies);
+            put(prefix + ".thread_" + t + ".p50", percentileMillis(threadLatencies, 0.5));
+            put(prefix + ".thread_" + t + ".p90", percentileMillis(threadLatencies, 0.9));
+            put(prefix + ".thread_" + t + ".p99", percentileMillis(threadLatencies, 0.99));
+            totalAllocatedBytes += allocatedBytes[t];
+        }
+        long[] allLatencies = new long[(int) totalQueries];
+        for (int t = 0; t < threads; t++)
+            System.arraycopy(latencies[t], 0, allLatencies, t * queriesPerThread, queriesPerThread);
+        Arrays.sort(allLatencies);
+        double qps = totalQueries / seconds;
+        put(prefix + ".queries", totalQueries);
+        put(prefix + ".failed_count", failedCount.get());
+        put(prefix + ".qps", qps);
+        put(prefix + ".p50", percentileMillis(allLatencies, 0.5));
+        put(prefix + ".p90", percentileMillis(allLatencies, 0.9));
+        put(prefix + ".p99", percentileMillis(allLatencies, 0.99));
+        if (measureAllocation) {
+            put(prefix + ".alloc_MB_per_sec", totalAllocatedBytes / seconds / MB);
+            put(prefix + ".alloc_KB_per_query", (float) totalAllocatedBytes / totalQueries / 1024);
+        }
+        logger.info(prefix + ": " + String.format(Locale.ROOT, "%.1f", qps) + " queries/s, p50: "
+                + percentileMillis(allLatencies, 0.5) + "ms, p99: " + percentileMillis(allLatencies, 0.99) + "ms");
+    }
+
+    private static double percentileMillis(long[] sortedNanos, double p) {
+        int index = (int) Math.ceil(p * sortedNanos.length) - 1;
+        return sortedNanos[Math.max(0, Math.min(sortedNanos.length - 1, index))] / 1e6;
+    }
+
+    private GHRequest createRequest(GraphHopper hopper, QuerySettings querySettings, String profileName,
+                                    EdgeFilter edgeFilter, EdgeExplorer edgeExplorer, Random rand) {
+        final Graph g = hopper.getBaseGraph();
+        final NodeAccess na = g.getNodeAccess();
+        GHRequest req = new GHRequest(querySettings.points);
+        // we try a few times to find points that do not lie within our blocked area
+        for (int i = 0; i < 5; i++) {
+            List<GHPoint> points = new ArrayList<>();
+            List<String> pointHints = new ArrayList<>();
+            int tries = 0;
+            while (points.size() < querySettings.points) {
+                int node = rand.nextInt(maxNode);
+                if (++tries > g.getNodes())
+                    throw new RuntimeException("Could not find accessible points");
+                // probe location. it could be a pedestrian area or an edge removed in the subnetwork removal process
+                if (GHUtility.count(edgeExplorer.setBaseNode(node)) == 0)
+                    continue;
+                points.add(new GHPoint(na.getLat(node), na.getLon(node)));
+                if (querySettings.withPointHints) {
+                    // we add some point hint to make sure the name similarity filter has to do some actual work
+                    pointHints.add("probably_not_found");
+                }
+            }
+            req.setPoints(points);
+            req.setPointHints(pointHints);
+            if (querySettings.blockArea == null)
+                break;
+            try {
+                req.getHints().putObject(BLOCK_AREA, querySettings.blockArea);
+                // run this method to check if creating the blocked area is possible
+                GraphEdgeIdFinder.createBlockArea(hopper.getBaseGraph(), hopper.getLocationIndex(), req.getPoints(), req.getHints(), edgeFilter);
+                break;
+            } catch (IllegalArgumentException ex) {
+                if (i >= 4)
+                    throw new RuntimeException("Give up after 5 tries. Cannot find points outside of the block_area "
+                            + querySettings.blockArea + " - too big block_area or map too small? Request:" + req);
+            }
+        }
+        req.setProfile(profileName);
+        req.getHints().
+                putObject(CH.DISABLE, !querySettings.ch).
+                putObject("stall_on_demand", querySettings.sod).
+                putObject(Landmark.DISABLE, !querySettings.lm).
+                putObject(Landmark.ACTIVE_COUNT, querySettings.activeLandmarks).
+                putObject("instructions", querySettings.withInstructions);
+
+        if (querySettings.alternative)
+            req.setAlgorithm(ALT_ROUTE);
+
+        if (querySettings.pathDetails)
+            req.setPathDetails(Arrays.asList(Parameters.Details.AVERAGE_SPEED, Parameters.Details.EDGE_ID, Parameters.Details.STREET_NAME));
+
+        if (!querySettings.simplify)
+            req.getHints().putObject(Parameters.Routing.WAY_POINT_MAX_DISTANCE, 0);
+        return req;
+    }
+
     void print(String prefix, MiniPerfTest perf) {
         logger.info(prefix + ": " + perf.getReport());
         put(prefix + ".sum", perf.getSum());
@@ -796,6 +925,23 @@ public class Measurement {
                 "routingLM8.distance_mean",
                 "routingLM8.mean",
                 "routingLM8.visited_nodes_mean",
+                // the thread counts used by benchmark.sh, see measurement.throughput.threads
+                "throughput.routingLM8.threads_1.qps",
+                "throughput.routingLM8.threads_1.p99",
+                "throughput.routingLM8.threads_2.qps",
+                "throughput.routingLM8.threads_2.p99",
+                "throughput.routingLM8.threads_4.qps",
+                "throughput.routingLM8.threads_4.p99",
+                "throughput.routingLM8.threads_8.qps",
+                "throughput.routingLM8.threads_8.p99",
+                "throughput.routingCH.threads_1.qps",
+                "throughput.routingCH.threads_1.p99",
+                "throughput.routingCH.threads_2.qps",
+                "throughput.routingCH.threads_2.p99",
+                "throughput.routingCH.threads_4.qps",
+                "throughput.routingCH.threads_4.p99",
+                "throughput.routingCH.threads_8.qps",
+                "throughput.routingCH.threads_8.p99",
                 "measurement.seed",
                 "measurement.gitinfo",
                 "measurement.timestamp"
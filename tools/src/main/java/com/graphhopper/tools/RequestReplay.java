@@ -0,0 +1,380 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.tools;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
+import com.graphhopper.GHRequest;
+import com.graphhopper.GHResponse;
+import com.graphhopper.GraphHopper;
+import com.graphhopper.GraphHopperConfig;
+import com.graphhopper.jackson.Jackson;
+import com.graphhopper.util.Helper;
+import com.graphhopper.util.PMap;
+import com.graphhopper.util.shapes.GHPoint;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Replays a request log written by the RequestLogFilter of the web bundle (request_log.file) against an
+ * embedded GraphHopper instance or a running GraphHopper server and reports latency percentiles per endpoint.
+ * <p>
+ * Usage for a server: replay.log=requests.log replay.target=http://localhost:8989 replay.qps=50 replay.concurrency=8
+ * <p>
+ * Usage for an embedded instance: replay.log=requests.log replay.target=embedded replay.config=config.yml. Note
+ * that the embedded mode only supports the route endpoint, all other requests are skipped.
+ * <p>
+ * If replay.qps is positive the requests are sent at this fixed rate and the latency is measured from the time the
+ * request was scheduled, such that a slow server cannot hide its queueing delay. Otherwise the requests are sent as
+ * fast as the replay.concurrency allows.
+ */
+public class RequestReplay {
+    private static final Logger logger = LoggerFactory.getLogger(RequestReplay.class);
+    private static final String EMBEDDED = "embedded";
+
+    private final ObjectMapper objectMapper = Jackson.newObjectMapper();
+    private final Map<String, Stats> statsPerEndpoint = new ConcurrentHashMap<>();
+    private final AtomicInteger skipped = new AtomicInteger();
+    private String target;
+    private GraphHopper hopper;
+    private int timeoutMillis;
+
+    public static void main(String[] strs) throws Exception {
+        new RequestReplay().start(PMap.read(strs));
+    }
+
+    void start(PMap args) throws Exception {
+        String logLocation = args.getString("replay.log", "");
+        if (logLocation.isEmpty())
+            throw new IllegalArgumentException("replay.log is required");
+        target = args.getString("replay.target", "http://localhost:8989");
+        double qps = args.getDouble("replay.qps", 0);
+        int concurrency = args.getInt("replay.concurrency", 1);
+        int repeats = args.getInt("replay.repeats", 1);
+        int limit = args.getInt("replay.limit", Integer.MAX_VALUE);
+        timeoutMillis = args.getInt("replay.timeout", 60_000);
+
+        List<LoggedRequest> requests = readLog(logLocation, limit);
+        if (requests.isEmpty())
+            throw new IllegalArgumentException("No requests found in " + logLocation);
+
+        if (EMBEDDED.equals(target)) {
+            hopper = new GraphHopper();
+            hopper.init(readConfig(args.getString("replay.config", "config.yml")));
+            hopper.importOrLoad();
+        } else if (target.endsWith("/")) {
+            target = target.substring(0, target.length() - 1);
+        }
+
+        logger.info("replaying " + requests.size() + " requests " + repeats + " time(s) against " + target
+                + " with qps: " + (qps > 0 ? qps : "unlimited") + ", concurrency: " + concurrency);
+        ExecutorService executorService = Executors.newFixedThreadPool(concurrency);
+        Semaphore semaphore = new Semaphore(concurrency);
+        long intervalNanos = qps > 0 ? (long) (1e9 / qps) : 0;
+        long startNanos = System.nanoTime();
+        long count = 0;
+        try {
+            for (int r = 0; r < repeats; r++) {
+                for (LoggedRequest request : requests) {
+                    long scheduledNanos = startNanos + count * intervalNanos;
+                    count++;
+                    long sleepNanos = scheduledNanos - System.nanoTime();
+                    if (sleepNanos > 0)
+                        TimeUnit.NANOSECONDS.sleep(sleepNanos);
+                    semaphore.acquire();
+                    final long measureFrom = intervalNanos > 0 ? scheduledNanos : System.nanoTime();
+                    executorService.execute(() -> {
+                        try {
+                            execute(request, measureFrom);
+                        } finally {
+                            semaphore.release();
+                        }
+                    });
+                }
+            }
+            semaphore.acquire(concurrency);
+        } finally {
+            executorService.shutdown();
+            if (hopper != null)
+                hopper.close();
+        }
+        double seconds = (System.nanoTime() - startNanos) / 1e9;
+        report(args.getString("replay.summaryfile", ""), count, seconds);
+    }
+
+    private void execute(LoggedRequest request, long measureFromNanos) {
+        boolean success;
+        try {
+            if (hopper != null) {
+                if (!"route".equals(request.getEndpoint())) {
+                    skipped.incrementAndGet();
+                    return;
+                }
+                success = !hopper.route(toGHRequest(request)).hasErrors();
+            } else {
+                success = sendHttp(request) < 400;
+            }
+        } catch (Exception ex) {
+            logger.debug("request failed: " + request, ex);
+            success = false;
+        }
+        long latencyNanos = System.nanoTime() - measureFromNanos;
+        statsPerEndpoint.computeIfAbsent(request.method + " " + request.getEndpoint(), k -> new Stats()).
+                add(latencyNanos, success);
+    }
+
+    private int sendHttp(LoggedRequest request) throws IOException {
+        String url = target + "/" + request.path + (request.query.isEmpty() ? "" : "?" + request.query);
+        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        try {
+            connection.setRequestMethod(request.method);
+            connection.setConnectTimeout(timeoutMillis);
+            connection.setReadTimeout(timeoutMillis);
+            if (!request.body.isEmpty()) {
+                connection.setDoOutput(true);
+                if (!request.contentType.isEmpty())
+                    connection.setRequestProperty("Content-Type", request.contentType);
+                try (OutputStream os = connection.getOutputStream()) {
+                    os.write(request.body.getBytes(StandardCharsets.UTF_8));
+                }
+            }
+            int status = connection.getResponseCode();
+            // consume the response so that the time to transfer it is included and the connection can be reused
+            try (InputStream is = status < 400 ? connection.getInputStream() : connection.getErrorStream()) {
+                if (is != null) {
+                    byte[] buffer = new byte[8192];
+                    while (is.read(buffer) >= 0) {
+                    }
+                }
+            }
+            return status;
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    GHRequest toGHRequest(LoggedRequest request) throws IOException {
+        if ("POST".equals(request.method))
+            return objectMapper.readValue(request.body, GHRequest.class);
+
+        GHRequest ghRequest = new GHRequest();
+        List<GHPoint> points = new ArrayList<>();
+        for (Map.Entry<String, List<String>> e : parseQuery(request.query).entrySet()) {
+            List<String> values = e.getValue();
+            switch (e.getKey()) {
+                case "point":
+                    for (String value : values)
+                        points.add(GHPoint.fromString(value));
+                    break;
+                case "profile":
+                    ghRequest.setProfile(values.get(0));
+                    break;
+                case "algorithm":
+                    ghRequest.setAlgorithm(values.get(0));
+                    break;
+                case "locale":
+                    ghRequest.setLocale(values.get(0));
+                    break;
+                case "heading":
+                    List<Double> headings = new ArrayList<>();
+                    for (String value : values)
+                        headings.add(Double.parseDouble(value));
+                    ghRequest.setHeadings(headings);
+                    break;
+                case "point_hint":
+                    ghRequest.setPointHints(values);
+                    break;
+                case "curbside":
+                    ghRequest.setCurbsides(values);
+                    break;
+                case "snap_prevention":
+                    ghRequest.setSnapPreventions(values);
+                    break;
+                case "details":
+                    ghRequest.setPathDetails(values);
+                    break;
+                default:
+                    ghRequest.getHints().putObject(Helper.camelCaseToUnderScore(e.getKey()), Helper.toObject(values.get(0)));
+            }
+        }
+        return ghRequest.setPoints(points);
+    }
+
+    static Map<String, List<String>> parseQuery(String query) throws UnsupportedEncodingException {
+        Map<String, List<String>> result = new LinkedHashMap<>();
+        if (query.isEmpty())
+            return result;
+        for (String pair : query.split("&")) {
+            int index = pair.indexOf('=');
+            String key = URLDecoder.decode(index < 0 ? pair : pair.substring(0, index), "UTF-8");
+            String value = index < 0 ? "" : URLDecoder.decode(pair.substring(index + 1), "UTF-8");
+            result.computeIfAbsent(key, k -> new ArrayList<>()).add(value);
+        }
+        return result;
+    }
+
+    private void report(String summaryLocation, long count, double seconds) throws IOException {
+        Map<String, Object> properties = new TreeMap<>();
+        properties.put("replay.count", count);
+        properties.put("replay.skipped", skipped.get());
+        properties.put("replay.seconds", seconds);
+        properties.put("replay.qps", (count - skipped.get()) / seconds);
+        for (Map.Entry<String, Stats> e : new TreeMap<>(statsPerEndpoint).entrySet()) {
+            String prefix = "replay." + e.getKey().replace(' ', '_').toLowerCase(Locale.ROOT);
+            Stats stats = e.getValue();
+            long[] latencies = stats.getSortedLatencies();
+            properties.put(prefix + ".count", latencies.length);
+            properties.put(prefix + ".failed_count", stats.failed);
+            properties.put(prefix + ".p50_ms", percentile(latencies, 0.5));
+            properties.put(prefix + ".p90_ms", percentile(latencies, 0.9));
+            properties.put(prefix + ".p99_ms", percentile(latencies, 0.99));
+            properties.put(prefix + ".max_ms", percentile(latencies, 1));
+        }
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, Object> e : properties.entrySet()) {
+            sb.append(e.getKey()).append("=").append(e.getValue()).append("\n");
+        }
+        logger.info("replay finished:\n" + sb);
+        if (!summaryLocation.isEmpty()) {
+            try (Writer writer = new FileWriter(summaryLocation)) {
+                writer.append(sb);
+            }
+        }
+    }
+
+    static double percentile(long[] sortedNanos, double p) {
+        if (sortedNanos.length == 0)
+            return 0;
+        int index = (int) Math.ceil(p * sortedNanos.length) - 1;
+        return sortedNanos[Math.max(0, Math.min(sortedNanos.length - 1, index))] / 1e6;
+    }
+
+    private static GraphHopperConfig readConfig(String configLocation) throws IOException {
+        ObjectMapper yaml = Jackson.initObjectMapper(new ObjectMapper(new YAMLFactory()));
+        JsonNode node = yaml.readTree(new File(configLocation));
+        // accept the server configuration where the GraphHopper configuration is below the graphhopper key
+        if (node.has("graphhopper"))
+            node = node.get("graphhopper");
+        return yaml.convertValue(node, GraphHopperConfig.class);
+    }
+
+    static List<LoggedRequest> readLog(String logLocation, int limit) throws IOException {
+        List<LoggedRequest> requests = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(Paths.get(logLocation), StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null && requests.size() < limit) {
+                if (line.isEmpty())
+                    continue;
+                String[] columns = line.split("\t", -1);
+                if (columns.length != 6)
+                    throw new IllegalArgumentException("Invalid request log line, expected 6 columns but was "
+                            + columns.length + ": " + line);
+                requests.add(new LoggedRequest(columns[1], unescape(columns[2]), unescape(columns[3]),
+                        unescape(columns[4]), unescape(columns[5])));
+            }
+        }
+        return requests;
+    }
+
+    /**
+     * Reverts the escaping done by the RequestLogFilter
+     */
+    static String unescape(String str) {
+        if (str.indexOf('\\') < 0)
+            return str;
+        StringBuilder sb = new StringBuilder(str.length());
+        for (int i = 0; i < str.length(); i++) {
+            char c = str.charAt(i);
+            if (c != '\\' || i + 1 >= str.length()) {
+                sb.append(c);
+                continue;
+            }
+            char next = str.charAt(++i);
+            switch (next) {
+                case 't':
+                    sb.append('\t');
+                    break;
+                case 'r':
+                    sb.append('\r');
+                    break;
+                case 'n':
+                    sb.append('\n');
+                    break;
+                default:
+                    sb.append(next);
+            }
+        }
+        return sb.toString();
+    }
+
+    static class LoggedRequest {
+        final String method, path, query, contentType, body;
+
+        LoggedRequest(String method, String path, String query, String contentType, String body) {
+            this.method = method;
+            this.path = path.startsWith("/") ? path.substring(1) : path;
+            this.query = query;
+            this.contentType = contentType;
+            this.body = body;
+        }
+
+        String getEndpoint() {
+            int index = path.indexOf('/');
+            return index < 0 ? path : path.substring(0, index);
+        }
+
+        @Override
+        public String toString() {
+            return method + " " + path + "?" + query;
+        }
+    }
+
+    private static class Stats {
+        private long[] latencies = new long[64];
+        private int size;
+        private int failed;
+
+        synchronized void add(long latencyNanos, boolean success) {
+            if (!success) {
+                failed++;
+                return;
+            }
+            if (size == latencies.length)
+                latencies = Arrays.copyOf(latencies, size * 2);
+            latencies[size++] = latencyNanos;
+        }
+
+        synchronized long[] getSortedLatencies() {
+            long[] result = Arrays.copyOf(latencies, size);
+            Arrays.sort(result);
+            return result;
+        }
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.tools;
+
+import com.graphhopper.GHRequest;
+import com.graphhopper.GraphHopperConfig;
+import com.graphhopper.http.RequestLogFilter;
+import com.graphhopper.util.Helper;
+import com.graphhopper.util.shapes.GHPoint;
+import org.glassfish.jersey.internal.MapPropertiesDelegate;
+import org.glassfish.jersey.server.ContainerRequest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class RequestReplayTest {
+    private static final String DIR = "./target/request-replay-test";
+    private static final File LOG = new File(DIR, "requests.log");
+
+    @BeforeEach
+    @AfterEach
+    public void cleanUp() {
+        Helper.removeDir(new File(DIR));
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        RequestLogFilter filter = new RequestLogFilter(new GraphHopperConfig().
+                putObject("request_log.file", LOG.getPath()).
+                putObject("request_log.sample_rate", 1));
+        filter.start();
+
+        String query = "point=42.5%2C1.5&point=42.6,1.6&profile=car&details=street_name&point_hint=a%09%5Cn&point_hint=b";
+        filter.filter(createRequest("GET", "route?" + query, null));
+        // tabs, line breaks and backslashes followed by t or n must survive the escaping
+        String body = "{\n\t\"points\": [[1.5, 42.5], [1.6, 42.6]],\r\n\t\"profile\": \"car\",\n"
+                + "\t\"point_hints\": [\"a\\t\\\\n\", \"b\"],\n\t\"details\": [\"street_name\"]\n}";
+        ContainerRequest post = createRequest("POST", "route", body);
+        filter.filter(post);
+        // the resource still gets the body
+        assertEquals(body, new String(readAll(post.getEntityStream()), StandardCharsets.UTF_8));
+        filter.stop();
+
+        List<RequestReplay.LoggedRequest> requests = RequestReplay.readLog(LOG.getPath(), Integer.MAX_VALUE);
+        assertEquals(2, requests.size());
+        RequestReplay.LoggedRequest get = requests.get(0);
+        assertEquals("GET", get.method);
+        assertEquals("route", get.path);
+        assertEquals(query, get.query);
+        assertEquals("", get.contentType);
+        assertEquals("", get.body);
+
+        RequestReplay.LoggedRequest logged = requests.get(1);
+        assertEquals("POST", logged.method);
+        assertEquals("route", logged.path);
+        assertEquals("", logged.query);
+        assertEquals("application/json", logged.contentType);
+        assertEquals(body, logged.body);
+
+        // both requests are replayed as the same route request
+        RequestReplay replay = new RequestReplay();
+        GHRequest fromGet = replay.toGHRequest(get);
+        GHRequest fromPost = replay.toGHRequest(logged);
+        assertEquals(Arrays.asList(new GHPoint(42.5, 1.5), new GHPoint(42.6, 1.6)), fromGet.getPoints());
+        assertEquals(fromGet.getPoints(), fromPost.getPoints());
+        assertEquals("car", fromGet.getProfile());
+        assertEquals(fromGet.getProfile(), fromPost.getProfile());
+        assertEquals(Arrays.asList("a\t\\n", "b"), fromGet.getPointHints());
+        assertEquals(fromGet.getPointHints(), fromPost.getPointHints());
+        assertEquals(Arrays.asList("street_name"), fromGet.getPathDetails());
+        assertEquals(fromGet.getPathDetails(), fromPost.getPathDetails());
+    }
+
+    private static ContainerRequest createRequest(String method, String pathAndQuery, String body) {
+        ContainerRequest request = new ContainerRequest(URI.create("http://localhost:8989/"),
+                URI.create("http://localhost:8989/" + pathAndQuery), method, null, new MapPropertiesDelegate(), null);
+        if (body != null) {
+            request.header("Content-Type", "application/json");
+            request.setEntityStream(new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)));
+        }
+        return request;
+    }
+
+    private static byte[] readAll(InputStream is) throws IOException {
+        byte[] bytes = new byte[1 << 16];
+        int size = 0, read;
+        while ((read = is.read(bytes, size, bytes.length - size)) > 0) {
+            size += read;
+        }
+        return Arrays.copyOf(bytes, size);
+    }
+}
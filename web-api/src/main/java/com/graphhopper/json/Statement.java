@@ -17,6 +17,8 @@
  */
 package com.graphhopper.json;
 
+import java.util.Objects;
+
 public class Statement {
     private final Keyword keyword;
     private final String condition;
@@ -96,6 +98,20 @@ public class Statement {
         }
     }
 
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        Statement statement = (Statement) o;
+        return keyword == statement.keyword && Objects.equals(condition, statement.condition)
+                && operation == statement.operation && Objects.equals(value, statement.value);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(keyword, condition, operation, value);
+    }
+
     @Override
     public String toString() {
         return "{" + str(keyword.getName()) + ": " + str(condition) + ", " + str(operation.getName()) + ": " + value + "}";
@@ -0,0 +1,66 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.http;
+
+import com.graphhopper.GraphHopper;
+import com.graphhopper.routing.BlockAreaCache;
+import io.dropwizard.servlets.tasks.Task;
+
+import java.io.PrintWriter;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Admin task that manages the named block areas, which can be used in the block_area parameter of route requests, e.g.
+ * curl -X POST 'localhost:8990/tasks/block-areas?name=roadworks_1&area=49.4,9.7,49.41,9.71'
+ * curl -X POST 'localhost:8990/tasks/block-areas?name=roadworks_1&remove=true'
+ * Without parameters the named block areas are listed.
+ */
+public class BlockAreaTask extends Task {
+    private final GraphHopper graphHopper;
+
+    public BlockAreaTask(GraphHopper graphHopper) {
+        super("block-areas");
+        this.graphHopper = graphHopper;
+    }
+
+    @Override
+    public void execute(Map<String, List<String>> parameters, PrintWriter output) {
+        BlockAreaCache blockAreaCache = graphHopper.getBlockAreaCache();
+        String name = getParameter(parameters, "name");
+        if (name != null) {
+            String area = getParameter(parameters, "area");
+            if (Boolean.parseBoolean(getParameter(parameters, "remove"))) {
+                output.println(blockAreaCache.removeNamedArea(name) ? "removed " + name : "unknown block area " + name);
+            } else if (area != null) {
+                blockAreaCache.putNamedArea(name, area);
+                output.println("stored " + name);
+            } else {
+                throw new IllegalArgumentException("Specify the block area via the parameter 'area' or use 'remove=true'");
+            }
+        }
+        for (Map.Entry<String, String> entry : blockAreaCache.getNamedAreas().entrySet()) {
+            output.println(entry.getKey() + "=" + entry.getValue());
+        }
+    }
+
+    private static String getParameter(Map<String, List<String>> parameters, String key) {
+        List<String> values = parameters.get(key);
+        return values == null || values.isEmpty() ? null : values.get(0);
+    }
+}
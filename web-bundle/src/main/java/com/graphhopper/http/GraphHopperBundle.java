@@ -18,6 +18,7 @@
 
 package com.graphhopper.http;
 
+import com.codahale.metrics.Gauge;
 import com.fasterxml.jackson.databind.MapperFeature;
 import com.fasterxml.jackson.databind.util.StdDateFormat;
 import com.fasterxml.jackson.datatype.jdk8.Jdk8Module;
@@ -31,6 +32,8 @@ import com.graphhopper.jackson.Jackson;
 import com.graphhopper.resources.*;
 import com.graphhopper.routing.ProfileResolver;
 import com.graphhopper.routing.util.EncodingManager;
+import com.graphhopper.routing.weighting.custom.CustomModelClassCache;
+import com.graphhopper.routing.weighting.custom.CustomModelParser;
 import com.graphhopper.storage.BaseGraph;
 import com.graphhopper.storage.index.LocationIndex;
 import com.graphhopper.util.TranslationMap;
@@ -42,6 +45,8 @@ import org.glassfish.hk2.api.Factory;
 import org.glassfish.hk2.utilities.binding.AbstractBinder;
 
 import javax.inject.Inject;
+import java.io.File;
+import java.util.concurrent.ExecutorService;
 
 public class GraphHopperBundle implements ConfiguredBundle<GraphHopperBundleConfiguration> {
 
@@ -226,9 +231,20 @@ public class GraphHopperBundle implements ConfiguredBundle<GraphHopperBundleConf
         // a single entry.
         environment.jersey().register(new IllegalArgumentExceptionMapper());
 
+        if (configuration.getGraphHopperConfiguration().has("request_log.file")) {
+            RequestLogFilter requestLogFilter = new RequestLogFilter(configuration.getGraphHopperConfiguration());
+            environment.lifecycle().manage(requestLogFilter);
+            environment.jersey().register(requestLogFilter);
+        }
+
         final GraphHopperManaged graphHopperManaged = new GraphHopperManaged(configuration.getGraphHopperConfiguration());
         environment.lifecycle().manage(graphHopperManaged);
         final GraphHopper graphHopper = graphHopperManaged.getGraphHopper();
+        final MVTTileCache tileCache = createTileCache(configuration.getGraphHopperConfiguration(), graphHopper);
+        // threads are only started when long traces are matched in segments, see map_matching.segments.size
+        final int mapMatchingThreads = configuration.getGraphHopperConfiguration().getInt("map_matching.segments.threads", Runtime.getRuntime().availableProcessors());
+        final ExecutorService mapMatchingExecutor = environment.lifecycle().executorService("map-matching-%d")
+                .minThreads(mapMatchingThreads).maxThreads(mapMatchingThreads).build();
         environment.jersey().register(new AbstractBinder() {
             @Override
             protected void configure() {
@@ -236,6 +252,10 @@ public class GraphHopperBundle implements ConfiguredBundle<GraphHopperBundleConf
                 bind(graphHopper).to(GraphHopper.class);
 
                 bind(new JTSTriangulator(graphHopper.getRouterConfig())).to(Triangulator.class);
+                bind(tileCache).to(MVTTileCache.class);
+                bind(new MatchingSessionStore(configuration.getGraphHopperConfiguration().getInt("map_matching.sessions.max", 10_000),
+                        configuration.getGraphHopperConfiguration().getInt("map_matching.sessions.timeout", 600) * 1000L)).to(MatchingSessionStore.class);
+                bind(mapMatchingExecutor).to(ExecutorService.class).named("mapMatchingExecutor");
                 bindFactory(PathDetailsBuilderFactoryFactory.class).to(PathDetailsBuilderFactory.class);
                 bindFactory(ProfileResolverFactory.class).to(ProfileResolver.class);
                 bindFactory(HasElevation.class).to(Boolean.class).named("hasElevation");
@@ -274,8 +294,23 @@ public class GraphHopperBundle implements ConfiguredBundle<GraphHopperBundleConf
         environment.jersey().register(SPTResource.class);
         environment.jersey().register(I18NResource.class);
         environment.jersey().register(InfoResource.class);
+        if (graphHopper.getReaderConfig().isStoreOSMWayIds())
+            environment.admin().addTask(new OSMChangeTask(graphHopper, tileCache));
+        environment.admin().addTask(new BlockAreaTask(graphHopper));
+        // the hit rate of the classes compiled for custom models is available at the admin endpoint /metrics
+        CustomModelClassCache customModelCache = CustomModelParser.getCache();
+        environment.metrics().register("custom_model_cache.hits", (Gauge<Long>) customModelCache::getHits);
+        environment.metrics().register("custom_model_cache.misses", (Gauge<Long>) customModelCache::getMisses);
+        environment.metrics().register("custom_model_cache.hit_rate", (Gauge<Double>) customModelCache::getHitRate);
+        environment.metrics().register("custom_model_cache.size", (Gauge<Integer>) customModelCache::size);
         environment.healthChecks().register("graphhopper", new GraphHopperHealthCheck(graphHopper));
         environment.jersey().register(environment.healthChecks());
         environment.jersey().register(HealthCheckResource.class);
     }
+
+    public static MVTTileCache createTileCache(GraphHopperConfig config, GraphHopper graphHopper) {
+        String storeDir = config.getString("mvt.cache.dir", "");
+        return new MVTTileCache(graphHopper, config.getInt("mvt.generalize_below_zoom", 14), config.getInt("mvt.cache.max_tiles", 1000),
+                storeDir.isEmpty() ? null : new File(storeDir));
+    }
 }
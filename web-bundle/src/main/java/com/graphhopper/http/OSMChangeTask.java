@@ -0,0 +1,55 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.http;
+
+import com.graphhopper.GraphHopper;
+import com.graphhopper.reader.osm.OSMChangeUpdater;
+import com.graphhopper.resources.MVTTileCache;
+import io.dropwizard.servlets.tasks.Task;
+
+import java.io.File;
+import java.io.PrintWriter;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Admin task that applies an OSM change file to the graph, e.g.
+ * curl -X POST 'localhost:8990/tasks/apply-osm-change?file=/path/to/change.osc.gz'
+ */
+public class OSMChangeTask extends Task {
+    private final GraphHopper graphHopper;
+    private final MVTTileCache tileCache;
+
+    public OSMChangeTask(GraphHopper graphHopper, MVTTileCache tileCache) {
+        super("apply-osm-change");
+        this.graphHopper = graphHopper;
+        this.tileCache = tileCache;
+    }
+
+    @Override
+    public void execute(Map<String, List<String>> parameters, PrintWriter output) throws Exception {
+        List<String> files = parameters.get("file");
+        if (files == null || files.isEmpty())
+            throw new IllegalArgumentException("Specify the OSM change file via the parameter 'file'");
+        for (String file : files) {
+            OSMChangeUpdater.Result result = graphHopper.applyOSMChange(new File(file));
+            output.println(file + ": " + result);
+        }
+        tileCache.invalidate();
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.http;
+
+import com.graphhopper.GraphHopperConfig;
+import io.dropwizard.lifecycle.Managed;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerRequestFilter;
+import javax.ws.rs.container.PreMatching;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Writes a sample of the incoming requests into a file so that they can be replayed later, e.g. with
+ * com.graphhopper.tools.RequestReplay. This filter is only registered if request_log.file is configured.
+ * <p>
+ * Every request is written as a single line of tab separated columns:
+ * <pre>
+ * time_millis  method  path  query  content_type  body
+ * </pre>
+ * Empty columns are written as empty strings. Backslash, tab, carriage return and newline characters within the
+ * columns are escaped as \\, \t, \r and \n, see {@link #escape(String)}.
+ */
+@PreMatching
+public class RequestLogFilter implements ContainerRequestFilter, Managed {
+    private static final Logger logger = LoggerFactory.getLogger(RequestLogFilter.class);
+    private final File file;
+    private final double sampleRate;
+    private final Set<String> endpoints;
+    private final int maxBodySize;
+    private Writer writer;
+
+    public RequestLogFilter(GraphHopperConfig config) {
+        file = new File(config.getString("request_log.file", ""));
+        sampleRate = config.getDouble("request_log.sample_rate", 0.1);
+        if (sampleRate <= 0 || sampleRate > 1)
+            throw new IllegalArgumentException("request_log.sample_rate must be in (0, 1] but was " + sampleRate);
+        endpoints = new HashSet<>();
+        for (String endpoint : config.getString("request_log.endpoints", "route,isochrone,spt,nearest,match").split(",")) {
+            if (!endpoint.trim().isEmpty())
+                endpoints.add(endpoint.trim());
+        }
+        maxBodySize = config.getInt("request_log.max_body_size", 1 << 20);
+    }
+
+    @Override
+    public void start() throws IOException {
+        if (file.getParentFile() != null)
+            file.getParentFile().mkdirs();
+        writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file, true), StandardCharsets.UTF_8));
+        logger.info("logging requests with sample rate " + sampleRate + " to " + file.getAbsolutePath());
+    }
+
+    @Override
+    public void stop() throws IOException {
+        synchronized (this) {
+            if (writer != null)
+                writer.close();
+            writer = null;
+        }
+    }
+
+    @Override
+    public void filter(ContainerRequestContext rc) throws IOException {
+        String path = rc.getUriInfo().getPath();
+        if (!endpoints.contains(getEndpoint(path)))
+            return;
+        if (sampleRate < 1 && ThreadLocalRandom.current().nextDouble() >= sampleRate)
+            return;
+
+        String body = "";
+        if (rc.hasEntity()) {
+            byte[] bytes = readAll(rc.getEntityStream());
+            // the entity stream can only be consumed once, so we hand over a copy to the resource
+            rc.setEntityStream(new ByteArrayInputStream(bytes));
+            if (bytes.length > maxBodySize)
+                return;
+            body = new String(bytes, StandardCharsets.UTF_8);
+        }
+        String query = rc.getUriInfo().getRequestUri().getRawQuery();
+        String contentType = rc.getMediaType() == null ? "" : rc.getMediaType().toString();
+        String line = System.currentTimeMillis() + "\t" + rc.getMethod() + "\t" + escape(path) + "\t"
+                + escape(query == null ? "" : query) + "\t" + escape(contentType) + "\t" + escape(body) + "\n";
+        synchronized (this) {
+            if (writer == null)
+                return;
+            // no flush here: the buffered writer is flushed whenever it is full and on stop
+            writer.write(line);
+        }
+    }
+
+    static String getEndpoint(String path) {
+        if (path.startsWith("/"))
+            path = path.substring(1);
+        int index = path.indexOf('/');
+        return index < 0 ? path : path.substring(0, index);
+    }
+
+    public static String escape(String str) {
+        StringBuilder sb = new StringBuilder(str.length());
+        for (int i = 0; i < str.length(); i++) {
+            char c = str.charAt(i);
+            switch (c) {
+                case '\\':
+                    sb.append("\\\\");
+                    break;
+                case '\t':
+                    sb.append("\\t");
+                    break;
+                case '\r':
+                    sb.append("\\r");
+                    break;
+                case '\n':
+                    sb.append("\\n");
+                    break;
+                default:
+                    sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+
+    private static byte[] readAll(InputStream is) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = is.read(buffer)) >= 0) {
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
+}
@@ -23,6 +23,7 @@ import com.graphhopper.storage.GraphEdgeIdFinder;
 import com.graphhopper.storage.index.LocationIndex;
 import com.graphhopper.storage.index.Snap;
 import com.graphhopper.util.*;
+import com.graphhopper.util.shapes.GHPoint;
 import org.hibernate.validator.constraints.Range;
 import org.locationtech.jts.geom.*;
 import org.slf4j.Logger;
@@ -69,7 +70,7 @@ public class IsochroneResource {
             @QueryParam("profile") String profileName,
             @QueryParam("buckets") @Range(min = 1, max = 20) @DefaultValue("1") OptionalInt nBuckets,
             @QueryParam("reverse_flow") @DefaultValue("false") boolean reverseFlow,
-            @QueryParam("point") @NotNull GHPointParam point,
+            @QueryParam("point") @NotNull List<GHPointParam> pointParams,
             @QueryParam("time_limit") @DefaultValue("600") OptionalLong timeLimitInSeconds,
             @QueryParam("distance_limit") @DefaultValue("-1") OptionalLong distanceLimitInMeter,
             @QueryParam("weight_limit") @DefaultValue("-1") OptionalLong weightLimit,
@@ -77,6 +78,8 @@ public class IsochroneResource {
             @QueryParam("tolerance") @DefaultValue("0") double toleranceInMeter,
             @QueryParam("full_geometry") @DefaultValue("false") boolean fullGeometry) {
         StopWatch sw = new StopWatch().start();
+        if (pointParams.isEmpty())
+            throw new IllegalArgumentException("query param point must not be null");
         PMap hintsMap = new PMap();
         RouteResource.initHints(hintsMap, uriInfo.getQueryParameters());
         hintsMap.putObject(Parameters.CH.DISABLE, true);
@@ -86,6 +89,10 @@ public class IsochroneResource {
             removeLegacyParameters(hintsMap);
         }
         errorIfLegacyParameters(hintsMap);
+        List<GHPoint> points = new ArrayList<>(pointParams.size());
+        for (GHPointParam pointParam : pointParams) {
+            points.add(pointParam.get());
+        }
 
         Profile profile = graphHopper.getProfile(profileName);
         if (profile == null)
@@ -96,13 +103,18 @@ public class IsochroneResource {
         BooleanEncodedValue inSubnetworkEnc = graphHopper.getEncodingManager().getBooleanEncodedValue(Subnetwork.key(profileName));
         if (hintsMap.has(Parameters.Routing.BLOCK_AREA)) {
             GraphEdgeIdFinder.BlockArea blockArea = GraphEdgeIdFinder.createBlockArea(graph, locationIndex,
-                    Collections.singletonList(point.get()), hintsMap, new FiniteWeightFilter(weighting));
+                    points, hintsMap, new FiniteWeightFilter(weighting));
             weighting = new BlockAreaWeighting(weighting, blockArea);
         }
-        Snap snap = locationIndex.findClosest(point.get().lat, point.get().lon, new DefaultSnapFilter(weighting, inSubnetworkEnc));
-        if (!snap.isValid())
-            throw new IllegalArgumentException("Point not found:" + point);
-        QueryGraph queryGraph = QueryGraph.create(graph, snap);
+        // all points are explored in a single search, so every node is reached from the closest point
+        List<Snap> snaps = new ArrayList<>(points.size());
+        for (GHPoint point : points) {
+            Snap snap = locationIndex.findClosest(point.lat, point.lon, new DefaultSnapFilter(weighting, inSubnetworkEnc));
+            if (!snap.isValid())
+                throw new IllegalArgumentException("Point not found:" + point);
+            snaps.add(snap);
+        }
+        QueryGraph queryGraph = QueryGraph.create(graph, snaps);
         TraversalMode traversalMode = profile.isTurnCosts() ? EDGE_BASED : NODE_BASED;
         ShortestPathTree shortestPathTree = new ShortestPathTree(queryGraph, queryGraph.wrapWeighting(weighting), reverseFlow, traversalMode);
 
@@ -127,7 +139,7 @@ public class IsochroneResource {
             zs.add((i + 1) * delta);
         }
 
-        Triangulator.Result result = triangulator.triangulate(snap, queryGraph, shortestPathTree, fz, degreesFromMeters(toleranceInMeter));
+        Triangulator.Result result = triangulator.triangulate(snaps, queryGraph, shortestPathTree, fz, degreesFromMeters(toleranceInMeter));
 
         ContourBuilder contourBuilder = new ContourBuilder(result.triangulation);
         ArrayList<Geometry> isochrones = new ArrayList<>();
@@ -137,8 +149,17 @@ public class IsochroneResource {
             if (fullGeometry) {
                 isochrones.add(isochrone);
             } else {
-                Polygon maxPolygon = heuristicallyFindMainConnectedComponent(isochrone, isochrone.getFactory().createPoint(new Coordinate(point.get().lon, point.get().lat)));
-                isochrones.add(isochrone.getFactory().createPolygon(((LinearRing) maxPolygon.getExteriorRing())));
+                GeometryFactory factory = isochrone.getFactory();
+                // keep the main component of every point, which is usually the same polygon if the points are close
+                Set<Polygon> mainPolygons = new LinkedHashSet<>();
+                for (GHPoint point : points) {
+                    Polygon maxPolygon = heuristicallyFindMainConnectedComponent(isochrone, factory.createPoint(new Coordinate(point.lon, point.lat)));
+                    mainPolygons.add(factory.createPolygon(((LinearRing) maxPolygon.getExteriorRing())));
+                }
+                if (mainPolygons.size() == 1)
+                    isochrones.add(mainPolygons.iterator().next());
+                else
+                    isochrones.add(factory.createMultiPolygon(mainPolygons.toArray(new Polygon[0])));
             }
         }
         ArrayList<JsonFeature> features = new ArrayList<>();
@@ -29,6 +29,7 @@ import javax.ws.rs.core.Context;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.UriInfo;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -41,11 +42,16 @@ public class MVTResource {
     private static final MediaType PBF = new MediaType("application", "x-protobuf");
     private final GraphHopper graphHopper;
     private final EncodingManager encodingManager;
+    private final MVTTileCache tileCache;
+    private final int generalizeBelowZoom;
 
     @Inject
-    public MVTResource(GraphHopper graphHopper, EncodingManager encodingManager) {
+    public MVTResource(GraphHopper graphHopper, EncodingManager encodingManager, MVTTileCache tileCache) {
         this.graphHopper = graphHopper;
         this.encodingManager = encodingManager;
+        this.tileCache = tileCache;
+        // the cached tiles must have been created with the same setting
+        this.generalizeBelowZoom = tileCache.getGeneralizeBelowZoom();
     }
 
     @GET
@@ -66,6 +72,40 @@ public class MVTResource {
                     .build();
         }
 
+        StopWatch totalSW = new StopWatch().start();
+        List<String> details = getValidDetails(pathDetails);
+        String key = MVTTileCache.createKey(zInfo, xInfo, yInfo, details);
+        byte[] bytes = tileCache.get(key);
+        if (bytes == null) {
+            int generation = tileCache.getGeneration();
+            bytes = createTile(zInfo, xInfo, yInfo, details);
+            tileCache.put(key, bytes, generation);
+        }
+        totalSW.stop();
+        return Response.ok(bytes, PBF).header("X-GH-Took", "" + totalSW.getSeconds() * 1000)
+                .build();
+    }
+
+    /**
+     * @return the encoded values of the specified path details, all unknown path details are ignored
+     */
+    public List<String> getValidDetails(List<String> pathDetails) {
+        List<String> details = new ArrayList<>(pathDetails.size());
+        for (String str : pathDetails) {
+            // how to indicate an erroneous parameter?
+            if (str.contains(",") || !encodingManager.hasEncodedValue(str) || details.contains(str))
+                continue;
+            details.add(str);
+        }
+        return details;
+    }
+
+    /**
+     * Creates the vector tile for the specified tile coordinates without using the tile cache.
+     *
+     * @param details the names of the encoded values that should be included for every edge
+     */
+    public byte[] createTile(int zInfo, int xInfo, int yInfo, List<String> details) {
         StopWatch totalSW = new StopWatch().start();
         Coordinate nw = num2deg(xInfo, yInfo, zInfo);
         Coordinate se = num2deg(xInfo + 1, yInfo + 1, zInfo);
@@ -85,6 +125,9 @@ public class MVTResource {
             throw new IllegalStateException("You need to configure GraphHopper to store road_class, e.g. graph.encoded_values: road_class,max_speed,... ");
 
         final EnumEncodedValue<RoadClass> roadClassEnc = encodingManager.getEnumEncodedValue(RoadClass.KEY, RoadClass.class);
+        // deviations below the size of one unit of the tile extent are invisible
+        final double centerLat = (nw.y + se.y) / 2;
+        final double maxDistance = DistanceCalcEarth.DIST_EARTH.calcDist(centerLat, nw.x, centerLat, se.x) / layerParams.extent;
         final AtomicInteger edgeCounter = new AtomicInteger(0);
         // in toFeatures addTags of the converter is called and layerProps is filled with keys&values => those need to be stored in the layerBuilder
         // otherwise the decoding won't be successful and "undefined":"undefined" instead of "speed": 30 is the result
@@ -94,19 +137,11 @@ public class MVTResource {
         locationIndex.query(bbox, edgeId -> {
             EdgeIteratorState edge = graphHopper.getBaseGraph().getEdgeIteratorStateForKey(edgeId * 2);
             LineString lineString;
-            RoadClass rc = edge.get(roadClassEnc);
-            if (zInfo >= 14) {
+            if (zInfo >= generalizeBelowZoom) {
                 PointList pl = edge.fetchWayGeometry(FetchMode.ALL);
                 lineString = pl.toLineString(false);
-            } else if (rc == RoadClass.MOTORWAY
-                    || zInfo > 10 && (rc == RoadClass.PRIMARY || rc == RoadClass.TRUNK)
-                    || zInfo > 11 && (rc == RoadClass.SECONDARY)
-                    || zInfo > 12) {
-                double lat = na.getLat(edge.getBaseNode());
-                double lon = na.getLon(edge.getBaseNode());
-                double toLat = na.getLat(edge.getAdjNode());
-                double toLon = na.getLon(edge.getAdjNode());
-                lineString = geometryFactory.createLineString(new Coordinate[]{new Coordinate(lon, lat), new Coordinate(toLon, toLat)});
+            } else if (isVisible(edge.get(roadClassEnc), zInfo)) {
+                lineString = createGeneralizedLineString(edge, na, geometryFactory, maxDistance);
             } else {
                 // skip edge for certain zoom
                 return;
@@ -115,11 +150,7 @@ public class MVTResource {
             edgeCounter.incrementAndGet();
             Map<String, Object> map = new HashMap<>(2);
             map.put("name", edge.getName());
-            for (String str : pathDetails) {
-                // how to indicate an erroneous parameter?
-                if (str.contains(",") || !encodingManager.hasEncodedValue(str))
-                    continue;
-
+            for (String str : details) {
                 EncodedValue ev = encodingManager.getEncodedValue(str, EncodedValue.class);
                 if (ev instanceof EnumEncodedValue)
                     map.put(ev.getName(), edge.get((EnumEncodedValue) ev).toString());
@@ -144,8 +175,36 @@ public class MVTResource {
         byte[] bytes = mvtBuilder.build().toByteArray();
         totalSW.stop();
         logger.debug("took: " + totalSW.getSeconds() + ", edges:" + edgeCounter.get());
-        return Response.ok(bytes, PBF).header("X-GH-Took", "" + totalSW.getSeconds() * 1000)
-                .build();
+        return bytes;
+    }
+
+    /**
+     * Road class thinning: for lower zoom levels only the more important roads are included.
+     */
+    static boolean isVisible(RoadClass rc, int zoom) {
+        return rc == RoadClass.MOTORWAY
+                || zoom > 10 && (rc == RoadClass.PRIMARY || rc == RoadClass.TRUNK)
+                || zoom > 11 && (rc == RoadClass.SECONDARY)
+                || zoom > 12;
+    }
+
+    /**
+     * Creates the geometry of the edge simplified with Douglas-Peucker, where maxDistance is the size of one unit of
+     * the tile extent in meters.
+     */
+    static LineString createGeneralizedLineString(EdgeIteratorState edge, NodeAccess na, GeometryFactory geometryFactory, double maxDistance) {
+        // the pillar nodes cannot deviate more than half of the edge length from the straight line between the tower
+        // nodes, so we can avoid fetching the geometry for short edges
+        if (edge.getDistance() / 2 <= maxDistance) {
+            double lat = na.getLat(edge.getBaseNode());
+            double lon = na.getLon(edge.getBaseNode());
+            double toLat = na.getLat(edge.getAdjNode());
+            double toLon = na.getLon(edge.getAdjNode());
+            return geometryFactory.createLineString(new Coordinate[]{new Coordinate(lon, lat), new Coordinate(toLon, toLat)});
+        }
+        PointList pl = edge.fetchWayGeometry(FetchMode.ALL);
+        new DouglasPeucker().setMaxDistance(maxDistance).simplify(pl);
+        return pl.toLineString(false);
     }
 
     Coordinate num2deg(int xInfo, int yInfo, int zoom) {
@@ -0,0 +1,207 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.resources;
+
+import com.graphhopper.GraphHopper;
+import com.graphhopper.storage.StorableProperties;
+import com.graphhopper.util.Helper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Caches the vector tiles created by the MVTResource. The tiles are kept in an in-memory LRU cache and optionally
+ * in a disk store, where every graph version gets its own sub directory. The graph version is derived from the
+ * import properties of the graph and the settings that change the tile content, so tiles created for an older graph
+ * or with different settings are never served and their directories are removed. Use {@link #invalidate()} if the
+ * graph was modified at runtime. The cache is best-effort: tiles that cannot be stored are only logged.
+ */
+public class MVTTileCache {
+    private static final Logger logger = LoggerFactory.getLogger(MVTTileCache.class);
+    private final GraphHopper graphHopper;
+    private final Map<String, byte[]> memoryCache;
+    private final File storeDir;
+    private final int generalizeBelowZoom;
+    // puts and disk reads share the read lock, invalidate needs the write lock to not race with them
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private volatile int generation;
+    private String graphVersion;
+
+    /**
+     * @param generalizeBelowZoom the tiles of lower zoom levels are created with simplified geometries
+     * @param maxTiles the maximum number of tiles in the in-memory cache, 0 disables it
+     * @param storeDir the directory of the disk store or null if tiles should not be stored on disk
+     */
+    public MVTTileCache(GraphHopper graphHopper, int generalizeBelowZoom, final int maxTiles, File storeDir) {
+        this.graphHopper = graphHopper;
+        this.generalizeBelowZoom = generalizeBelowZoom;
+        this.storeDir = storeDir;
+        // use accessOrder==true to remove the oldest accessed entry, not the oldest inserted
+        this.memoryCache = maxTiles <= 0 ? null : Collections.synchronizedMap(
+                new LinkedHashMap<String, byte[]>(Math.min(maxTiles, 1024), 0.75f, true) {
+                    @Override
+                    protected boolean removeEldestEntry(Map.Entry<String, byte[]> eldest) {
+                        return size() > maxTiles;
+                    }
+                });
+    }
+
+    public int getGeneralizeBelowZoom() {
+        return generalizeBelowZoom;
+    }
+
+    /**
+     * @return the key of the tile for the specified coordinates. The details need to be valid encoded value names.
+     */
+    public static String createKey(int z, int x, int y, Collection<String> details) {
+        String key = z + "/" + x + "/" + y;
+        if (details.isEmpty())
+            return key;
+        // the order of the details does not change the tile
+        return key + "_" + String.join("-", new TreeSet<>(details));
+    }
+
+    /**
+     * @return the tile for the specified key or null if it is not cached
+     */
+    public byte[] get(String key) {
+        if (memoryCache != null) {
+            byte[] bytes = memoryCache.get(key);
+            if (bytes != null)
+                return bytes;
+        }
+        if (storeDir == null)
+            return null;
+        lock.readLock().lock();
+        try {
+            File file = getFile(key);
+            if (!file.exists())
+                return null;
+            try {
+                byte[] bytes = Files.readAllBytes(file.toPath());
+                if (memoryCache != null)
+                    memoryCache.put(key, bytes);
+                return bytes;
+            } catch (IOException ex) {
+                logger.warn("Cannot read tile " + file, ex);
+                return null;
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return the current generation of the cache, which changes with every {@link #invalidate()}. Fetch it before
+     * creating a tile and pass it to {@link #put(String, byte[], int)}.
+     */
+    public int getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Stores the specified tile. The tile is dropped if the cache was invalidated after the specified generation was
+     * fetched, because it might have been created from the graph before the change.
+     */
+    public void put(String key, byte[] bytes, int generation) {
+        lock.readLock().lock();
+        try {
+            if (generation != this.generation)
+                return;
+            if (memoryCache != null)
+                memoryCache.put(key, bytes);
+            if (storeDir == null)
+                return;
+            File file = getFile(key);
+            File tmpFile = null;
+            try {
+                Files.createDirectories(file.getParentFile().toPath());
+                // write into a temporary file first to make sure concurrent readers never see a partial tile
+                tmpFile = File.createTempFile("tile", ".tmp", file.getParentFile());
+                Files.write(tmpFile.toPath(), bytes);
+                Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException ex) {
+                logger.warn("Cannot store tile " + file, ex);
+                if (tmpFile != null)
+                    tmpFile.delete();
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Removes all tiles from the in-memory cache and the disk store. This needs to be called whenever the graph
+     * changes without a new import. Tiles that are put afterwards are dropped if their creation started before.
+     */
+    public void invalidate() {
+        lock.writeLock().lock();
+        try {
+            generation++;
+            if (memoryCache != null)
+                memoryCache.clear();
+            synchronized (this) {
+                if (storeDir != null && graphVersion != null)
+                    Helper.removeDir(new File(storeDir, graphVersion));
+                graphVersion = null;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private File getFile(String key) {
+        return new File(new File(storeDir, getGraphVersion()), key + ".mvt");
+    }
+
+    synchronized String getGraphVersion() {
+        if (graphVersion == null) {
+            graphVersion = createGraphVersion(graphHopper, generalizeBelowZoom);
+            removeOutdatedVersions();
+        }
+        return graphVersion;
+    }
+
+    private void removeOutdatedVersions() {
+        File[] files = storeDir.listFiles();
+        if (files == null)
+            return;
+        for (File file : files) {
+            if (file.isDirectory() && !file.getName().equals(graphVersion)) {
+                logger.info("removing tiles of outdated graph version " + file.getName());
+                Helper.removeDir(file);
+            }
+        }
+    }
+
+    static String createGraphVersion(GraphHopper graphHopper, int generalizeBelowZoom) {
+        StorableProperties properties = graphHopper.getProperties();
+        String str = properties.get("datareader.import.date") + "|" + properties.get("datareader.data.date")
+                + "|" + properties.get("graph.em.edge_config")
+                + "|" + graphHopper.getBaseGraph().getNodes() + "|" + graphHopper.getBaseGraph().getEdges()
+                + "|" + generalizeBelowZoom;
+        return Integer.toHexString(str.hashCode());
+    }
+}
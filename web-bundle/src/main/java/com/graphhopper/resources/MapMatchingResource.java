@@ -23,6 +23,7 @@ import com.fasterxml.jackson.databind.node.JsonNodeFactory;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.graphhopper.GHResponse;
 import com.graphhopper.GraphHopper;
+import com.graphhopper.GraphHopperConfig;
 import com.graphhopper.ResponsePath;
 import com.graphhopper.gpx.GpxConversions;
 import com.graphhopper.jackson.Gpx;
@@ -30,14 +31,17 @@ import com.graphhopper.jackson.ResponsePathSerializer;
 import com.graphhopper.matching.*;
 import com.graphhopper.routing.ProfileResolver;
 import com.graphhopper.util.*;
+import com.graphhopper.util.shapes.GHPoint;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.inject.Inject;
+import javax.inject.Named;
 import javax.servlet.http.HttpServletRequest;
 import javax.ws.rs.*;
 import javax.ws.rs.core.*;
 import java.util.*;
+import java.util.concurrent.ExecutorService;
 
 import static com.graphhopper.util.Parameters.Details.PATH_DETAILS;
 import static com.graphhopper.util.Parameters.Routing.*;
@@ -55,12 +59,21 @@ public class MapMatchingResource {
     private final GraphHopper graphHopper;
     private final ProfileResolver profileResolver;
     private final TranslationMap trMap;
+    private final MatchingSessionStore sessionStore;
+    private final ExecutorService executorService;
+    private final int segmentSize;
+    private final int segmentOverlap;
 
     @Inject
-    public MapMatchingResource(GraphHopper graphHopper, ProfileResolver profileResolver, TranslationMap trMap) {
+    public MapMatchingResource(GraphHopperConfig config, GraphHopper graphHopper, ProfileResolver profileResolver, TranslationMap trMap,
+                               MatchingSessionStore sessionStore, @Named("mapMatchingExecutor") ExecutorService executorService) {
         this.graphHopper = graphHopper;
         this.profileResolver = profileResolver;
         this.trMap = trMap;
+        this.sessionStore = sessionStore;
+        this.executorService = executorService;
+        this.segmentSize = config.getInt("map_matching.segments.size", 0);
+        this.segmentOverlap = config.getInt("map_matching.segments.overlap", 20);
     }
 
     @POST
@@ -101,18 +114,12 @@ public class MapMatchingResource {
         // add values that are not in hints because they were explicitly listed in query params
         hints.putObject(MAX_VISITED_NODES, maxVisitedNodes);
         String weightingVehicleLogStr = "weighting: " + hints.getString("weighting", "") + ", vehicle: " + hints.getString("vehicle", "");
-        if (Helper.isEmpty(profile)) {
-            // resolve profile and remove legacy vehicle/weighting parameters
-            // we need to explicitly disable CH here because map matching does not use it
-            PMap pMap = new PMap(hints).putObject(Parameters.CH.DISABLE, true);
-            profile = profileResolver.resolveProfile(pMap).getName();
-            removeLegacyParameters(hints);
-        }
-        hints.putObject("profile", profile);
-        errorIfLegacyParameters(hints);
+        profile = resolveProfile(hints, profile);
 
         MapMatching matching = new MapMatching(graphHopper, hints);
         matching.setMeasurementErrorSigma(gpsAccuracy);
+        if (segmentSize > 0)
+            matching.setSegmentation(executorService, segmentSize, segmentOverlap);
 
         List<Observation> measurements = GpxConversions.getEntries(gpx.trk.get(0));
         MatchResult matchResult = matching.match(measurements);
@@ -177,6 +184,105 @@ public class MapMatchingResource {
         }
     }
 
+    /**
+     * Creates a session to match a trace while it is recorded. The observations are sent in batches to
+     * /match/session/{id} and the session is closed with a DELETE request, see {@link MatchingSession}.
+     */
+    @POST
+    @javax.ws.rs.Path("session")
+    @Produces(MediaType.APPLICATION_JSON)
+    public ObjectNode createSession(
+            @Context UriInfo uriInfo,
+            @QueryParam("profile") String profile,
+            @QueryParam("gps_accuracy") @DefaultValue("40") double gpsAccuracy,
+            @QueryParam("max_lag") @DefaultValue("20") int maxLag,
+            @QueryParam(MAX_VISITED_NODES) @DefaultValue("3000") int maxVisitedNodes) {
+        if (maxLag < 1 || maxLag > 100)
+            throw new IllegalArgumentException("max_lag must be in [1, 100] but was " + maxLag);
+        PMap hints = createHintsMap(uriInfo.getQueryParameters());
+        hints.putObject(MAX_VISITED_NODES, maxVisitedNodes);
+        resolveProfile(hints, profile);
+        MapMatching matching = new MapMatching(graphHopper, hints);
+        matching.setMeasurementErrorSigma(gpsAccuracy);
+        ObjectNode json = JsonNodeFactory.instance.objectNode();
+        json.put("session_id", sessionStore.add(matching.createSession(maxLag)));
+        return json;
+    }
+
+    /**
+     * Adds the observations of the request body, e.g. {"points": [[lon, lat], ...]}, to the session and returns the
+     * links that were matched so far.
+     */
+    @POST
+    @javax.ws.rs.Path("session/{id}")
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces(MediaType.APPLICATION_JSON)
+    public ObjectNode addToSession(
+            @PathParam("id") String id,
+            JsonNode body,
+            @QueryParam("elevation") @DefaultValue("false") boolean enableElevation,
+            @QueryParam("points_encoded") @DefaultValue("true") boolean pointsEncoded) {
+        MatchingSessionStore.Entry entry = getSession(sessionStore.get(id), id);
+        JsonNode points = body == null ? null : body.get("points");
+        if (points == null || !points.isArray())
+            throw new IllegalArgumentException("The request body must contain the observations as 'points' array of [lon, lat] arrays");
+        List<Observation> observations = new ArrayList<>(points.size());
+        for (JsonNode point : points) {
+            if (!point.isArray() || point.size() < 2)
+                throw new IllegalArgumentException("Every point must be an array of [lon, lat] but was " + point);
+            observations.add(new Observation(new GHPoint(point.get(1).asDouble(), point.get(0).asDouble())));
+        }
+        ObjectNode json = JsonNodeFactory.instance.objectNode();
+        ArrayNode links = json.putArray("links");
+        synchronized (entry) {
+            List<EdgeMatch> edgeMatches = new ArrayList<>();
+            for (Observation observation : observations) {
+                edgeMatches.addAll(entry.session.add(observation));
+            }
+            addLinks(links, edgeMatches, !entry.hasLinks, enableElevation, pointsEncoded);
+            entry.hasLinks |= !edgeMatches.isEmpty();
+            json.put("pending", entry.session.getPendingObservations());
+        }
+        return json;
+    }
+
+    /**
+     * Ends the session and returns the remaining links.
+     */
+    @DELETE
+    @javax.ws.rs.Path("session/{id}")
+    @Produces(MediaType.APPLICATION_JSON)
+    public ObjectNode finishSession(
+            @PathParam("id") String id,
+            @QueryParam("elevation") @DefaultValue("false") boolean enableElevation,
+            @QueryParam("points_encoded") @DefaultValue("true") boolean pointsEncoded) {
+        MatchingSessionStore.Entry entry = getSession(sessionStore.remove(id), id);
+        ObjectNode json = JsonNodeFactory.instance.objectNode();
+        synchronized (entry) {
+            addLinks(json.putArray("links"), entry.session.finish(), !entry.hasLinks, enableElevation, pointsEncoded);
+        }
+        return json;
+    }
+
+    private static MatchingSessionStore.Entry getSession(MatchingSessionStore.Entry entry, String id) {
+        if (entry == null)
+            throw new IllegalArgumentException("Map matching session " + id + " does not exist or expired");
+        return entry;
+    }
+
+    private String resolveProfile(PMap hints, String profile) {
+        if (Helper.isEmpty(profile)) {
+            // resolve profile and remove legacy vehicle/weighting parameters
+            // we need to explicitly disable CH here because map matching does not use it
+            PMap pMap = new PMap(hints).putObject(Parameters.CH.DISABLE, true);
+            profile = profileResolver.resolveProfile(pMap).getName();
+            removeLegacyParameters(hints);
+        }
+        hints.putObject("profile", profile);
+        errorIfLegacyParameters(hints);
+        return profile;
+    }
+
     private void removeLegacyParameters(PMap hints) {
         hints.remove("vehicle");
         hints.remove("weighting");
@@ -208,11 +314,18 @@ public class MapMatchingResource {
         ObjectNode diary = root.putObject("diary");
         ArrayNode entries = diary.putArray("entries");
         ObjectNode route = entries.addObject();
-        ArrayNode links = route.putArray("links");
-        for (int emIndex = 0; emIndex < result.getEdgeMatches().size(); emIndex++) {
+        addLinks(route.putArray("links"), result.getEdgeMatches(), true, elevation, pointsEncoded);
+        return root;
+    }
+
+    /**
+     * @param first true if the first link starts the matched path, then its geometry includes the base node
+     */
+    private static void addLinks(ArrayNode links, List<EdgeMatch> edgeMatches, boolean first, boolean elevation, boolean pointsEncoded) {
+        for (int emIndex = 0; emIndex < edgeMatches.size(); emIndex++) {
             ObjectNode link = links.addObject();
-            EdgeMatch edgeMatch = result.getEdgeMatches().get(emIndex);
-            PointList pointList = edgeMatch.getEdgeState().fetchWayGeometry(emIndex == 0 ? FetchMode.ALL : FetchMode.PILLAR_AND_ADJ);
+            EdgeMatch edgeMatch = edgeMatches.get(emIndex);
+            PointList pointList = edgeMatch.getEdgeState().fetchWayGeometry(first && emIndex == 0 ? FetchMode.ALL : FetchMode.PILLAR_AND_ADJ);
             final ObjectNode geometry = link.putObject("geometry");
             if (pointList.size() < 2) {
                 geometry.putPOJO("coordinates", pointsEncoded ? ResponsePathSerializer.encodePolyline(pointList, elevation, 1e5) : pointList.toLineString(elevation));
@@ -229,7 +342,6 @@ public class MapMatchingResource {
                 wpt.put("y", extension.getSnap().getSnappedPoint().lat);
             }
         }
-        return root;
     }
 
 }
@@ -0,0 +1,97 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.resources;
+
+import com.graphhopper.matching.MatchingSession;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Keeps the map matching sessions of the /match/session endpoints. If there are more than maxSessions sessions the
+ * least recently used one is removed. Sessions that were not used for longer than the timeout are removed as well.
+ */
+public class MatchingSessionStore {
+
+    public static class Entry {
+        public final MatchingSession session;
+        volatile long lastAccess;
+        // the first link of a session includes the base node of the edge, see MapMatchingResource.addLinks
+        volatile boolean hasLinks;
+
+        Entry(MatchingSession session) {
+            this.session = session;
+        }
+    }
+
+    private final Map<String, Entry> sessions;
+    private final long timeoutMillis;
+
+    public MatchingSessionStore(final int maxSessions, long timeoutMillis) {
+        this.timeoutMillis = timeoutMillis;
+        // use accessOrder==true to remove the least recently used session, not the oldest created
+        this.sessions = Collections.synchronizedMap(new LinkedHashMap<String, Entry>(Math.min(maxSessions, 1024), 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > maxSessions || isExpired(eldest.getValue(), System.currentTimeMillis());
+            }
+        });
+    }
+
+    /**
+     * @return the id of the new session
+     */
+    public String add(MatchingSession session) {
+        String id = UUID.randomUUID().toString();
+        Entry entry = new Entry(session);
+        entry.lastAccess = System.currentTimeMillis();
+        sessions.put(id, entry);
+        return id;
+    }
+
+    /**
+     * @return the session for the specified id or null if it does not exist or expired
+     */
+    public Entry get(String id) {
+        Entry entry = sessions.get(id);
+        if (entry == null)
+            return null;
+        long now = System.currentTimeMillis();
+        if (isExpired(entry, now)) {
+            sessions.remove(id);
+            return null;
+        }
+        entry.lastAccess = now;
+        return entry;
+    }
+
+    public Entry remove(String id) {
+        Entry entry = sessions.remove(id);
+        return entry == null || isExpired(entry, System.currentTimeMillis()) ? null : entry;
+    }
+
+    public int size() {
+        return sessions.size();
+    }
+
+    private boolean isExpired(Entry entry, long now) {
+        return timeoutMillis > 0 && now - entry.lastAccess > timeoutMillis;
+    }
+}
@@ -76,11 +76,13 @@ public class SPTResource {
             @Context UriInfo uriInfo,
             @QueryParam("profile") String profileName,
             @QueryParam("reverse_flow") @DefaultValue("false") boolean reverseFlow,
-            @QueryParam("point") @NotNull GHPointParam point,
+            @QueryParam("point") @NotNull List<GHPointParam> pointParams,
             @QueryParam("columns") String columnsParam,
             @QueryParam("time_limit") @DefaultValue("600") OptionalLong timeLimitInSeconds,
             @QueryParam("distance_limit") @DefaultValue("-1") OptionalLong distanceInMeter) {
         StopWatch sw = new StopWatch().start();
+        if (pointParams.isEmpty())
+            throw new IllegalArgumentException("query param point must not be null");
         PMap hintsMap = new PMap();
         RouteResource.initHints(hintsMap, uriInfo.getQueryParameters());
         hintsMap.putObject(Parameters.CH.DISABLE, true);
@@ -91,6 +93,10 @@ public class SPTResource {
         }
 
         errorIfLegacyParameters(hintsMap);
+        List<GHPoint> points = new ArrayList<>(pointParams.size());
+        for (GHPointParam pointParam : pointParams) {
+            points.add(pointParam.get());
+        }
         Profile profile = graphHopper.getProfile(profileName);
         if (profile == null)
             throw new IllegalArgumentException("The requested profile '" + profileName + "' does not exist");
@@ -100,16 +106,24 @@ public class SPTResource {
         BooleanEncodedValue inSubnetworkEnc = graphHopper.getEncodingManager().getBooleanEncodedValue(Subnetwork.key(profileName));
         if (hintsMap.has(Parameters.Routing.BLOCK_AREA)) {
             GraphEdgeIdFinder.BlockArea blockArea = GraphEdgeIdFinder.createBlockArea(graph, locationIndex,
-                    Collections.singletonList(point.get()), hintsMap, new FiniteWeightFilter(weighting));
+                    points, hintsMap, new FiniteWeightFilter(weighting));
             weighting = new BlockAreaWeighting(weighting, blockArea);
         }
-        Snap snap = locationIndex.findClosest(point.get().lat, point.get().lon, new DefaultSnapFilter(weighting, inSubnetworkEnc));
-        if (!snap.isValid())
-            throw new IllegalArgumentException("Point not found:" + point);
-        QueryGraph queryGraph = QueryGraph.create(graph, snap);
+        List<Snap> snaps = new ArrayList<>(points.size());
+        for (GHPoint point : points) {
+            Snap snap = locationIndex.findClosest(point.lat, point.lon, new DefaultSnapFilter(weighting, inSubnetworkEnc));
+            if (!snap.isValid())
+                throw new IllegalArgumentException("Point not found:" + point);
+            snaps.add(snap);
+        }
+        QueryGraph queryGraph = QueryGraph.create(graph, snaps);
         NodeAccess nodeAccess = queryGraph.getNodeAccess();
         TraversalMode traversalMode = profile.isTurnCosts() ? EDGE_BASED : NODE_BASED;
         ShortestPathTree shortestPathTree = new ShortestPathTree(queryGraph, queryGraph.wrapWeighting(weighting), reverseFlow, traversalMode);
+        // for multiple points a single tree is created where every node belongs to the closest point
+        for (Snap snap : snaps) {
+            shortestPathTree.addSource(snap.getClosestNode(), 0, 0, 0);
+        }
 
         if (distanceInMeter.orElseThrow(() -> new IllegalArgumentException("query param distance_limit is not a number.")) > 0) {
             shortestPathTree.setDistanceLimit(distanceInMeter.getAsLong());
@@ -144,7 +158,7 @@ public class SPTResource {
                 }
                 sb.append(LINE_SEP);
                 writer.write(sb.toString());
-                shortestPathTree.search(snap.getClosestNode(), l -> {
+                shortestPathTree.search(l -> {
                     IsoLabelWithCoordinates label = isoLabelWithCoordinates(nodeAccess, l);
                     sb.setLength(0);
                     for (int colIndex = 0; colIndex < columns.size(); colIndex++) {
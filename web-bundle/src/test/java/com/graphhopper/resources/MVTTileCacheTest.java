@@ -0,0 +1,104 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.resources;
+
+import com.graphhopper.GraphHopper;
+import com.graphhopper.config.Profile;
+import com.graphhopper.util.Helper;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MVTTileCacheTest {
+    private static final String DIR = "./target/mvt-tile-cache-gh/";
+    private static final File TILES = new File(DIR + "tiles");
+    private static GraphHopper hopper;
+
+    @BeforeAll
+    public static void setUp() {
+        Helper.removeDir(new File(DIR));
+        hopper = new GraphHopper().
+                setOSMFile("../core/files/andorra.osm.pbf").
+                setGraphHopperLocation(DIR).
+                setEncodedValuesString("road_class").
+                setProfiles(new Profile("car").setVehicle("car").setWeighting("fastest"));
+        hopper.importOrLoad();
+    }
+
+    @AfterAll
+    public static void tearDown() {
+        hopper.close();
+        Helper.removeDir(new File(DIR));
+    }
+
+    @BeforeEach
+    public void removeTiles() {
+        Helper.removeDir(TILES);
+    }
+
+    @Test
+    public void testGeneralizeBelowZoom() {
+        List<String> details = Collections.singletonList("road_class");
+        String key = MVTTileCache.createKey(12, 2065, 1512, details);
+
+        MVTTileCache tileCache = new MVTTileCache(hopper, 14, 0, TILES);
+        byte[] generalized = new MVTResource(hopper, hopper.getEncodingManager(), tileCache).createTile(12, 2065, 1512, details);
+        tileCache.put(key, generalized, tileCache.getGeneration());
+        assertArrayEquals(generalized, tileCache.get(key));
+
+        // the tile stored for the previous setting must not be served
+        tileCache = new MVTTileCache(hopper, 12, 0, TILES);
+        assertNull(tileCache.get(key));
+        byte[] tile = new MVTResource(hopper, hopper.getEncodingManager(), tileCache).createTile(12, 2065, 1512, details);
+        assertFalse(Arrays.equals(generalized, tile));
+        tileCache.put(key, tile, tileCache.getGeneration());
+        assertArrayEquals(tile, tileCache.get(key));
+        assertEquals(1, TILES.listFiles().length);
+    }
+
+    @Test
+    public void testDropPutsStartedBeforeInvalidate() {
+        MVTTileCache tileCache = new MVTTileCache(hopper, 14, 10, TILES);
+        int generation = tileCache.getGeneration();
+        tileCache.invalidate();
+        tileCache.put("15/1/2", new byte[]{1}, generation);
+        assertNull(tileCache.get("15/1/2"));
+
+        tileCache.put("15/1/2", new byte[]{2}, tileCache.getGeneration());
+        assertArrayEquals(new byte[]{2}, tileCache.get("15/1/2"));
+    }
+
+    @Test
+    public void testPutIgnoresStoreErrors() throws IOException {
+        // the disk store cannot be created below a regular file
+        assertTrue(TILES.getParentFile().exists() || TILES.getParentFile().mkdirs());
+        assertTrue(TILES.createNewFile());
+        MVTTileCache tileCache = new MVTTileCache(hopper, 14, 0, TILES);
+        tileCache.put("15/1/2", new byte[]{1}, tileCache.getGeneration());
+        assertNull(tileCache.get("15/1/2"));
+    }
+}
@@ -18,6 +18,8 @@
 
 package com.graphhopper.application.cli;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.dataformat.xml.XmlMapper;
 import com.graphhopper.GraphHopper;
 import com.graphhopper.GraphHopperConfig;
@@ -25,36 +27,43 @@ import com.graphhopper.ResponsePath;
 import com.graphhopper.application.GraphHopperServerConfiguration;
 import com.graphhopper.gpx.GpxConversions;
 import com.graphhopper.jackson.Gpx;
+import com.graphhopper.matching.EdgeMatch;
 import com.graphhopper.matching.MapMatching;
 import com.graphhopper.matching.MatchResult;
 import com.graphhopper.matching.Observation;
 import com.graphhopper.util.*;
+import com.graphhopper.util.shapes.GHPoint;
 import io.dropwizard.cli.ConfiguredCommand;
 import io.dropwizard.setup.Bootstrap;
 import net.sourceforge.argparse4j.inf.Argument;
 import net.sourceforge.argparse4j.inf.Namespace;
 import net.sourceforge.argparse4j.inf.Subparser;
 
-import java.io.BufferedWriter;
-import java.io.File;
-import java.io.FileWriter;
-import java.util.Collections;
-import java.util.Date;
-import java.util.List;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPOutputStream;
 
+/**
+ * Matches GPX files or a stream of traces in NDJSON format. Every line of the NDJSON input must be an object like
+ * {"id": "trip1", "points": [[lon, lat], ...]}. The traces are matched concurrently against a single GraphHopper
+ * instance. The results are either written as GPX next to each GPX file or, with --output, as one CSV file with a row
+ * per matched edge.
+ */
 public class MatchCommand extends ConfiguredCommand<GraphHopperServerConfiguration> {
 
     public MatchCommand() {
-        super("match", "map-match one or more gpx files");
+        super("match", "map-match gpx files or traces in NDJSON format");
     }
 
     @Override
     public void configure(Subparser subparser) {
         subparser.addArgument("gpx")
                 .type(File.class)
-                .required(true)
-                .nargs("+")
-                .help("GPX file");
+                .nargs("*")
+                .help("GPX files or directories containing GPX files");
         subparser.addArgument("--file")
                 .required(true)
                 .help("application configuration file");
@@ -75,6 +84,19 @@ public class MatchCommand extends ConfiguredCommand<GraphHopperServerConfigurati
                 .type(Double.class)
                 .required(false)
                 .setDefault(2.0);
+        subparser.addArgument("--ndjson")
+                .type(String.class)
+                .required(false)
+                .help("file with one trace per line like {\"id\": \"trip1\", \"points\": [[lon, lat], ...]}, use - to read from stdin");
+        subparser.addArgument("--output")
+                .type(String.class)
+                .required(false)
+                .help("write the matched edges of all traces into this CSV file instead of a GPX file per trace, "
+                        + "the file is compressed if it ends with .gz");
+        subparser.addArgument("--threads")
+                .type(Integer.class)
+                .required(false)
+                .setDefault(1);
     }
 
     @Override
@@ -88,68 +110,235 @@ public class MatchCommand extends ConfiguredCommand<GraphHopperServerConfigurati
     }
 
     @Override
-    protected void run(Bootstrap<GraphHopperServerConfiguration> bootstrap, Namespace args, GraphHopperServerConfiguration configuration) {
+    protected void run(Bootstrap<GraphHopperServerConfiguration> bootstrap, Namespace args, GraphHopperServerConfiguration configuration) throws Exception {
         GraphHopperConfig graphHopperConfiguration = configuration.getGraphHopperConfiguration();
+        List<File> gpxFiles = findGpxFiles(args.getList("gpx"));
+        String ndjson = args.getString("ndjson");
+        String output = args.getString("output");
+        if (gpxFiles.isEmpty() && ndjson == null)
+            throw new IllegalArgumentException("Specify GPX files or --ndjson");
+        if (ndjson != null && output == null)
+            throw new IllegalArgumentException("--ndjson requires --output");
+        int threads = args.getInt("threads");
+        if (threads < 1)
+            throw new IllegalArgumentException("--threads must be at least 1");
 
         GraphHopper hopper = new GraphHopper().init(graphHopperConfiguration);
         hopper.importOrLoad();
 
         PMap hints = new PMap();
         hints.putObject("profile", args.get("profile"));
-        MapMatching mapMatching = new MapMatching(hopper, hints);
-        mapMatching.setTransitionProbabilityBeta(args.getDouble("transition_probability_beta"));
-        mapMatching.setMeasurementErrorSigma(args.getInt("gps_accuracy"));
-
-        StopWatch importSW = new StopWatch();
-        StopWatch matchSW = new StopWatch();
+        // MapMatching is not thread-safe, so every worker uses its own instance
+        ThreadLocal<MapMatching> mapMatching = ThreadLocal.withInitial(() -> {
+            MapMatching m = new MapMatching(hopper, hints);
+            m.setTransitionProbabilityBeta(args.getDouble("transition_probability_beta"));
+            m.setMeasurementErrorSigma(args.getInt("gps_accuracy"));
+            return m;
+        });
 
         Translation tr = new TranslationMap().doImport().getWithFallBack(Helper.getLocale(args.getString("instructions")));
         final boolean withRoute = !args.getString("instructions").isEmpty();
-        XmlMapper xmlMapper = new XmlMapper();
-
-        for (File gpxFile : args.<File>getList("gpx")) {
-            try {
-                importSW.start();
-                Gpx gpx = xmlMapper.readValue(gpxFile, Gpx.class);
-                if (gpx.trk == null) {
-                    throw new IllegalArgumentException("No tracks found in GPX document. Are you using waypoints or routes instead?");
-                }
-                if (gpx.trk.size() > 1) {
-                    throw new IllegalArgumentException("GPX documents with multiple tracks not supported yet.");
-                }
-                List<Observation> measurements = GpxConversions.getEntries(gpx.trk.get(0));
-                importSW.stop();
-                matchSW.start();
-                MatchResult mr = mapMatching.match(measurements);
-                matchSW.stop();
-                System.out.println(gpxFile);
-                System.out.println("\tmatches:\t" + mr.getEdgeMatches().size() + ", gps entries:" + measurements.size());
-                System.out.println("\tgpx length:\t" + (float) mr.getGpxEntriesLength() + " vs " + (float) mr.getMatchLength());
-
-                String outFile = gpxFile.getAbsolutePath() + ".res.gpx";
-                System.out.println("\texport results to:" + outFile);
-
-                ResponsePath responsePath = new PathMerger(mr.getGraph(), mr.getWeighting()).
-                        doWork(PointList.EMPTY, Collections.singletonList(mr.getMergedPath()), hopper.getEncodingManager(), tr);
-                if (responsePath.hasErrors()) {
-                    System.err.println("Problem with file " + gpxFile + ", " + responsePath.getErrors());
-                    continue;
+        Stats stats = new Stats();
+        // a bounded queue and CallerRunsPolicy make sure that large inputs are not read into memory completely
+        ThreadPoolExecutor executorService = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(threads * 4), new ThreadPoolExecutor.CallerRunsPolicy());
+        StopWatch sw = new StopWatch().start();
+        try (CsvWriter csvWriter = output == null ? null : new CsvWriter(output)) {
+            XmlMapper xmlMapper = new XmlMapper();
+            for (File gpxFile : gpxFiles) {
+                executorService.execute(() -> {
+                    try {
+                        Gpx gpx = xmlMapper.readValue(gpxFile, Gpx.class);
+                        if (gpx.trk == null || gpx.trk.isEmpty()) {
+                            throw new IllegalArgumentException("No tracks found in GPX document. Are you using waypoints or routes instead?");
+                        }
+                        if (gpx.trk.size() > 1) {
+                            throw new IllegalArgumentException("GPX documents with multiple tracks not supported yet.");
+                        }
+                        List<Observation> measurements = GpxConversions.getEntries(gpx.trk.get(0));
+                        MatchResult mr = mapMatching.get().match(measurements);
+                        if (csvWriter != null) {
+                            csvWriter.write(gpxFile.getPath(), mr);
+                        } else {
+                            writeGpx(hopper, gpxFile, gpx, measurements, mr, tr, withRoute);
+                        }
+                        stats.matched(sw);
+                    } catch (Exception ex) {
+                        stats.failed(gpxFile.getPath(), ex, sw);
+                    }
+                });
+            }
+            if (ndjson != null) {
+                ObjectMapper objectMapper = new ObjectMapper();
+                try (BufferedReader reader = new BufferedReader(ndjson.equals("-")
+                        ? new InputStreamReader(System.in, StandardCharsets.UTF_8)
+                        : new InputStreamReader(new FileInputStream(ndjson), StandardCharsets.UTF_8))) {
+                    String line;
+                    int lineNumber = 0;
+                    while ((line = reader.readLine()) != null) {
+                        lineNumber++;
+                        if (line.trim().isEmpty())
+                            continue;
+                        final String fLine = line;
+                        final String lineId = "line " + lineNumber;
+                        executorService.execute(() -> {
+                            String id = lineId;
+                            try {
+                                JsonNode trace = objectMapper.readTree(fLine);
+                                if (trace.has("id"))
+                                    id = trace.get("id").asText();
+                                List<Observation> measurements = new ArrayList<>();
+                                for (JsonNode point : trace.path("points")) {
+                                    measurements.add(new Observation(new GHPoint(point.get(1).asDouble(), point.get(0).asDouble())));
+                                }
+                                if (measurements.isEmpty())
+                                    throw new IllegalArgumentException("No points found");
+                                csvWriter.write(id, mapMatching.get().match(measurements));
+                                stats.matched(sw);
+                            } catch (Exception ex) {
+                                stats.failed(id, ex, sw);
+                            }
+                        });
+                    }
                 }
+            }
+            executorService.shutdown();
+            executorService.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+        } finally {
+            executorService.shutdownNow();
+            hopper.close();
+        }
+        sw.stop();
+        stats.print(sw);
+    }
 
-                try (BufferedWriter writer = new BufferedWriter(new FileWriter(outFile))) {
-                    long time = gpx.trk.get(0).getStartTime()
-                            .map(Date::getTime)
-                            .orElse(System.currentTimeMillis());
-                    writer.append(GpxConversions.createGPX(responsePath.getInstructions(), gpx.trk.get(0).name != null ? gpx.trk.get(0).name : "", time, hopper.hasElevation(), withRoute, true, false, Constants.VERSION, tr));
+    private static List<File> findGpxFiles(List<File> files) {
+        List<File> result = new ArrayList<>();
+        if (files == null)
+            return result;
+        for (File file : files) {
+            if (file.isDirectory()) {
+                File[] gpxFiles = file.listFiles((dir, name) -> name.endsWith(".gpx"));
+                if (gpxFiles != null) {
+                    Arrays.sort(gpxFiles);
+                    result.addAll(Arrays.asList(gpxFiles));
                 }
-            } catch (Exception ex) {
-                importSW.stop();
-                matchSW.stop();
-                System.err.println("Problem with file " + gpxFile);
-                ex.printStackTrace(System.err);
+            } else {
+                result.add(file);
+            }
+        }
+        return result;
+    }
+
+    private static void writeGpx(GraphHopper hopper, File gpxFile, Gpx gpx, List<Observation> measurements, MatchResult mr,
+                                 Translation tr, boolean withRoute) throws IOException {
+        String outFile = gpxFile.getAbsolutePath() + ".res.gpx";
+        ResponsePath responsePath = new PathMerger(mr.getGraph(), mr.getWeighting()).
+                doWork(PointList.EMPTY, Collections.singletonList(mr.getMergedPath()), hopper.getEncodingManager(), tr);
+        if (responsePath.hasErrors())
+            throw new IllegalStateException("Problem with file " + gpxFile + ", " + responsePath.getErrors());
+
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(outFile))) {
+            long time = gpx.trk.get(0).getStartTime()
+                    .map(Date::getTime)
+                    .orElse(System.currentTimeMillis());
+            writer.append(GpxConversions.createGPX(responsePath.getInstructions(), gpx.trk.get(0).name != null ? gpx.trk.get(0).name : "", time, hopper.hasElevation(), withRoute, true, false, Constants.VERSION, tr));
+        }
+        System.out.println(gpxFile + "\n"
+                + "\tmatches:\t" + mr.getEdgeMatches().size() + ", gps entries:" + measurements.size() + "\n"
+                + "\tgpx length:\t" + (float) mr.getGpxEntriesLength() + " vs " + (float) mr.getMatchLength() + "\n"
+                + "\texport results to:" + outFile);
+    }
+
+    /**
+     * Writes one row per matched edge: the trace id, the index of the edge in the matched path, the edge id, its base
+     * and adjacent node, its distance in meters and the number of observations matched to it.
+     */
+    private static class CsvWriter implements Closeable {
+        private final Writer writer;
+
+        CsvWriter(String file) throws IOException {
+            OutputStream os = new FileOutputStream(file);
+            if (file.endsWith(".gz"))
+                os = new GZIPOutputStream(os, 1 << 16);
+            writer = new BufferedWriter(new OutputStreamWriter(os, StandardCharsets.UTF_8), 1 << 16);
+            writer.write("trace_id,index,edge,base_node,adj_node,distance,observations\n");
+        }
+
+        void write(String id, MatchResult mr) throws IOException {
+            // build the rows of a trace outside of the lock, so that the rows of a trace are not interleaved
+            StringBuilder sb = new StringBuilder();
+            String escapedId = escape(id);
+            List<EdgeMatch> edgeMatches = mr.getEdgeMatches();
+            for (int i = 0; i < edgeMatches.size(); i++) {
+                EdgeIteratorState edge = edgeMatches.get(i).getEdgeState();
+                sb.append(escapedId).append(',').append(i).append(',').append(edge.getEdge()).append(',')
+                        .append(edge.getBaseNode()).append(',').append(edge.getAdjNode()).append(',')
+                        .append(Helper.round(edge.getDistance(), 2)).append(',').append(edgeMatches.get(i).getStates().size()).append('\n');
             }
+            synchronized (this) {
+                writer.write(sb.toString());
+            }
+        }
+
+        private static String escape(String value) {
+            if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0)
+                return value;
+            return '"' + value.replace("\"", "\"\"") + '"';
+        }
+
+        @Override
+        public synchronized void close() throws IOException {
+            writer.close();
         }
-        System.out.println("gps import took:" + importSW.getSeconds() + "s, match took: " + matchSW.getSeconds());
     }
 
+    private static class Stats {
+        private static final int PROGRESS_INTERVAL = 10_000;
+        private final AtomicInteger matched = new AtomicInteger();
+        private final AtomicInteger failed = new AtomicInteger();
+        private final Map<String, Integer> failureReasons = new TreeMap<>();
+
+        void matched(StopWatch sw) {
+            progress(matched.incrementAndGet() + failed.get(), sw);
+        }
+
+        void failed(String id, Exception ex, StopWatch sw) {
+            System.err.println("Problem with " + id + ": " + ex.getMessage());
+            synchronized (failureReasons) {
+                failureReasons.merge(reason(ex), 1, Integer::sum);
+            }
+            progress(matched.get() + failed.incrementAndGet(), sw);
+        }
+
+        /**
+         * Groups the failures by exception type and the part of the message before the first digit, which usually
+         * contains the details of the trace.
+         */
+        private static String reason(Exception ex) {
+            String message = ex.getMessage() == null ? "" : ex.getMessage();
+            for (int i = 0; i < message.length(); i++) {
+                if (Character.isDigit(message.charAt(i))) {
+                    message = message.substring(0, i);
+                    break;
+                }
+            }
+            return ex.getClass().getSimpleName() + ": " + message.trim();
+        }
+
+        private static void progress(int traces, StopWatch sw) {
+            if (traces % PROGRESS_INTERVAL == 0)
+                System.out.println(traces + " traces, " + Math.round(traces / sw.getCurrentSeconds()) + " traces/s");
+        }
+
+        void print(StopWatch sw) {
+            int traces = matched.get() + failed.get();
+            System.out.println("matched " + matched.get() + " of " + traces + " traces in " + sw.getSeconds() + "s, "
+                    + String.format(Locale.ROOT, "%.1f", traces / Math.max(sw.getSeconds(), 1e-3)) + " traces/s");
+            if (failed.get() > 0) {
+                System.out.println("failed " + failed.get() + " traces:");
+                failureReasons.forEach((reason, count) -> System.out.println("\t" + count + "\t" + reason));
+            }
+        }
+    }
 }
@@ -0,0 +1,141 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.application.cli;
+
+import com.graphhopper.GraphHopper;
+import com.graphhopper.GraphHopperConfig;
+import com.graphhopper.application.GraphHopperServerConfiguration;
+import com.graphhopper.resources.MVTResource;
+import com.graphhopper.resources.MVTTileCache;
+import com.graphhopper.util.StopWatch;
+import com.graphhopper.util.shapes.BBox;
+import io.dropwizard.cli.ConfiguredCommand;
+import io.dropwizard.setup.Bootstrap;
+import net.sourceforge.argparse4j.inf.Namespace;
+import net.sourceforge.argparse4j.inf.Subparser;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Renders the vector tiles of the specified zoom levels into the disk store of the tile cache (mvt.cache.dir), so
+ * that the server does not need to create them on demand.
+ */
+public class PrerenderTilesCommand extends ConfiguredCommand<GraphHopperServerConfiguration> {
+
+    public PrerenderTilesCommand() {
+        super("prerender-tiles", "creates the vector tiles for the given zoom levels and stores them in mvt.cache.dir");
+    }
+
+    @Override
+    public void configure(Subparser subparser) {
+        super.configure(subparser);
+        subparser.addArgument("--min_zoom")
+                .type(Integer.class)
+                .setDefault(10)
+                .help("the minimum zoom level, tiles with lower zoom levels are always empty");
+        subparser.addArgument("--max_zoom")
+                .type(Integer.class)
+                .setDefault(14);
+        subparser.addArgument("--bbox")
+                .type(String.class)
+                .setDefault("")
+                .help("lat1,lon1,lat2,lon2, the bounds of the graph are used if not specified");
+        subparser.addArgument("--details")
+                .type(String.class)
+                .setDefault("")
+                .help("comma separated list of encoded values to include in the tiles");
+        subparser.addArgument("--threads")
+                .type(Integer.class)
+                .setDefault(Runtime.getRuntime().availableProcessors());
+    }
+
+    @Override
+    protected void run(Bootstrap<GraphHopperServerConfiguration> bootstrap, Namespace args, GraphHopperServerConfiguration configuration) throws Exception {
+        GraphHopperConfig graphHopperConfiguration = configuration.getGraphHopperConfiguration();
+        if (graphHopperConfiguration.getString("mvt.cache.dir", "").isEmpty())
+            throw new IllegalArgumentException("You need to specify mvt.cache.dir to store the tiles");
+        int minZoom = Math.max(10, args.getInt("min_zoom"));
+        int maxZoom = args.getInt("max_zoom");
+        int threads = args.getInt("threads");
+
+        GraphHopper hopper = new GraphHopper().init(graphHopperConfiguration);
+        hopper.importOrLoad();
+        try {
+            // we do not want to fill the memory cache here
+            MVTTileCache tileCache = new MVTTileCache(hopper, graphHopperConfiguration.getInt("mvt.generalize_below_zoom", 14),
+                    0, new File(graphHopperConfiguration.getString("mvt.cache.dir", "")));
+            MVTResource resource = new MVTResource(hopper, hopper.getEncodingManager(), tileCache);
+            List<String> details = new ArrayList<>();
+            for (String detail : args.getString("details").split(",")) {
+                if (!detail.trim().isEmpty())
+                    details.add(detail.trim());
+            }
+            details = resource.getValidDetails(details);
+            BBox bbox = args.getString("bbox").isEmpty() ? hopper.getBaseGraph().getBounds() : BBox.parseTwoPoints(args.getString("bbox"));
+
+            ExecutorService executorService = Executors.newFixedThreadPool(threads);
+            AtomicLong counter = new AtomicLong();
+            StopWatch sw = new StopWatch().start();
+            try {
+                for (int z = minZoom; z <= maxZoom; z++) {
+                    int minX = lon2tile(bbox.minLon, z), maxX = lon2tile(bbox.maxLon, z);
+                    // tile numbers for y grow from north to south
+                    int minY = lat2tile(bbox.maxLat, z), maxY = lat2tile(bbox.minLat, z);
+                    List<Future<?>> futures = new ArrayList<>();
+                    for (int x = minX; x <= maxX; x++) {
+                        final int fz = z, fx = x;
+                        final List<String> fDetails = details;
+                        // one task per column to keep the task overhead small
+                        futures.add(executorService.submit(() -> {
+                            for (int y = minY; y <= maxY; y++) {
+                                // the graph does not change here, so the generation is always the same
+                                tileCache.put(MVTTileCache.createKey(fz, fx, y, fDetails), resource.createTile(fz, fx, y, fDetails), tileCache.getGeneration());
+                                counter.incrementAndGet();
+                            }
+                        }));
+                    }
+                    for (Future<?> future : futures)
+                        future.get();
+                    System.out.println("zoom " + z + " done, " + counter.get() + " tiles so far, took " + sw.getCurrentSeconds() + "s");
+                }
+            } finally {
+                executorService.shutdown();
+            }
+            System.out.println("rendered " + counter.get() + " tiles in " + sw.stop().getSeconds() + "s");
+        } finally {
+            hopper.close();
+        }
+    }
+
+    static int lon2tile(double lon, int zoom) {
+        int n = 1 << zoom;
+        return Math.max(0, Math.min(n - 1, (int) Math.floor((lon + 180) / 360 * n)));
+    }
+
+    static int lat2tile(double lat, int zoom) {
+        int n = 1 << zoom;
+        double latRad = Math.toRadians(lat);
+        return Math.max(0, Math.min(n - 1, (int) Math.floor((1 - Math.log(Math.tan(latRad) + 1 / Math.cos(latRad)) / Math.PI) / 2 * n)));
+    }
+}
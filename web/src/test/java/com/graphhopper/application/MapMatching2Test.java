@@ -26,6 +26,8 @@ import com.graphhopper.jackson.Gpx;
 import com.graphhopper.matching.EdgeMatch;
 import com.graphhopper.matching.MapMatching;
 import com.graphhopper.matching.MatchResult;
+import com.graphhopper.matching.MatchingSession;
+import com.graphhopper.matching.Observation;
 import com.graphhopper.matching.State;
 import com.graphhopper.storage.index.Snap;
 import com.graphhopper.util.Helper;
@@ -36,7 +38,12 @@ import org.junit.jupiter.api.Test;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
 
 import static com.graphhopper.application.MapMatchingTest.fetchStreets;
 import static org.junit.jupiter.api.Assertions.*;
@@ -124,6 +131,105 @@ public class MapMatching2Test {
         assertEquals(0, mr.getMatchMillis(), 50);
     }
 
+    @Test
+    public void testSession() throws IOException {
+        GraphHopper hopper = new GraphHopper();
+        hopper.setOSMFile("../map-matching/files/map-issue13.osm.gz");
+        hopper.setGraphHopperLocation(GH_LOCATION);
+        hopper.setProfiles(new Profile("my_profile").setVehicle("car").setWeighting("fastest"));
+        hopper.importOrLoad();
+
+        Gpx gpx = xmlMapper.readValue(getClass().getResourceAsStream("/issue-13.gpx"), Gpx.class);
+        MapMatching mapMatching = new MapMatching(hopper, new PMap().putObject("profile", "my_profile"));
+        MatchResult mr = mapMatching.match(GpxConversions.getEntries(gpx.trk.get(0)));
+
+        for (int maxLag : new int[]{1, 3, 100}) {
+            MatchingSession session = new MapMatching(hopper, new PMap().putObject("profile", "my_profile")).createSession(maxLag);
+            List<EdgeMatch> edgeMatches = new ArrayList<>();
+            for (Observation observation : GpxConversions.getEntries(gpx.trk.get(0))) {
+                edgeMatches.addAll(session.add(observation));
+                assertTrue(session.getPendingObservations() <= maxLag);
+            }
+            edgeMatches.addAll(session.finish());
+            assertEquals(edges(mr.getEdgeMatches()), edges(edgeMatches), "maxLag " + maxLag);
+            assertEquals(mr.getEdgeMatches().stream().mapToInt(em -> em.getStates().size()).sum(),
+                    edgeMatches.stream().mapToInt(em -> em.getStates().size()).sum());
+            for (EdgeMatch em : edgeMatches) {
+                validateEdgeMatch(em);
+            }
+        }
+    }
+
+    @Test
+    public void testSessionWithSmallSigma() throws IOException {
+        GraphHopper hopper = new GraphHopper();
+        hopper.setOSMFile("../map-matching/files/map-issue13.osm.gz");
+        hopper.setGraphHopperLocation(GH_LOCATION);
+        hopper.setProfiles(new Profile("my_profile").setVehicle("car").setWeighting("fastest"));
+        hopper.importOrLoad();
+
+        Gpx gpx = xmlMapper.readValue(getClass().getResourceAsStream("/issue-13.gpx"), Gpx.class);
+        MapMatching mapMatching = new MapMatching(hopper, new PMap().putObject("profile", "my_profile"));
+        // a small sigma to keep more observations
+        mapMatching.setMeasurementErrorSigma(10);
+        MatchResult mr = mapMatching.match(GpxConversions.getEntries(gpx.trk.get(0)));
+
+        MapMatching sessionMapMatching = new MapMatching(hopper, new PMap().putObject("profile", "my_profile"));
+        sessionMapMatching.setMeasurementErrorSigma(10);
+        MatchingSession session = sessionMapMatching.createSession(100);
+        List<EdgeMatch> edgeMatches = new ArrayList<>();
+        for (Observation observation : GpxConversions.getEntries(gpx.trk.get(0))) {
+            edgeMatches.addAll(session.add(observation));
+        }
+        // the sequences converge, so edges are matched before the end of the trace even though maxLag is not reached
+        assertFalse(edgeMatches.isEmpty());
+        edgeMatches.addAll(session.finish());
+        assertEquals(edges(mr.getEdgeMatches()), edges(edgeMatches));
+        assertEquals(mr.getEdgeMatches().stream().mapToInt(em -> em.getStates().size()).sum(),
+                edgeMatches.stream().mapToInt(em -> em.getStates().size()).sum());
+        for (EdgeMatch em : edgeMatches) {
+            validateEdgeMatch(em);
+        }
+    }
+
+    @Test
+    public void testSegments() throws IOException {
+        GraphHopper hopper = new GraphHopper();
+        hopper.setOSMFile("../map-matching/files/map-issue13.osm.gz");
+        hopper.setGraphHopperLocation(GH_LOCATION);
+        hopper.setProfiles(new Profile("my_profile").setVehicle("car").setWeighting("fastest"));
+        hopper.importOrLoad();
+
+        Gpx gpx = xmlMapper.readValue(getClass().getResourceAsStream("/issue-13.gpx"), Gpx.class);
+        MapMatching sequentialMapMatching = new MapMatching(hopper, new PMap().putObject("profile", "my_profile"));
+        // a small sigma to keep more observations
+        sequentialMapMatching.setMeasurementErrorSigma(10);
+        MatchResult mr = sequentialMapMatching.match(GpxConversions.getEntries(gpx.trk.get(0)));
+
+        ExecutorService executorService = Executors.newFixedThreadPool(4);
+        try {
+            for (int[] segmentation : new int[][]{{3, 1}, {6, 2}, {10, 4}}) {
+                MapMatching mapMatching = new MapMatching(hopper, new PMap().putObject("profile", "my_profile"));
+                mapMatching.setMeasurementErrorSigma(10);
+                mapMatching.setSegmentation(executorService, segmentation[0], segmentation[1]);
+                MatchResult segmentResult = mapMatching.match(GpxConversions.getEntries(gpx.trk.get(0)));
+                String msg = "segmentation " + Arrays.toString(segmentation);
+                assertEquals(edges(mr.getEdgeMatches()), edges(segmentResult.getEdgeMatches()), msg);
+                assertEquals(mr.getEdgeMatches().stream().mapToInt(em -> em.getStates().size()).sum(),
+                        segmentResult.getEdgeMatches().stream().mapToInt(em -> em.getStates().size()).sum(), msg);
+                assertEquals(mr.getMatchLength(), segmentResult.getMatchLength(), 1.e-3, msg);
+                assertEquals(mr.getMergedPath().calcEdges().size(), segmentResult.getMergedPath().calcEdges().size(), msg);
+            }
+        } finally {
+            executorService.shutdown();
+        }
+        assertThrows(IllegalArgumentException.class, () -> new MapMatching(hopper, new PMap().putObject("profile", "my_profile")).setSegmentation(null, 4, 2));
+    }
+
+    private static List<Integer> edges(List<EdgeMatch> edgeMatches) {
+        return edgeMatches.stream().map(em -> em.getEdgeState().getEdge()).collect(Collectors.toList());
+    }
+
     private void validateEdgeMatch(EdgeMatch edgeMatch) {
         for (State state : edgeMatch.getStates()) {
             if (state.getSnap().getSnappedPosition() == Snap.Position.TOWER) {
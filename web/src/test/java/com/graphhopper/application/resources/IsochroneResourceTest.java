@@ -116,6 +116,26 @@ public class IsochroneResourceTest {
         assertFalse(polygon1.contains(geometryFactory.createPoint(new Coordinate(1.635246, 42.53841))));
     }
 
+    @Test
+    public void requestMultiplePoints() {
+        Response rsp = clientTarget(app, "/isochrone")
+                .queryParam("profile", "fast_car")
+                .queryParam("point", "42.531073,1.573792")
+                .queryParam("point", "42.542817,1.731544")
+                .queryParam("time_limit", 2 * 60)
+                .queryParam("type", "geojson")
+                .request().buildGet().invoke();
+        JsonFeatureCollection featureCollection = rsp.readEntity(JsonFeatureCollection.class);
+
+        assertEquals(1, featureCollection.getFeatures().size());
+        Geometry geometry = featureCollection.getFeatures().get(0).getGeometry();
+        // the two points are far apart, so there is one polygon for each of them
+        assertEquals(2, geometry.getNumGeometries());
+        assertTrue(geometry.contains(geometryFactory.createPoint(new Coordinate(1.573792, 42.531073))));
+        assertTrue(geometry.contains(geometryFactory.createPoint(new Coordinate(1.731544, 42.542817))));
+        assertFalse(geometry.contains(geometryFactory.createPoint(new Coordinate(1.635246, 42.53841))));
+    }
+
     @Test
     public void requestByDistanceLimit() {
         Response rsp = clientTarget(app, "/isochrone")
@@ -40,11 +40,15 @@ import javax.ws.rs.core.Response;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Map;
 
 import static com.graphhopper.application.util.TestUtils.clientTarget;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 /**
@@ -63,6 +67,7 @@ public class MvtResourceTest {
                 putObject("prepare.min_network_size", 0).
                 putObject("datareader.file", "../core/files/andorra.osm.pbf").
                 putObject("graph.location", DIR).
+                putObject("mvt.cache.dir", DIR + "tiles").
                 setProfiles(Collections.singletonList(new Profile("car").setVehicle("car").setWeighting("fastest")));
         return config;
     }
@@ -107,6 +112,39 @@ public class MvtResourceTest {
         assertEquals("primary", attributes(geometry).get("road_class"));
     }
 
+    @Test
+    public void testGeneralizedLowZoomTile() throws IOException {
+        final Response response = clientTarget(app, "/mvt/12/2065/1512.mvt?details=road_class").request().buildGet().invoke();
+        assertEquals(200, response.getStatus());
+        InputStream is = response.readEntity(InputStream.class);
+        JtsMvt result = MvtReader.loadMvt(is, new GeometryFactory(), new TagKeyValueMapConverter());
+        JtsLayer layer = result.getLayersByName().get("roads");
+        assertFalse(layer.getGeometries().isEmpty());
+        int maxCoordinates = 0;
+        for (Geometry geometry : layer.getGeometries()) {
+            // road class thinning
+            assertTrue(Arrays.asList("motorway", "trunk", "primary", "secondary").contains(attributes(geometry).get("road_class")),
+                    "unexpected road_class " + attributes(geometry).get("road_class"));
+            maxCoordinates = Math.max(maxCoordinates, geometry.getNumPoints());
+        }
+        // the simplified geometry still contains pillar nodes for curvy roads
+        assertTrue(maxCoordinates > 2, "max coordinates: " + maxCoordinates);
+    }
+
+    @Test
+    public void testTileCache() throws IOException {
+        byte[] bytes = clientTarget(app, "/mvt/15/16522/12102.mvt?details=road_class&details=max_speed").request().get(byte[].class);
+        // the order of the details does not matter, the tile is served from the cache
+        byte[] cachedBytes = clientTarget(app, "/mvt/15/16522/12102.mvt?details=max_speed&details=road_class").request().get(byte[].class);
+        assertArrayEquals(bytes, cachedBytes);
+
+        File[] versionDirs = new File(DIR + "tiles").listFiles();
+        assertEquals(1, versionDirs.length);
+        File tileFile = new File(versionDirs[0], "15/16522/12102_max_speed-road_class.mvt");
+        assertTrue(tileFile.exists());
+        assertArrayEquals(bytes, Files.readAllBytes(tileFile.toPath()));
+    }
+
     private Map<String, Object> attributes(Geometry g) {
         return (Map<String, Object>) g.getUserData();
     }
@@ -34,7 +34,9 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import javax.ws.rs.core.Response;
 import java.io.File;
 import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import static com.graphhopper.application.util.TestUtils.clientTarget;
 import static org.junit.jupiter.api.Assertions.*;
@@ -89,6 +91,20 @@ public class SPTResourceTest {
         assertEquals(41, Integer.parseInt(row[prevTimeIndex]) / 1000);
     }
 
+    @Test
+    public void requestSPTMultiplePoints() {
+        Response rsp = clientTarget(app, "/spt?profile=car_without_turncosts&point=42.531073,1.573792&point=42.542817,1.731544&time_limit=60&columns=node_id,prev_node_id,time").request().buildGet().invoke();
+        String[] lines = rsp.readEntity(String.class).split("\n");
+        assertEquals("node_id,prev_node_id,time", lines[0]);
+        // both points are roots of the tree
+        assertTrue(lines[1].endsWith(",-1,0"), lines[1]);
+        assertTrue(lines[2].endsWith(",-1,0"), lines[2]);
+        Set<String> nodes = new HashSet<>();
+        for (int i = 1; i < lines.length; i++) {
+            assertTrue(nodes.add(lines[i].split(",")[0]), "node visited twice: " + lines[i]);
+        }
+    }
+
     @Test
     public void requestSPTEdgeBased() {
         Response rsp = clientTarget(app, "/spt?profile=car_with_turncosts&point=42.531073,1.573792&time_limit=300&columns=prev_node_id,edge_id,node_id,time,distance").request().buildGet().invoke();